@@ -55,6 +55,7 @@ import com.intellij.openapi.projectRoots.impl.JavaAwareProjectJdkTableImpl;
 import com.intellij.openapi.roots.ModuleRootAdapter;
 import com.intellij.openapi.roots.ModuleRootEvent;
 import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.roots.OrderEnumerator;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.startup.StartupManager;
 import com.intellij.openapi.util.Disposer;
@@ -65,13 +66,17 @@ import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.registry.Registry;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.openapi.vfs.JarFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.ManagingFS;
+import com.intellij.openapi.vfs.newvfs.RefreshQueue;
 import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
 import com.intellij.openapi.vfs.newvfs.impl.FileNameCache;
 import com.intellij.util.Alarm;
 import com.intellij.util.Function;
+import com.intellij.util.PathUtil;
 import com.intellij.util.SmartList;
 import com.intellij.util.concurrency.Semaphore;
 import com.intellij.util.concurrency.SequentialTaskExecutor;
@@ -101,8 +106,7 @@ import org.jetbrains.jps.incremental.Utils;
 import org.jetbrains.jps.model.serialization.JpsGlobalLoader;
 
 import javax.tools.*;
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.util.*;
@@ -131,6 +135,10 @@ public class BuildManager implements ApplicationComponent{
   private static final String IWS_EXTENSION = ".iws";
   private static final String IPR_EXTENSION = ".ipr";
   private static final String IDEA_PROJECT_DIR_PATTERN = "/.idea/";
+  private static final String FS_JOURNAL_FILE_NAME = "fs_journal.dat";
+  private static final int FS_JOURNAL_VERSION = 1;
+  private static final int FS_JOURNAL_MAX_PATHS = 50000;
+  private static final int FS_JOURNAL_MAX_SESSION_CHANGES = 10000;
   private static final Function<String, Boolean> PATH_FILTER =
     SystemInfo.isFileSystemCaseSensitive?
     new Function<String, Boolean>() {
@@ -155,6 +163,15 @@ public class BuildManager implements ApplicationComponent{
   private final Executor myPooledThreadExecutor = new PooledThreadExecutor();
   private final SequentialTaskExecutor myRequestsProcessor = new SequentialTaskExecutor(myPooledThreadExecutor);
   private final Map<String, ProjectData> myProjectDataMap = Collections.synchronizedMap(new HashMap<String, ProjectData>());
+  // data of the projects closed in this session, which still registers FS events so that the project can be reopened without rescan;
+  // guarded by myProjectDataMap
+  private final Map<String, ClosedProjectData> myClosedProjectDataMap = new HashMap<String, ClosedProjectData>();
+  // parent directories of the paths changed in this session and the deleted paths themselves, a journal of the previous session
+  // is valid only if none of them is under the project roots and no root was deleted; guarded by myProjectDataMap
+  private final Set<String> myChangedDirs = new THashSet<String>();
+  private final Set<String> myDeletedPaths = new THashSet<String>();
+  private boolean myTooManySessionChanges = false;
+  private boolean myClosedProjectJournalsWriteScheduled = false;
 
   private final BuildManagerPeriodicTask myAutoMakeTask = new BuildManagerPeriodicTask() {
     @Override
@@ -330,6 +347,8 @@ public class BuildManager implements ApplicationComponent{
           return;
         }
         synchronized (myProjectDataMap) {
+          registerSessionChanges(filtered, notifyDeletion);
+          registerInClosedProjects(filtered, notifyDeletion);
           if (IS_UNIT_TEST_MODE) {
             if (notifyDeletion) {
               LOG.info("Registering deleted paths: " + filtered);
@@ -363,6 +382,73 @@ public class BuildManager implements ApplicationComponent{
     });
   }
 
+  private void registerSessionChanges(List<String> paths, boolean notifyDeletion) {
+    if (myTooManySessionChanges) {
+      return;
+    }
+    for (String path : paths) {
+      final int slash = path.lastIndexOf('/');
+      myChangedDirs.add(slash > 0 ? path.substring(0, slash) : path);
+    }
+    if (notifyDeletion) {
+      myDeletedPaths.addAll(paths);
+    }
+    if (myChangedDirs.size() + myDeletedPaths.size() > FS_JOURNAL_MAX_SESSION_CHANGES) {
+      myTooManySessionChanges = true;
+      myChangedDirs.clear();
+      myDeletedPaths.clear();
+    }
+  }
+
+  /**
+   * Is called in the requests queue. A journal which no longer reflects the data is deleted right away, so that only a complete
+   * journal can be found on disk if the IDE exits before it is written again
+   */
+  private void registerInClosedProjects(List<String> paths, boolean notifyDeletion) {
+    for (Iterator<ClosedProjectData> it = myClosedProjectDataMap.values().iterator(); it.hasNext(); ) {
+      final ClosedProjectData closed = it.next();
+      if (notifyDeletion) {
+        closed.data.addDeleted(paths);
+      }
+      else {
+        closed.data.addChanged(paths);
+      }
+      if (!closed.journalOutdated) {
+        closed.journalOutdated = true;
+        FileUtil.delete(closed.journal);
+      }
+      if (!closed.data.canBeSaved()) {
+        it.remove();
+      }
+      else if (!myClosedProjectJournalsWriteScheduled) {
+        myClosedProjectJournalsWriteScheduled = true;
+        runCommand(new Runnable() {
+          @Override
+          public void run() {
+            writeClosedProjectJournals();
+          }
+        });
+      }
+    }
+  }
+
+  private void writeClosedProjectJournals() {
+    final List<ClosedProjectData> outdated = new ArrayList<ClosedProjectData>();
+    synchronized (myProjectDataMap) {
+      myClosedProjectJournalsWriteScheduled = false;
+      for (ClosedProjectData closed : myClosedProjectDataMap.values()) {
+        if (closed.journalOutdated) {
+          closed.journalOutdated = false;
+          outdated.add(closed);
+        }
+      }
+    }
+    // the data of closed projects is modified in the requests queue only, so it can be written outside the lock
+    for (ClosedProjectData closed : outdated) {
+      writeFSJournal(closed.journal, closed.data, ManagingFS.getInstance().getCreationTimestamp());
+    }
+  }
+
   public static void forceModelLoading(CompileContext context) {
     context.getCompileScope().putUserData(FORCE_MODEL_LOADING_PARAMETER, Boolean.TRUE.toString());
   }
@@ -379,10 +465,13 @@ public class BuildManager implements ApplicationComponent{
   }
 
   public boolean rescanRequired(Project project) {
-    final String projectPath = getProjectPath(project);
+    return rescanRequired(getProjectPath(project));
+  }
+
+  boolean rescanRequired(String projectPath) {
     synchronized (myProjectDataMap) {
       final ProjectData data = myProjectDataMap.get(projectPath);
-      return data == null || data.myNeedRescan;
+      return data == null || data.needsRescan();
     }
   }
 
@@ -391,7 +480,7 @@ public class BuildManager implements ApplicationComponent{
     String projectPath = getProjectPath(project);
     synchronized (myProjectDataMap) {
       ProjectData data = myProjectDataMap.get(projectPath);
-      if (data != null && !data.myNeedRescan) {
+      if (data != null && !data.needsRescan()) {
         return convertToStringPaths(data.myChanged);
       }
       return null;
@@ -824,6 +913,14 @@ public class BuildManager implements ApplicationComponent{
     if (shouldGenerateIndex != null) {
       cmdLine.addParameter("-D"+ GlobalOptions.GENERATE_CLASSPATH_INDEX_OPTION +"=" + shouldGenerateIndex);
     }
+    final String shouldTraceBuild = System.getProperty(GlobalOptions.BUILD_TRACE_OPTION);
+    if (shouldTraceBuild != null) {
+      cmdLine.addParameter("-D"+ GlobalOptions.BUILD_TRACE_OPTION +"=" + shouldTraceBuild);
+    }
+    final String useHardLinks = System.getProperty(GlobalOptions.RESOURCES_HARD_LINKS_OPTION);
+    if (useHardLinks != null) {
+      cmdLine.addParameter("-D"+ GlobalOptions.RESOURCES_HARD_LINKS_OPTION +"=" + useHardLinks);
+    }
     cmdLine.addParameter("-D"+ GlobalOptions.COMPILE_PARALLEL_OPTION +"=" + Boolean.toString(config.PARALLEL_COMPILATION));
     cmdLine.addParameter("-D"+ GlobalOptions.REBUILD_ON_DEPENDENCY_CHANGE_OPTION + "=" + Boolean.toString(config.REBUILD_ON_DEPENDENCY_CHANGE));
 
@@ -1078,10 +1175,11 @@ public class BuildManager implements ApplicationComponent{
         }
       });
       final String projectPath = getProjectPath(project);
+      restoreFSJournal(projectPath, getProjectSystemDirectory(project), getFSJournalRoots(project));
       Disposer.register(project, new Disposable() {
         @Override
         public void dispose() {
-          myProjectDataMap.remove(projectPath);
+          removeProjectData(projectPath, null);
         }
       });
       StartupManager.getInstance(project).registerPostStartupActivity(new Runnable() {
@@ -1107,7 +1205,7 @@ public class BuildManager implements ApplicationComponent{
 
     @Override
     public void projectClosed(Project project) {
-      myProjectDataMap.remove(getProjectPath(project));
+      removeProjectData(getProjectPath(project), getProjectSystemDirectory(project));
       final MessageBusConnection conn = myConnections.remove(project);
       if (conn != null) {
         conn.disconnect();
@@ -1115,14 +1213,201 @@ public class BuildManager implements ApplicationComponent{
     }
   }
 
-  private static class ProjectData {
+  /**
+   * Restores file system changes collected before the project was closed, so that the first build after project opening
+   * continues the sequence of FS events the build process has already seen instead of rescanning all sources.
+   * A project closed in this session has kept registering FS events, so its data is taken as is. Otherwise the journal
+   * saved in the previous session is read and deleted, so if the IDE does not shut down normally, the next session falls back
+   * to a full rescan. The journal is discarded if files under the project roots were changed in this session before the project
+   * was opened. Changes made while the IDE was not running are found by refreshing the project roots, until the refresh is
+   * finished the next build rescans.
+   * Like FS events and build requests, the journal is processed in the requests queue, so a journal which is still being saved
+   * for a reopened project is read after it's written.
+   */
+  void restoreFSJournal(final String projectPath, @Nullable final File dataStorageRoot, final Collection<VirtualFile> roots) {
+    if (projectPath == null || dataStorageRoot == null) {
+      return;
+    }
+    runCommand(new Runnable() {
+      @Override
+      public void run() {
+        final File journal = new File(dataStorageRoot, FS_JOURNAL_FILE_NAME);
+        synchronized (myProjectDataMap) {
+          final ClosedProjectData closed = myClosedProjectDataMap.remove(projectPath);
+          if (closed != null || myProjectDataMap.containsKey(projectPath)) {
+            if (closed != null && !myProjectDataMap.containsKey(projectPath)) {
+              myProjectDataMap.put(projectPath, closed.data);
+            }
+            FileUtil.delete(journal);
+            return;
+          }
+        }
+
+        final ProjectData data = readFSJournal(journal, new SequentialTaskExecutor(myPooledThreadExecutor),
+                                               ManagingFS.getInstance().getCreationTimestamp());
+        if (data == null) {
+          return;
+        }
+        synchronized (myProjectDataMap) {
+          if (myProjectDataMap.containsKey(projectPath) || isChangedInThisSession(roots)) {
+            return;
+          }
+          data.myRefreshPending = true;
+          myProjectDataMap.put(projectPath, data);
+        }
+        // events of the refresh are registered in the data, because they are queued after this command
+        RefreshQueue.getInstance().refresh(true, true, new Runnable() {
+          @Override
+          public void run() {
+            runCommand(new Runnable() {
+              @Override
+              public void run() {
+                synchronized (myProjectDataMap) {
+                  data.myRefreshPending = false;
+                }
+              }
+            });
+          }
+        }, roots);
+      }
+    });
+  }
+
+  /**
+   * @return content roots and local library files of the project, changes under which make its journal outdated
+   */
+  private static List<VirtualFile> getFSJournalRoots(Project project) {
+    final List<VirtualFile> roots = new ArrayList<VirtualFile>();
+    Collections.addAll(roots, ProjectRootManager.getInstance(project).getContentRootsFromAllModules());
+    for (VirtualFile root : OrderEnumerator.orderEntries(project).withoutSdk().withoutModuleSourceEntries().classes().getRoots()) {
+      final VirtualFile file = root.getFileSystem() instanceof JarFileSystem ? JarFileSystem.getInstance().getVirtualFileForJar(root) : root;
+      if (file != null && file.isInLocalFileSystem()) {
+        roots.add(file);
+      }
+    }
+    return roots;
+  }
+
+  private boolean isChangedInThisSession(Collection<VirtualFile> roots) {
+    if (myTooManySessionChanges) {
+      return true;
+    }
+    for (VirtualFile root : roots) {
+      final String rootPath = root.getPath();
+      // a file root, e.g. a library jar, may be among the changed paths of its directory
+      final String rootDir = root.isDirectory() ? rootPath : PathUtil.getParentPath(rootPath);
+      for (String dir : myChangedDirs) {
+        if (FileUtil.isAncestor(rootDir, dir, false)) {
+          return true;
+        }
+      }
+      for (String path : myDeletedPaths) {
+        if (FileUtil.isAncestor(path, rootPath, false)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Removes the project data after the FS events which are already queued have been registered in it, so that changes made
+   * right before closing the project, e.g. saved documents, get into the journal. The journal is written in the requests queue
+   * and nothing waits for it: if the IDE exits earlier, there is no journal and the next session rescans
+   *
+   * @param dataStorageRoot the directory to save the journal to or {@code null} if the journal shouldn't be saved
+   */
+  void removeProjectData(final String projectPath, @Nullable final File dataStorageRoot) {
+    runCommand(new Runnable() {
+      @Override
+      public void run() {
+        final ProjectData data = myProjectDataMap.remove(projectPath);
+        if (data != null && dataStorageRoot != null) {
+          final File journal = new File(dataStorageRoot, FS_JOURNAL_FILE_NAME);
+          if (writeFSJournal(journal, data, ManagingFS.getInstance().getCreationTimestamp())) {
+            synchronized (myProjectDataMap) {
+              myClosedProjectDataMap.put(projectPath, new ClosedProjectData(data, journal));
+            }
+          }
+        }
+      }
+    });
+  }
+
+  @Nullable
+  static ProjectData readFSJournal(File journal, SequentialTaskExecutor taskQueue, long vfsTimestamp) {
+    if (!journal.exists()) {
+      return null;
+    }
+    try {
+      final ProjectData data = new ProjectData(taskQueue);
+      final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journal)));
+      try {
+        return data.load(in, vfsTimestamp) ? data : null;
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot load FS journal " + journal.getPath(), e);
+      return null;
+    }
+    finally {
+      FileUtil.delete(journal);
+    }
+  }
+
+  /**
+   * @return true if the journal has been written
+   */
+  static boolean writeFSJournal(File journal, ProjectData data, long vfsTimestamp) {
+    if (!journal.getParentFile().exists()) {
+      // no build has been made for this project yet
+      return false;
+    }
+    if (!data.canBeSaved()) {
+      FileUtil.delete(journal);
+      return false;
+    }
+    try {
+      final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journal)));
+      try {
+        data.save(out, vfsTimestamp);
+      }
+      finally {
+        out.close();
+      }
+      return true;
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save FS journal to " + journal.getPath(), e);
+      FileUtil.delete(journal);
+      return false;
+    }
+  }
+
+  private static class ClosedProjectData {
+    final ProjectData data;
+    final File journal;
+    boolean journalOutdated;
+
+    private ClosedProjectData(ProjectData data, File journal) {
+      this.data = data;
+      this.journal = journal;
+    }
+  }
+
+  static class ProjectData {
     final SequentialTaskExecutor taskQueue;
     private final Set<InternedPath> myChanged = new THashSet<InternedPath>();
     private final Set<InternedPath> myDeleted = new THashSet<InternedPath>();
     private long myNextEventOrdinal = 0L;
     private boolean myNeedRescan = true;
+    // the journal is restored, but the project roots haven't been refreshed yet to find changes made while the IDE was not running
+    private boolean myRefreshPending = false;
 
-    private ProjectData(SequentialTaskExecutor taskQueue) {
+    ProjectData(SequentialTaskExecutor taskQueue) {
       this.taskQueue = taskQueue;
     }
 
@@ -1165,17 +1450,65 @@ public class BuildManager implements ApplicationComponent{
     }
 
     public boolean getAndResetRescanFlag() {
-      final boolean rescan = myNeedRescan;
+      final boolean rescan = needsRescan();
       myNeedRescan = false;
+      myRefreshPending = false;
       return rescan;
     }
 
+    public boolean needsRescan() {
+      return myNeedRescan || myRefreshPending;
+    }
+
     public void dropChanges() {
       myNeedRescan = true;
       myNextEventOrdinal = 0L;
       myChanged.clear();
       myDeleted.clear();
     }
+
+    public boolean canBeSaved() {
+      // there is nothing to continue from if the build process has never received an event,
+      // and a huge number of pending changes is cheaper to detect by rescanning
+      return !needsRescan() && myNextEventOrdinal > 0L && myChanged.size() + myDeleted.size() <= FS_JOURNAL_MAX_PATHS;
+    }
+
+    public void save(DataOutput out, long vfsTimestamp) throws IOException {
+      out.writeInt(FS_JOURNAL_VERSION);
+      out.writeLong(vfsTimestamp);
+      out.writeLong(myNextEventOrdinal);
+      savePaths(out, myChanged);
+      savePaths(out, myDeleted);
+    }
+
+    /**
+     * @return false if the journal cannot be trusted: it was written by another version or for another VFS,
+     * in the latter case changes made while the IDE was not running may have been missed
+     */
+    public boolean load(DataInput in, long vfsTimestamp) throws IOException {
+      if (in.readInt() != FS_JOURNAL_VERSION || in.readLong() != vfsTimestamp) {
+        return false;
+      }
+      myNextEventOrdinal = in.readLong();
+      loadPaths(in, myChanged);
+      loadPaths(in, myDeleted);
+      myNeedRescan = false;
+      return true;
+    }
+
+    private static void savePaths(DataOutput out, Set<InternedPath> paths) throws IOException {
+      out.writeInt(paths.size());
+      for (InternedPath path : paths) {
+        out.writeUTF(path.getValue());
+      }
+    }
+
+    private static void loadPaths(DataInput in, Set<InternedPath> paths) throws IOException {
+      int size = in.readInt();
+      while (size-- > 0) {
+        paths.add(InternedPath.create(in.readUTF()));
+      }
+    }
   }
 
   private static abstract class InternedPath {
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.compiler.server;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.ManagingFS;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.util.concurrency.SequentialTaskExecutor;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.ide.PooledThreadExecutor;
+import org.jetbrains.jps.api.CmdlineRemoteProto;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+public class BuildManagerFSJournalTest extends LightPlatformTestCase {
+  private File myJournal;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myJournal = new File(FileUtil.createTempDirectory("fs-journal", null), "fs_journal.dat");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myJournal.getParentFile());
+    super.tearDown();
+  }
+
+  public void testSaveAndRestore() {
+    BuildManager.ProjectData data = createData();
+    data.getAndResetRescanFlag();
+    assertEquals(1, data.createNextEvent().getOrdinal());
+    data.addChanged(Collections.singletonList("/project/src/A.java"));
+    data.addDeleted(Collections.singletonList("/project/src/B.java"));
+    BuildManager.writeFSJournal(myJournal, data, 1L);
+    assertTrue(myJournal.exists());
+
+    BuildManager.ProjectData restored = BuildManager.readFSJournal(myJournal, createQueue(), 1L);
+    assertNotNull(restored);
+    assertFalse(myJournal.exists());
+    assertFalse(restored.getAndResetRescanFlag());
+    CmdlineRemoteProto.Message.ControllerMessage.FSEvent event = restored.createNextEvent();
+    assertEquals(2, event.getOrdinal());
+    assertEquals(Collections.singletonList("/project/src/A.java"), event.getChangedPathsList());
+    assertEquals(Collections.singletonList("/project/src/B.java"), event.getDeletedPathsList());
+  }
+
+  public void testJournalOfAnotherVfsIsDiscarded() {
+    BuildManager.ProjectData data = createData();
+    data.getAndResetRescanFlag();
+    data.createNextEvent();
+    BuildManager.writeFSJournal(myJournal, data, 1L);
+
+    assertNull(BuildManager.readFSJournal(myJournal, createQueue(), 2L));
+    assertFalse(myJournal.exists());
+  }
+
+  public void testRescanIsNotSaved() {
+    BuildManager.writeFSJournal(myJournal, createData(), 1L);
+    assertFalse(myJournal.exists());
+  }
+
+  public void testJournalIsDiscardedIfProjectFilesChangedBeforeOpening() throws Exception {
+    File projectDir = createProjectWithJournal();
+    String projectPath = FileUtil.toSystemIndependentName(projectDir.getPath());
+
+    //the project had no data to register the event in, so it was missed
+    BuildManager manager = BuildManager.getInstance();
+    manager.notifyFilesChanged(Collections.singletonList(new File(projectDir, "src/A.java")));
+    manager.restoreFSJournal(projectPath, myJournal.getParentFile(), getRoots(projectDir));
+    waitForRequests(manager);
+
+    assertFalse(myJournal.exists());
+    assertTrue(manager.rescanRequired(projectPath));
+  }
+
+  public void testJournalIsUsedAfterRootsRefresh() throws Exception {
+    File projectDir = createProjectWithJournal();
+    String projectPath = FileUtil.toSystemIndependentName(projectDir.getPath());
+
+    BuildManager manager = BuildManager.getInstance();
+    manager.notifyFilesChanged(Collections.singletonList(new File(myJournal.getParentFile(), "other/A.java")));
+    manager.restoreFSJournal(projectPath, myJournal.getParentFile(), getRoots(projectDir));
+    waitForRefresh(manager, projectPath);
+
+    assertFalse(myJournal.exists());
+    assertFalse(manager.rescanRequired(projectPath));
+  }
+
+  public void testReopenedProjectKeepsEventsMadeWhileClosed() throws Exception {
+    File projectDir = createProjectWithJournal();
+    String projectPath = FileUtil.toSystemIndependentName(projectDir.getPath());
+    BuildManager manager = BuildManager.getInstance();
+    manager.restoreFSJournal(projectPath, myJournal.getParentFile(), getRoots(projectDir));
+    waitForRefresh(manager, projectPath);
+
+    manager.removeProjectData(projectPath, myJournal.getParentFile());
+    waitForRequests(manager);
+    assertTrue(myJournal.exists());
+
+    manager.notifyFilesChanged(Collections.singletonList(new File(projectDir, "src/A.java")));
+    waitForRequests(manager);
+    //the journal is written again with the new event by a command queued while the event is processed
+    waitForRequests(manager);
+    assertTrue(myJournal.exists());
+
+    manager.restoreFSJournal(projectPath, myJournal.getParentFile(), getRoots(projectDir));
+    waitForRequests(manager);
+    assertFalse(myJournal.exists());
+    assertFalse(manager.rescanRequired(projectPath));
+  }
+
+  private File createProjectWithJournal() throws IOException {
+    File projectDir = new File(myJournal.getParentFile(), "project");
+    assertTrue(new File(projectDir, "src").mkdirs());
+    BuildManager.ProjectData data = createData();
+    data.getAndResetRescanFlag();
+    data.createNextEvent();
+    BuildManager.writeFSJournal(myJournal, data, ManagingFS.getInstance().getCreationTimestamp());
+    return projectDir;
+  }
+
+  private static List<VirtualFile> getRoots(File projectDir) {
+    VirtualFile root = LocalFileSystem.getInstance().refreshAndFindFileByIoFile(projectDir);
+    assertNotNull(root);
+    return Collections.singletonList(root);
+  }
+
+  private static void waitForRefresh(BuildManager manager, String projectPath) throws InterruptedException {
+    waitForRequests(manager);
+    for (int i = 0; i < 100 && manager.rescanRequired(projectPath); i++) {
+      Thread.sleep(100);
+      UIUtil.dispatchAllInvocationEvents();
+      waitForRequests(manager);
+    }
+  }
+
+  private static void waitForRequests(BuildManager manager) throws InterruptedException {
+    final Semaphore processed = new Semaphore(0);
+    manager.runCommand(new Runnable() {
+      @Override
+      public void run() {
+        processed.release();
+      }
+    });
+    assertTrue(processed.tryAcquire(10, TimeUnit.SECONDS));
+  }
+
+  private static BuildManager.ProjectData createData() {
+    return new BuildManager.ProjectData(createQueue());
+  }
+
+  private static SequentialTaskExecutor createQueue() {
+    return new SequentialTaskExecutor(new PooledThreadExecutor());
+  }
+}
@@ -42,7 +42,7 @@ public class InstrumentationClassFinder {
   }
 
   // compatibility with legacy code requiring ClassLoader
-  public ClassLoader getLoader() {
+  public synchronized ClassLoader getLoader() {
     ClassLoader loader = myLoader;
     if (loader != null) {
       return loader;
@@ -86,7 +86,7 @@ public class InstrumentationClassFinder {
     return loader;
   }
 
-  public void releaseResources() {
+  public synchronized void releaseResources() {
     myPlatformClasspath.releaseResources();
     myClasspath.releaseResources();
     myLoaded.clear();
@@ -94,7 +94,7 @@ public class InstrumentationClassFinder {
     myLoader = null;
   }
 
-  public PseudoClass loadClass(final String name) throws IOException, ClassNotFoundException{
+  public synchronized PseudoClass loadClass(final String name) throws IOException, ClassNotFoundException{
     final String internalName = name.replace('.', '/'); // normalize
     final PseudoClass aClass = myLoaded.get(internalName);
     if (aClass != null && aClass != PseudoClass.NULL_OBJ) {
@@ -126,11 +126,11 @@ public class InstrumentationClassFinder {
     }
   }
 
-  public void cleanCachedData(String className) {
+  public synchronized void cleanCachedData(String className) {
     myLoaded.remove(className.replace('.', '/'));
   }
 
-  public InputStream getClassBytesAsStream(String className) throws IOException {
+  public synchronized InputStream getClassBytesAsStream(String className) throws IOException {
     final String internalName = className.replace('.', '/'); // normalize
     final PseudoClass aClass = myLoaded.get(internalName);
     if (aClass == PseudoClass.NULL_OBJ) {
@@ -174,7 +174,7 @@ public class InstrumentationClassFinder {
     return is;
   }
 
-  public InputStream getResourceAsStream(String resourceName) throws IOException {
+  public synchronized InputStream getResourceAsStream(String resourceName) throws IOException {
     InputStream is = null;
 
     Resource resource = myPlatformClasspath.getResource(resourceName, false);
@@ -805,7 +805,7 @@ public class InstrumentationClassFinder {
     return -1;
   }
 
-  public byte[] loadBytes(InputStream stream) {
+  public synchronized byte[] loadBytes(InputStream stream) {
     byte[] buf = myBuffer;
     if (buf == null) {
       buf = new byte[512];
@@ -42,6 +42,7 @@ import com.intellij.util.ConcurrencyUtil;
 import com.intellij.util.Processor;
 import com.intellij.util.SmartList;
 import com.intellij.util.containers.ConcurrentHashMap;
+import com.intellij.util.containers.ConcurrentHashSet;
 import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.HashMap;
 import com.intellij.util.messages.MessageBus;
@@ -52,17 +53,24 @@ import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author max
  */
 public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
+  private static final int MAX_MISSING_CLASS_SCOPES = 64;
+
   private PsiElementFinder[] myElementFinders; //benign data race
   private final PsiNameHelper myNameHelper;
   private final PsiConstantEvaluationHelper myConstantEvaluationHelper;
   private volatile SoftReference<ConcurrentMap<String, PsiPackage>> myPackageCache;
+  private volatile SoftReference<MissingNamesCache> myMissingNamesCache;
+  private final AtomicLong mySkippedClassLookups = new AtomicLong();
+  private final AtomicLong mySkippedPackageLookups = new AtomicLong();
   private final Project myProject;
   private final JavaFileManager myFileManager;
+  private final PsiModificationTracker myModificationTracker;
 
   public JavaPsiFacadeImpl(Project project,
                            PsiManagerImpl psiManager,
@@ -74,6 +82,7 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
     myConstantEvaluationHelper = new PsiConstantEvaluationHelperImpl();
 
     final PsiModificationTracker modificationTracker = psiManager.getModificationTracker();
+    myModificationTracker = modificationTracker;
 
     if (bus != null) {
       bus.connect().subscribe(PsiModificationTracker.TOPIC, new PsiModificationTracker.Listener() {
@@ -106,11 +115,18 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
       return null;
     }
 
+    MissingNamesCache missingNames = getMissingNamesCache();
+    if (missingNames.isClassMissing(qualifiedName, scope)) {
+      mySkippedClassLookups.incrementAndGet();
+      return null;
+    }
+
     for (PsiElementFinder finder : finders()) {
       PsiClass aClass = finder.findClass(qualifiedName, scope);
       if (aClass != null) return aClass;
     }
 
+    missingNames.addMissingClass(qualifiedName, scope);
     return null;
   }
 
@@ -142,12 +158,22 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
       return findClassesInDumbMode(qualifiedName, scope);
     }
 
+    MissingNamesCache missingNames = getMissingNamesCache();
+    if (missingNames.isClassMissing(qualifiedName, scope)) {
+      mySkippedClassLookups.incrementAndGet();
+      return PsiClass.EMPTY_ARRAY;
+    }
+
     List<PsiClass> classes = new SmartList<PsiClass>();
     for (PsiElementFinder finder : finders()) {
       PsiClass[] finderClasses = finder.findClasses(qualifiedName, scope);
       ContainerUtil.addAll(classes, finderClasses);
     }
 
+    if (classes.isEmpty()) {
+      missingNames.addMissingClass(qualifiedName, scope);
+      return PsiClass.EMPTY_ARRAY;
+    }
     return classes.toArray(new PsiClass[classes.size()]);
   }
 
@@ -189,6 +215,13 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
       return aPackage;
     }
 
+    // in dumb mode only dumb-aware finders are asked, so their answer is not conclusive
+    MissingNamesCache missingNames = DumbService.getInstance(getProject()).isDumb() ? null : getMissingNamesCache();
+    if (missingNames != null && missingNames.isPackageMissing(qualifiedName)) {
+      mySkippedPackageLookups.incrementAndGet();
+      return null;
+    }
+
     for (PsiElementFinder finder : filteredFinders()) {
       aPackage = finder.findPackage(qualifiedName);
       if (aPackage != null) {
@@ -196,9 +229,39 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
       }
     }
 
+    if (missingNames != null) {
+      missingNames.addMissingPackage(qualifiedName);
+    }
     return null;
   }
 
+  @NotNull
+  private MissingNamesCache getMissingNamesCache() {
+    long modificationCount = myModificationTracker.getOutOfCodeBlockModificationCount();
+    SoftReference<MissingNamesCache> ref = myMissingNamesCache;
+    MissingNamesCache cache = ref == null ? null : ref.get();
+    if (cache == null || cache.myModificationCount != modificationCount) {
+      cache = new MissingNamesCache(modificationCount);
+      myMissingNamesCache = new SoftReference<MissingNamesCache>(cache);
+    }
+    return cache;
+  }
+
+  /**
+   * @return number of {@link #findClass}/{@link #findClasses} calls answered from the cache of missing class names
+   * without asking the element finders (and the class name index behind them)
+   */
+  public long getSkippedClassLookupCount() {
+    return mySkippedClassLookups.get();
+  }
+
+  /**
+   * @return number of {@link #findPackage} calls answered from the cache of missing package names
+   */
+  public long getSkippedPackageLookupCount() {
+    return mySkippedPackageLookups.get();
+  }
+
   @NotNull
   private PsiElementFinder[] filteredFinders() {
     DumbService dumbService = DumbService.getInstance(getProject());
@@ -285,6 +348,46 @@ public class JavaPsiFacadeImpl extends JavaPsiFacadeEx {
     return result == null ? PsiClass.EMPTY_ARRAY : result.toArray(new PsiClass[result.size()]);
   }
 
+  /**
+   * Names the element finders failed to find, valid for a single out-of-code-block modification count.
+   * Such modifications include all changes to files, directories and project roots, so nothing can appear
+   * under a cached name without dropping the whole cache.
+   */
+  private static class MissingNamesCache {
+    private final long myModificationCount;
+    private final ConcurrentMap<GlobalSearchScope, Set<String>> myMissingClasses = new ConcurrentHashMap<GlobalSearchScope, Set<String>>();
+    private final Set<String> myMissingPackages = new ConcurrentHashSet<String>();
+
+    private MissingNamesCache(long modificationCount) {
+      myModificationCount = modificationCount;
+    }
+
+    private boolean isClassMissing(@NotNull String qualifiedName, @NotNull GlobalSearchScope scope) {
+      Set<String> names = myMissingClasses.get(scope);
+      return names != null && names.contains(qualifiedName);
+    }
+
+    private void addMissingClass(@NotNull String qualifiedName, @NotNull GlobalSearchScope scope) {
+      Set<String> names = myMissingClasses.get(scope);
+      if (names == null) {
+        if (myMissingClasses.size() >= MAX_MISSING_CLASS_SCOPES) {
+          // scopes without equals() would otherwise pile up here until the next modification
+          myMissingClasses.clear();
+        }
+        names = ConcurrencyUtil.cacheOrGet(myMissingClasses, scope, new ConcurrentHashSet<String>());
+      }
+      names.add(qualifiedName);
+    }
+
+    private boolean isPackageMissing(@NotNull String qualifiedName) {
+      return myMissingPackages.contains(qualifiedName);
+    }
+
+    private void addMissingPackage(@NotNull String qualifiedName) {
+      myMissingPackages.add(qualifiedName);
+    }
+  }
+
   private class PsiElementFinderImpl extends PsiElementFinder implements DumbAware {
     @Override
     public PsiClass findClass(@NotNull String qualifiedName, @NotNull GlobalSearchScope scope) {
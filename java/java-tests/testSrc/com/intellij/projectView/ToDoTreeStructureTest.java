@@ -5,8 +5,14 @@ import com.intellij.ide.todo.CurrentFileTodosTreeBuilder;
 import com.intellij.ide.todo.TodoTreeStructure;
 import com.intellij.ide.todo.nodes.TodoItemNode;
 import com.intellij.ide.util.treeView.AbstractTreeStructure;
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.ui.Queryable;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiFile;
 import com.intellij.testFramework.ProjectViewTestUtil;
 import com.intellij.ui.treeStructure.Tree;
 
@@ -90,6 +96,93 @@ public class ToDoTreeStructureTest extends BaseProjectViewTestCase {
     Disposer.dispose(all);
   }
 
+  public void testTodoCountsAfterEdit() throws Exception {
+    AllTodosTreeBuilder all = new AllTodosTreeBuilder(new Tree(), new DefaultTreeModel(new DefaultMutableTreeNode()), myProject);
+    all.init();
+    TodoTreeStructure structure = (TodoTreeStructure)all.getTreeStructure();
+    PsiDirectory dir = getPackageDirectory("package3");
+    PsiFile file = dir.findFile("JavaClass.java");
+    assertEquals(2, structure.getTodoItemCount(file));
+    assertEquals(2, getDirectoryTodoItemCount(structure, dir));
+
+    final Document document = PsiDocumentManager.getInstance(myProject).getDocument(file);
+    new WriteCommandAction.Simple(myProject) {
+      @Override
+      protected void run() throws Throwable {
+        document.insertString(0, "//todo: File header\n");
+      }
+    }.execute().throwException();
+    PsiDocumentManager.getInstance(myProject).commitAllDocuments();
+
+    assertEquals(3, structure.getTodoItemCount(file));
+    assertEquals(3, getDirectoryTodoItemCount(structure, dir));
+    Disposer.dispose(all);
+  }
+
+  public void testTodoCountsAfterMove() throws Exception {
+    AllTodosTreeBuilder all = new AllTodosTreeBuilder(new Tree(), new DefaultTreeModel(new DefaultMutableTreeNode()), myProject);
+    all.init();
+    TodoTreeStructure structure = (TodoTreeStructure)all.getTreeStructure();
+    final PsiDirectory dir = getPackageDirectory("package3");
+    final PsiFile file = dir.findFile("JavaClass.java");
+    assertEquals(2, getDirectoryTodoItemCount(structure, dir));
+
+    final PsiDirectory[] target = new PsiDirectory[1];
+    new WriteCommandAction.Simple(myProject) {
+      @Override
+      protected void run() throws Throwable {
+        target[0] = getSrcDirectory().createSubdirectory("package4");
+        file.getVirtualFile().move(this, target[0].getVirtualFile());
+      }
+    }.execute().throwException();
+
+    assertEquals(0, getDirectoryTodoItemCount(structure, dir));
+    assertEquals(2, getDirectoryTodoItemCount(structure, target[0]));
+    Disposer.dispose(all);
+  }
+
+  public void testTodoCountsAfterDelete() throws Exception {
+    AllTodosTreeBuilder all = new AllTodosTreeBuilder(new Tree(), new DefaultTreeModel(new DefaultMutableTreeNode()), myProject);
+    all.init();
+    TodoTreeStructure structure = (TodoTreeStructure)all.getTreeStructure();
+    PsiDirectory dir = getPackageDirectory("package1");
+    final PsiFile file = dir.findFile("JavaClass.java");
+    assertEquals(2, getDirectoryTodoItemCount(structure, dir));
+
+    new WriteCommandAction.Simple(myProject) {
+      @Override
+      protected void run() throws Throwable {
+        file.getVirtualFile().delete(this);
+      }
+    }.execute().throwException();
+
+    assertEquals(0, getDirectoryTodoItemCount(structure, dir));
+    Disposer.dispose(all);
+  }
+
+  /**
+   * Sums the counts of the files directly in {@code dir}; the sum is cached by the structure until the count of some file in the
+   * directory is dropped.
+   */
+  private static int getDirectoryTodoItemCount(final TodoTreeStructure structure, final PsiDirectory dir) {
+    return structure.getAggregateTodoItemCount(dir.getVirtualFile(), new Computable<Integer>() {
+      @Override
+      public Integer compute() {
+        int count = 0;
+        for (PsiFile file : dir.getFiles()) {
+          count += structure.getTodoItemCount(file);
+        }
+        return count;
+      }
+    });
+  }
+
+  @Override
+  protected String getTestDirectoryName() {
+    // count cache tests modify the sources of testToDo
+    return getTestName(true).startsWith("todoCounts") ? "toDo" : super.getTestDirectoryName();
+  }
+
   private static void checkOccurrences(final AllTodosTreeBuilder all, final String[] strings) {
     AbstractTreeStructure allTreeStructure = all.getTreeStructure();
     TodoItemNode current = all.getFirstPointerForElement(allTreeStructure.getRootElement());
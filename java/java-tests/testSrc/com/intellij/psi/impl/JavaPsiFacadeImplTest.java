@@ -0,0 +1,44 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.psi.impl;
+
+import com.intellij.psi.JavaPsiFacade;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.testFramework.fixtures.LightCodeInsightFixtureTestCase;
+
+public class JavaPsiFacadeImplTest extends LightCodeInsightFixtureTestCase {
+  public void testMissingClassIsFoundAfterItIsAdded() {
+    JavaPsiFacadeImpl facade = (JavaPsiFacadeImpl)JavaPsiFacade.getInstance(getProject());
+    GlobalSearchScope scope = GlobalSearchScope.allScope(getProject());
+
+    assertNull(facade.findClass("foo.Bar", scope));
+    long skipped = facade.getSkippedClassLookupCount();
+    assertNull(facade.findClass("foo.Bar", scope));
+    assertEquals(0, facade.findClasses("foo.Bar", scope).length);
+    assertEquals(skipped + 2, facade.getSkippedClassLookupCount());
+
+    assertNull(facade.findPackage("foo"));
+    skipped = facade.getSkippedPackageLookupCount();
+    assertNull(facade.findPackage("foo"));
+    assertEquals(skipped + 1, facade.getSkippedPackageLookupCount());
+
+    myFixture.addClass("package foo; public class Bar {}");
+
+    assertNotNull(facade.findPackage("foo"));
+    assertNotNull(facade.findClass("foo.Bar", scope));
+    assertEquals(1, facade.findClasses("foo.Bar", scope).length);
+  }
+}
@@ -1,10 +1,13 @@
 package com.intellij.roots;
 
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.Result;
+import com.intellij.openapi.application.WriteAction;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.StdModuleTypes;
 import com.intellij.openapi.roots.*;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.GlobalSearchScope;
 import com.intellij.testFramework.ModuleTestCase;
 import com.intellij.testFramework.PsiTestUtil;
 import com.intellij.testFramework.fixtures.impl.LightTempDirTestFixtureImpl;
@@ -55,6 +58,43 @@ public class ModuleScopesTest extends ModuleTestCase {
     assertTrue(moduleA.getModuleRuntimeScope(true).contains(libraryClass));
   }
 
+  public void testContainsAfterDirectoryMove() throws Exception {
+    Module moduleA = createModule("a.iml", StdModuleTypes.JAVA);
+    addDependentModule(moduleA, DependencyScope.COMPILE);
+
+    final VirtualFile classB = myFixture.createFile("b/p/Test.java", "public class Test { }");
+    VirtualFile otherClassB = myFixture.createFile("b/q/Other.java", "public class Other { }");
+    final VirtualFile target = myFixture.findOrCreateDir("c");
+    GlobalSearchScope scope = moduleA.getModuleWithDependenciesScope();
+    assertTrue(scope.contains(classB));
+    assertTrue(scope.contains(classB.getParent()));
+    assertTrue(scope.contains(otherClassB));
+
+    new WriteAction() {
+      @Override
+      protected void run(Result result) throws Throwable {
+        classB.getParent().move(this, target);
+      }
+    }.execute();
+
+    assertSame(scope, moduleA.getModuleWithDependenciesScope());
+    assertFalse(scope.contains(classB));
+    assertFalse(scope.contains(classB.getParent()));
+    assertTrue(scope.contains(otherClassB));
+  }
+
+  public void testSingleFileLibraryRoot() throws Exception {
+    VirtualFile libraryClass = myFixture.createFile("single/A.class");
+    VirtualFile sibling = myFixture.createFile("single/B.class");
+    ModuleRootModificationUtil.addModuleLibrary(myModule, "l", Collections.singletonList(libraryClass.getUrl()),
+                                                Collections.<String>emptyList(), DependencyScope.COMPILE);
+
+    GlobalSearchScope scope = myModule.getModuleWithDependenciesAndLibrariesScope(false);
+    assertFalse(scope.contains(sibling));
+    assertTrue(scope.contains(libraryClass));
+    assertFalse(scope.contains(sibling));
+  }
+
   public void testTestOnlyModuleDependency() throws Exception {
     Module moduleA = createModule("a.iml", StdModuleTypes.JAVA);
     Module moduleB = addDependentModule(moduleA, DependencyScope.TEST);
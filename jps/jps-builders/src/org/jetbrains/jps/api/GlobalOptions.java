@@ -25,6 +25,10 @@ public interface GlobalOptions {
   String GENERATE_CLASSPATH_INDEX_OPTION = "generate.classpath.index";
   String COMPILE_PARALLEL_OPTION = "compile.parallel";
   String COMPILE_PARALLEL_MAX_THREADS_OPTION = "compile.parallel.max.threads";
+  String COMPILE_OUTPUT_CACHE_OPTION = "compile.output.cache";
+  String COMPILE_OUTPUT_CACHE_SIZE_OPTION = "compile.output.cache.size.mb";
+  String BUILD_TRACE_OPTION = "compile.build.trace";
+  String RESOURCES_HARD_LINKS_OPTION = "compile.resources.hard.links";
   String REBUILD_ON_DEPENDENCY_CHANGE_OPTION = "rebuild.on.dependency.change";
   String LOG_DIR_OPTION = "log.dir";
 }
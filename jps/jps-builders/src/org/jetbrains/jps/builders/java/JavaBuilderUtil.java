@@ -68,6 +68,7 @@ public class JavaBuilderUtil {
                                        ModuleChunk chunk,
                                        Collection<File> filesToCompile,
                                        Collection<File> successfullyCompiled) throws IOException {
+    final Runnable span = BuildTrace.startSpan(BuildTrace.DEPENDENCIES, "update mappings [" + chunk.getName() + "]");
     try {
       boolean additionalPassRequired = false;
 
@@ -187,6 +188,7 @@ public class JavaBuilderUtil {
     }
     finally {
       context.processMessage(new ProgressMessage("")); // clean progress messages
+      span.run();
     }
   }
 
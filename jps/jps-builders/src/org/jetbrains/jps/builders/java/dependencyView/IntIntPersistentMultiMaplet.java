@@ -15,18 +15,18 @@
  */
 package org.jetbrains.jps.builders.java.dependencyView;
 
-import com.intellij.openapi.util.Ref;
 import com.intellij.util.Processor;
 import com.intellij.util.containers.SLRUCache;
 import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
 import com.intellij.util.io.KeyDescriptor;
 import com.intellij.util.io.PersistentHashMap;
 import gnu.trove.TIntHashSet;
 import gnu.trove.TIntObjectProcedure;
-import gnu.trove.TIntProcedure;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * @author: db
@@ -93,24 +93,7 @@ class IntIntPersistentMultiMaplet extends IntIntMultiMaplet {
       myCache.remove(key);
       myMap.appendData(key, new PersistentHashMap.ValueDataAppender() {
         public void append(final DataOutput out) throws IOException {
-          final Ref<IOException> exRef = new Ref<IOException>();
-          value.forEach(new TIntProcedure() {
-            @Override
-            public boolean execute(int value) {
-              try {
-                out.writeInt(value);
-              }
-              catch (IOException e) {
-                exRef.set(e);
-                return false;
-              }
-              return true;
-            }
-          });
-          final IOException exception = exRef.get();
-          if (exception != null) {
-            throw exception;
-          }
+          writeSortedChunk(out, value.toArray());
         }
       });
     }
@@ -125,7 +108,8 @@ class IntIntPersistentMultiMaplet extends IntIntMultiMaplet {
       myCache.remove(key);
       myMap.appendData(key, new PersistentHashMap.ValueDataAppender() {
         public void append(final DataOutput out) throws IOException {
-          out.writeInt(value);
+          DataInputOutputUtil.writeINT(out, 1);
+          DataInputOutputUtil.writeINT(out, value);
         }
       });
     }
@@ -252,37 +236,46 @@ class IntIntPersistentMultiMaplet extends IntIntMultiMaplet {
     }
   }
 
+  /**
+   * Values of a key are stored as a sequence of chunks, one per {@link #put} call, so that appending doesn't need to read
+   * the existing data. A chunk is the number of values followed by the sorted values in delta-encoded variable-length form,
+   * which usually takes a byte per value since ids of close names are close too.
+   */
+  private static void writeSortedChunk(DataOutput out, int[] values) throws IOException {
+    Arrays.sort(values);
+    DataInputOutputUtil.writeINT(out, values.length);
+    int prev = 0;
+    for (int value : values) {
+      DataInputOutputUtil.writeINT(out, value - prev);
+      prev = value;
+    }
+  }
+
   private static class IntSetExternalizer implements DataExternalizer<TIntHashSet> {
     @Override
     public void save(final DataOutput out, final TIntHashSet value) throws IOException {
-      final Ref<IOException> exRef = new Ref<IOException>(null);
-      value.forEach(new TIntProcedure() {
-        @Override
-        public boolean execute(int elem) {
-          try {
-            out.writeInt(elem);
-          }
-          catch (IOException e) {
-            exRef.set(e);
-            return false;
-          }
-          return true;
-        }
-      });
-      final IOException exception = exRef.get();
-      if (exception != null) {
-        throw exception;
-      }
+      writeSortedChunk(out, value.toArray());
     }
 
     @Override
     public TIntHashSet read(final DataInput in) throws IOException {
-      final TIntHashSet result = new TIntHashSet();
       final DataInputStream stream = (DataInputStream)in;
+      TIntHashSet result = null;
       while (stream.available() > 0) {
-        result.add(in.readInt());
+        final int size = DataInputOutputUtil.readINT(in);
+        if (result == null) {
+          result = new TIntHashSet(size);
+        }
+        else {
+          result.ensureCapacity(size);
+        }
+        int value = 0;
+        for (int i = 0; i < size; i++) {
+          value += DataInputOutputUtil.readINT(in);
+          result.add(value);
+        }
       }
-      return result;
+      return result != null ? result : new TIntHashSet(IntIntTransientMultiMaplet.INITIAL_VALUES_CAPACITY);
     }
   }
 }
@@ -25,6 +25,10 @@ import gnu.trove.TIntProcedure;
  * Date: 08.03.11
  */
 class IntIntTransientMultiMaplet extends IntIntMultiMaplet {
+  /**
+   * Most keys (classes, usages) have just a few values, and sets with the default capacity would take most of the delta memory
+   */
+  static final int INITIAL_VALUES_CAPACITY = 3;
   private final TIntObjectHashMap<TIntHashSet> myMap = new TIntObjectHashMap<TIntHashSet>();
 
 
@@ -80,7 +84,7 @@ class IntIntTransientMultiMaplet extends IntIntMultiMaplet {
   public void put(final int key, final int value) {
     final TIntHashSet collection = myMap.get(key);
     if (collection == null) {
-      final TIntHashSet x = new TIntHashSet();
+      final TIntHashSet x = new TIntHashSet(INITIAL_VALUES_CAPACITY);
       x.add(value);
       myMap.put(key, x);
     }
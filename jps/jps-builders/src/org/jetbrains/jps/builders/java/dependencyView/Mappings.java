@@ -2141,9 +2141,10 @@ public class Mappings {
   public Callbacks.Backend getCallback() {
     return new Callbacks.Backend() {
       public void associate(final String classFileName, final String sourceFileName, final ClassReader cr) {
+        // class files may be associated from several threads: parse them concurrently, but merge the results under the lock
+        final int classFileNameS = myContext.get(classFileName);
+        final Pair<ClassRepr, Set<UsageRepr.Usage>> result = new ClassfileAnalyzer(myContext).analyze(classFileNameS, cr);
         synchronized (myLock) {
-          final int classFileNameS = myContext.get(classFileName);
-          final Pair<ClassRepr, Set<UsageRepr.Usage>> result = new ClassfileAnalyzer(myContext).analyze(classFileNameS, cr);
           final ClassRepr repr = result.first;
           if (repr != null) {
             final Set<UsageRepr.Usage> localUsages = result.second;
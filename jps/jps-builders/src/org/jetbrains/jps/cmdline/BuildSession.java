@@ -31,6 +31,7 @@ import org.jetbrains.jps.api.*;
 import org.jetbrains.jps.builders.*;
 import org.jetbrains.jps.builders.java.JavaModuleBuildTargetType;
 import org.jetbrains.jps.builders.java.dependencyView.Callbacks;
+import org.jetbrains.jps.incremental.BuildTrace;
 import org.jetbrains.jps.incremental.MessageHandler;
 import org.jetbrains.jps.incremental.TargetTypeRegistry;
 import org.jetbrains.jps.TimingLog;
@@ -39,6 +40,7 @@ import org.jetbrains.jps.incremental.fs.BuildFSState;
 import org.jetbrains.jps.incremental.fs.FSState;
 import org.jetbrains.jps.incremental.messages.*;
 import org.jetbrains.jps.incremental.storage.Timestamps;
+import org.jetbrains.jps.javac.JarPackagesIndex;
 import org.jetbrains.jps.model.module.JpsModule;
 import org.jetbrains.jps.service.SharedThreadPool;
 
@@ -193,6 +195,11 @@ final class BuildSession implements Runnable, CanceledStatus {
     }
 
     final BuildFSState fsState = new BuildFSState(false);
+    if (BuildTrace.ENABLED) {
+      BuildTrace.reset();
+    }
+    final File jarPackagesFile = new File(dataStorageRoot, JarPackagesIndex.FILE_NAME);
+    JarPackagesIndex.load(jarPackagesFile);
     try {
       final ProjectDescriptor pd = myBuildRunner.load(msgHandler, dataStorageRoot, fsState);
       TimingLog.LOG.debug("Project descriptor loaded");
@@ -225,6 +232,21 @@ final class BuildSession implements Runnable, CanceledStatus {
     }
     finally {
       saveData(fsState, dataStorageRoot);
+      JarPackagesIndex.save(jarPackagesFile);
+      if (BuildTrace.ENABLED) {
+        saveBuildTrace(dataStorageRoot);
+      }
+    }
+  }
+
+  private static void saveBuildTrace(File dataStorageRoot) {
+    final File traceFile = new File(dataStorageRoot, BuildTrace.TRACE_FILE_NAME);
+    try {
+      BuildTrace.save(traceFile);
+      LOG.info("Build trace saved to " + traceFile.getPath());
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save build trace to " + traceFile.getPath(), e);
     }
   }
 
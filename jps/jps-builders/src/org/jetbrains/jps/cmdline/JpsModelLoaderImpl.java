@@ -18,9 +18,12 @@ package org.jetbrains.jps.cmdline;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.ParameterizedRunnable;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.incremental.Utils;
 import org.jetbrains.jps.model.JpsModel;
+import org.jetbrains.jps.model.serialization.JpsConfigurationCache;
 import org.jetbrains.jps.model.serialization.JpsSerializationManager;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
@@ -28,6 +31,7 @@ import java.io.IOException;
  */
 public class JpsModelLoaderImpl implements JpsModelLoader {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.cmdline.JpsModelLoaderImpl");
+  private static final String CONFIGURATION_SNAPSHOT_FILE_NAME = "configuration.snapshot";
   private final String myProjectPath;
   private final String myGlobalOptionsPath;
   private final ParameterizedRunnable<JpsModel> myModelInitializer;
@@ -42,7 +46,12 @@ public class JpsModelLoaderImpl implements JpsModelLoader {
   public JpsModel loadModel() throws IOException {
     final long start = System.currentTimeMillis();
     LOG.info("Loading model: project path = " + myProjectPath + ", global options path = " + myGlobalOptionsPath);
-    final JpsModel model = JpsSerializationManager.getInstance().loadModel(myProjectPath, myGlobalOptionsPath);
+    final File dataStorageRoot = Utils.getDataStorageRoot(myProjectPath);
+    final JpsConfigurationCache cache = dataStorageRoot != null ? new JpsConfigurationCache(new File(dataStorageRoot, CONFIGURATION_SNAPSHOT_FILE_NAME)) : null;
+    final JpsModel model = JpsSerializationManager.getInstance().loadModel(myProjectPath, myGlobalOptionsPath, cache);
+    if (cache != null) {
+      cache.save();
+    }
     if (myModelInitializer != null) {
       myModelInitializer.run(model);
     }
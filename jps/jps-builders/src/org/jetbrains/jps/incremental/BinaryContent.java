@@ -66,7 +66,8 @@ public final class BinaryContent {
       if (parentFile == null) {
         throw e;
       }
-      if (!parentFile.mkdirs()) {
+      if (!parentFile.mkdirs() && !parentFile.isDirectory()) {
+        // the directory might have been created concurrently by another thread
         throw e;
       }
       // second attempt
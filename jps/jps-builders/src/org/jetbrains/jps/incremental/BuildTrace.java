@@ -0,0 +1,144 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental;
+
+import com.intellij.openapi.util.EmptyRunnable;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.api.GlobalOptions;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records a timeline of the build as a set of spans and saves it in the Chrome trace event format, which can be opened
+ * in chrome://tracing or Perfetto UI. Recording is enabled with the {@link GlobalOptions#BUILD_TRACE_OPTION} system property.
+ * <pre>
+ *   Runnable span = BuildTrace.startSpan(BuildTrace.BUILDER, builder.getPresentableName());
+ *   try {
+ *     ...
+ *   }
+ *   finally {
+ *     span.run();
+ *   }
+ * </pre>
+ */
+public class BuildTrace {
+  public static final boolean ENABLED = Boolean.parseBoolean(System.getProperty(GlobalOptions.BUILD_TRACE_OPTION, "false"));
+  public static final String TRACE_FILE_NAME = "build-trace.json";
+
+  public static final String TARGET = "target";
+  public static final String BUILDER = "builder";
+  public static final String COMPILER = "compiler";
+  public static final String DEPENDENCIES = "dependencies";
+  public static final String STORAGE = "storage";
+
+  private static final ConcurrentLinkedQueue<Span> ourSpans = new ConcurrentLinkedQueue<Span>();
+  private static final Map<Long, String> ourThreadNames = new ConcurrentHashMap<Long, String>();
+  private static volatile long ourStartNanos = System.nanoTime();
+
+  private BuildTrace() {
+  }
+
+  /**
+   * Forgets spans recorded by the previous build
+   */
+  public static void reset() {
+    ourSpans.clear();
+    ourThreadNames.clear();
+    ourStartNanos = System.nanoTime();
+  }
+
+  /**
+   * @return a runnable which closes the span; it must be invoked by the same thread
+   */
+  @NotNull
+  public static Runnable startSpan(@NotNull final String category, @NotNull final String name) {
+    if (!ENABLED) {
+      return EmptyRunnable.INSTANCE;
+    }
+    final Thread thread = Thread.currentThread();
+    final long threadId = thread.getId();
+    if (!ourThreadNames.containsKey(threadId)) {
+      ourThreadNames.put(threadId, thread.getName());
+    }
+    final long start = System.nanoTime();
+    return new Runnable() {
+      @Override
+      public void run() {
+        ourSpans.add(new Span(category, name, threadId, start, System.nanoTime()));
+      }
+    };
+  }
+
+  public static void save(@NotNull File file) throws IOException {
+    final List<Span> spans = new ArrayList<Span>(ourSpans);
+    final long startNanos = ourStartNanos;
+    FileUtil.createParentDirs(file);
+    final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    try {
+      writer.write("{\"traceEvents\":[\n");
+      boolean first = true;
+      for (Map.Entry<Long, String> entry : ourThreadNames.entrySet()) {
+        if (!first) {
+          writer.write(",\n");
+        }
+        first = false;
+        writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":" + entry.getKey() +
+                     ",\"args\":{\"name\":\"" + escape(entry.getValue()) + "\"}}");
+      }
+      for (Span span : spans) {
+        if (!first) {
+          writer.write(",\n");
+        }
+        first = false;
+        writer.write("{\"name\":\"" + escape(span.myName) + "\",\"cat\":\"" + span.myCategory + "\",\"ph\":\"X\",\"pid\":1,\"tid\":" + span.myThreadId +
+                     ",\"ts\":" + (span.myStartNanos - startNanos) / 1000 + ",\"dur\":" + (span.myEndNanos - span.myStartNanos) / 1000 + "}");
+      }
+      writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  private static String escape(String s) {
+    final StringBuilder buffer = new StringBuilder(s.length());
+    StringUtil.escapeStringCharacters(s.length(), s, "\"", buffer);
+    return buffer.toString();
+  }
+
+  private static class Span {
+    private final String myCategory;
+    private final String myName;
+    private final long myThreadId;
+    private final long myStartNanos;
+    private final long myEndNanos;
+
+    private Span(String category, String name, long threadId, long startNanos, long endNanos) {
+      myCategory = category;
+      myName = name;
+      myThreadId = threadId;
+      myStartNanos = startNanos;
+      myEndNanos = endNanos;
+    }
+  }
+}
@@ -65,7 +65,7 @@ class ChunkBuildOutputConsumerImpl implements ModuleLevelBuilder.OutputConsumer
   }
 
   @Override
-  public void registerCompiledClass(BuildTarget<?> target, CompiledClass compiled) throws IOException {
+  public synchronized void registerCompiledClass(BuildTarget<?> target, CompiledClass compiled) throws IOException {
     if (compiled.getClassName() != null) {
       myClasses.put(compiled.getClassName(), compiled);
       Collection<CompiledClass> classes = myTargetToClassesMap.get(target);
@@ -79,7 +79,7 @@ class ChunkBuildOutputConsumerImpl implements ModuleLevelBuilder.OutputConsumer
   }
 
   @Override
-  public void registerOutputFile(BuildTarget<?> target, File outputFile, Collection<String> sourcePaths) throws IOException {
+  public synchronized void registerOutputFile(BuildTarget<?> target, File outputFile, Collection<String> sourcePaths) throws IOException {
     BuildOutputConsumerImpl consumer = myTarget2Consumer.get(target);
     if (consumer == null) {
       consumer = new BuildOutputConsumerImpl(target, myContext);
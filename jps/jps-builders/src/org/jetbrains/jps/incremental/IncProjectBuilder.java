@@ -51,6 +51,7 @@ import org.jetbrains.jps.incremental.fs.BuildFSState;
 import org.jetbrains.jps.incremental.java.ExternalJavacDescriptor;
 import org.jetbrains.jps.incremental.messages.*;
 import org.jetbrains.jps.incremental.storage.BuildTargetConfiguration;
+import org.jetbrains.jps.incremental.storage.BuildTargetsState;
 import org.jetbrains.jps.incremental.storage.OneToManyPathsMapping;
 import org.jetbrains.jps.indices.ModuleExcludeIndex;
 import org.jetbrains.jps.model.java.JpsJavaExtensionService;
@@ -596,11 +597,16 @@ public class IncProjectBuilder {
 
   private static class BuildChunkTask {
     private final BuildTargetChunk myChunk;
+    private final int myIndex;
     private final Set<BuildChunkTask> myNotBuiltDependencies = new THashSet<BuildChunkTask>();
     private final List<BuildChunkTask> myTasksDependsOnThis = new ArrayList<BuildChunkTask>();
+    /** estimated time of the longest chain of tasks starting with this one, the task is queued before tasks with smaller values */
+    private long myCriticalPathTime;
+    private volatile long myBuildTime;
 
-    private BuildChunkTask(BuildTargetChunk chunk) {
+    private BuildChunkTask(BuildTargetChunk chunk, int index) {
       myChunk = chunk;
+      myIndex = index;
     }
 
     public BuildTargetChunk getChunk() {
@@ -631,6 +637,15 @@ public class IncProjectBuilder {
     }
   }
 
+  private static final Comparator<BuildChunkTask> LONGEST_CRITICAL_PATH_FIRST = new Comparator<BuildChunkTask>() {
+    public int compare(BuildChunkTask o1, BuildChunkTask o2) {
+      if (o1.myCriticalPathTime != o2.myCriticalPathTime) {
+        return o1.myCriticalPathTime > o2.myCriticalPathTime ? -1 : 1;
+      }
+      return o1.myIndex - o2.myIndex;
+    }
+  };
+
   private class BuildParallelizer {
     private final BoundedTaskExecutor myParallelBuildExecutor =
       new BoundedTaskExecutor(SharedThreadPool.getInstance(),
@@ -640,6 +655,8 @@ public class IncProjectBuilder {
     private final Object myQueueLock = new Object();
     private final CountDownLatch myTasksCountDown;
     private final List<BuildChunkTask> myTasks;
+    private final PriorityQueue<BuildChunkTask> myReadyTasks = new PriorityQueue<BuildChunkTask>(11, LONGEST_CRITICAL_PATH_FIRST);
+    private long myStartTime;
 
     private BuildParallelizer(CompileContext context) {
       myContext = context;
@@ -650,7 +667,7 @@ public class IncProjectBuilder {
       myTasks = new ArrayList<BuildChunkTask>(chunks.size());
       Map<BuildTarget<?>, BuildChunkTask> targetToTask = new THashMap<BuildTarget<?>, BuildChunkTask>();
       for (BuildTargetChunk chunk : chunks) {
-        BuildChunkTask task = new BuildChunkTask(chunk);
+        BuildChunkTask task = new BuildChunkTask(chunk, myTasks.size());
         myTasks.add(task);
         for (BuildTarget<?> target : chunk.getTargets()) {
           targetToTask.put(target, task);
@@ -669,9 +686,53 @@ public class IncProjectBuilder {
       }
 
       myTasksCountDown = new CountDownLatch(myTasks.size());
+      computeCriticalPathTimes();
+    }
+
+    /**
+     * Estimates each task by the time its targets took in previous builds (targets which were never built are assumed to take
+     * the average time of known targets) and computes the longest chain of dependent tasks starting with it. Chunks are sorted
+     * so that dependencies go first, so a single backward pass is enough.
+     */
+    private void computeCriticalPathTimes() {
+      final BuildTargetsState targetsState = myProjectDescriptor.getTargetsState();
+      long[] estimates = new long[myTasks.size()];
+      long knownTimeSum = 0;
+      int knownCount = 0;
+      for (BuildChunkTask task : myTasks) {
+        if (!isAffected(myContext.getScope(), task.getChunk())) {
+          continue;
+        }
+        long estimate = 0;
+        for (BuildTarget<?> target : task.getChunk().getTargets()) {
+          long time = targetsState.getAverageBuildTime(target);
+          if (time < 0) {
+            estimate = -1;
+            break;
+          }
+          estimate += time;
+        }
+        if (estimate >= 0) {
+          knownTimeSum += estimate;
+          knownCount++;
+        }
+        estimates[task.myIndex] = estimate;
+      }
+
+      long defaultEstimate = knownCount > 0 ? Math.max(1, knownTimeSum / knownCount) : 1;
+      for (int i = myTasks.size() - 1; i >= 0; i--) {
+        BuildChunkTask task = myTasks.get(i);
+        long pathTime = 0;
+        for (BuildChunkTask dependent : task.myTasksDependsOnThis) {
+          pathTime = Math.max(pathTime, dependent.myCriticalPathTime);
+        }
+        long estimate = estimates[i];
+        task.myCriticalPathTime = pathTime + (estimate >= 0 ? estimate : defaultEstimate);
+      }
     }
 
     public void buildInParallel() throws IOException, ProjectBuildException {
+      myStartTime = System.currentTimeMillis();
       List<BuildChunkTask> initialTasks = new ArrayList<BuildChunkTask>();
       for (BuildChunkTask task : myTasks) {
         if (task.isReady()) {
@@ -687,6 +748,8 @@ public class IncProjectBuilder {
         LOG.info(e);
       }
 
+      reportParallelism();
+
       final Throwable throwable = myException.get();
       if (throwable instanceof ProjectBuildException) {
         throw (ProjectBuildException)throwable;
@@ -719,15 +782,61 @@ public class IncProjectBuilder {
       }
     }
 
-    private void queueTask(final BuildChunkTask task) {
-      final CompileContext chunkLocalContext = createContextWrapper(myContext);
+    private void reportParallelism() {
+      if (myTasks.isEmpty()) {
+        return;
+      }
+      long wallTime = System.currentTimeMillis() - myStartTime;
+      long totalBuildTime = 0;
+      long[] pathTimes = new long[myTasks.size()];
+      BuildChunkTask[] nextOnPath = new BuildChunkTask[myTasks.size()];
+      BuildChunkTask pathStart = null;
+      for (int i = myTasks.size() - 1; i >= 0; i--) {
+        BuildChunkTask task = myTasks.get(i);
+        totalBuildTime += task.myBuildTime;
+        for (BuildChunkTask dependent : task.myTasksDependsOnThis) {
+          if (nextOnPath[i] == null || pathTimes[dependent.myIndex] > pathTimes[nextOnPath[i].myIndex]) {
+            nextOnPath[i] = dependent;
+          }
+        }
+        pathTimes[i] = task.myBuildTime + (nextOnPath[i] != null ? pathTimes[nextOnPath[i].myIndex] : 0);
+        if (pathStart == null || pathTimes[i] >= pathTimes[pathStart.myIndex]) {
+          pathStart = task;
+        }
+      }
+
+      final StringBuilder builder = new StringBuilder();
+      builder.append("Parallel build of ").append(myTasks.size()).append(" chunks finished in ").append(wallTime).append("ms");
+      builder.append("; total chunks build time: ").append(totalBuildTime).append("ms");
+      builder.append(String.format("; achieved parallelism: %.2f", wallTime > 0 ? (double)totalBuildTime / wallTime : 1.0));
+      builder.append("; critical path (").append(pathTimes[pathStart.myIndex]).append("ms):");
+      for (BuildChunkTask task = pathStart; task != null; task = nextOnPath[task.myIndex]) {
+        if (task.myBuildTime > 0) {
+          builder.append(" ").append(task.getChunk().toString()).append(" (").append(task.myBuildTime).append("ms);");
+        }
+      }
+      LOG.info(builder.toString());
+    }
+
+    private void queueTask(BuildChunkTask readyTask) {
+      synchronized (myQueueLock) {
+        myReadyTasks.add(readyTask);
+      }
+      // each runnable builds the most important of the tasks ready at the moment it starts, not necessarily the one queued with it
       myParallelBuildExecutor.execute(new Runnable() {
         @Override
         public void run() {
+          final BuildChunkTask task;
+          synchronized (myQueueLock) {
+            task = myReadyTasks.poll();
+          }
+          final CompileContext chunkLocalContext = createContextWrapper(myContext);
           try {
             try {
               if (myException.get() == null) {
+                long start = System.currentTimeMillis();
                 buildChunkIfAffected(chunkLocalContext, myContext.getScope(), task.getChunk());
+                task.myBuildTime = System.currentTimeMillis() - start;
               }
             }
             finally {
@@ -800,7 +909,13 @@ public class IncProjectBuilder {
 
     final List<TargetBuilder<?, ?>> builders = BuilderRegistry.getInstance().getTargetBuilders();
     for (TargetBuilder<?, ?> builder : builders) {
-      BuildOperations.buildTarget(target, context, builder);
+      final Runnable span = BuildTrace.startSpan(BuildTrace.BUILDER, builder.getPresentableName() + " [" + target.getPresentableName() + "]");
+      try {
+        BuildOperations.buildTarget(target, context, builder);
+      }
+      finally {
+        span.run();
+      }
       updateDoneFraction(context, 1.0f / builders.size());
     }
     return true;
@@ -814,6 +929,8 @@ public class IncProjectBuilder {
 
   private void buildTargetsChunk(CompileContext context, final BuildTargetChunk chunk) throws ProjectBuildException {
     boolean doneSomething;
+    final long start = System.currentTimeMillis();
+    final Runnable span = BuildTrace.startSpan(BuildTrace.TARGET, getPresentableName(chunk));
     try {
       sendBuildingTargetMessages(chunk.getTargets(), BuildingTargetProgressMessage.Event.STARTED);
       Utils.ERRORS_DETECTED_KEY.set(context, Boolean.FALSE);
@@ -830,6 +947,10 @@ public class IncProjectBuilder {
 
       onChunkBuildComplete(context, chunk);
 
+      if (doneSomething) {
+        registerBuildTime(chunk, System.currentTimeMillis() - start);
+      }
+
       //if (doneSomething && GENERATE_CLASSPATH_INDEX) {
       //  myAsyncTasks.add(SharedThreadPool.getInstance().executeOnPooledThread(new Runnable() {
       //    @Override
@@ -872,6 +993,25 @@ public class IncProjectBuilder {
         Utils.REMOVED_SOURCES_KEY.set(context, null);
       }
       sendBuildingTargetMessages(chunk.getTargets(), BuildingTargetProgressMessage.Event.FINISHED);
+      span.run();
+    }
+  }
+
+  private static String getPresentableName(BuildTargetChunk chunk) {
+    final StringBuilder name = new StringBuilder();
+    for (BuildTarget<?> target : chunk.getTargets()) {
+      if (name.length() > 0) {
+        name.append(", ");
+      }
+      name.append(target.getPresentableName());
+    }
+    return name.toString();
+  }
+
+  private void registerBuildTime(BuildTargetChunk chunk, long time) {
+    final Set<? extends BuildTarget<?>> targets = chunk.getTargets();
+    for (BuildTarget<?> target : targets) {
+      myProjectDescriptor.getTargetsState().registerBuildTime(target, time / targets.size());
     }
   }
 
@@ -1067,7 +1207,14 @@ public class IncProjectBuilder {
 
           for (ModuleLevelBuilder builder : builders) {
             processDeletedPaths(context, chunk.getTargets());
-            final ModuleLevelBuilder.ExitCode buildResult = builder.build(context, chunk, dirtyFilesHolder, outputConsumer);
+            final ModuleLevelBuilder.ExitCode buildResult;
+            final Runnable span = BuildTrace.startSpan(BuildTrace.BUILDER, builder.getPresentableName() + " [" + chunk.getName() + "]");
+            try {
+              buildResult = builder.build(context, chunk, dirtyFilesHolder, outputConsumer);
+            }
+            finally {
+              span.run();
+            }
 
             doneSomething |= (buildResult != ModuleLevelBuilder.ExitCode.NOTHING_DONE);
 
@@ -1132,11 +1279,17 @@ public class IncProjectBuilder {
   }
 
   private static void saveInstrumentedClasses(ChunkBuildOutputConsumerImpl outputConsumer) throws IOException {
-    for (CompiledClass compiledClass : outputConsumer.getCompiledClasses().values()) {
-      if (compiledClass.isDirty()) {
-        compiledClass.save();
+    final Runnable span = BuildTrace.startSpan(BuildTrace.STORAGE, "save instrumented classes");
+    try {
+      for (CompiledClass compiledClass : outputConsumer.getCompiledClasses().values()) {
+        if (compiledClass.isDirty()) {
+          compiledClass.save();
+        }
       }
     }
+    finally {
+      span.run();
+    }
   }
 
   private static void onChunkBuildComplete(CompileContext context, @NotNull BuildTargetChunk chunk) throws IOException {
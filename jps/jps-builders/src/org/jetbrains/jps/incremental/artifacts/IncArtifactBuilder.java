@@ -19,6 +19,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.containers.MultiMap;
+import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import gnu.trove.TIntObjectHashMap;
 import org.jetbrains.annotations.NotNull;
@@ -129,50 +130,58 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
         }
       });
 
-      BuildOperations.cleanOutputsCorrespondingToChangedFiles(context, holder);
-      for (String outputPath : changedOutputPaths) {
-        outSrcMapping.remove(outputPath);
-      }
-      if (filesToDelete.isEmpty() && filesToProcess.isEmpty()) {
-        return;
-      }
-
-      deleteOutdatedFiles(filesToDelete, context, srcOutMapping, outSrcMapping);
-      context.checkCanceled();
+      final Map<String, File> previousJars = moveJarsToUpdate(filesToDelete.keySet(), pd.getBuildRootIndex().getTargetRoots(target, context));
+      try {
+        BuildOperations.cleanOutputsCorrespondingToChangedFiles(context, holder);
+        for (String outputPath : changedOutputPaths) {
+          outSrcMapping.remove(outputPath);
+        }
+        if (filesToDelete.isEmpty() && filesToProcess.isEmpty()) {
+          return;
+        }
 
-      context.processMessage(new ProgressMessage("Building artifact '" + artifact.getName() + "': copying files..."));
-      final Set<JarInfo> changedJars = new THashSet<JarInfo>();
-      for (ArtifactRootDescriptor descriptor : pd.getBuildRootIndex().getTargetRoots(target, context)) {
+        deleteOutdatedFiles(filesToDelete, context, srcOutMapping, outSrcMapping);
         context.checkCanceled();
-        final Set<String> sourcePaths = filesToProcess.get(descriptor.getRootIndex());
-        if (sourcePaths == null) continue;
 
-        for (String sourcePath : sourcePaths) {
-          if (!descriptor.getFilter().shouldBeCopied(sourcePath, pd)) {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("File " + sourcePath + " will be skipped because it isn't accepted by filter");
+        context.processMessage(new ProgressMessage("Building artifact '" + artifact.getName() + "': copying files..."));
+        final Set<JarInfo> changedJars = new THashSet<JarInfo>();
+        for (ArtifactRootDescriptor descriptor : pd.getBuildRootIndex().getTargetRoots(target, context)) {
+          context.checkCanceled();
+          final Set<String> sourcePaths = filesToProcess.get(descriptor.getRootIndex());
+          if (sourcePaths == null) continue;
+
+          for (String sourcePath : sourcePaths) {
+            if (!descriptor.getFilter().shouldBeCopied(sourcePath, pd)) {
+              if (LOG.isDebugEnabled()) {
+                LOG.debug("File " + sourcePath + " will be skipped because it isn't accepted by filter");
+              }
+              continue;
             }
-            continue;
-          }
-          DestinationInfo destination = descriptor.getDestinationInfo();
-          if (destination instanceof ExplodedDestinationInfo) {
-            descriptor.copyFromRoot(sourcePath, descriptor.getRootIndex(), destination.getOutputPath(), context,
-                                    outputConsumer, outSrcMapping);
-          }
-          else {
-            List<ArtifactOutputToSourceMapping.SourcePathAndRootIndex> sources = outSrcMapping.getState(destination.getOutputFilePath());
-            if (sources == null || sources.size() > 0 && sources.get(0).getRootIndex() == descriptor.getRootIndex()) {
-              outSrcMapping.update(destination.getOutputFilePath(),
-                                   Collections.<ArtifactOutputToSourceMapping.SourcePathAndRootIndex>emptyList());
-              changedJars.add(((JarDestinationInfo)destination).getJarInfo());
+            DestinationInfo destination = descriptor.getDestinationInfo();
+            if (destination instanceof ExplodedDestinationInfo) {
+              descriptor.copyFromRoot(sourcePath, descriptor.getRootIndex(), destination.getOutputPath(), context,
+                                      outputConsumer, outSrcMapping);
+            }
+            else {
+              List<ArtifactOutputToSourceMapping.SourcePathAndRootIndex> sources = outSrcMapping.getState(destination.getOutputFilePath());
+              if (sources == null || sources.size() > 0 && sources.get(0).getRootIndex() == descriptor.getRootIndex()) {
+                outSrcMapping.update(destination.getOutputFilePath(),
+                                     Collections.<ArtifactOutputToSourceMapping.SourcePathAndRootIndex>emptyList());
+                changedJars.add(((JarDestinationInfo)destination).getJarInfo());
+              }
             }
           }
         }
-      }
-      context.checkCanceled();
+        context.checkCanceled();
 
-      JarsBuilder builder = new JarsBuilder(changedJars, context, outputConsumer, outSrcMapping);
-      builder.buildJars();
+        JarsBuilder builder = new JarsBuilder(changedJars, context, outputConsumer, outSrcMapping, previousJars);
+        builder.buildJars();
+      }
+      finally {
+        for (File file : previousJars.values()) {
+          FileUtil.delete(file);
+        }
+      }
       runArtifactTasks(context, artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase.FINISHING_BUILD);
       runArtifactTasks(context, artifact, ArtifactBuildTaskProvider.ArtifactBuildPhase.POST_PROCESSING);
     }
@@ -206,6 +215,36 @@ public class IncArtifactBuilder extends TargetBuilder<ArtifactRootDescriptor, Ar
     paths.add(path);
   }
 
+  /**
+   * Moves the existing archives which need to be rebuilt out of the way, so they won't be deleted with other outdated files and
+   * {@link JarsBuilder} will be able to update them instead of packing all their content again. The temporary files are created in
+   * the same directories, so the archives are renamed rather than copied.
+   */
+  private static Map<String, File> moveJarsToUpdate(Set<String> outdatedPaths, Collection<ArtifactRootDescriptor> roots) throws IOException {
+    final Map<String, File> previousJars = new THashMap<String, File>(FileUtil.PATH_HASHING_STRATEGY);
+    if (outdatedPaths.isEmpty()) return previousJars;
+
+    final Set<String> jarPaths = new THashSet<String>(FileUtil.PATH_HASHING_STRATEGY);
+    for (ArtifactRootDescriptor descriptor : roots) {
+      DestinationInfo destination = descriptor.getDestinationInfo();
+      if (destination instanceof JarDestinationInfo) {
+        jarPaths.add(FileUtil.toSystemIndependentName(destination.getOutputFilePath()));
+      }
+    }
+    for (String outputPath : outdatedPaths) {
+      String jarPath = FileUtil.toSystemIndependentName(outputPath);
+      if (!jarPaths.contains(jarPath) || previousJars.containsKey(jarPath)) continue;
+
+      File jarFile = new File(FileUtil.toSystemDependentName(jarPath));
+      if (jarFile.isFile()) {
+        File tempFile = FileUtil.createTempFile(jarFile.getParentFile(), "artifactCompiler", "tmp", true);
+        FileUtil.rename(jarFile, tempFile);
+        previousJars.put(jarPath, tempFile);
+      }
+    }
+    return previousJars;
+  }
+
   private static void deleteOutdatedFiles(MultiMap<String, String> filesToDelete, CompileContext context,
                                           SourceToOutputMapping srcOutMapping,
                                           ArtifactOutputToSourceMapping outSrcMapping) throws IOException {
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.artifacts.impl;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
+import com.intellij.util.io.zip.JBZipEntry;
+import com.intellij.util.io.zip.JBZipFile;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.service.SharedThreadPool;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes an archive for {@link JarsBuilder}. If the archive file contains the result of the previous build it's updated in place:
+ * entries with the same size and CRC are left untouched, other entries are appended to the file and entries which weren't written
+ * are removed from the central directory. Small entries are deflated in parallel and written in the order they were added; entries
+ * larger than {@link #MAX_BUFFERED_ENTRY_SIZE} or of unknown size are streamed to the archive, so they're never loaded into memory.
+ */
+class JarWriter {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.artifacts.impl.JarWriter");
+  private static final int LOCAL_FILE_HEADER_SIZE = 30;
+  private static final int CENTRAL_FILE_HEADER_SIZE = 46;
+  private static final int CENTRAL_DIRECTORY_END_SIZE = 22;
+  private static final int MAX_BUFFERED_ENTRY_SIZE = 1024 * 1024;
+  private static final int MAX_PENDING_ENTRIES = 64;
+  private static final long MAX_PENDING_SIZE = 16 * 1024 * 1024;
+  private static final BoundedTaskExecutor ourCompressor = new BoundedTaskExecutor(SharedThreadPool.getInstance(), Runtime.getRuntime().availableProcessors());
+  private final JBZipFile myZipFile;
+  private final Set<String> myStaleEntries = new THashSet<String>();
+  private final Deque<PendingEntry> myPendingEntries = new ArrayDeque<PendingEntry>();
+  private long myPendingSize;
+
+  private JarWriter(JBZipFile zipFile) {
+    myZipFile = zipFile;
+    for (JBZipEntry entry : zipFile.getEntries()) {
+      myStaleEntries.add(entry.getName());
+    }
+  }
+
+  /**
+   * @param jarFile  the file to write; if it contains an archive with the same manifest, the archive is updated, otherwise it's overwritten
+   * @param manifest content of the manifest which will be written as the first entry
+   */
+  static JarWriter open(@NotNull File jarFile, @Nullable byte[] manifest) throws IOException {
+    if (jarFile.length() > 0) {
+      JarWriter writer = openExisting(jarFile, manifest);
+      if (writer != null) {
+        return writer;
+      }
+      FileUtil.delete(jarFile);
+    }
+
+    JarWriter writer = new JarWriter(new JBZipFile(jarFile));
+    if (manifest != null) {
+      writer.addBytes(JarFile.MANIFEST_NAME, manifest, System.currentTimeMillis(), ZipEntry.DEFLATED);
+    }
+    return writer;
+  }
+
+  @Nullable
+  private static JarWriter openExisting(File jarFile, @Nullable byte[] manifest) {
+    JBZipFile zipFile = null;
+    try {
+      zipFile = new JBZipFile(jarFile);
+      if (canBeUpdated(zipFile, jarFile.length(), manifest)) {
+        JarWriter writer = new JarWriter(zipFile);
+        writer.myStaleEntries.remove(JarFile.MANIFEST_NAME);
+        return writer;
+      }
+    }
+    catch (IOException e) {
+      LOG.debug("Cannot update " + jarFile + ", it will be rebuilt", e);
+    }
+    catch (IllegalArgumentException e) {
+      LOG.debug("Cannot update " + jarFile + ", it will be rebuilt", e);
+    }
+
+    if (zipFile != null) {
+      try {
+        zipFile.close();
+      }
+      catch (IOException ignored) {
+      }
+    }
+    return null;
+  }
+
+  private static boolean canBeUpdated(JBZipFile zipFile, long fileLength, @Nullable byte[] manifest) throws IOException {
+    JBZipEntry manifestEntry = zipFile.getEntry(JarFile.MANIFEST_NAME);
+    if (manifest == null) {
+      if (manifestEntry != null) return false;
+    }
+    else if (manifestEntry == null || manifestEntry.getHeaderOffset() != 0 || !Arrays.equals(manifest, manifestEntry.getData())) {
+      //JarInputStream finds the manifest only if it's the first entry
+      return false;
+    }
+
+    //entries replaced by the previous updates remain in the file, so rebuild it if they occupy more than a half of it
+    long liveDataLength = CENTRAL_DIRECTORY_END_SIZE;
+    for (JBZipEntry entry : zipFile.getEntries()) {
+      liveDataLength += LOCAL_FILE_HEADER_SIZE + CENTRAL_FILE_HEADER_SIZE + 2 * entry.getName().length() + entry.getCompressedSize();
+    }
+    return liveDataLength * 2 >= fileLength;
+  }
+
+  void addDirectory(@NotNull String path) throws IOException {
+    addBytes(path, ArrayUtil.EMPTY_BYTE_ARRAY, -1, ZipEntry.STORED);
+  }
+
+  void addFile(@NotNull String path, @NotNull File file) throws IOException {
+    long size = file.length();
+    int method = size == 0 ? ZipEntry.STORED : ZipEntry.DEFLATED;
+    if (size <= MAX_BUFFERED_ENTRY_SIZE) {
+      addBytes(path, FileUtil.loadFileBytes(file), file.lastModified(), method);
+      return;
+    }
+
+    JBZipEntry entry = takeStaleEntry(path);
+    if (entry != null && entry.getSize() == size && entry.getMethod() == method && entry.getCrc() == computeCrc(file)) {
+      return;
+    }
+    InputStream input = new FileInputStream(file);
+    try {
+      writeEntry(path, input, file.lastModified(), method);
+    }
+    finally {
+      input.close();
+    }
+  }
+
+  /**
+   * Adds an entry extracted from another archive, the entry is stored uncompressed if it was stored in the source archive
+   */
+  void addEntry(@NotNull String path, @NotNull ZipEntry sourceEntry, @NotNull InputStream inputStream, long timestamp) throws IOException {
+    int method = sourceEntry.getMethod() == ZipEntry.STORED ? ZipEntry.STORED : ZipEntry.DEFLATED;
+    long size = sourceEntry.getSize();
+    if (size >= 0 && size <= MAX_BUFFERED_ENTRY_SIZE) {
+      addBytes(path, FileUtil.loadBytes(inputStream, (int)size), timestamp, method);
+      return;
+    }
+
+    if (size != -1 && sourceEntry.getCrc() != -1 && reuseEntry(path, size, sourceEntry.getCrc(), method)) {
+      return;
+    }
+    writeEntry(path, inputStream, timestamp, method);
+  }
+
+  private void addBytes(String path, final byte[] content, long timestamp, int method) throws IOException {
+    CRC32 crc32 = new CRC32();
+    crc32.update(content);
+    long crc = crc32.getValue();
+    if (reuseEntry(path, content.length, crc, method)) {
+      return;
+    }
+
+    JBZipEntry entry = myZipFile.getOrCreateEntry(path);
+    entry.setMethod(method);
+    entry.setTime(timestamp);
+    Future<BufferExposingByteArrayOutputStream> compressed = null;
+    if (method == ZipEntry.DEFLATED) {
+      compressed = ourCompressor.submit(new Callable<BufferExposingByteArrayOutputStream>() {
+        @Override
+        public BufferExposingByteArrayOutputStream call() throws Exception {
+          return deflate(content);
+        }
+      });
+    }
+    myPendingEntries.addLast(new PendingEntry(entry, content, crc, compressed));
+    myPendingSize += content.length;
+    while (myPendingEntries.size() > MAX_PENDING_ENTRIES || myPendingSize > MAX_PENDING_SIZE) {
+      writePendingEntry();
+    }
+  }
+
+  /**
+   * Streams the entry content to the archive after the pending entries, so the entries are written in the order they were added
+   */
+  private void writeEntry(String path, InputStream content, long timestamp, int method) throws IOException {
+    while (!myPendingEntries.isEmpty()) {
+      writePendingEntry();
+    }
+    myStaleEntries.remove(path);
+    JBZipEntry entry = myZipFile.getOrCreateEntry(path);
+    entry.setMethod(method);
+    entry.setTime(timestamp);
+    entry.setData(content);
+  }
+
+  /**
+   * @return {@code true} if the archive already contains the entry with the same content
+   */
+  private boolean reuseEntry(String path, long size, long crc, int method) {
+    JBZipEntry entry = takeStaleEntry(path);
+    return entry != null && entry.getSize() == size && entry.getCrc() == crc && entry.getMethod() == method;
+  }
+
+  /**
+   * @return the entry written by the previous build if it wasn't overwritten yet
+   */
+  @Nullable
+  private JBZipEntry takeStaleEntry(String path) {
+    return myStaleEntries.remove(path) ? myZipFile.getEntry(path) : null;
+  }
+
+  private void writePendingEntry() throws IOException {
+    PendingEntry pending = myPendingEntries.removeFirst();
+    myPendingSize -= pending.myContent.length;
+    if (pending.myCompressed == null) {
+      pending.myEntry.setCompressedData(pending.myContent, pending.myContent.length, pending.myContent.length, pending.myCrc);
+      return;
+    }
+
+    try {
+      BufferExposingByteArrayOutputStream compressed = pending.myCompressed.get();
+      pending.myEntry.setCompressedData(compressed.getInternalBuffer(), compressed.size(), pending.myContent.length, pending.myCrc);
+    }
+    catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private static BufferExposingByteArrayOutputStream deflate(byte[] content) throws IOException {
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    try {
+      BufferExposingByteArrayOutputStream output = new BufferExposingByteArrayOutputStream(content.length / 2 + 64);
+      DeflaterOutputStream stream = new DeflaterOutputStream(output, deflater);
+      try {
+        stream.write(content);
+      }
+      finally {
+        stream.close();
+      }
+      return output;
+    }
+    finally {
+      deflater.end();
+    }
+  }
+
+  private static long computeCrc(File file) throws IOException {
+    CRC32 crc = new CRC32();
+    InputStream input = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) > 0) {
+        crc.update(buffer, 0, read);
+      }
+    }
+    finally {
+      input.close();
+    }
+    return crc.getValue();
+  }
+
+  void close() throws IOException {
+    try {
+      while (!myPendingEntries.isEmpty()) {
+        writePendingEntry();
+      }
+      for (String path : myStaleEntries) {
+        myZipFile.getEntry(path).erase();
+      }
+    }
+    finally {
+      myZipFile.close();
+    }
+  }
+
+  private static class PendingEntry {
+    private final JBZipEntry myEntry;
+    private final byte[] myContent;
+    private final long myCrc;
+    private final Future<BufferExposingByteArrayOutputStream> myCompressed;
+
+    private PendingEntry(JBZipEntry entry, byte[] content, long crc, @Nullable Future<BufferExposingByteArrayOutputStream> compressed) {
+      myEntry = entry;
+      myContent = content;
+      myCrc = crc;
+      myCompressed = compressed;
+    }
+  }
+}
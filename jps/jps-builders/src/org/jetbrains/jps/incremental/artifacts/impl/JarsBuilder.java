@@ -26,7 +26,6 @@ import com.intellij.util.ArrayUtil;
 import com.intellij.util.graph.CachingSemiGraph;
 import com.intellij.util.graph.DFSTBuilder;
 import com.intellij.util.graph.GraphGenerator;
-import com.intellij.util.io.ZipUtil;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -45,10 +44,8 @@ import org.jetbrains.jps.incremental.messages.ProgressMessage;
 import java.io.*;
 import java.util.*;
 import java.util.jar.JarFile;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 /**
  * @author nik
@@ -60,11 +57,17 @@ public class JarsBuilder {
   private Map<JarInfo, File> myBuiltJars;
   private final BuildOutputConsumer myOutputConsumer;
   private final ArtifactOutputToSourceMapping myOutSrcMapping;
+  private final Map<String, File> myPreviousJars;
 
+  /**
+   * @param previousJars files with the previous versions of the archives mapped to output paths of the archives, these files will be
+   *                     updated in place and moved to the output paths. Files which are taken by the builder are removed from the map.
+   */
   public JarsBuilder(Set<JarInfo> jarsToBuild, CompileContext context, BuildOutputConsumer outputConsumer,
-                     ArtifactOutputToSourceMapping outSrcMapping) {
+                     ArtifactOutputToSourceMapping outSrcMapping, Map<String, File> previousJars) {
     myOutputConsumer = outputConsumer;
     myOutSrcMapping = outSrcMapping;
+    myPreviousJars = previousJars;
     DependentJarsEvaluator evaluator = new DependentJarsEvaluator();
     for (JarInfo jarInfo : jarsToBuild) {
       evaluator.addJarWithDependencies(jarInfo);
@@ -142,14 +145,17 @@ public class JarsBuilder {
     }
 
     myContext.processMessage(new ProgressMessage("Building " + jar.getPresentableDestination() + "..."));
-    File jarFile = FileUtil.createTempFile("artifactCompiler", "tmp");
+    File jarFile = takePreviousJar(jar);
+    if (jarFile == null) {
+      jarFile = createTempJar(jar);
+    }
     myBuiltJars.put(jar, jarFile);
 
     FileUtil.createParentDirs(jarFile);
     final String targetJarPath = jar.getDestination().getOutputFilePath();
     List<String> packedFilePaths = new ArrayList<String>();
     Manifest manifest = loadManifest(jar, packedFilePaths);
-    final JarOutputStream jarOutputStream = createJarOutputStream(jarFile, manifest);
+    final JarWriter jarWriter = JarWriter.open(jarFile, manifest != null ? getManifestBytes(manifest) : null);
 
     final THashSet<String> writtenPaths = new THashSet<String>();
     try {
@@ -163,21 +169,21 @@ public class JarsBuilder {
           final ArtifactRootDescriptor descriptor = (ArtifactRootDescriptor)pair.getSecond();
           final int rootIndex = descriptor.getRootIndex();
           if (descriptor instanceof FileBasedArtifactRootDescriptor) {
-            addFileToJar(jarOutputStream, jarFile, descriptor.getRootFile(), descriptor.getFilter(), relativePath, targetJarPath, writtenPaths,
+            addFileToJar(jarWriter, jarFile, descriptor.getRootFile(), descriptor.getFilter(), relativePath, targetJarPath, writtenPaths,
                          packedFilePaths, rootIndex);
           }
           else {
             final String filePath = FileUtil.toSystemIndependentName(descriptor.getRootFile().getAbsolutePath());
             packedFilePaths.add(filePath);
             myOutSrcMapping.appendData(targetJarPath, rootIndex, filePath);
-            extractFileAndAddToJar(jarOutputStream, (JarBasedArtifactRootDescriptor)descriptor, relativePath, writtenPaths);
+            extractFileAndAddToJar(jarWriter, (JarBasedArtifactRootDescriptor)descriptor, relativePath, writtenPaths);
           }
         }
         else {
           JarInfo nestedJar = (JarInfo)pair.getSecond();
           File nestedJarFile = myBuiltJars.get(nestedJar);
           if (nestedJarFile != null) {
-            addFileToJar(jarOutputStream, jarFile, nestedJarFile, SourceFileFilter.ALL, relativePath, targetJarPath, writtenPaths,
+            addFileToJar(jarWriter, jarFile, nestedJarFile, SourceFileFilter.ALL, relativePath, targetJarPath, writtenPaths,
                          packedFilePaths, -1);
           }
           else {
@@ -201,7 +207,7 @@ public class JarsBuilder {
     finally {
       if (writtenPaths.isEmpty()) {
         try {
-          jarOutputStream.close();
+          jarWriter.close();
         }
         catch (IOException ignored) {
         }
@@ -209,17 +215,39 @@ public class JarsBuilder {
         myBuiltJars.remove(jar);
       }
       else {
-        jarOutputStream.close();
+        jarWriter.close();
       }
     }
   }
 
-  private static JarOutputStream createJarOutputStream(File jarFile, @Nullable Manifest manifest) throws IOException {
-    final BufferedOutputStream outputStream = new BufferedOutputStream(new FileOutputStream(jarFile));
-    if (manifest != null) {
-      return new JarOutputStream(outputStream, manifest);
+  @Nullable
+  private File takePreviousJar(JarInfo jar) {
+    DestinationInfo destination = jar.getDestination();
+    if (destination instanceof ExplodedDestinationInfo) {
+      return myPreviousJars.remove(FileUtil.toSystemIndependentName(destination.getOutputPath()));
     }
-    return new JarOutputStream(outputStream);
+    return null;
+  }
+
+  /**
+   * Creates the temporary file for an archive copied to an output directory in that directory, so it can be moved to its place
+   * without copying
+   */
+  private static File createTempJar(JarInfo jar) throws IOException {
+    DestinationInfo destination = jar.getDestination();
+    if (destination instanceof ExplodedDestinationInfo) {
+      File outputDir = new File(FileUtil.toSystemDependentName(destination.getOutputPath())).getParentFile();
+      if (outputDir != null && (outputDir.isDirectory() || outputDir.mkdirs())) {
+        return FileUtil.createTempFile(outputDir, "artifactCompiler", "tmp", true);
+      }
+    }
+    return FileUtil.createTempFile("artifactCompiler", "tmp");
+  }
+
+  private static byte[] getManifestBytes(Manifest manifest) throws IOException {
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    manifest.write(output);
+    return output.toByteArray();
   }
 
   @Nullable
@@ -278,48 +306,39 @@ public class JarsBuilder {
     }
   }
 
-  private static void extractFileAndAddToJar(final JarOutputStream jarOutputStream, final JarBasedArtifactRootDescriptor root,
+  private static void extractFileAndAddToJar(final JarWriter jarWriter, final JarBasedArtifactRootDescriptor root,
                                              final String relativeOutputPath, final Set<String> writtenPaths)
     throws IOException {
     final long timestamp = FileSystemUtil.lastModified(root.getRootFile());
     root.processEntries(new JarBasedArtifactRootDescriptor.EntryProcessor() {
       @Override
       public void process(@Nullable InputStream inputStream, @NotNull String relativePath, ZipEntry entry) throws IOException {
-        String pathInJar = addParentDirectories(jarOutputStream, writtenPaths, JpsArtifactPathUtil
+        String pathInJar = addParentDirectories(jarWriter, writtenPaths, JpsArtifactPathUtil
           .appendToPath(relativeOutputPath, relativePath));
 
         if (inputStream == null) {
-          addDirectoryEntry(jarOutputStream, pathInJar + "/", writtenPaths);
+          addDirectoryEntry(jarWriter, pathInJar + "/", writtenPaths);
         }
         else if (writtenPaths.add(pathInJar)) {
-          ZipEntry newEntry = new ZipEntry(pathInJar);
-          newEntry.setTime(timestamp);
-          if (entry.getMethod() == ZipEntry.STORED) {
-            newEntry.setMethod(ZipEntry.STORED);
-            newEntry.setSize(entry.getSize());
-            newEntry.setCrc(entry.getCrc());
-          }
-          jarOutputStream.putNextEntry(newEntry);
-          FileUtil.copy(inputStream, jarOutputStream);
-          jarOutputStream.closeEntry();
+          jarWriter.addEntry(pathInJar, entry, inputStream, timestamp);
         }
       }
     });
 
   }
 
-  private void addFileToJar(final @NotNull JarOutputStream jarOutputStream, final @NotNull File jarFile, @NotNull File file,
+  private void addFileToJar(final @NotNull JarWriter jarWriter, final @NotNull File jarFile, @NotNull File file,
                             SourceFileFilter filter, @NotNull String relativePath, String targetJarPath,
                             final @NotNull Set<String> writtenPaths, List<String> packedFilePaths, final int rootIndex) throws IOException {
     if (!file.exists() || FileUtil.isAncestor(file, jarFile, false)) {
       return;
     }
 
-    relativePath = addParentDirectories(jarOutputStream, writtenPaths, relativePath);
-    addFileOrDirRecursively(jarOutputStream, file, filter, relativePath, targetJarPath, writtenPaths, packedFilePaths, rootIndex);
+    relativePath = addParentDirectories(jarWriter, writtenPaths, relativePath);
+    addFileOrDirRecursively(jarWriter, file, filter, relativePath, targetJarPath, writtenPaths, packedFilePaths, rootIndex);
   }
 
-  private void addFileOrDirRecursively(@NotNull ZipOutputStream jarOutputStream,
+  private void addFileOrDirRecursively(@NotNull JarWriter jarWriter,
                                        @NotNull File file,
                                        SourceFileFilter filter,
                                        @NotNull String relativePath,
@@ -335,19 +354,22 @@ public class JarsBuilder {
     if (file.isDirectory()) {
       final String directoryPath = relativePath.length() == 0 ? "" : relativePath + "/";
       if (!directoryPath.isEmpty()) {
-        addDirectoryEntry(jarOutputStream, directoryPath, writtenItemRelativePaths);
+        addDirectoryEntry(jarWriter, directoryPath, writtenItemRelativePaths);
       }
       final File[] children = file.listFiles();
       if (children != null) {
         for (File child : children) {
-          addFileOrDirRecursively(jarOutputStream, child, filter, directoryPath + child.getName(), targetJarPath, writtenItemRelativePaths,
+          addFileOrDirRecursively(jarWriter, child, filter, directoryPath + child.getName(), targetJarPath, writtenItemRelativePaths,
                                   packedFilePaths, rootIndex);
         }
       }
       return;
     }
 
-    final boolean added = ZipUtil.addFileToZip(jarOutputStream, file, relativePath, writtenItemRelativePaths, null);
+    final boolean added = writtenItemRelativePaths.add(relativePath);
+    if (added) {
+      jarWriter.addFile(relativePath, file);
+    }
     if (rootIndex != -1) {
       myOutSrcMapping.appendData(targetJarPath, rootIndex, filePath);
       if (added) {
@@ -357,7 +379,7 @@ public class JarsBuilder {
   }
 
 
-  private static String addParentDirectories(JarOutputStream jarOutputStream, Set<String> writtenPaths, String relativePath) throws IOException {
+  private static String addParentDirectories(JarWriter jarWriter, Set<String> writtenPaths, String relativePath) throws IOException {
     while (StringUtil.startsWithChar(relativePath, '/')) {
       relativePath = relativePath.substring(1);
     }
@@ -365,22 +387,17 @@ public class JarsBuilder {
     while (i != -1) {
       String prefix = relativePath.substring(0, i+1);
       if (prefix.length() > 1) {
-        addDirectoryEntry(jarOutputStream, prefix, writtenPaths);
+        addDirectoryEntry(jarWriter, prefix, writtenPaths);
       }
       i = relativePath.indexOf('/', i + 1);
     }
     return relativePath;
   }
 
-  private static void addDirectoryEntry(final ZipOutputStream output, @NonNls final String relativePath, Set<String> writtenPaths) throws IOException {
+  private static void addDirectoryEntry(final JarWriter jarWriter, @NonNls final String relativePath, Set<String> writtenPaths) throws IOException {
     if (!writtenPaths.add(relativePath)) return;
 
-    ZipEntry e = new ZipEntry(relativePath);
-    e.setMethod(ZipEntry.STORED);
-    e.setSize(0);
-    e.setCrc(0);
-    output.putNextEntry(e);
-    output.closeEntry();
+    jarWriter.addDirectory(relativePath);
   }
 
   private class JarsGraph implements GraphGenerator.SemiGraph<JarInfo> {
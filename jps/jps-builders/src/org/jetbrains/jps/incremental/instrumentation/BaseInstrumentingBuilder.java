@@ -19,6 +19,7 @@ import com.intellij.compiler.instrumentation.InstrumentationClassFinder;
 import com.intellij.compiler.instrumentation.InstrumenterClassWriter;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Key;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.asm4.ClassReader;
 import org.jetbrains.asm4.ClassWriter;
@@ -29,6 +30,14 @@ import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.incremental.CompiledClass;
 import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
+import org.jetbrains.jps.service.SharedThreadPool;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * @author Eugene Zhuravlev
@@ -36,6 +45,7 @@ import org.jetbrains.jps.incremental.messages.CompilerMessage;
  */
 public abstract class BaseInstrumentingBuilder extends ClassProcessingBuilder {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.instrumentation.BaseInstrumentingBuilder");
+  private static final BoundedTaskExecutor ourThreadPool = new BoundedTaskExecutor(SharedThreadPool.getInstance(), Runtime.getRuntime().availableProcessors());
   // every instance of builder must have its own marker!
   private final Key<Boolean> IS_INSTRUMENTED_KEY = Key.create("_instrumentation_marker_" + getPresentableName());
 
@@ -44,38 +54,76 @@ public abstract class BaseInstrumentingBuilder extends ClassProcessingBuilder {
   }
 
   @Override
-  protected final ExitCode performBuild(CompileContext context, ModuleChunk chunk, InstrumentationClassFinder finder, OutputConsumer outputConsumer) {
-    ExitCode exitCode = ExitCode.NOTHING_DONE;
-    for (CompiledClass compiledClass : outputConsumer.getCompiledClasses().values()) {
-      final BinaryContent originalContent = compiledClass.getContent();
-      final ClassReader reader = new ClassReader(originalContent.getBuffer(), originalContent.getOffset(), originalContent.getLength());
-      final int version = getClassFileVersion(reader);
-      if (IS_INSTRUMENTED_KEY.get(compiledClass, Boolean.FALSE) || !canInstrument(compiledClass, version)) {
-        // do not instrument the same content twice
-        continue;
+  protected final ExitCode performBuild(final CompileContext context, ModuleChunk chunk, final InstrumentationClassFinder finder, OutputConsumer outputConsumer) {
+    final Collection<CompiledClass> compiledClasses = outputConsumer.getCompiledClasses().values();
+    boolean instrumentedSomething = false;
+    if (canInstrumentConcurrently() && compiledClasses.size() > 1) {
+      final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(compiledClasses.size());
+      for (final CompiledClass compiledClass : compiledClasses) {
+        futures.add(ourThreadPool.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return instrumentClass(context, compiledClass, finder);
+          }
+        }));
       }
-      final ClassWriter writer = new InstrumenterClassWriter(getAsmClassWriterFlags(version), finder);
-      try {
-        final BinaryContent instrumented = instrument(context, compiledClass, reader, writer, finder);
-        if (instrumented != null) {
-          compiledClass.setContent(instrumented);
-          finder.cleanCachedData(compiledClass.getClassName());
-          IS_INSTRUMENTED_KEY.set(compiledClass, Boolean.TRUE);
-          exitCode = ExitCode.OK;
+      for (Future<Boolean> future : futures) {
+        try {
+          instrumentedSomething |= future.get();
         }
-      }
-      catch (Throwable e) {
-        LOG.info(e);
-        final String message = e.getMessage();
-        if (message != null) {
-          context.processMessage(new CompilerMessage(getPresentableName(), BuildMessage.Kind.ERROR, message, compiledClass.getSourceFile().getPath()));
+        catch (InterruptedException e) {
+          throw new RuntimeException(e);
         }
-        else {
-          context.processMessage(new CompilerMessage(getPresentableName(), e));
+        catch (ExecutionException e) {
+          throw new RuntimeException(e.getCause());
         }
       }
     }
-    return exitCode;
+    else {
+      for (CompiledClass compiledClass : compiledClasses) {
+        instrumentedSomething |= instrumentClass(context, compiledClass, finder);
+      }
+    }
+    return instrumentedSomething ? ExitCode.OK : ExitCode.NOTHING_DONE;
+  }
+
+  private boolean instrumentClass(CompileContext context, CompiledClass compiledClass, InstrumentationClassFinder finder) {
+    final BinaryContent originalContent = compiledClass.getContent();
+    final ClassReader reader = new ClassReader(originalContent.getBuffer(), originalContent.getOffset(), originalContent.getLength());
+    final int version = getClassFileVersion(reader);
+    if (IS_INSTRUMENTED_KEY.get(compiledClass, Boolean.FALSE) || !canInstrument(compiledClass, version)) {
+      // do not instrument the same content twice
+      return false;
+    }
+    final ClassWriter writer = new InstrumenterClassWriter(getAsmClassWriterFlags(version), finder);
+    try {
+      final BinaryContent instrumented = instrument(context, compiledClass, reader, writer, finder);
+      if (instrumented != null) {
+        compiledClass.setContent(instrumented);
+        finder.cleanCachedData(compiledClass.getClassName());
+        IS_INSTRUMENTED_KEY.set(compiledClass, Boolean.TRUE);
+        return true;
+      }
+    }
+    catch (Throwable e) {
+      LOG.info(e);
+      final String message = e.getMessage();
+      if (message != null) {
+        context.processMessage(new CompilerMessage(getPresentableName(), BuildMessage.Kind.ERROR, message, compiledClass.getSourceFile().getPath()));
+      }
+      else {
+        context.processMessage(new CompilerMessage(getPresentableName(), e));
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Classes of a chunk are instrumented on several threads if this method returns true. In that case {@link #instrument}
+   * must not use any unsynchronized state shared between classes; the class finder is thread-safe.
+   */
+  protected boolean canInstrumentConcurrently() {
+    return false;
   }
 
   protected abstract boolean canInstrument(CompiledClass compiledClass, int classFileVersion);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2012 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,9 @@ import org.jetbrains.jps.incremental.CompileContext;
 import org.jetbrains.jps.javac.OutputFileObject;
 
 /**
+* Processes class files produced by javac before they are saved. Class files are processed on several threads, but calls of
+* processors which don't implement {@link ConcurrentClassPostProcessor} are serialized.
+*
 * @author Eugene Zhuravlev
 *         Date: 1/21/12
 */
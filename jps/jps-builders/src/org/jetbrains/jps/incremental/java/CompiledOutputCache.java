@@ -0,0 +1,803 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.java;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.IOUtil;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.ModuleChunk;
+import org.jetbrains.jps.api.GlobalOptions;
+import org.jetbrains.jps.builders.BuildTarget;
+import org.jetbrains.jps.builders.java.JavaModuleBuildTargetType;
+import org.jetbrains.jps.builders.java.JavaSourceRootDescriptor;
+import org.jetbrains.jps.cmdline.ProjectDescriptor;
+import org.jetbrains.jps.incremental.*;
+import org.jetbrains.jps.javac.DiagnosticOutputConsumer;
+import org.jetbrains.jps.javac.OutputFileConsumer;
+import org.jetbrains.jps.javac.OutputFileObject;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Local cache of javac output for module chunks. An entry is keyed by a digest of everything the compilation result depends on:
+ * compiler options, contents of all compilable files of the chunk, libraries and SDK on the classpath, and the keys of the module
+ * targets the chunk depends on. Sources are enumerated from the source-to-output mappings of the chunk targets, and their contents
+ * are represented by digests kept in {@link SourceDigestStorage} against the timestamps the build already stores, so only files
+ * whose timestamps have changed are read. Classpath entries are examined once per build.
+ * <p/>
+ * Keys of the targets are stored in the target data directory after each successful compilation and removed
+ * as soon as the target gets dirty files which are not compiled by javac with a known key, so a chunk is never restored against
+ * dependencies whose state is unknown.
+ * <p/>
+ * Restored class files are passed through the same output consumer as freshly compiled ones, so source-to-output mappings,
+ * dependency {@link org.jetbrains.jps.builders.java.dependencyView.Mappings} and instrumentation are updated exactly as after
+ * a real compilation. Warnings reported by javac are stored with the entry and reported again when it is restored.
+ *
+ * @see GlobalOptions#COMPILE_OUTPUT_CACHE_OPTION
+ */
+class CompiledOutputCache {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.java.CompiledOutputCache");
+  private static final GlobalContextKey<CompiledOutputCache> INSTANCE_KEY = GlobalContextKey.create("_compiled_output_cache_");
+  private static final String TARGET_KEY_FILE_NAME = "output-cache.key";
+  private static final String ENTRY_EXTENSION = ".bin";
+  private static final int VERSION = 2;
+  private static final String GENERAL_DIAGNOSTICS_KEY = "";
+  private static final long MAX_SIZE;
+  static {
+    long maxSizeMb = 512;
+    try {
+      maxSizeMb = Long.parseLong(System.getProperty(GlobalOptions.COMPILE_OUTPUT_CACHE_SIZE_OPTION, Long.toString(maxSizeMb)));
+    }
+    catch (NumberFormatException ignored) {
+    }
+    MAX_SIZE = maxSizeMb * 1024 * 1024;
+  }
+
+  private final File myCacheDir;
+  private volatile Set<File> myModuleOutputDirs;
+  private final Map<File, String> myClasspathEntryDigests = new THashMap<File, String>(FileUtil.FILE_HASHING_STRATEGY);
+
+  private CompiledOutputCache(File cacheDir) {
+    myCacheDir = cacheDir;
+  }
+
+  @Nullable
+  static CompiledOutputCache getInstance(CompileContext context) {
+    if (!Boolean.parseBoolean(System.getProperty(GlobalOptions.COMPILE_OUTPUT_CACHE_OPTION))) {
+      return null;
+    }
+    synchronized (INSTANCE_KEY) {
+      CompiledOutputCache cache = INSTANCE_KEY.get(context);
+      if (cache == null) {
+        cache = new CompiledOutputCache(new File(context.getProjectDescriptor().dataManager.getDataPaths().getDataStorageRoot(), "output-cache"));
+        INSTANCE_KEY.set(context, cache);
+      }
+      return cache;
+    }
+  }
+
+  /**
+   * @return digest of the chunk compilation inputs or {@code null} if some of them (e.g. keys of dependencies) are unknown
+   */
+  @Nullable
+  String computeKey(CompileContext context, ModuleChunk chunk, Collection<File> files, List<String> options, Collection<File> classpath,
+                    Collection<File> platformCp) {
+    try {
+      final MessageDigest digest = MessageDigest.getInstance("MD5");
+      update(digest, "version:" + VERSION + ";compiler:" + System.getProperty("java.version") + ";embedded:" + JavaBuilder.USE_EMBEDDED_JAVAC);
+      for (String option : options) {
+        update(digest, option);
+      }
+
+      final ProjectDescriptor pd = context.getProjectDescriptor();
+      final List<ModuleBuildTarget> targets = new ArrayList<ModuleBuildTarget>(chunk.getTargets());
+      Collections.sort(targets, new Comparator<ModuleBuildTarget>() {
+        public int compare(ModuleBuildTarget o1, ModuleBuildTarget o2) {
+          return o1.getId().compareTo(o2.getId());
+        }
+      });
+      final Map<ModuleBuildTarget, List<File>> sources = collectSources(context, targets, files);
+      if (sources == null) {
+        return null;
+      }
+      final Set<File> filesToCompile = new THashSet<File>(files, FileUtil.FILE_HASHING_STRATEGY);
+      for (ModuleBuildTarget target : targets) {
+        update(digest, "target:" + target.getId());
+        final SourceDigestStorage sourceDigests = pd.dataManager.getStorage(target, SourceDigestStorage.PROVIDER);
+        for (File source : sources.get(target)) {
+          // files being compiled get their current timestamps as stamps after the compilation, others keep the stored ones
+          long stamp = filesToCompile.contains(source) ? -1L : pd.timestamps.getStorage().getStamp(source, target);
+          if (stamp < 0) {
+            stamp = source.lastModified();
+          }
+          byte[] sourceDigest = sourceDigests.getDigest(source, stamp);
+          if (sourceDigest == null) {
+            sourceDigest = MessageDigest.getInstance("MD5").digest(FileUtil.loadFileBytes(source));
+            sourceDigests.saveDigest(source, stamp, sourceDigest);
+          }
+          update(digest, FileUtil.toSystemIndependentName(source.getPath()));
+          digest.update(sourceDigest);
+        }
+
+        final Collection<BuildTarget<?>> dependencies = pd.getBuildTargetIndex().getDependencies(target, context);
+        final List<String> dependencyKeys = new ArrayList<String>(dependencies.size());
+        for (BuildTarget<?> dependency : dependencies) {
+          // copied resources don't affect class files produced by javac
+          if (chunk.getTargets().contains(dependency) || dependency instanceof ResourcesTarget) {
+            continue;
+          }
+          final String dependencyKey = dependency instanceof ModuleBuildTarget ? loadTargetKey(pd, dependency) : null;
+          if (dependencyKey == null) {
+            return null;
+          }
+          dependencyKeys.add(dependency.getId() + ":" + dependencyKey);
+        }
+        Collections.sort(dependencyKeys);
+        for (String key : dependencyKeys) {
+          update(digest, key);
+        }
+      }
+
+      final Set<File> moduleOutputs = getModuleOutputDirs(context);
+      // module outputs may be on both classpaths, their contents are represented by keys of the dependencies
+      updateWithClasspath(digest, platformCp, moduleOutputs);
+      updateWithClasspath(digest, classpath, moduleOutputs);
+      return toHexString(digest.digest());
+    }
+    catch (IOException e) {
+      LOG.info("Cannot compute output cache key for " + chunk.getName() + ": " + e.getMessage());
+      return null;
+    }
+    catch (NoSuchAlgorithmException e) {
+      LOG.error(e);
+      return null;
+    }
+  }
+
+  /**
+   * Passes class files produced for {@code files} when they were compiled with the same key to {@code consumer} and replays
+   * the diagnostics reported by that compilation to {@code diagnosticConsumer}. Class files are read from the entry one by one.
+   * @return {@code false} if there is no entry for the key or it doesn't contain some of the files
+   */
+  boolean restore(@NotNull String key, @NotNull Collection<File> files, @NotNull OutputFileConsumer consumer,
+                  @NotNull DiagnosticOutputConsumer diagnosticConsumer) {
+    final File entryFile = getEntryFile(key);
+    final Entry entry;
+    final RandomAccessFile input;
+    synchronized (this) {
+      entry = loadEntry(entryFile);
+      if (entry == null) {
+        return false;
+      }
+      for (File file : files) {
+        if (!entry.myOutputs.containsKey(FileUtil.toSystemIndependentName(file.getPath()))) {
+          return false;
+        }
+      }
+      try {
+        // opened under the lock so that the entry cannot be evicted before it is read
+        input = new RandomAccessFile(entryFile, "r");
+      }
+      catch (IOException e) {
+        LOG.info("Cannot read output cache entry " + entryFile + ": " + e.getMessage());
+        return false;
+      }
+      //noinspection ResultOfMethodCallIgnored
+      entryFile.setLastModified(System.currentTimeMillis());
+    }
+
+    try {
+      try {
+        replayDiagnostics(entry, GENERAL_DIAGNOSTICS_KEY, diagnosticConsumer);
+        for (String line : entry.myOutputLines) {
+          diagnosticConsumer.outputLineAvailable(line);
+        }
+        for (File file : files) {
+          final String sourcePath = FileUtil.toSystemIndependentName(file.getPath());
+          replayDiagnostics(entry, sourcePath, diagnosticConsumer);
+          for (CachedClass aClass : entry.myOutputs.get(sourcePath)) {
+            final File outputFile = new File(aClass.myOutputRoot, aClass.myRelativePath);
+            consumer.save(new OutputFileObject(null, new File(aClass.myOutputRoot), aClass.myRelativePath, outputFile, JavaFileObject.Kind.CLASS,
+                                               aClass.myClassName, Utils.toURI(file.getPath()), new BinaryContent(aClass.loadContent(input))));
+          }
+        }
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      // classes passed to the consumer so far will be overwritten by the compilation
+      LOG.info("Cannot read output cache entry " + entryFile + ": " + e.getMessage());
+      return false;
+    }
+    return true;
+  }
+
+  private static void replayDiagnostics(Entry entry, String sourcePath, DiagnosticOutputConsumer consumer) {
+    final List<CachedDiagnostic> diagnostics = entry.myDiagnostics.get(sourcePath);
+    if (diagnostics != null) {
+      for (CachedDiagnostic diagnostic : diagnostics) {
+        consumer.report(diagnostic);
+      }
+    }
+  }
+
+  @NotNull
+  Recorder createRecorder(@NotNull OutputFileConsumer outputDelegate, @NotNull DiagnosticOutputConsumer diagnosticDelegate) {
+    return new Recorder(outputDelegate, diagnosticDelegate);
+  }
+
+  void store(@NotNull String key, @NotNull Collection<File> files, @NotNull Recorder recorder) {
+    if (recorder.myUnsupportedOutput) {
+      return;
+    }
+    final File entryFile = getEntryFile(key);
+    synchronized (this) {
+      Entry entry = loadEntry(entryFile);
+      if (entry == null) {
+        entry = new Entry();
+      }
+      synchronized (recorder) {
+        for (File file : files) {
+          final String path = FileUtil.toSystemIndependentName(file.getPath());
+          final List<CachedClass> classes = recorder.myEntry.myOutputs.get(path);
+          entry.myOutputs.put(path, classes != null ? classes : Collections.<CachedClass>emptyList());
+          final List<CachedDiagnostic> diagnostics = recorder.myEntry.myDiagnostics.get(path);
+          if (diagnostics != null) {
+            entry.myDiagnostics.put(path, diagnostics);
+          }
+          else {
+            entry.myDiagnostics.remove(path);
+          }
+        }
+        final List<CachedDiagnostic> generalDiagnostics = recorder.myEntry.myDiagnostics.get(GENERAL_DIAGNOSTICS_KEY);
+        if (generalDiagnostics != null) {
+          entry.myDiagnostics.put(GENERAL_DIAGNOSTICS_KEY, generalDiagnostics);
+        }
+        else {
+          entry.myDiagnostics.remove(GENERAL_DIAGNOSTICS_KEY);
+        }
+        entry.myOutputLines.clear();
+        entry.myOutputLines.addAll(recorder.myEntry.myOutputLines);
+      }
+      try {
+        saveEntry(entryFile, entry);
+      }
+      catch (IOException e) {
+        LOG.info("Cannot save output cache entry " + entryFile + ": " + e.getMessage());
+        FileUtil.delete(entryFile);
+        return;
+      }
+      evictOldEntries();
+    }
+  }
+
+  void saveTargetKeys(CompileContext context, ModuleChunk chunk, @NotNull String key) {
+    for (ModuleBuildTarget target : chunk.getTargets()) {
+      final File keyFile = getTargetKeyFile(context.getProjectDescriptor(), target);
+      try {
+        FileUtil.writeToFile(keyFile, key);
+      }
+      catch (IOException e) {
+        LOG.info("Cannot save output cache key for " + target.getPresentableName() + ": " + e.getMessage());
+        FileUtil.delete(keyFile);
+      }
+    }
+  }
+
+  void invalidateTargetKeys(CompileContext context, ModuleChunk chunk) {
+    for (ModuleBuildTarget target : chunk.getTargets()) {
+      FileUtil.delete(getTargetKeyFile(context.getProjectDescriptor(), target));
+    }
+  }
+
+  @Nullable
+  private static String loadTargetKey(ProjectDescriptor pd, BuildTarget<?> target) {
+    final File keyFile = getTargetKeyFile(pd, target);
+    try {
+      return keyFile.exists() ? FileUtil.loadFile(keyFile) : null;
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static File getTargetKeyFile(ProjectDescriptor pd, BuildTarget<?> target) {
+    return new File(pd.dataManager.getDataPaths().getTargetDataRoot(target), TARGET_KEY_FILE_NAME);
+  }
+
+  private Set<File> getModuleOutputDirs(CompileContext context) {
+    Set<File> dirs = myModuleOutputDirs;
+    if (dirs == null) {
+      dirs = new THashSet<File>(FileUtil.FILE_HASHING_STRATEGY);
+      for (JavaModuleBuildTargetType type : JavaModuleBuildTargetType.ALL_TYPES) {
+        for (ModuleBuildTarget target : context.getProjectDescriptor().getBuildTargetIndex().getAllTargets(type)) {
+          dirs.addAll(target.getOutputRoots(context));
+        }
+      }
+      myModuleOutputDirs = dirs;
+    }
+    return dirs;
+  }
+
+  /**
+   * @return compilable sources of each target sorted by path: the ones compiled before according to the source-to-output mappings
+   * and the ones being compiled now, or {@code null} if a file being compiled doesn't belong to the chunk
+   */
+  @Nullable
+  private static Map<ModuleBuildTarget, List<File>> collectSources(CompileContext context, Collection<ModuleBuildTarget> targets,
+                                                                   Collection<File> files) throws IOException {
+    final ProjectDescriptor pd = context.getProjectDescriptor();
+    final FileFilter compilableFilter = BuilderRegistry.getInstance().getModuleBuilderFileFilter();
+    final Map<File, ModuleBuildTarget> sourceTargets = new THashMap<File, ModuleBuildTarget>(FileUtil.FILE_HASHING_STRATEGY);
+    for (ModuleBuildTarget target : targets) {
+      for (String path : pd.dataManager.getSourceToOutputMap(target).getSources()) {
+        final File source = new File(path);
+        if (compilableFilter.accept(source)) {
+          sourceTargets.put(source, target);
+        }
+      }
+    }
+    for (File file : files) {
+      if (!sourceTargets.containsKey(file)) {
+        final JavaSourceRootDescriptor rd = pd.getBuildRootIndex().findJavaRootDescriptor(context, file);
+        if (rd == null || !targets.contains(rd.target)) {
+          return null;
+        }
+        sourceTargets.put(file, rd.target);
+      }
+    }
+
+    final Map<ModuleBuildTarget, List<File>> result = new THashMap<ModuleBuildTarget, List<File>>();
+    for (ModuleBuildTarget target : targets) {
+      result.put(target, new ArrayList<File>());
+    }
+    for (Map.Entry<File, ModuleBuildTarget> entry : sourceTargets.entrySet()) {
+      result.get(entry.getValue()).add(entry.getKey());
+    }
+    for (List<File> sources : result.values()) {
+      Collections.sort(sources, new Comparator<File>() {
+        public int compare(File o1, File o2) {
+          return FileUtil.comparePaths(o1.getPath(), o2.getPath());
+        }
+      });
+    }
+    return result;
+  }
+
+  /**
+   * Libraries and SDK aren't expected to change during a build, so each classpath entry is examined only once
+   */
+  private String getClasspathEntryDigest(File file) throws NoSuchAlgorithmException {
+    synchronized (myClasspathEntryDigests) {
+      final String cached = myClasspathEntryDigests.get(file);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final MessageDigest digest = MessageDigest.getInstance("MD5");
+    updateWithClasspathEntry(digest, file);
+    final String result = FileUtil.toSystemIndependentName(file.getPath()) + ":" + toHexString(digest.digest());
+    synchronized (myClasspathEntryDigests) {
+      myClasspathEntryDigests.put(file, result);
+    }
+    return result;
+  }
+
+  private void updateWithClasspath(MessageDigest digest, Collection<File> classpath, Set<File> moduleOutputs) throws NoSuchAlgorithmException {
+    for (File file : classpath) {
+      if (!moduleOutputs.contains(file)) {
+        update(digest, getClasspathEntryDigest(file));
+      }
+    }
+  }
+
+  private static void updateWithClasspathEntry(MessageDigest digest, File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      Arrays.sort(children);
+      for (File child : children) {
+        updateWithClasspathEntry(digest, child);
+      }
+    }
+    else {
+      update(digest, FileUtil.toSystemIndependentName(file.getPath()) + ":" + file.length() + ":" + file.lastModified());
+    }
+  }
+
+  private static void update(MessageDigest digest, String s) {
+    try {
+      digest.update(s.getBytes("UTF-8"));
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+    digest.update((byte)0);
+  }
+
+  private static String toHexString(byte[] bytes) {
+    final StringBuilder builder = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+    }
+    return builder.toString();
+  }
+
+  private File getEntryFile(String key) {
+    return new File(myCacheDir, key + ENTRY_EXTENSION);
+  }
+
+  /**
+   * Loads the description of the entry; contents of the class files are left in the file and read on demand.
+   */
+  @Nullable
+  private static Entry loadEntry(File entryFile) {
+    if (!entryFile.exists()) {
+      return null;
+    }
+    try {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(entryFile)));
+      try {
+        if (input.readInt() != VERSION) {
+          return null;
+        }
+        final int headerLength = input.readInt();
+        long offset = 2 * 4 + headerLength;
+        final Entry entry = new Entry();
+        int sourceCount = input.readInt();
+        while (sourceCount-- > 0) {
+          final String sourcePath = IOUtil.readString(input);
+          int classCount = input.readInt();
+          final List<CachedClass> classes = new ArrayList<CachedClass>(classCount);
+          while (classCount-- > 0) {
+            final String outputRoot = IOUtil.readString(input);
+            final String relativePath = IOUtil.readString(input);
+            final String className = IOUtil.readString(input);
+            final int length = input.readInt();
+            classes.add(new CachedClass(outputRoot, relativePath, className.isEmpty() ? null : className, offset, length));
+            offset += length;
+          }
+          entry.myOutputs.put(sourcePath, classes);
+        }
+        int diagnosticsSourceCount = input.readInt();
+        while (diagnosticsSourceCount-- > 0) {
+          final String sourcePath = IOUtil.readString(input);
+          int diagnosticCount = input.readInt();
+          final List<CachedDiagnostic> diagnostics = new ArrayList<CachedDiagnostic>(diagnosticCount);
+          while (diagnosticCount-- > 0) {
+            diagnostics.add(CachedDiagnostic.read(input, sourcePath.isEmpty() ? null : sourcePath));
+          }
+          entry.myDiagnostics.put(sourcePath, diagnostics);
+        }
+        int lineCount = input.readInt();
+        while (lineCount-- > 0) {
+          entry.myOutputLines.add(IOUtil.readString(input));
+        }
+        return entry;
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot load output cache entry " + entryFile + ": " + e.getMessage());
+      FileUtil.delete(entryFile);
+      return null;
+    }
+  }
+
+  /**
+   * Writes the description of the entry followed by contents of its class files. Contents of classes restored from the previous
+   * version of the entry are copied from it.
+   */
+  private static void saveEntry(File entryFile, Entry entry) throws IOException {
+    final ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    final DataOutputStream header = new DataOutputStream(headerBytes);
+    header.writeInt(entry.myOutputs.size());
+    for (Map.Entry<String, List<CachedClass>> sourceEntry : entry.myOutputs.entrySet()) {
+      IOUtil.writeString(sourceEntry.getKey(), header);
+      header.writeInt(sourceEntry.getValue().size());
+      for (CachedClass aClass : sourceEntry.getValue()) {
+        IOUtil.writeString(aClass.myOutputRoot, header);
+        IOUtil.writeString(aClass.myRelativePath, header);
+        IOUtil.writeString(aClass.myClassName != null ? aClass.myClassName : "", header);
+        header.writeInt(aClass.myLength);
+      }
+    }
+    header.writeInt(entry.myDiagnostics.size());
+    for (Map.Entry<String, List<CachedDiagnostic>> sourceEntry : entry.myDiagnostics.entrySet()) {
+      IOUtil.writeString(sourceEntry.getKey(), header);
+      header.writeInt(sourceEntry.getValue().size());
+      for (CachedDiagnostic diagnostic : sourceEntry.getValue()) {
+        diagnostic.write(header);
+      }
+    }
+    header.writeInt(entry.myOutputLines.size());
+    for (String line : entry.myOutputLines) {
+      IOUtil.writeString(line, header);
+    }
+    header.close();
+
+    final File tempFile = new File(entryFile.getPath() + ".tmp");
+    FileUtil.createParentDirs(tempFile);
+    final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+    try {
+      output.writeInt(VERSION);
+      output.writeInt(headerBytes.size());
+      headerBytes.writeTo(output);
+      final RandomAccessFile previous = entryFile.exists() ? new RandomAccessFile(entryFile, "r") : null;
+      try {
+        for (List<CachedClass> classes : entry.myOutputs.values()) {
+          for (CachedClass aClass : classes) {
+            output.write(aClass.loadContent(previous));
+          }
+        }
+      }
+      finally {
+        if (previous != null) {
+          previous.close();
+        }
+      }
+    }
+    finally {
+      output.close();
+    }
+    FileUtil.rename(tempFile, entryFile);
+  }
+
+  private void evictOldEntries() {
+    final File[] entries = myCacheDir.listFiles(new FileFilter() {
+      public boolean accept(File file) {
+        return file.getName().endsWith(ENTRY_EXTENSION);
+      }
+    });
+    if (entries == null) {
+      return;
+    }
+    long totalSize = 0;
+    for (File entry : entries) {
+      totalSize += entry.length();
+    }
+    if (totalSize <= MAX_SIZE) {
+      return;
+    }
+
+    Arrays.sort(entries, new Comparator<File>() {
+      public int compare(File o1, File o2) {
+        final long diff = o1.lastModified() - o2.lastModified();
+        return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+      }
+    });
+    // free some more space so that eviction doesn't happen after each compilation
+    final long targetSize = MAX_SIZE * 3 / 4;
+    for (File entry : entries) {
+      if (totalSize <= targetSize) {
+        break;
+      }
+      final long length = entry.length();
+      if (FileUtil.delete(entry)) {
+        totalSize -= length;
+      }
+    }
+  }
+
+  /**
+   * Remembers classes and diagnostics passing through it to store them in the cache if the compilation succeeds.
+   */
+  class Recorder implements OutputFileConsumer, DiagnosticOutputConsumer {
+    private final OutputFileConsumer myOutputDelegate;
+    private final DiagnosticOutputConsumer myDiagnosticDelegate;
+    private final Entry myEntry = new Entry();
+    private volatile boolean myUnsupportedOutput;
+
+    private Recorder(OutputFileConsumer outputDelegate, DiagnosticOutputConsumer diagnosticDelegate) {
+      myOutputDelegate = outputDelegate;
+      myDiagnosticDelegate = diagnosticDelegate;
+    }
+
+    public void save(@NotNull OutputFileObject fileObject) {
+      final File sourceFile = fileObject.getSourceFile();
+      final BinaryContent content = fileObject.getContent();
+      final File outputRoot = fileObject.getOutputRoot();
+      if (fileObject.getKind() != JavaFileObject.Kind.CLASS || sourceFile == null || content == null || outputRoot == null) {
+        myUnsupportedOutput = true;
+      }
+      else {
+        final CachedClass aClass = new CachedClass(outputRoot.getPath(), fileObject.getRelativePath(), fileObject.getClassName(), content.toByteArray());
+        synchronized (this) {
+          getOrCreate(myEntry.myOutputs, FileUtil.toSystemIndependentName(sourceFile.getPath())).add(aClass);
+        }
+      }
+      myOutputDelegate.save(fileObject);
+    }
+
+    public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+      String sourcePath = null;
+      try {
+        final JavaFileObject source = diagnostic.getSource();
+        final File sourceFile = source != null ? Utils.convertToFile(source.toUri()) : null;
+        sourcePath = sourceFile != null ? FileUtil.toSystemIndependentName(sourceFile.getPath()) : null;
+      }
+      catch (Exception e) {
+        LOG.info(e);
+      }
+      final CachedDiagnostic cached = new CachedDiagnostic(diagnostic.getKind(), diagnostic.getMessage(Locale.US), sourcePath,
+                                                           diagnostic.getPosition(), diagnostic.getStartPosition(), diagnostic.getEndPosition(),
+                                                           diagnostic.getLineNumber(), diagnostic.getColumnNumber());
+      synchronized (this) {
+        getOrCreate(myEntry.myDiagnostics, sourcePath != null ? sourcePath : GENERAL_DIAGNOSTICS_KEY).add(cached);
+      }
+      myDiagnosticDelegate.report(diagnostic);
+    }
+
+    public void outputLineAvailable(String line) {
+      synchronized (this) {
+        myEntry.myOutputLines.add(line);
+      }
+      myDiagnosticDelegate.outputLineAvailable(line);
+    }
+
+    public void registerImports(String className, Collection<String> imports, Collection<String> staticImports) {
+      myDiagnosticDelegate.registerImports(className, imports, staticImports);
+    }
+
+    public void javaFileLoaded(File file) {
+      myDiagnosticDelegate.javaFileLoaded(file);
+    }
+  }
+
+  private static <T> List<T> getOrCreate(Map<String, List<T>> map, String key) {
+    List<T> list = map.get(key);
+    if (list == null) {
+      map.put(key, list = new ArrayList<T>());
+    }
+    return list;
+  }
+
+  private static class Entry {
+    private final Map<String, List<CachedClass>> myOutputs = new THashMap<String, List<CachedClass>>();
+    private final Map<String, List<CachedDiagnostic>> myDiagnostics = new THashMap<String, List<CachedDiagnostic>>();
+    private final List<String> myOutputLines = new ArrayList<String>();
+  }
+
+  private static class CachedClass {
+    private final String myOutputRoot;
+    private final String myRelativePath;
+    @Nullable private final String myClassName;
+    private final int myLength;
+    // either the content of a just compiled class or the offset of the content of a class stored in the entry file
+    @Nullable private final byte[] myContent;
+    private final long myOffset;
+
+    private CachedClass(String outputRoot, String relativePath, @Nullable String className, @NotNull byte[] content) {
+      myOutputRoot = outputRoot;
+      myRelativePath = relativePath;
+      myClassName = className;
+      myLength = content.length;
+      myContent = content;
+      myOffset = -1;
+    }
+
+    private CachedClass(String outputRoot, String relativePath, @Nullable String className, long offset, int length) {
+      myOutputRoot = outputRoot;
+      myRelativePath = relativePath;
+      myClassName = className;
+      myLength = length;
+      myContent = null;
+      myOffset = offset;
+    }
+
+    private byte[] loadContent(@Nullable RandomAccessFile entryFile) throws IOException {
+      if (myContent != null) {
+        return myContent;
+      }
+      if (entryFile == null) {
+        throw new IOException("Entry file for " + myRelativePath + " is missing");
+      }
+      final byte[] content = new byte[myLength];
+      entryFile.seek(myOffset);
+      entryFile.readFully(content);
+      return content;
+    }
+  }
+
+  private static class CachedDiagnostic implements Diagnostic<JavaFileObject> {
+    private final Kind myKind;
+    private final String myMessage;
+    @Nullable private final String mySourcePath;
+    private final long myPosition;
+    private final long myStartPosition;
+    private final long myEndPosition;
+    private final long myLineNumber;
+    private final long myColumnNumber;
+
+    private CachedDiagnostic(Kind kind, String message, @Nullable String sourcePath, long position, long startPosition, long endPosition,
+                             long lineNumber, long columnNumber) {
+      myKind = kind;
+      myMessage = message;
+      mySourcePath = sourcePath;
+      myPosition = position;
+      myStartPosition = startPosition;
+      myEndPosition = endPosition;
+      myLineNumber = lineNumber;
+      myColumnNumber = columnNumber;
+    }
+
+    private static CachedDiagnostic read(DataInput input, @Nullable String sourcePath) throws IOException {
+      final Kind kind = Kind.values()[input.readByte()];
+      final String message = IOUtil.readString(input);
+      return new CachedDiagnostic(kind, message, sourcePath, input.readLong(), input.readLong(), input.readLong(), input.readLong(),
+                                  input.readLong());
+    }
+
+    private void write(DataOutput output) throws IOException {
+      output.writeByte(myKind.ordinal());
+      IOUtil.writeString(myMessage, output);
+      output.writeLong(myPosition);
+      output.writeLong(myStartPosition);
+      output.writeLong(myEndPosition);
+      output.writeLong(myLineNumber);
+      output.writeLong(myColumnNumber);
+    }
+
+    public Kind getKind() {
+      return myKind;
+    }
+
+    public JavaFileObject getSource() {
+      return mySourcePath != null ? new SimpleJavaFileObject(Utils.toURI(mySourcePath), JavaFileObject.Kind.SOURCE) {} : null;
+    }
+
+    public long getPosition() {
+      return myPosition;
+    }
+
+    public long getStartPosition() {
+      return myStartPosition;
+    }
+
+    public long getEndPosition() {
+      return myEndPosition;
+    }
+
+    public long getLineNumber() {
+      return myLineNumber;
+    }
+
+    public long getColumnNumber() {
+      return myColumnNumber;
+    }
+
+    public String getCode() {
+      return null;
+    }
+
+    public String getMessage(Locale locale) {
+      return myMessage;
+    }
+  }
+}
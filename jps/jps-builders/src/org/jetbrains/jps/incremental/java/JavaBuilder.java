@@ -20,11 +20,12 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.util.Key;
 import com.intellij.openapi.util.Pair;
+import com.intellij.openapi.util.Ref;
 import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.SystemProperties;
-import com.intellij.util.concurrency.SequentialTaskExecutor;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import gnu.trove.THashMap;
 import gnu.trove.THashSet;
 import org.jetbrains.annotations.NotNull;
@@ -102,6 +103,7 @@ public class JavaBuilder extends ModuleLevelBuilder {
     };
 
   private final Executor myTaskRunner;
+  private final Object myClassProcessorsLock = new Object();
   private static final List<ClassPostProcessor> ourClassProcessors = new ArrayList<ClassPostProcessor>();
   private static final Set<JpsModuleType<?>> ourCompilableModuleTypes;
   static {
@@ -117,7 +119,8 @@ public class JavaBuilder extends ModuleLevelBuilder {
 
   public JavaBuilder(Executor tasksExecutor) {
     super(BuilderCategory.TRANSLATOR);
-    myTaskRunner = new SequentialTaskExecutor(tasksExecutor);
+    // class files produced by javac are analyzed and written to disk independently of each other
+    myTaskRunner = new BoundedTaskExecutor(tasksExecutor, Math.max(2, Runtime.getRuntime().availableProcessors()));
     //add here class processors in the sequence they should be executed
   }
 
@@ -168,9 +171,11 @@ public class JavaBuilder extends ModuleLevelBuilder {
                           @NotNull OutputConsumer outputConsumer) throws ProjectBuildException, IOException {
     try {
       final Set<File> filesToCompile = new THashSet<File>(FileUtil.FILE_HASHING_STRATEGY);
+      final Ref<Boolean> hasDirtyFiles = Ref.create(dirtyFilesHolder.hasRemovedFiles());
 
       dirtyFilesHolder.processDirtyFiles(new FileProcessor<JavaSourceRootDescriptor, ModuleBuildTarget>() {
         public boolean apply(ModuleBuildTarget target, File file, JavaSourceRootDescriptor descriptor) throws IOException {
+          hasDirtyFiles.set(Boolean.TRUE);
           if (JAVA_SOURCES_FILTER.accept(file) && ourCompilableModuleTypes.contains(target.getModule().getModuleType())) {
             filesToCompile.add(file);
           }
@@ -178,6 +183,12 @@ public class JavaBuilder extends ModuleLevelBuilder {
         }
       });
 
+      final CompiledOutputCache outputCache = CompiledOutputCache.getInstance(context);
+      if (outputCache != null && hasDirtyFiles.get()) {
+        // the key will be saved again if the chunk is successfully compiled
+        outputCache.invalidateTargetKeys(context, chunk);
+      }
+
       if (JavaBuilderUtil.isCompileJavaIncrementally(context)) {
         final ProjectBuilderLogger logger = context.getLoggingManager().getProjectBuilderLogger();
         if (logger.isEnabled()) {
@@ -318,7 +329,7 @@ public class JavaBuilder extends ModuleLevelBuilder {
     Collection<File> classpath,
     Collection<File> platformCp,
     Collection<File> sourcePath,
-    DiagnosticOutputConsumer diagnosticSink,
+    DiagnosticSink diagnosticSink,
     final OutputFileConsumer outputSink) throws Exception {
 
     final TasksCounter counter = new TasksCounter();
@@ -368,18 +379,31 @@ public class JavaBuilder extends ModuleLevelBuilder {
     if (LOG.isDebugEnabled()) {
       LOG.debug("Compiling chunk [" + chunk.getName() + "] with options: \"" + StringUtil.join(options, " ") + "\"");
     }
+    final Runnable span = BuildTrace.startSpan(BuildTrace.COMPILER, "javac [" + chunk.getName() + "]");
     try {
+      final boolean useEclipse = useEclipseCompiler(context);
+      final CompiledOutputCache outputCache = useEclipse || profile != null && profile.isEnabled() ? null : CompiledOutputCache.getInstance(context);
+      final String cacheKey = outputCache != null ? outputCache.computeKey(context, chunk, files, options, classpath, platformCp) : null;
+      if (cacheKey != null && outputCache.restore(cacheKey, files, classesConsumer, diagnosticSink)) {
+        LOG.info("Restored output of " + files.size() + " java files from the output cache; module: " + chunk.getName());
+        context.processMessage(new ProgressMessage("Restored compiled classes of " + chunk.getName() + " from the output cache"));
+        outputCache.saveTargetKeys(context, chunk, cacheKey);
+        return true;
+      }
+      final CompiledOutputCache.Recorder recorder = cacheKey != null ? outputCache.createRecorder(classesConsumer, diagnosticSink) : null;
+      final OutputFileConsumer compilerOutputConsumer = recorder != null ? recorder : classesConsumer;
+      final DiagnosticOutputConsumer compilerDiagnosticConsumer = recorder != null ? recorder : diagnosticSink;
+
       final boolean rc;
       if (USE_EMBEDDED_JAVAC) {
-        final boolean useEclipse = useEclipseCompiler(context);
         rc = JavacMain.compile(
-          options, files, classpath, platformCp, sourcePath, outs, diagnosticSink, classesConsumer, context.getCancelStatus(), useEclipse
+          options, files, classpath, platformCp, sourcePath, outs, compilerDiagnosticConsumer, compilerOutputConsumer, context.getCancelStatus(), useEclipse
         );
       }
       else {
         final JavacServerClient client = ensureJavacServerLaunched(context);
         final RequestFuture<JavacServerResponseHandler> future = client.sendCompileRequest(
-          options, files, classpath, platformCp, sourcePath, outs, diagnosticSink, classesConsumer
+          options, files, classpath, platformCp, sourcePath, outs, compilerDiagnosticConsumer, compilerOutputConsumer
         );
         while (!future.waitFor(100L, TimeUnit.MILLISECONDS)) {
           if (context.getCancelStatus().isCanceled()) {
@@ -388,10 +412,15 @@ public class JavaBuilder extends ModuleLevelBuilder {
         }
         rc = future.getMessageHandler().isTerminatedSuccessfully();
       }
+      if (rc && recorder != null && diagnosticSink.getErrorCount() == 0) {
+        outputCache.store(cacheKey, files, recorder);
+        outputCache.saveTargetKeys(context, chunk, cacheKey);
+      }
       return rc;
     }
     finally {
       counter.await();
+      span.run();
     }
   }
 
@@ -922,7 +951,14 @@ public class JavaBuilder extends ModuleLevelBuilder {
         public void run() {
           try {
             for (ClassPostProcessor processor : ourClassProcessors) {
-              processor.process(myContext, fileObject);
+              if (processor instanceof ConcurrentClassPostProcessor) {
+                processor.process(myContext, fileObject);
+              }
+              else {
+                synchronized (myClassProcessorsLock) {
+                  processor.process(myContext, fileObject);
+                }
+              }
             }
           }
           finally {
@@ -129,7 +129,9 @@ class OutputFilesSink implements OutputFileConsumer {
 
     final File source = fileObject.getSourceFile();
     if (!isTemp && source != null) {
-      mySuccessfullyCompiled.add(source);
+      synchronized (mySuccessfullyCompiled) {
+        mySuccessfullyCompiled.add(source);
+      }
       //final String className = fileObject.getClassName();
       //if (className != null) {
       //  myContext.processMessage(new ProgressMessage("Compiled " + className));
@@ -138,9 +140,13 @@ class OutputFilesSink implements OutputFileConsumer {
   }
 
   public void markError(@NotNull final File sourceFile) {
-    mySuccessfullyCompiled.remove(sourceFile);
+    synchronized (mySuccessfullyCompiled) {
+      mySuccessfullyCompiled.remove(sourceFile);
+    }
   }
   public void markError(@NotNull final Set<File> problematic) {
-    mySuccessfullyCompiled.removeAll(problematic);
+    synchronized (mySuccessfullyCompiled) {
+      mySuccessfullyCompiled.removeAll(problematic);
+    }
   }
 }
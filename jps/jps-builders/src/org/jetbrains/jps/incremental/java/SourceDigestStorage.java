@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.java;
+
+import com.intellij.util.io.DataExternalizer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.jps.builders.storage.StorageProvider;
+import org.jetbrains.jps.incremental.storage.AbstractStateStorage;
+import org.jetbrains.jps.incremental.storage.FileKeyDescriptor;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Content digests of the sources of a module target, each one valid for the timestamp the file had when it was computed.
+ * A file is read again only if its timestamp differs from the stored one.
+ *
+ * @see CompiledOutputCache
+ */
+class SourceDigestStorage extends AbstractStateStorage<File, SourceDigestStorage.Digest> {
+  static final StorageProvider<SourceDigestStorage> PROVIDER = new StorageProvider<SourceDigestStorage>() {
+    @NotNull
+    @Override
+    public SourceDigestStorage createStorage(File targetDataDir) throws IOException {
+      return new SourceDigestStorage(new File(targetDataDir, "src-digest" + File.separator + "data"));
+    }
+  };
+
+  private SourceDigestStorage(File storePath) throws IOException {
+    super(storePath, new FileKeyDescriptor(), new DigestExternalizer());
+  }
+
+  @Nullable
+  byte[] getDigest(File file, long stamp) throws IOException {
+    final Digest digest = getState(file);
+    return digest != null && digest.myStamp == stamp ? digest.myDigest : null;
+  }
+
+  void saveDigest(File file, long stamp, byte[] digest) throws IOException {
+    update(file, new Digest(stamp, digest));
+  }
+
+  static class Digest {
+    private final long myStamp;
+    private final byte[] myDigest;
+
+    private Digest(long stamp, byte[] digest) {
+      myStamp = stamp;
+      myDigest = digest;
+    }
+  }
+
+  private static class DigestExternalizer implements DataExternalizer<Digest> {
+    public void save(DataOutput out, Digest value) throws IOException {
+      out.writeLong(value.myStamp);
+      out.writeInt(value.myDigest.length);
+      out.write(value.myDigest);
+    }
+
+    public Digest read(DataInput in) throws IOException {
+      final long stamp = in.readLong();
+      final byte[] digest = new byte[in.readInt()];
+      in.readFully(digest);
+      return new Digest(stamp, digest);
+    }
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.incremental.resources;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.jps.api.GlobalOptions;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copies resource files to the output directories. The content is transferred between file channels, so it doesn't pass through
+ * java heap; the copying is skipped if the output file already has the same content. If {@link GlobalOptions#RESOURCES_HARD_LINKS_OPTION}
+ * is set, output files are created as hard links to the source files where the file system allows it.
+ */
+class ResourceFileCopier {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.resources.ResourceFileCopier");
+  private static final boolean USE_HARD_LINKS = Boolean.parseBoolean(System.getProperty(GlobalOptions.RESOURCES_HARD_LINKS_OPTION, "false"));
+  private static final int COMPARE_BUFFER_SIZE = 8192;
+  private static final Method ourToPath;
+  private static final Method ourCreateLink;
+
+  static {
+    Method toPath = null;
+    Method createLink = null;
+    if (USE_HARD_LINKS) {
+      try {
+        toPath = File.class.getMethod("toPath");
+        Class<?> pathClass = Class.forName("java.nio.file.Path");
+        createLink = Class.forName("java.nio.file.Files").getMethod("createLink", pathClass, pathClass);
+      }
+      catch (Exception e) {
+        LOG.info("Hard links aren't supported by the current JRE, resources will be copied: " + e.getMessage());
+        toPath = null;
+        createLink = null;
+      }
+    }
+    ourToPath = toPath;
+    ourCreateLink = createLink;
+  }
+
+  private ResourceFileCopier() {
+  }
+
+  public static void copy(@NotNull File from, @NotNull File to) throws IOException {
+    if (to.length() == from.length() && hasSameContent(from, to)) {
+      return;
+    }
+
+    //the output file may be a hard link to the source file, so it must not be overwritten in place
+    FileUtil.delete(to);
+    FileUtil.createParentDirs(to);
+    if (ourCreateLink != null && createHardLink(from, to)) {
+      return;
+    }
+
+    final FileInputStream input = new FileInputStream(from);
+    try {
+      final FileOutputStream output = new FileOutputStream(to);
+      try {
+        final FileChannel fromChannel = input.getChannel();
+        final FileChannel toChannel = output.getChannel();
+        final long size = fromChannel.size();
+        long position = 0;
+        while (position < size) {
+          final long transferred = fromChannel.transferTo(position, size - position, toChannel);
+          if (transferred <= 0) {
+            break;
+          }
+          position += transferred;
+        }
+      }
+      finally {
+        output.close();
+      }
+    }
+    finally {
+      input.close();
+    }
+  }
+
+  private static boolean createHardLink(File from, File to) {
+    try {
+      ourCreateLink.invoke(null, ourToPath.invoke(to), ourToPath.invoke(from));
+      return true;
+    }
+    catch (Exception e) {
+      LOG.debug("Cannot create hard link " + to + " to " + from, e);
+      return false;
+    }
+  }
+
+  private static boolean hasSameContent(File file1, File file2) {
+    if (!file2.isFile()) {
+      return false;
+    }
+    try {
+      final InputStream input1 = new FileInputStream(file1);
+      try {
+        final InputStream input2 = new FileInputStream(file2);
+        try {
+          final byte[] buffer1 = new byte[COMPARE_BUFFER_SIZE];
+          final byte[] buffer2 = new byte[COMPARE_BUFFER_SIZE];
+          while (true) {
+            final int read1 = read(input1, buffer1);
+            final int read2 = read(input2, buffer2);
+            if (read1 != read2) {
+              return false;
+            }
+            for (int i = 0; i < read1; i++) {
+              if (buffer1[i] != buffer2[i]) {
+                return false;
+              }
+            }
+            if (read1 < COMPARE_BUFFER_SIZE) {
+              return true;
+            }
+          }
+        }
+        finally {
+          input2.close();
+        }
+      }
+      finally {
+        input1.close();
+      }
+    }
+    catch (IOException e) {
+      return false;
+    }
+  }
+
+  private static int read(InputStream input, byte[] buffer) throws IOException {
+    int count = 0;
+    while (count < buffer.length) {
+      final int read = input.read(buffer, count, buffer.length - count);
+      if (read < 0) {
+        break;
+      }
+      count += read;
+    }
+    return count;
+  }
+}
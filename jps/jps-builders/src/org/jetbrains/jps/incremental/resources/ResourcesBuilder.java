@@ -17,7 +17,9 @@ package org.jetbrains.jps.incremental.resources;
 
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.builders.BuildOutputConsumer;
 import org.jetbrains.jps.builders.DirtyFilesHolder;
 import org.jetbrains.jps.builders.FileProcessor;
@@ -31,10 +33,14 @@ import org.jetbrains.jps.incremental.messages.BuildMessage;
 import org.jetbrains.jps.incremental.messages.CompilerMessage;
 import org.jetbrains.jps.incremental.messages.ProgressMessage;
 import org.jetbrains.jps.model.module.JpsModule;
+import org.jetbrains.jps.service.SharedThreadPool;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * @author Eugene Zhuravlev
@@ -44,6 +50,7 @@ public class ResourcesBuilder extends TargetBuilder<ResourceRootDescriptor, Reso
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.resourses.ResourcesBuilder");
   public static final String BUILDER_NAME = "Resource Compiler";
   private static final List<StandardResourceBuilderEnabler> ourEnablers = Collections.synchronizedList(new ArrayList<StandardResourceBuilderEnabler>());
+  private static final BoundedTaskExecutor ourCopyExecutor = new BoundedTaskExecutor(SharedThreadPool.getInstance(), Runtime.getRuntime().availableProcessors());
 
   public ResourcesBuilder() {
     super(ResourcesTargetType.ALL_TYPES);
@@ -68,6 +75,7 @@ public class ResourcesBuilder extends TargetBuilder<ResourceRootDescriptor, Reso
     }
 
     try {
+      final List<CopyTask> tasks = new ArrayList<CopyTask>();
       holder.processDirtyFiles(new FileProcessor<ResourceRootDescriptor, ResourcesTarget>() {
         private final Map<ResourceRootDescriptor, Boolean> mySkippedRoots = new HashMap<ResourceRootDescriptor, Boolean>();
         public boolean apply(ResourcesTarget target, final File file, final ResourceRootDescriptor sourceRoot) throws IOException {
@@ -80,17 +88,9 @@ public class ResourcesBuilder extends TargetBuilder<ResourceRootDescriptor, Reso
           if (isSkipped.booleanValue()) {
             return true;
           }
-          try {
-            copyResource(context, sourceRoot, file, outputConsumer);
-          }
-          catch (IOException e) {
-            LOG.info(e);
-            context.processMessage(
-              new CompilerMessage(
-                "resources", BuildMessage.Kind.ERROR, e.getMessage(), FileUtil.toSystemIndependentName(file.getPath())
-              )
-            );
-            return false;
+          final File targetFile = getTargetFile(sourceRoot, file);
+          if (targetFile != null) {
+            tasks.add(new CopyTask(file, targetFile));
           }
           return !context.getCancelStatus().isCanceled();
         }
@@ -98,6 +98,12 @@ public class ResourcesBuilder extends TargetBuilder<ResourceRootDescriptor, Reso
 
       context.checkCanceled();
 
+      if (!tasks.isEmpty()) {
+        context.processMessage(new ProgressMessage("Copying resources... [" + target.getModule().getName() + "]"));
+        copyResources(context, tasks, outputConsumer);
+        context.checkCanceled();
+      }
+
       context.processMessage(new ProgressMessage(""));
     }
     catch(ProjectBuildException e) {
@@ -119,10 +125,11 @@ public class ResourcesBuilder extends TargetBuilder<ResourceRootDescriptor, Reso
     return true;
   }
 
-  private static void copyResource(CompileContext context, ResourceRootDescriptor rd, File file, BuildOutputConsumer outputConsumer) throws IOException {
+  @Nullable
+  private static File getTargetFile(ResourceRootDescriptor rd, File file) {
     final File outputRoot = rd.getTarget().getOutputDir();
     if (outputRoot == null) {
-      return;
+      return null;
     }
     final String sourceRootPath = FileUtil.toSystemIndependentName(rd.getRootFile().getAbsolutePath());
     final String relativePath = FileUtil.getRelativePath(sourceRootPath, FileUtil.toSystemIndependentName(file.getPath()), '/');
@@ -134,17 +141,56 @@ public class ResourcesBuilder extends TargetBuilder<ResourceRootDescriptor, Reso
       targetPath.append('/').append(prefix.replace('.', '/'));
     }
     targetPath.append('/').append(relativePath);
+    return new File(targetPath.toString());
+  }
 
-    context.processMessage(new ProgressMessage("Copying resources... [" + rd.getTarget().getModule().getName() + "]"));
-
-    final String outputPath = targetPath.toString();
-    final File targetFile = new File(outputPath);
-    FileUtil.copyContent(file, targetFile);
-    try {
-      outputConsumer.registerOutputFile(targetFile, Collections.singletonList(file.getPath()));
+  /**
+   * Copies files in parallel; outputs are registered in the calling thread in the order of tasks
+   */
+  private static void copyResources(final CompileContext context, List<CopyTask> tasks, BuildOutputConsumer outputConsumer) {
+    final List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(tasks.size());
+    for (final CopyTask task : tasks) {
+      futures.add(ourCopyExecutor.submit(new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          if (context.getCancelStatus().isCanceled()) {
+            return Boolean.FALSE;
+          }
+          ResourceFileCopier.copy(task.mySource, task.myTarget);
+          return Boolean.TRUE;
+        }
+      }));
     }
-    catch (Exception e) {
-      context.processMessage(new CompilerMessage(BUILDER_NAME, e));
+
+    for (int i = 0; i < tasks.size(); i++) {
+      final CopyTask task = tasks.get(i);
+      try {
+        if (!futures.get(i).get()) {
+          continue;
+        }
+      }
+      catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+      catch (ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (!(cause instanceof IOException)) {
+          throw new RuntimeException(cause);
+        }
+        LOG.info(cause);
+        context.processMessage(
+          new CompilerMessage(
+            "resources", BuildMessage.Kind.ERROR, cause.getMessage(), FileUtil.toSystemIndependentName(task.mySource.getPath())
+          )
+        );
+        continue;
+      }
+      try {
+        outputConsumer.registerOutputFile(task.myTarget, Collections.singletonList(task.mySource.getPath()));
+      }
+      catch (Exception e) {
+        context.processMessage(new CompilerMessage(BUILDER_NAME, e));
+      }
     }
   }
 
@@ -153,4 +199,13 @@ public class ResourcesBuilder extends TargetBuilder<ResourceRootDescriptor, Reso
     return "Resource Compiler";
   }
 
+  private static class CopyTask {
+    private final File mySource;
+    private final File myTarget;
+
+    private CopyTask(File source, File target) {
+      mySource = source;
+      myTarget = target;
+    }
+  }
 }
@@ -28,6 +28,7 @@ import org.jetbrains.jps.builders.storage.BuildDataPaths;
 import org.jetbrains.jps.builders.storage.SourceToOutputMapping;
 import org.jetbrains.jps.builders.storage.StorageProvider;
 import org.jetbrains.jps.cmdline.BuildRunner;
+import org.jetbrains.jps.incremental.BuildTrace;
 import org.jetbrains.jps.incremental.IncProjectBuilder;
 
 import java.io.*;
@@ -41,7 +42,7 @@ import java.util.concurrent.ConcurrentMap;
  *         Date: 10/7/11
  */
 public class BuildDataManager implements StorageOwner {
-  private static final int VERSION = 19;
+  private static final int VERSION = 20;
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.storage.BuildDataManager");
   private static final String SRC_TO_FORM_STORAGE = "src-form";
   private static final String MAPPINGS_STORAGE = "mappings";
@@ -199,16 +200,22 @@ public class BuildDataManager implements StorageOwner {
   }
 
   public void flush(boolean memoryCachesOnly) {
-    myTargetStoragesOwner.flush(memoryCachesOnly);
-    for (AtomicNotNullLazyValue<SourceToOutputMappingImpl> mapping : mySourceToOutputs.values()) {
-      mapping.getValue().flush(memoryCachesOnly);
-    }
-    mySrcToFormMap.flush(memoryCachesOnly);
-    final Mappings mappings = myMappings;
-    if (mappings != null) {
-      synchronized (mappings) {
-        mappings.flush(memoryCachesOnly);
+    final Runnable span = BuildTrace.startSpan(BuildTrace.STORAGE, memoryCachesOnly ? "flush memory caches" : "flush storages");
+    try {
+      myTargetStoragesOwner.flush(memoryCachesOnly);
+      for (AtomicNotNullLazyValue<SourceToOutputMappingImpl> mapping : mySourceToOutputs.values()) {
+        mapping.getValue().flush(memoryCachesOnly);
       }
+      mySrcToFormMap.flush(memoryCachesOnly);
+      final Mappings mappings = myMappings;
+      if (mappings != null) {
+        synchronized (mappings) {
+          mappings.flush(memoryCachesOnly);
+        }
+      }
+    }
+    finally {
+      span.run();
     }
   }
 
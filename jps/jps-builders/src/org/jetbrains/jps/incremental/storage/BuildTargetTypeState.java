@@ -33,19 +33,27 @@ import java.util.concurrent.ConcurrentMap;
  */
 public class BuildTargetTypeState {
   private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.incremental.storage.BuildTargetTypeState");
+  // build times are kept apart from targets.dat, so the format of targets.dat stays readable by older builds
+  private static final String BUILD_TIMES_FILE_NAME = "build-times.dat";
   private final Map<BuildTarget<?>, Integer> myTargetIds;
+  private final Map<BuildTarget<?>, Long> myAverageBuildTimes;
   private final ConcurrentMap<BuildTarget<?>, BuildTargetConfiguration> myConfigurations;
   private final BuildTargetType<?> myTargetType;
   private final BuildTargetsState myTargetsState;
   private final File myTargetsFile;
+  private final File myBuildTimesFile;
 
   public BuildTargetTypeState(BuildTargetType<?> targetType, BuildTargetsState state) {
     myTargetType = targetType;
     myTargetsState = state;
-    myTargetsFile = new File(state.getDataPaths().getTargetTypeDataRoot(targetType), "targets.dat");
+    final File dataRoot = state.getDataPaths().getTargetTypeDataRoot(targetType);
+    myTargetsFile = new File(dataRoot, "targets.dat");
+    myBuildTimesFile = new File(dataRoot, BUILD_TIMES_FILE_NAME);
     myConfigurations = new ConcurrentHashMap<BuildTarget<?>, BuildTargetConfiguration>();
     myTargetIds = new HashMap<BuildTarget<?>, Integer>();
+    myAverageBuildTimes = new HashMap<BuildTarget<?>, Long>();
     load();
+    loadBuildTimes();
   }
 
   private boolean load() {
@@ -102,6 +110,58 @@ public class BuildTargetTypeState {
     catch (IOException e) {
       LOG.info("Cannot save " + myTargetType.getTypeId() + " targets data: " + e.getMessage(), e);
     }
+    saveBuildTimes();
+  }
+
+  private void loadBuildTimes() {
+    if (!myBuildTimesFile.exists()) {
+      return;
+    }
+
+    try {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(myBuildTimesFile)));
+      try {
+        int size = input.readInt();
+        BuildTargetLoader<?> loader = myTargetType.createLoader(myTargetsState.getModel());
+        while (size-- > 0) {
+          String stringId = IOUtil.readString(input);
+          long averageBuildTime = input.readLong();
+          BuildTarget<?> target = loader.createTarget(stringId);
+          if (target != null) {
+            myAverageBuildTimes.put(target, averageBuildTime);
+          }
+        }
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot load " + myTargetType.getTypeId() + " build times: " + e.getMessage(), e);
+    }
+  }
+
+  private void saveBuildTimes() {
+    if (myAverageBuildTimes.isEmpty()) {
+      FileUtil.delete(myBuildTimesFile);
+      return;
+    }
+    try {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(myBuildTimesFile)));
+      try {
+        output.writeInt(myAverageBuildTimes.size());
+        for (Map.Entry<BuildTarget<?>, Long> entry : myAverageBuildTimes.entrySet()) {
+          IOUtil.writeString(entry.getKey().getId(), output);
+          output.writeLong(entry.getValue());
+        }
+      }
+      finally {
+        output.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save " + myTargetType.getTypeId() + " build times: " + e.getMessage(), e);
+    }
   }
 
   public synchronized int getTargetId(BuildTarget<?> target) {
@@ -111,6 +171,20 @@ public class BuildTargetTypeState {
     return myTargetIds.get(target);
   }
 
+  /**
+   * @return average time in milliseconds the target took to build in previous builds or -1 if it is unknown
+   */
+  public synchronized long getAverageBuildTime(BuildTarget<?> target) {
+    Long time = myAverageBuildTimes.get(target);
+    return time != null ? time : -1;
+  }
+
+  public synchronized void registerBuildTime(BuildTarget<?> target, long time) {
+    getTargetId(target);
+    Long oldTime = myAverageBuildTimes.get(target);
+    myAverageBuildTimes.put(target, oldTime != null ? (oldTime + time) / 2 : time);
+  }
+
   public BuildTargetConfiguration getConfiguration(BuildTarget<?> target) {
     BuildTargetConfiguration configuration = myConfigurations.get(target);
     if (configuration == null) {
@@ -92,6 +92,17 @@ public class BuildTargetsState {
     return getTypeState(target.getTargetType()).getTargetId(target);
   }
 
+  /**
+   * @return average time in milliseconds the target took to build in previous builds or -1 if it is unknown
+   */
+  public long getAverageBuildTime(@NotNull BuildTarget<?> target) {
+    return getTypeState(target.getTargetType()).getAverageBuildTime(target);
+  }
+
+  public void registerBuildTime(@NotNull BuildTarget<?> target, long time) {
+    getTypeState(target.getTargetType()).registerBuildTime(target, time);
+  }
+
   public BuildTargetConfiguration getTargetConfiguration(@NotNull BuildTarget<?> target) {
     return getTypeState(target.getTargetType()).getConfiguration(target);
   }
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.javac;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.IOUtil;
+import org.jetbrains.annotations.TestOnly;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Remembers which packages are contained in classpath jars. The index is shared by all compilations in the process and an entry is
+ * recomputed only if the jar file was changed, so javac file managers don't need to open jars which cannot contain
+ * the requested classes.
+ * <p/>
+ * Each file manager should use its own instance of {@link Snapshot}: it checks timestamps of a jar only once.
+ * <p/>
+ * The build process exits after each build, so the index is {@link #load loaded} from the project data directory before the build
+ * and {@link #save saved} after it. Entries loaded from the file are verified against jar timestamps just like the ones computed
+ * in the current process.
+ */
+public class JarPackagesIndex {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.javac.JarPackagesIndex");
+  public static final String FILE_NAME = "jar-packages.dat";
+  private static final int VERSION = 1;
+  private static final Map<File, JarPackages> ourJars = new ConcurrentHashMap<File, JarPackages>();
+  private static volatile boolean ourModified;
+
+  private JarPackagesIndex() {
+  }
+
+  /**
+   * @return packages (in the form of 'a/b/c') which directly contain files of the jar or {@code null} if the jar cannot be read
+   */
+  private static Set<String> getPackages(File jar) {
+    final long timestamp = jar.lastModified();
+    final long length = jar.length();
+    JarPackages packages = ourJars.get(jar);
+    if (packages == null || packages.myTimestamp != timestamp || packages.myLength != length) {
+      final Set<String> packageNames = readPackages(jar);
+      if (packageNames == null) {
+        ourJars.remove(jar);
+        return null;
+      }
+      packages = new JarPackages(timestamp, length, packageNames);
+      ourJars.put(jar, packages);
+      ourModified = true;
+    }
+    return packages.myPackages;
+  }
+
+  /**
+   * Adds entries saved by the previous builds to the index, entries already computed in this process are kept
+   */
+  public static void load(File file) {
+    if (!file.exists()) {
+      return;
+    }
+    try {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      try {
+        if (input.readInt() != VERSION) {
+          return;
+        }
+        int jarCount = input.readInt();
+        while (jarCount-- > 0) {
+          final File jar = new File(IOUtil.readString(input));
+          final long timestamp = input.readLong();
+          final long length = input.readLong();
+          int packageCount = input.readInt();
+          final Set<String> packages = new HashSet<String>();
+          while (packageCount-- > 0) {
+            packages.add(IOUtil.readString(input));
+          }
+          if (!ourJars.containsKey(jar)) {
+            ourJars.put(jar, new JarPackages(timestamp, length, packages));
+          }
+        }
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot load jar packages index from " + file + ": " + e.getMessage());
+      FileUtil.delete(file);
+    }
+  }
+
+  /**
+   * Saves the index if it has changed since it was loaded, entries of jars which no longer exist are dropped
+   */
+  public static void save(File file) {
+    if (!ourModified) {
+      return;
+    }
+    ourModified = false;
+    final File tempFile = new File(file.getPath() + ".tmp");
+    try {
+      FileUtil.createParentDirs(tempFile);
+      final List<Map.Entry<File, JarPackages>> entries = new ArrayList<Map.Entry<File, JarPackages>>();
+      for (Map.Entry<File, JarPackages> entry : ourJars.entrySet()) {
+        if (entry.getKey().isFile()) {
+          entries.add(entry);
+        }
+      }
+      final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      try {
+        output.writeInt(VERSION);
+        output.writeInt(entries.size());
+        for (Map.Entry<File, JarPackages> entry : entries) {
+          final JarPackages packages = entry.getValue();
+          IOUtil.writeString(entry.getKey().getPath(), output);
+          output.writeLong(packages.myTimestamp);
+          output.writeLong(packages.myLength);
+          output.writeInt(packages.myPackages.size());
+          for (String aPackage : packages.myPackages) {
+            IOUtil.writeString(aPackage, output);
+          }
+        }
+      }
+      finally {
+        output.close();
+      }
+      FileUtil.rename(tempFile, file);
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save jar packages index to " + file + ": " + e.getMessage());
+      FileUtil.delete(tempFile);
+    }
+  }
+
+  @TestOnly
+  static void clear() {
+    ourJars.clear();
+    ourModified = false;
+  }
+
+  private static Set<String> readPackages(File jar) {
+    final Set<String> packages = new HashSet<String>();
+    try {
+      final ZipFile zipFile = new ZipFile(jar);
+      try {
+        final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+        while (entries.hasMoreElements()) {
+          final ZipEntry entry = entries.nextElement();
+          if (!entry.isDirectory()) {
+            final String name = entry.getName();
+            final int slash = name.lastIndexOf('/');
+            packages.add(slash >= 0 ? name.substring(0, slash) : "");
+          }
+        }
+      }
+      finally {
+        zipFile.close();
+      }
+    }
+    catch (IOException e) {
+      return null;
+    }
+    return packages;
+  }
+
+  static class Snapshot {
+    private final Map<File, Set<String>> myPackages = new HashMap<File, Set<String>>();
+
+    /**
+     * @param packagePath name of the package in the form of 'a/b/c'
+     * @return {@code false} if the jar doesn't contain files in the package (or in its subpackages if {@code recurse} is {@code true})
+     */
+    boolean mayContain(File jar, String packagePath, boolean recurse) {
+      final Set<String> packages;
+      if (myPackages.containsKey(jar)) {
+        packages = myPackages.get(jar);
+      }
+      else {
+        packages = getPackages(jar);
+        myPackages.put(jar, packages);
+      }
+      if (packages == null || packages.contains(packagePath)) {
+        return true;
+      }
+      if (recurse) {
+        if (packagePath.isEmpty()) {
+          return !packages.isEmpty();
+        }
+        final String prefix = packagePath + "/";
+        for (String aPackage : packages) {
+          if (aPackage.startsWith(prefix)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @param relativePath path of a file inside the jar in the form of 'a/b/c/Name.class'
+     */
+    boolean mayContainFile(File jar, String relativePath) {
+      final int slash = relativePath.lastIndexOf('/');
+      return mayContain(jar, slash >= 0 ? relativePath.substring(0, slash) : "", false);
+    }
+  }
+
+  private static class JarPackages {
+    private final long myTimestamp;
+    private final long myLength;
+    private final Set<String> myPackages;
+
+    private JarPackages(long timestamp, long length, Set<String> packages) {
+      myTimestamp = timestamp;
+      myLength = length;
+      myPackages = packages;
+    }
+  }
+}
@@ -45,6 +45,7 @@ class OptimizedFileManager extends DefaultFileManager {
   private final Map<File, Boolean> myIsFile = new HashMap<File, Boolean>();
   private final Map<InputFileObject, SoftReference<CharBuffer>> myContentCache = new HashMap<InputFileObject, SoftReference<CharBuffer>>();
   private final Map<File, File[]> myDirectoryCache = new HashMap<File, File[]>();
+  private final JarPackagesIndex.Snapshot myJarPackages = new JarPackagesIndex.Snapshot();
   public static final File[] NULL_FILE_ARRAY = new File[0];
 
   public OptimizedFileManager() throws Throwable {
@@ -98,6 +99,7 @@ class OptimizedFileManager extends DefaultFileManager {
     }
 
     final String relativePath = packageName.replace('.', File.separatorChar);
+    final String packagePath = packageName.replace('.', '/');
     ListBuffer<JavaFileObject> results = new ListBuffer<JavaFileObject>();
 
     for (File root : locationRoots) {
@@ -110,7 +112,9 @@ class OptimizedFileManager extends DefaultFileManager {
         isFile = isFile(root);
       }
       if (isFile) {
-        collectFromArchive(root, archive, relativePath, kinds, recurse, results);
+        if (myJarPackages.mayContain(root, packagePath, recurse)) {
+          collectFromArchive(root, archive, relativePath, kinds, recurse, results);
+        }
       }
       else {
         final File directory = relativePath.length() != 0 ? new File(root, relativePath) : root;
@@ -248,6 +252,9 @@ class OptimizedFileManager extends DefaultFileManager {
         isFile = isFile(root);
       }
       if (isFile) {
+        if (!myJarPackages.mayContainFile(root, name)) {
+          continue;
+        }
         if (archive == null) {
           try {
             archive = openArchive(root);
@@ -45,6 +45,7 @@ class OptimizedFileManager17 extends com.sun.tools.javac.file.JavacFileManager {
   private final Map<File, Archive> myArchives;
   private final Map<File, Boolean> myIsFile = new HashMap<File, Boolean>();
   private final Map<File, File[]> myDirectoryCache = new HashMap<File, File[]>();
+  private final JarPackagesIndex.Snapshot myJarPackages = new JarPackagesIndex.Snapshot();
   public static final File[] NULL_FILE_ARRAY = new File[0];
 
   private static final String _OS_NAME = System.getProperty("os.name").toLowerCase(Locale.US);
@@ -82,7 +83,8 @@ class OptimizedFileManager17 extends com.sun.tools.javac.file.JavacFileManager {
       return List.nil();
     }
 
-    RelativePath.RelativeDirectory subdirectory = new RelativePath.RelativeDirectory(packageName.replace('.', '/'));
+    final String packagePath = packageName.replace('.', '/');
+    RelativePath.RelativeDirectory subdirectory = new RelativePath.RelativeDirectory(packagePath);
     
     ListBuffer<JavaFileObject> results = new ListBuffer<JavaFileObject>();
 
@@ -98,6 +100,9 @@ class OptimizedFileManager17 extends com.sun.tools.javac.file.JavacFileManager {
       }
       
       if (isFile) {
+        if (!myJarPackages.mayContain(root, packagePath, recurse)) {
+          continue;
+        }
         // Not a directory; either a file or non-existant, create the archive
         try {
           if (archive == null) {
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.builders.java;
+
+import com.intellij.util.PathUtil;
+import org.jetbrains.jps.api.GlobalOptions;
+import org.jetbrains.jps.builders.BuildResult;
+import org.jetbrains.jps.builders.CompileScopeTestBuilder;
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.incremental.messages.BuildMessage;
+import org.jetbrains.jps.model.java.JpsJavaLibraryType;
+import org.jetbrains.jps.model.library.JpsLibrary;
+import org.jetbrains.jps.model.library.JpsOrderRootType;
+import org.jetbrains.jps.model.module.JpsModule;
+
+import java.io.File;
+
+import static com.intellij.util.io.TestFileSystemItem.fs;
+
+public class CompiledOutputCacheTest extends JpsBuildTestCase {
+  private static final String A_TEXT = "class A { }";
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    System.setProperty(GlobalOptions.COMPILE_OUTPUT_CACHE_OPTION, "true");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    System.clearProperty(GlobalOptions.COMPILE_OUTPUT_CACHE_OPTION);
+    super.tearDown();
+  }
+
+  public void testRestoreUnchangedSources() {
+    JpsModule m = addModule("m", PathUtil.getParentPath(createFile("src/A.java", A_TEXT)));
+    assertRestored(false, rebuild());
+    assertRestored(true, rebuild());
+    assertOutput(m, fs().file("A.class"));
+  }
+
+  public void testSourceChange() {
+    String a = createFile("src/A.java", A_TEXT);
+    addModule("m", PathUtil.getParentPath(a));
+    assertRestored(false, rebuild());
+
+    change(a, "class A { int i; }");
+    assertRestored(false, makeAll());
+
+    change(a, A_TEXT);
+    assertRestored(true, makeAll());
+  }
+
+  public void testLibraryChange() {
+    JpsModule m = addModule("m", PathUtil.getParentPath(createFile("src/A.java", A_TEXT)));
+    String data = createFile("lib/data.txt", "1");
+    JpsLibrary library = myProject.addLibrary("lib", JpsJavaLibraryType.INSTANCE);
+    library.addRoot(new File(PathUtil.getParentPath(data)), JpsOrderRootType.COMPILED);
+    m.getDependenciesList().addLibraryDependency(library);
+    assertRestored(false, rebuild());
+    assertRestored(true, rebuild());
+
+    change(data, "22");
+    assertRestored(false, rebuild());
+  }
+
+  public void testReplayWarnings() {
+    addModule("m", PathUtil.getParentPath(createFile("src/A.java", "class A { void f() { new java.util.Date().getYear(); } }")));
+    BuildResult result = rebuild();
+    assertRestored(false, result);
+    int warnings = result.getMessages(BuildMessage.Kind.WARNING).size();
+    assertTrue(warnings > 0);
+
+    result = rebuild();
+    assertRestored(true, result);
+    assertEquals(warnings, result.getMessages(BuildMessage.Kind.WARNING).size());
+  }
+
+  private BuildResult rebuild() {
+    return doBuild(CompileScopeTestBuilder.rebuild().all());
+  }
+
+  private static void assertRestored(boolean expected, BuildResult result) {
+    result.assertSuccessful();
+    boolean restored = false;
+    for (BuildMessage message : result.getMessages(BuildMessage.Kind.INFO)) {
+      restored |= message.getMessageText().contains("from the output cache");
+    }
+    assertEquals(expected, restored);
+  }
+}
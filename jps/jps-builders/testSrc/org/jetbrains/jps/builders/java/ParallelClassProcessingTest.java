@@ -0,0 +1,121 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.builders.java;
+
+import com.intellij.util.PathUtil;
+import com.intellij.util.io.TestFileSystemBuilder;
+import org.jetbrains.jps.builders.JpsBuildTestCase;
+import org.jetbrains.jps.incremental.CompileContext;
+import org.jetbrains.jps.incremental.java.ClassPostProcessor;
+import org.jetbrains.jps.incremental.java.JavaBuilder;
+import org.jetbrains.jps.javac.OutputFileObject;
+import org.jetbrains.jps.model.module.JpsModule;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.intellij.util.io.TestFileSystemItem.fs;
+
+/**
+ * Class files of a chunk are post-processed, analyzed and saved on several threads
+ */
+public class ParallelClassProcessingTest extends JpsBuildTestCase {
+  private static final int CLASS_COUNT = 40;
+  private static final SerialProcessor ourProcessor = new SerialProcessor();
+
+  static {
+    JavaBuilder.registerClassPostProcessor(ourProcessor);
+  }
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ourProcessor.reset(true);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    ourProcessor.reset(false);
+    super.tearDown();
+  }
+
+  public void testDependenciesOfChunk() {
+    String aRoot = null;
+    String bRoot = null;
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      String next = "B" + ((i + 1) % CLASS_COUNT);
+      String a = createFile("a/p/A" + i + ".java", "package p; public class A" + i + " { int i = q." + next + ".value(); }");
+      String b = createFile("b/q/B" + i + ".java", "package q; public class B" + i + " { public static int value() { return 0; } }");
+      aRoot = PathUtil.getParentPath(PathUtil.getParentPath(a));
+      bRoot = PathUtil.getParentPath(PathUtil.getParentPath(b));
+    }
+    createFile("b/q/Cycle.java", "package q; public class Cycle { p.A0 a; }");
+    JpsModule a = addModule("a", aRoot);
+    JpsModule b = addModule("b", bRoot);
+    a.getDependenciesList().addModuleDependency(b);
+    b.getDependenciesList().addModuleDependency(a);
+    rebuildAll();
+
+    assertEquals(2 * CLASS_COUNT + 1, ourProcessor.myProcessed.get());
+    assertEquals(1, ourProcessor.myMaxConcurrent.get());
+    TestFileSystemBuilder aOutput = fs().dir("p");
+    TestFileSystemBuilder bOutput = fs().dir("q").file("Cycle.class");
+    for (int i = 0; i < CLASS_COUNT; i++) {
+      aOutput.file("A" + i + ".class");
+      bOutput.file("B" + i + ".class");
+    }
+    assertOutput(a, aOutput);
+    assertOutput(b, bOutput);
+
+    //dependencies of every class must have been registered, otherwise the classes using the removed method won't be recompiled
+    String b1 = bRoot + "/q/B1.java";
+    change(b1, "package q; public class B1 { }");
+    makeAll().assertFailed();
+    change(b1, "package q; public class B1 { public static int value() { return 1; } }");
+    makeAll().assertSuccessful();
+  }
+
+  private static class SerialProcessor implements ClassPostProcessor {
+    private final AtomicInteger myProcessed = new AtomicInteger();
+    private final AtomicInteger myConcurrent = new AtomicInteger();
+    private final AtomicInteger myMaxConcurrent = new AtomicInteger();
+    private volatile boolean myActive;
+
+    private void reset(boolean active) {
+      myActive = active;
+      myProcessed.set(0);
+      myMaxConcurrent.set(0);
+    }
+
+    @Override
+    public void process(CompileContext context, OutputFileObject out) {
+      if (!myActive) return;
+      int concurrent = myConcurrent.incrementAndGet();
+      try {
+        myProcessed.incrementAndGet();
+        while (true) {
+          int max = myMaxConcurrent.get();
+          if (concurrent <= max || myMaxConcurrent.compareAndSet(max, concurrent)) break;
+        }
+        Thread.sleep(1);
+      }
+      catch (InterruptedException ignored) {
+      }
+      finally {
+        myConcurrent.decrementAndGet();
+      }
+    }
+  }
+}
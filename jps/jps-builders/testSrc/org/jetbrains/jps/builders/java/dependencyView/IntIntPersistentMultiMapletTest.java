@@ -0,0 +1,78 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.builders.java.dependencyView;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.EnumeratorIntegerDescriptor;
+import gnu.trove.TIntHashSet;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class IntIntPersistentMultiMapletTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("maplet", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testAppendedValuesSurviveReopening() throws Exception {
+    final File file = new File(myDir, "map");
+    IntIntPersistentMultiMaplet maplet = new IntIntPersistentMultiMaplet(file, new EnumeratorIntegerDescriptor());
+    maplet.put(1, set(1000000, 5, Integer.MAX_VALUE, 300));
+    maplet.put(1, 7);
+    maplet.put(1, set(-20, 5));
+    maplet.put(2, 42);
+    maplet.removeFrom(2, 42);
+    maplet.put(3, set());
+    maplet.close();
+
+    maplet = new IntIntPersistentMultiMaplet(file, new EnumeratorIntegerDescriptor());
+    try {
+      assertValues(maplet.get(1), -20, 5, 7, 300, 1000000, Integer.MAX_VALUE);
+      assertNull(maplet.get(2));
+      assertValues(maplet.get(3));
+
+      maplet.removeAll(1, set(7, 300));
+      assertValues(maplet.get(1), -20, 5, 1000000, Integer.MAX_VALUE);
+    }
+    finally {
+      maplet.close();
+    }
+  }
+
+  private static TIntHashSet set(int... values) {
+    final TIntHashSet set = new TIntHashSet();
+    set.addAll(values);
+    return set;
+  }
+
+  private static void assertValues(TIntHashSet actual, int... expected) {
+    assertNotNull(actual);
+    final int[] values = actual.toArray();
+    Arrays.sort(values);
+    assertTrue(Arrays.toString(values), Arrays.equals(expected, values));
+  }
+}
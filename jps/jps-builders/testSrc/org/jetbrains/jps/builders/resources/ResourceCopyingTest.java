@@ -53,4 +53,17 @@ public class ResourceCopyingTest extends JpsBuildTestCase {
     rebuildAll();
     assertOutput(m, fs().dir("xxx").file("a.xml"));
   }
+
+  public void testCopyChangedFiles() {
+    String file1 = createFile("src/a.xml", "a");
+    createFile("src/b.xml", "b");
+    JpsModule m = addModule("m", PathUtil.getParentPath(file1));
+    rebuildAll();
+    assertOutput(m, fs().file("a.xml", "a").file("b.xml", "b"));
+
+    change(file1, "aa");
+    createFile("src/c.xml", "c");
+    makeAll().assertSuccessful();
+    assertOutput(m, fs().file("a.xml", "aa").file("b.xml", "b").file("c.xml", "c"));
+  }
 }
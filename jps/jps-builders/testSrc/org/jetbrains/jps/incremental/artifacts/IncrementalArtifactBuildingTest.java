@@ -17,6 +17,7 @@ package org.jetbrains.jps.incremental.artifacts;
 
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.util.PathUtil;
+import com.intellij.util.io.zip.JBZipFile;
 import org.jetbrains.jps.builders.CompileScopeTestBuilder;
 import org.jetbrains.jps.model.artifact.JpsArtifact;
 import org.jetbrains.jps.model.artifact.elements.JpsPackagingElementFactory;
@@ -105,6 +106,32 @@ public class IncrementalArtifactBuildingTest extends ArtifactBuilderTestCase {
     buildAllAndAssertUpToDate();
   }
 
+  public void testUpdateArchiveInPlace() throws IOException {
+    String file1 = createFile("dir/a.txt", "aaa");
+    createFile("dir/b.txt", "bbb");
+    final JpsArtifact a = addArtifact(archive("a.jar").parentDirCopy(file1));
+    buildAll();
+    File jar = new File(a.getOutputPath(), "a.jar");
+    long offset = getEntryOffset(jar, "b.txt");
+
+    change(file1, "xxx");
+    createFile("dir/c.txt", "ccc");
+    buildAll();
+    assertOutput(a, fs().archive("a.jar").file("a.txt", "xxx").file("b.txt", "bbb").file("c.txt", "ccc"));
+    assertEquals(offset, getEntryOffset(jar, "b.txt"));
+    buildAllAndAssertUpToDate();
+  }
+
+  private static long getEntryOffset(File jar, String name) throws IOException {
+    JBZipFile zipFile = new JBZipFile(jar);
+    try {
+      return zipFile.getEntry(name).getHeaderOffset();
+    }
+    finally {
+      zipFile.close();
+    }
+  }
+
   public void testNonExistentFileRoot() throws IOException {
     String file = getAbsolutePath("a.txt");
     JpsArtifact a = addArtifact(root().fileCopy(file));
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.javac;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class JarPackagesIndexTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("jar-packages", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testPackages() throws IOException {
+    File jar = createJar("a.jar", "Root.class", "a/A.class", "a/b/", "a/b/c/C.class");
+    JarPackagesIndex.Snapshot snapshot = new JarPackagesIndex.Snapshot();
+    assertTrue(snapshot.mayContain(jar, "a", false));
+    assertTrue(snapshot.mayContain(jar, "a/b/c", false));
+    assertFalse(snapshot.mayContain(jar, "a/b", false));
+    assertTrue(snapshot.mayContain(jar, "a/b", true));
+    assertFalse(snapshot.mayContain(jar, "a/b/c/d", true));
+    assertFalse(snapshot.mayContain(jar, "x", false));
+    assertFalse(snapshot.mayContain(jar, "x", true));
+    assertFalse(snapshot.mayContain(jar, "a/bc", true));
+  }
+
+  public void testDefaultPackage() throws IOException {
+    File withRootFiles = createJar("root.jar", "Root.class", "a/A.class");
+    File withoutRootFiles = createJar("noRoot.jar", "a/A.class");
+    File empty = createJar("empty.jar", "a/");
+    JarPackagesIndex.Snapshot snapshot = new JarPackagesIndex.Snapshot();
+    assertTrue(snapshot.mayContain(withRootFiles, "", false));
+    assertFalse(snapshot.mayContain(withoutRootFiles, "", false));
+    assertTrue(snapshot.mayContain(withoutRootFiles, "", true));
+    assertFalse(snapshot.mayContain(empty, "", false));
+    assertFalse(snapshot.mayContain(empty, "", true));
+  }
+
+  public void testFiles() throws IOException {
+    File jar = createJar("a.jar", "Root.class", "a/b/B.class");
+    JarPackagesIndex.Snapshot snapshot = new JarPackagesIndex.Snapshot();
+    assertTrue(snapshot.mayContainFile(jar, "Root.class"));
+    assertTrue(snapshot.mayContainFile(jar, "Other.class"));
+    assertTrue(snapshot.mayContainFile(jar, "a/b/B.class"));
+    assertFalse(snapshot.mayContainFile(jar, "a/B.class"));
+    assertFalse(snapshot.mayContainFile(jar, "x/X.class"));
+  }
+
+  public void testChangedJarIsReread() throws IOException {
+    File jar = createJar("a.jar", "a/A.class");
+    assertFalse(new JarPackagesIndex.Snapshot().mayContain(jar, "x", false));
+
+    createJar("a.jar", "a/A.class", "x/X.class");
+    assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+    JarPackagesIndex.Snapshot snapshot = new JarPackagesIndex.Snapshot();
+    assertTrue(snapshot.mayContain(jar, "x", false));
+    assertFalse(snapshot.mayContain(jar, "y", false));
+  }
+
+  public void testSavedIndexIsUsedForUnchangedJars() throws IOException {
+    File jar = createJar("a.jar", "a/A.class");
+    File other = createJar("b.jar", "b/B.class");
+    File indexFile = new File(myDir, "index.dat");
+    JarPackagesIndex.Snapshot snapshot = new JarPackagesIndex.Snapshot();
+    assertFalse(snapshot.mayContain(jar, "x", false));
+    assertFalse(snapshot.mayContain(other, "x", false));
+    JarPackagesIndex.save(indexFile);
+    JarPackagesIndex.clear();
+
+    // same length and timestamp, so the saved entry is trusted
+    long timestamp = jar.lastModified();
+    createJar("a.jar", "x/A.class");
+    assertTrue(jar.setLastModified(timestamp));
+    // the entry of a changed jar is recomputed
+    createJar("b.jar", "b/B.class", "x/X.class");
+    JarPackagesIndex.load(indexFile);
+    snapshot = new JarPackagesIndex.Snapshot();
+    assertTrue(snapshot.mayContain(jar, "a", false));
+    assertFalse(snapshot.mayContain(jar, "x", false));
+    assertTrue(snapshot.mayContain(other, "x", false));
+  }
+
+  public void testUnreadableJar() throws IOException {
+    File missing = new File(myDir, "missing.jar");
+    File broken = new File(myDir, "broken.jar");
+    FileUtil.writeToFile(broken, "not a jar");
+    JarPackagesIndex.Snapshot snapshot = new JarPackagesIndex.Snapshot();
+    assertTrue(snapshot.mayContain(missing, "a", false));
+    assertTrue(snapshot.mayContain(broken, "a", false));
+    assertTrue(snapshot.mayContainFile(broken, "a/A.class"));
+  }
+
+  private File createJar(String name, String... entries) throws IOException {
+    File jar = new File(myDir, name);
+    ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar));
+    try {
+      for (String entry : entries) {
+        output.putNextEntry(new ZipEntry(entry));
+        output.closeEntry();
+      }
+    }
+    finally {
+      output.close();
+    }
+    return jar;
+  }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.model.serialization;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
+import gnu.trove.TObjectIntHashMap;
+import org.jdom.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps parsed configuration files of a project (.ipr, .iml, files under .idea and global options) in a binary snapshot, so the files
+ * which weren't changed since the previous load don't need to be parsed again. A file is taken from the snapshot if its timestamp and
+ * length are the same; the returned elements are fresh copies which may be modified by the caller. A file modified shortly before it
+ * was parsed isn't stored, because another modification within the timestamp granularity wouldn't change its timestamp.
+ *
+ * @see JpsSerializationManager#loadModel(String, String, JpsConfigurationCache)
+ */
+public class JpsConfigurationCache {
+  private static final Logger LOG = Logger.getInstance("#org.jetbrains.jps.model.serialization.JpsConfigurationCache");
+  private static final int VERSION = 1;
+  private static final byte ELEMENT = 0;
+  private static final byte TEXT = 1;
+  // timestamps of some file systems have 1 or 2 seconds granularity
+  private static final long TIMESTAMP_GRANULARITY = 2000;
+  private final File mySnapshotFile;
+  private final Map<String, CachedFile> myCachedFiles = new ConcurrentHashMap<String, CachedFile>();
+  private final Map<String, CachedFile> myUsedFiles = new ConcurrentHashMap<String, CachedFile>();
+  private volatile boolean myChanged;
+
+  public JpsConfigurationCache(@NotNull File snapshotFile) {
+    mySnapshotFile = snapshotFile;
+    if (snapshotFile.exists()) {
+      try {
+        load();
+      }
+      catch (IOException e) {
+        LOG.info("Cannot load configuration snapshot " + snapshotFile + ": " + e.getMessage());
+        myCachedFiles.clear();
+      }
+    }
+  }
+
+  @NotNull
+  public Element loadRootElement(@NotNull File file) throws JDOMException, IOException {
+    String path = FileUtil.toSystemIndependentName(file.getAbsolutePath());
+    long timestamp = file.lastModified();
+    long length = file.length();
+    CachedFile cached = myCachedFiles.get(path);
+    if (cached != null && cached.myTimestamp == timestamp && cached.myLength == length) {
+      myUsedFiles.put(path, cached);
+      return decode(cached.myData);
+    }
+
+    long parseStart = System.currentTimeMillis();
+    Element root = JDOMUtil.loadDocument(file).getRootElement();
+    myChanged = true;
+    if (parseStart - timestamp < TIMESTAMP_GRANULARITY) {
+      //the file may be modified again without changing its timestamp, so the parsed content can't be trusted next time
+      myUsedFiles.remove(path);
+      return root;
+    }
+    try {
+      myUsedFiles.put(path, new CachedFile(timestamp, length, encode(root)));
+    }
+    catch (UnsupportedContentException ignored) {
+      //files with namespaces aren't stored
+    }
+    return root;
+  }
+
+  /**
+   * Writes the snapshot if some files were parsed; files which weren't requested since the snapshot was loaded are dropped from it.
+   * The snapshot is written to a temporary file first, so an interrupted save can't leave a truncated snapshot
+   */
+  public void save() {
+    if (!myChanged && myUsedFiles.size() == myCachedFiles.size()) {
+      return;
+    }
+    File tempFile = new File(mySnapshotFile.getPath() + ".tmp");
+    try {
+      FileUtil.createParentDirs(mySnapshotFile);
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+      try {
+        output.writeInt(VERSION);
+        DataInputOutputUtil.writeINT(output, myUsedFiles.size());
+        for (Map.Entry<String, CachedFile> entry : myUsedFiles.entrySet()) {
+          CachedFile file = entry.getValue();
+          IOUtil.writeString(entry.getKey(), output);
+          output.writeLong(file.myTimestamp);
+          output.writeLong(file.myLength);
+          DataInputOutputUtil.writeINT(output, file.myData.length);
+          output.write(file.myData);
+        }
+      }
+      finally {
+        output.close();
+      }
+      if (!tempFile.renameTo(mySnapshotFile)) {
+        FileUtil.delete(mySnapshotFile);
+        FileUtil.rename(tempFile, mySnapshotFile);
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save configuration snapshot " + mySnapshotFile + ": " + e.getMessage());
+      FileUtil.delete(tempFile);
+      FileUtil.delete(mySnapshotFile);
+    }
+  }
+
+  private void load() throws IOException {
+    DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(mySnapshotFile)));
+    try {
+      if (input.readInt() != VERSION) {
+        return;
+      }
+      int count = DataInputOutputUtil.readINT(input);
+      for (int i = 0; i < count; i++) {
+        String path = IOUtil.readString(input);
+        long timestamp = input.readLong();
+        long length = input.readLong();
+        byte[] data = new byte[DataInputOutputUtil.readINT(input)];
+        input.readFully(data);
+        myCachedFiles.put(path, new CachedFile(timestamp, length, data));
+      }
+    }
+    finally {
+      input.close();
+    }
+  }
+
+  private static byte[] encode(Element root) throws IOException, UnsupportedContentException {
+    TObjectIntHashMap<String> strings = new TObjectIntHashMap<String>();
+    List<String> stringTable = new ArrayList<String>();
+    BufferExposingByteArrayOutputStream body = new BufferExposingByteArrayOutputStream();
+    DataOutputStream bodyOutput = new DataOutputStream(body);
+    writeElement(root, bodyOutput, strings, stringTable);
+    bodyOutput.close();
+
+    BufferExposingByteArrayOutputStream result = new BufferExposingByteArrayOutputStream(body.size() + stringTable.size() * 16);
+    DataOutputStream output = new DataOutputStream(result);
+    DataInputOutputUtil.writeINT(output, stringTable.size());
+    for (String s : stringTable) {
+      IOUtil.writeString(s, output);
+    }
+    output.write(body.getInternalBuffer(), 0, body.size());
+    output.close();
+    return result.toByteArray();
+  }
+
+  private static void writeElement(Element element, DataOutput output, TObjectIntHashMap<String> strings, List<String> stringTable)
+    throws IOException, UnsupportedContentException {
+    if (element.getNamespace() != Namespace.NO_NAMESPACE || !element.getAdditionalNamespaces().isEmpty()) {
+      throw new UnsupportedContentException();
+    }
+    writeString(element.getName(), output, strings, stringTable);
+    List<Attribute> attributes = element.getAttributes();
+    DataInputOutputUtil.writeINT(output, attributes.size());
+    for (Attribute attribute : attributes) {
+      if (attribute.getNamespace() != Namespace.NO_NAMESPACE) {
+        throw new UnsupportedContentException();
+      }
+      writeString(attribute.getName(), output, strings, stringTable);
+      writeString(attribute.getValue(), output, strings, stringTable);
+    }
+
+    List<Content> children = new ArrayList<Content>();
+    for (Object child : element.getContent()) {
+      if (child instanceof Element || child instanceof Text) {
+        children.add((Content)child);
+      }
+    }
+    DataInputOutputUtil.writeINT(output, children.size());
+    for (Content child : children) {
+      if (child instanceof Element) {
+        output.writeByte(ELEMENT);
+        writeElement((Element)child, output, strings, stringTable);
+      }
+      else {
+        output.writeByte(TEXT);
+        writeString(((Text)child).getText(), output, strings, stringTable);
+      }
+    }
+  }
+
+  private static void writeString(String s, DataOutput output, TObjectIntHashMap<String> strings, List<String> stringTable) throws IOException {
+    int id = strings.get(s);
+    if (id == 0) {
+      stringTable.add(s);
+      id = stringTable.size();
+      strings.put(s, id);
+    }
+    DataInputOutputUtil.writeINT(output, id - 1);
+  }
+
+  private static Element decode(byte[] data) throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+    String[] stringTable = new String[DataInputOutputUtil.readINT(input)];
+    for (int i = 0; i < stringTable.length; i++) {
+      stringTable[i] = IOUtil.readString(input);
+    }
+    return readElement(input, stringTable);
+  }
+
+  private static Element readElement(DataInput input, String[] stringTable) throws IOException {
+    Element element = new Element(readString(input, stringTable));
+    int attributesCount = DataInputOutputUtil.readINT(input);
+    for (int i = 0; i < attributesCount; i++) {
+      String name = readString(input, stringTable);
+      element.setAttribute(name, readString(input, stringTable));
+    }
+    int childrenCount = DataInputOutputUtil.readINT(input);
+    for (int i = 0; i < childrenCount; i++) {
+      if (input.readByte() == ELEMENT) {
+        element.addContent(readElement(input, stringTable));
+      }
+      else {
+        element.addContent(new Text(readString(input, stringTable)));
+      }
+    }
+    return element;
+  }
+
+  private static String readString(DataInput input, String[] stringTable) throws IOException {
+    return stringTable[DataInputOutputUtil.readINT(input)];
+  }
+
+  private static class CachedFile {
+    private final long myTimestamp;
+    private final long myLength;
+    private final byte[] myData;
+
+    private CachedFile(long timestamp, long length, byte[] data) {
+      myTimestamp = timestamp;
+      myLength = length;
+      myData = data;
+    }
+  }
+
+  private static class UnsupportedContentException extends Exception {
+  }
+}
@@ -20,6 +20,7 @@ import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.util.io.FileUtilRt;
 import org.jdom.Element;
 import org.jdom.JDOMException;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.TimingLog;
 import org.jetbrains.jps.model.JpsElement;
 
@@ -31,13 +32,15 @@ import java.io.IOException;
  */
 public abstract class JpsLoaderBase {
   private final JpsMacroExpander myMacroExpander;
+  @Nullable protected final JpsConfigurationCache myConfigurationCache;
 
-  protected JpsLoaderBase(JpsMacroExpander macroExpander) {
+  protected JpsLoaderBase(JpsMacroExpander macroExpander, @Nullable JpsConfigurationCache configurationCache) {
     myMacroExpander = macroExpander;
+    myConfigurationCache = configurationCache;
   }
 
   protected Element loadRootElement(final File file) {
-    return loadRootElement(file, myMacroExpander);
+    return loadRootElement(file, myMacroExpander, myConfigurationCache);
   }
 
   protected <E extends JpsElement> void loadComponents(File dir,
@@ -65,8 +68,12 @@ public abstract class JpsLoaderBase {
   }
 
   protected static Element loadRootElement(final File file, final JpsMacroExpander macroExpander) {
+    return loadRootElement(file, macroExpander, null);
+  }
+
+  protected static Element loadRootElement(final File file, final JpsMacroExpander macroExpander, @Nullable JpsConfigurationCache cache) {
     try {
-      final Element element = JDOMUtil.loadDocument(file).getRootElement();
+      final Element element = cache != null ? cache.loadRootElement(file) : JDOMUtil.loadDocument(file).getRootElement();
       macroExpander.substitute(element, SystemInfo.isFileSystemCaseSensitive);
       return element;
     }
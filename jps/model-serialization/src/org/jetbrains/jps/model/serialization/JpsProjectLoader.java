@@ -66,8 +66,8 @@ public class JpsProjectLoader extends JpsLoaderBase {
   private final JpsProject myProject;
   private final Map<String, String> myPathVariables;
 
-  private JpsProjectLoader(JpsProject project, Map<String, String> pathVariables, File baseDir) {
-    super(createProjectMacroExpander(pathVariables, baseDir));
+  private JpsProjectLoader(JpsProject project, Map<String, String> pathVariables, File baseDir, @Nullable JpsConfigurationCache cache) {
+    super(createProjectMacroExpander(pathVariables, baseDir), cache);
     myProject = project;
     myPathVariables = pathVariables;
     myProject.getContainer().setChild(JpsProjectSerializationDataExtensionImpl.ROLE, new JpsProjectSerializationDataExtensionImpl(baseDir));
@@ -80,9 +80,14 @@ public class JpsProjectLoader extends JpsLoaderBase {
   }
 
   public static void loadProject(final JpsProject project, Map<String, String> pathVariables, String projectPath) throws IOException {
+    loadProject(project, pathVariables, projectPath, null);
+  }
+
+  public static void loadProject(final JpsProject project, Map<String, String> pathVariables, String projectPath,
+                                 @Nullable JpsConfigurationCache cache) throws IOException {
     File file = new File(FileUtil.toCanonicalPath(projectPath));
     if (file.isFile() && projectPath.endsWith(".ipr")) {
-      new JpsProjectLoader(project, pathVariables, file.getParentFile()).loadFromIpr(file);
+      new JpsProjectLoader(project, pathVariables, file.getParentFile(), cache).loadFromIpr(file);
     }
     else {
       File dotIdea = new File(file, PathMacroUtil.DIRECTORY_STORE_NAME);
@@ -96,7 +101,7 @@ public class JpsProjectLoader extends JpsLoaderBase {
       else {
         throw new IOException("Cannot find IntelliJ IDEA project files at " + projectPath);
       }
-      new JpsProjectLoader(project, pathVariables, directory.getParentFile()).loadFromDirectory(directory);
+      new JpsProjectLoader(project, pathVariables, directory.getParentFile(), cache).loadFromDirectory(directory);
     }
   }
 
@@ -241,7 +246,7 @@ public class JpsProjectLoader extends JpsLoaderBase {
         @Override
         public Pair<File, Element> call() throws Exception {
           final JpsMacroExpander expander = createModuleMacroExpander(myPathVariables, file);
-          final Element moduleRoot = loadRootElement(file, expander);
+          final Element moduleRoot = loadRootElement(file, expander, myConfigurationCache);
           return Pair.create(file, moduleRoot);
         }
       }));
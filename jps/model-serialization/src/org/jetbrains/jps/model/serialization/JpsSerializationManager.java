@@ -32,7 +32,16 @@ public abstract class JpsSerializationManager {
   }
 
   @NotNull
-  public abstract JpsModel loadModel(@NotNull String projectPath, @Nullable String optionsPath)
+  public JpsModel loadModel(@NotNull String projectPath, @Nullable String optionsPath)
+    throws IOException {
+    return loadModel(projectPath, optionsPath, null);
+  }
+
+  /**
+   * @param configurationCache if specified, configuration files which weren't changed since the previous load are taken from it
+   */
+  @NotNull
+  public abstract JpsModel loadModel(@NotNull String projectPath, @Nullable String optionsPath, @Nullable JpsConfigurationCache configurationCache)
     throws IOException;
 
   public abstract void saveGlobalSettings(@NotNull JpsGlobal global, @NotNull String optionsPath) throws IOException;
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jetbrains.jps.model.serialization;
+
+import com.intellij.openapi.application.ex.PathManagerEx;
+import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+import org.jdom.Element;
+
+import java.io.File;
+import java.io.IOException;
+
+public class JpsConfigurationCacheTest extends TestCase {
+  private File myDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDir = FileUtil.createTempDirectory("configurationCache", null);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    FileUtil.delete(myDir);
+    super.tearDown();
+  }
+
+  public void testLoadFromSnapshot() throws Exception {
+    File projectDir = new File(myDir, "project");
+    FileUtil.copyDir(PathManagerEx.findFileUnderProjectHome(JpsProjectSerializationTest.SAMPLE_PROJECT_PATH, getClass()), projectDir);
+    File snapshot = new File(myDir, "configuration.snapshot");
+    File imlFile = new File(projectDir, "util/util.iml");
+    File librariesFile = new File(projectDir, ".idea/libraries/junit.xml");
+
+    JpsConfigurationCache cache = new JpsConfigurationCache(snapshot);
+    assertTrue(JDOMUtil.areElementsEqual(JDOMUtil.loadDocument(imlFile).getRootElement(), cache.loadRootElement(imlFile)));
+    cache.loadRootElement(librariesFile);
+    cache.save();
+    assertTrue(snapshot.exists());
+
+    cache = new JpsConfigurationCache(snapshot);
+    Element cached = cache.loadRootElement(imlFile);
+    assertTrue(JDOMUtil.areElementsEqual(JDOMUtil.loadDocument(imlFile).getRootElement(), cached));
+    cached.removeContent();
+    assertTrue(JDOMUtil.areElementsEqual(JDOMUtil.loadDocument(imlFile).getRootElement(), cache.loadRootElement(imlFile)));
+
+    FileUtil.writeToFile(imlFile, "<module version=\"4\" />");
+    Element changed = cache.loadRootElement(imlFile);
+    assertEquals("4", changed.getAttributeValue("version"));
+    assertTrue(changed.getChildren().isEmpty());
+    cache.save();
+
+    cache = new JpsConfigurationCache(snapshot);
+    assertTrue(JDOMUtil.areElementsEqual(JDOMUtil.loadDocument(imlFile).getRootElement(), cache.loadRootElement(imlFile)));
+  }
+
+  public void testUnchangedFileTakenFromSnapshot() throws Exception {
+    File snapshot = new File(myDir, "configuration.snapshot");
+    File file = new File(myDir, "a.xml");
+    long timestamp = writeFile(file, "<a version=\"1\" />", System.currentTimeMillis() - 60000);
+
+    JpsConfigurationCache cache = new JpsConfigurationCache(snapshot);
+    assertEquals("1", cache.loadRootElement(file).getAttributeValue("version"));
+    cache.save();
+    assertTrue(snapshot.exists());
+    assertFalse(new File(snapshot.getPath() + ".tmp").exists());
+
+    writeFile(file, "<a version=\"2\" />", timestamp);
+    cache = new JpsConfigurationCache(snapshot);
+    assertEquals("1", cache.loadRootElement(file).getAttributeValue("version"));
+  }
+
+  public void testRecentlyModifiedFileNotStored() throws Exception {
+    File snapshot = new File(myDir, "configuration.snapshot");
+    File file = new File(myDir, "a.xml");
+    long timestamp = writeFile(file, "<a version=\"1\" />", System.currentTimeMillis());
+
+    JpsConfigurationCache cache = new JpsConfigurationCache(snapshot);
+    assertEquals("1", cache.loadRootElement(file).getAttributeValue("version"));
+    cache.save();
+
+    writeFile(file, "<a version=\"2\" />", timestamp);
+    cache = new JpsConfigurationCache(snapshot);
+    assertEquals("2", cache.loadRootElement(file).getAttributeValue("version"));
+  }
+
+  private static long writeFile(File file, String text, long timestamp) throws IOException {
+    FileUtil.writeToFile(file, text);
+    assertTrue(file.setLastModified(timestamp));
+    return file.lastModified();
+  }
+}
@@ -19,6 +19,7 @@
  */
 package com.intellij.ide;
 
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.ide.startup.StartupActionScriptManager;
 import com.intellij.idea.Main;
 import com.intellij.openapi.application.PathManager;
@@ -50,6 +51,7 @@ public class ClassloaderUtil extends ClassUtilCore {
   }
 
   public static UrlClassLoader initClassloader(final List<URL> classpathElements, boolean updatePlugins) throws Exception {
+    long started = System.currentTimeMillis();
     PathManager.loadProperties();
 
     addParentClasspath(classpathElements);
@@ -57,7 +59,8 @@ public class ClassloaderUtil extends ClassUtilCore {
     addAdditionalClassPath(classpathElements);
 
     filterClassPath(classpathElements);
-    UrlClassLoader newClassLoader = new UrlClassLoader(classpathElements, null, true, true);
+    File classpathIndex = new File(PathManager.getSystemPath() + File.separator + "classpath.index");
+    UrlClassLoader newClassLoader = new UrlClassLoader(classpathElements, null, true, true, classpathIndex);
 
     // prepare plugins
     if (updatePlugins && !isLoadingOfExternalPluginsDisabled()) {
@@ -70,6 +73,7 @@ public class ClassloaderUtil extends ClassUtilCore {
     }
 
     Thread.currentThread().setContextClassLoader(newClassLoader);
+    ActivityTracer.addBootstrapActivity("Class loader initialization", started);
     return newClassLoader;
   }
 
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.components;
+
+/**
+ * A component which tracks modifications of its state. When settings are saved, such a component isn't asked for its state
+ * and the state isn't serialized again unless the modification count has changed since the previous save.
+ */
+public interface PersistentStateComponentWithModificationTracker<T> extends PersistentStateComponent<T> {
+  /**
+   * @return a number which is changed whenever the state returned by {@link #getState()} changes, including changes made by
+   * {@link #loadState(Object)}
+   */
+  long getStateModificationCount();
+}
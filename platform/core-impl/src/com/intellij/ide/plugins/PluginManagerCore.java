@@ -15,6 +15,7 @@
  */
 package com.intellij.ide.plugins;
 
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.ide.ClassUtilCore;
 import com.intellij.ide.IdeBundle;
 import com.intellij.ide.StartupProgress;
@@ -1068,6 +1069,7 @@ public class PluginManagerCore {
 
   public static void initPlugins(@Nullable StartupProgress progress) {
     long start = System.currentTimeMillis();
+    ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.PLUGINS, "Loading plugins");
     try {
       initializePlugins(progress);
     }
@@ -1075,6 +1077,9 @@ public class PluginManagerCore {
       getLogger().error(e);
       throw e;
     }
+    finally {
+      activity.end();
+    }
     getLogger().info(ourPlugins.length + " plugins initialized in " + (System.currentTimeMillis() - start) + " ms");
     logPlugins();
     ClassUtilCore.clearJarURLCache();
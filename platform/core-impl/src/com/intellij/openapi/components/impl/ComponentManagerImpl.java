@@ -15,6 +15,7 @@
  */
 package com.intellij.openapi.components.impl;
 
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.diagnostic.PluginException;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.*;
@@ -45,15 +46,22 @@ import org.picocontainer.defaults.CachingComponentAdapter;
 import org.picocontainer.defaults.ConstructorInjectionComponentAdapter;
 
 import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * @author mike
  */
 public abstract class ComponentManagerImpl extends UserDataHolderBase implements ComponentManagerEx, Disposable {
   private static final Logger LOG = Logger.getInstance("#com.intellij.components.ComponentManager");
+  private static final int SLOWEST_COMPONENTS_TO_REPORT = 20;
+  // time spent by the current thread in creating components nested into the one being created, so that a component's own time
+  // doesn't include the creation of the components it depends on
+  private static final ThreadLocal<long[]> ourNestedCreationTime = new ThreadLocal<long[]>() {
+    @Override
+    protected long[] initialValue() {
+      return new long[1];
+    }
+  };
 
   private final Map<Class, Object> myInitializedComponents = new ConcurrentHashMap<Class, Object>();
 
@@ -106,13 +114,20 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
     try {
       myComponentsRegistry.loadClasses();
 
+      long started = System.currentTimeMillis();
+      ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.COMPONENTS, toString());
       Class[] componentInterfaces = myComponentsRegistry.getComponentInterfaces();
       for (Class componentInterface : componentInterfaces) {
         ProgressIndicatorProvider.checkCanceled();
         createComponent(componentInterface);
       }
+      activity.end();
+      if (logSlowComponents()) {
+        myComponentsRegistry.reportInitTimes(System.currentTimeMillis() - started);
+      }
     }
     finally {
+      myComponentsRegistry.clearInitTimes();
       myComponentsCreated = true;
     }
   }
@@ -381,6 +396,10 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
     return LOG.isDebugEnabled();
   }
 
+  protected void logInitTimes(@NotNull String report) {
+    LOG.info(report);
+  }
+
   protected class ComponentsRegistry {
     private final Map<Class, Object> myInterfaceToLockMap = new THashMap<Class, Object>();
     private final Map<Class, Class> myInterfaceToClassMap = new THashMap<Class, Class>();
@@ -389,6 +408,8 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
     private final List<ComponentConfig> myComponentConfigs = new ArrayList<ComponentConfig>();
     private final List<Object> myImplementations = new ArrayList<Object>();
     private final Map<Class, ComponentConfig> myComponentClassToConfig = new THashMap<Class, ComponentConfig>();
+    // own times of the components created by createComponents(), collected only to be reported when slow components are logged
+    private final Map<String, Long> myInitTimes = new THashMap<String, Long>();
     private boolean myClassesLoaded = false;
 
     private void loadClasses() {
@@ -444,6 +465,39 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
       return ((float)myImplementations.size()) / myComponentConfigs.size();
     }
 
+    private void registerInitTime(Object component, long ms) {
+      if (myComponentsCreated || !logSlowComponents()) return;
+      synchronized (myInitTimes) {
+        myInitTimes.put(component.getClass().getName(), ms);
+      }
+    }
+
+    private void reportInitTimes(long totalMs) {
+      List<Map.Entry<String, Long>> times;
+      synchronized (myInitTimes) {
+        times = new ArrayList<Map.Entry<String, Long>>(myInitTimes.entrySet());
+      }
+      Collections.sort(times, new Comparator<Map.Entry<String, Long>>() {
+        @Override
+        public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+          return o2.getValue().compareTo(o1.getValue());
+        }
+      });
+      StringBuilder report = new StringBuilder();
+      report.append(times.size()).append(" components of ").append(ComponentManagerImpl.this).append(" created in ").append(totalMs)
+        .append(" ms, own time of the slowest ones (without creating the components they depend on):");
+      for (Map.Entry<String, Long> entry : times.subList(0, Math.min(times.size(), SLOWEST_COMPONENTS_TO_REPORT))) {
+        report.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue()).append(" ms");
+      }
+      logInitTimes(report.toString());
+    }
+
+    private void clearInitTimes() {
+      synchronized (myInitTimes) {
+        myInitTimes.clear();
+      }
+    }
+
     private void registerComponentInstance(final Object component) {
       myImplementations.add(component);
 
@@ -524,8 +578,12 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
           }
 
           Object componentInstance = null;
+          boolean measured = !myInitialized;
+          long[] nestedTime = ourNestedCreationTime.get();
+          long outerNestedTime = nestedTime[0];
+          long startTime = measured ? System.nanoTime() : 0;
+          nestedTime[0] = 0;
           try {
-            long startTime = myInitialized ? 0 : System.nanoTime();
 
             componentInstance = super.getComponentInstance(picoContainer);
 
@@ -548,7 +606,12 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
                   ((BaseComponent)componentInstance).initComponent();
                 }
 
-                long ms = (System.nanoTime() - startTime) / 1000000;
+                long elapsed = System.nanoTime() - startTime;
+                long ms = elapsed / 1000000;
+                myComponentsRegistry.registerInitTime(componentInstance, (elapsed - nestedTime[0]) / 1000000);
+                if (ms > 0) {
+                  ActivityTracer.add(ActivityTracer.COMPONENTS, componentInstance.getClass().getName(), startTime);
+                }
                 if (ms > 10 && logSlowComponents()) {
                   LOG.info(componentInstance.getClass().getName() + " initialized in " + ms + " ms");
                 }
@@ -569,6 +632,9 @@ public abstract class ComponentManagerImpl extends UserDataHolderBase implements
           catch (Throwable t) {
             handleInitComponentError(t, componentKey, config);
           }
+          finally {
+            nestedTime[0] = outerNestedTime + (measured ? System.nanoTime() - startTime : 0);
+          }
 
           return componentInstance;
         }
@@ -25,13 +25,13 @@ import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.reference.SoftReference;
 import com.intellij.util.ArrayUtil;
 import com.intellij.util.TimedReference;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.IOUtil;
 import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
+import java.io.*;
 import java.lang.ref.Reference;
 import java.util.Enumeration;
 import java.util.HashSet;
@@ -45,6 +45,7 @@ public class JarHandlerBase {
 
   private static final long DEFAULT_LENGTH = 0L;
   private static final long DEFAULT_TIMESTAMP = -1L;
+  private static final int ENTRIES_TABLE_VERSION = 1;
 
   private final TimedReference<JarFile> myJarFile = new TimedReference<JarFile>(null);
   private Reference<Map<String, EntryInfo>> myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(null);
@@ -56,6 +57,8 @@ public class JarHandlerBase {
     protected final boolean isDirectory;
     protected final String shortName;
     protected final EntryInfo parent;
+    protected long length = DEFAULT_LENGTH;
+    protected long timestamp = DEFAULT_TIMESTAMP;
 
     public EntryInfo(@NotNull String shortName, final EntryInfo parent, final boolean directory) {
       this.shortName = shortName;
@@ -80,6 +83,13 @@ public class JarHandlerBase {
     synchronized (lock) {
       Map<String, EntryInfo> map = myRelPathsToEntries != null ? myRelPathsToEntries.get() : null;
       if (map == null) {
+        final File tableFile = getEntriesTableFile();
+        map = tableFile != null ? loadEntriesTable(tableFile) : null;
+        if (map != null) {
+          myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(map);
+          return map;
+        }
+
         final JarFile zip = getJar();
 
         map = new THashMap<String, EntryInfo>();
@@ -90,16 +100,118 @@ public class JarHandlerBase {
             JarFile.JarEntry entry = entries.nextElement();
             final String name = entry.getName();
             final boolean isDirectory = StringUtil.endsWithChar(name, '/');
-            getOrCreate(isDirectory ? name.substring(0, name.length() - 1) : name, isDirectory, map);
+            final EntryInfo info = getOrCreate(isDirectory ? name.substring(0, name.length() - 1) : name, isDirectory, map);
+            info.length = entry.getSize();
+            info.timestamp = entry.getTime();
           }
 
           myRelPathsToEntries = new SoftReference<Map<String, EntryInfo>>(map);
+          if (tableFile != null) {
+            saveEntriesTable(tableFile, map);
+          }
         }
       }
       return map;
     }
   }
 
+  /**
+   * @return file where the entries of the jar are stored between sessions, so the jar doesn't need to be opened to list its entries
+   * or get their attributes; {@code null} if the entries shouldn't be stored
+   */
+  @Nullable
+  protected File getEntriesTableFile() {
+    return null;
+  }
+
+  @Nullable
+  private Map<String, EntryInfo> loadEntriesTable(@NotNull File tableFile) {
+    if (!tableFile.exists()) return null;
+    final File originalFile = getOriginalFile();
+    try {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(tableFile)));
+      try {
+        if (input.readInt() != ENTRIES_TABLE_VERSION ||
+            !originalFile.getPath().equals(IOUtil.readString(input)) ||
+            input.readLong() != originalFile.length() ||
+            input.readLong() != originalFile.lastModified()) {
+          return null;
+        }
+
+        final int count = DataInputOutputUtil.readINT(input);
+        final Map<String, EntryInfo> map = new THashMap<String, EntryInfo>(count + 1);
+        map.put("", new EntryInfo("", null, true));
+        for (int i = 0; i < count; i++) {
+          final String path = IOUtil.readString(input);
+          final EntryInfo info = getOrCreate(path, input.readBoolean(), map);
+          info.length = input.readLong();
+          info.timestamp = input.readLong();
+        }
+        return map;
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot load entries of " + originalFile.getPath() + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * @return {@code true} if the table was written by another version or for a jar which has been changed or deleted since,
+   * so it will never be loaded
+   */
+  protected static boolean isEntriesTableStale(@NotNull File tableFile) {
+    try {
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(tableFile)));
+      try {
+        if (input.readInt() != ENTRIES_TABLE_VERSION) {
+          return true;
+        }
+        final File originalFile = new File(IOUtil.readString(input));
+        return input.readLong() != originalFile.length() || input.readLong() != originalFile.lastModified();
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      return true;
+    }
+  }
+
+  private void saveEntriesTable(@NotNull File tableFile, @NotNull Map<String, EntryInfo> map) {
+    final File originalFile = getOriginalFile();
+    try {
+      FileUtil.createParentDirs(tableFile);
+      final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tableFile)));
+      try {
+        output.writeInt(ENTRIES_TABLE_VERSION);
+        IOUtil.writeString(originalFile.getPath(), output);
+        output.writeLong(originalFile.length());
+        output.writeLong(originalFile.lastModified());
+        DataInputOutputUtil.writeINT(output, map.size() - 1);
+        for (Map.Entry<String, EntryInfo> entry : map.entrySet()) {
+          if (entry.getKey().isEmpty()) continue;
+          final EntryInfo info = entry.getValue();
+          IOUtil.writeString(entry.getKey(), output);
+          output.writeBoolean(info.isDirectory);
+          output.writeLong(info.length);
+          output.writeLong(info.timestamp);
+        }
+      }
+      finally {
+        output.close();
+      }
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save entries of " + originalFile.getPath() + ": " + e.getMessage());
+      FileUtil.delete(tableFile);
+    }
+  }
+
   public File getMirrorFile(@NotNull File originalFile) {
     return originalFile;
   }
@@ -270,9 +382,9 @@ public class JarHandlerBase {
   }
 
   public long getLength(@NotNull final VirtualFile file) {
-    final JarFile.JarEntry entry = convertToEntry(file);
     synchronized (lock) {
-      return entry == null ? DEFAULT_LENGTH : entry.getSize();
+      final EntryInfo info = getEntryInfo(file);
+      return info == null ? DEFAULT_LENGTH : info.length;
     }
   }
 
@@ -305,9 +417,9 @@ public class JarHandlerBase {
 
   public long getTimeStamp(@NotNull final VirtualFile file) {
     if (file.getParent() == null) return getOriginalFile().lastModified(); // Optimization
-    final JarFile.JarEntry entry = convertToEntry(file);
     synchronized (lock) {
-      return entry == null ? DEFAULT_TIMESTAMP : entry.getTime();
+      final EntryInfo info = getEntryInfo(file);
+      return info == null ? DEFAULT_TIMESTAMP : info.timestamp;
     }
   }
 
@@ -331,13 +443,10 @@ public class JarHandlerBase {
 
   @Nullable
   public FileAttributes getAttributes(@NotNull final VirtualFile file) {
-    final JarFile.JarEntry entry = convertToEntry(file);
     synchronized (lock) {
       final EntryInfo entryInfo = getEntryInfo(getRelativePath(file));
       if (entryInfo == null) return null;
-      final long length = entry != null ? entry.getSize() : DEFAULT_LENGTH;
-      final long timeStamp = entry != null ? entry.getTime() : DEFAULT_TIMESTAMP;
-      return new FileAttributes(entryInfo.isDirectory, false, false, false, length, timeStamp, false);
+      return new FileAttributes(entryInfo.isDirectory, false, false, false, entryInfo.length, entryInfo.timestamp, false);
     }
   }
 }
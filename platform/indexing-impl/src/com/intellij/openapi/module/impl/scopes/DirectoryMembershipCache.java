@@ -0,0 +1,145 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.module.impl.scopes;
+
+import com.intellij.openapi.roots.impl.DirectoryIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWithId;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Bitmap of scope membership keyed by VFS directory id. Scopes whose {@code contains} depends only on the
+ * {@link com.intellij.openapi.roots.impl.DirectoryInfo} of the file's directory can answer repeated queries with a bit test
+ * instead of root lookups. A few bits (computed, value, has file roots) are kept per directory in lazily allocated pages, and
+ * files are answered from the bits of their parent. Files which have infos of their own (single-file library roots) aren't
+ * cached, since their answer may differ from the one of their directory.
+ * <p/>
+ * When the directory index changes only some directories (directory creation, deletion, move), just their bits are cleared;
+ * otherwise the whole bitmap is dropped. Bits are stored only if the index hasn't changed since the query started, so an
+ * unsynchronized read racing with a write can only miss a cached bit, never get a wrong one.
+ */
+abstract class DirectoryMembershipCache {
+  private static final int PAGE_SHIFT = 11;
+  private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+  private static final int BITS_PER_ID = 4;
+  private static final int IDS_PER_INT = 32 / BITS_PER_ID;
+
+  private static final int COMPUTED = 1;
+  private static final int CONTAINS = 2;
+  private static final int HAS_FILE_ROOTS = 4;
+
+  private final DirectoryIndex myIndex;
+  private volatile Bitmap myBitmap;
+
+  DirectoryMembershipCache(@NotNull DirectoryIndex index) {
+    myIndex = index;
+  }
+
+  protected abstract boolean computeContains(@NotNull VirtualFile fileOrDir);
+
+  boolean contains(@NotNull VirtualFile file) {
+    boolean isDirectory = file.isDirectory();
+    VirtualFile dir = isDirectory ? file : file.getParent();
+    if (!(dir instanceof VirtualFileWithId)) {
+      return computeContains(file);
+    }
+    int id = ((VirtualFileWithId)dir).getId();
+    if (id <= 0) {
+      return computeContains(file);
+    }
+
+    long modificationCount = myIndex.getModificationCount();
+    Bitmap bitmap = myBitmap;
+    if (bitmap == null || !bitmap.update(myIndex, modificationCount)) {
+      myBitmap = bitmap = new Bitmap(modificationCount);
+    }
+
+    int bits = bitmap.get(id);
+    if ((bits & COMPUTED) == 0) {
+      bits = COMPUTED;
+      if (computeContains(dir)) bits |= CONTAINS;
+      if (myIndex.hasFileRoots(dir)) bits |= HAS_FILE_ROOTS;
+      bitmap.set(id, bits, modificationCount);
+    }
+    if (!isDirectory && (bits & HAS_FILE_ROOTS) != 0) {
+      return computeContains(file);
+    }
+    return (bits & CONTAINS) != 0;
+  }
+
+  private static class Bitmap {
+    private volatile long myModificationCount;
+    private volatile int[][] myPages = new int[0][];
+
+    private Bitmap(long modificationCount) {
+      myModificationCount = modificationCount;
+    }
+
+    /**
+     * Brings the bitmap to the given modification count of the index by clearing the bits of the directories changed since.
+     * @return false if the changes aren't known, and the bitmap can't be used anymore
+     */
+    private boolean update(@NotNull DirectoryIndex index, long modificationCount) {
+      if (myModificationCount >= modificationCount) return true;
+      synchronized (this) {
+        if (myModificationCount >= modificationCount) return true;
+        int[] changedDirs = index.getChangedDirectories(myModificationCount, modificationCount);
+        if (changedDirs == null) return false;
+        for (int id : changedDirs) {
+          int[] page = getPage(id);
+          if (page != null) {
+            int offset = id & PAGE_MASK;
+            page[offset / IDS_PER_INT] &= ~(((1 << BITS_PER_ID) - 1) << (offset % IDS_PER_INT * BITS_PER_ID));
+          }
+        }
+        myModificationCount = modificationCount;
+        return true;
+      }
+    }
+
+    @Nullable
+    private int[] getPage(int id) {
+      int[][] pages = myPages;
+      int pageIndex = id >>> PAGE_SHIFT;
+      return pageIndex < pages.length ? pages[pageIndex] : null;
+    }
+
+    private int get(int id) {
+      int[] page = getPage(id);
+      if (page == null) return 0;
+      int offset = id & PAGE_MASK;
+      return page[offset / IDS_PER_INT] >>> (offset % IDS_PER_INT * BITS_PER_ID) & ((1 << BITS_PER_ID) - 1);
+    }
+
+    private synchronized void set(int id, int bits, long modificationCount) {
+      if (modificationCount != myModificationCount) return; // computed against another state of the index
+      int[][] pages = myPages;
+      int pageIndex = id >>> PAGE_SHIFT;
+      if (pageIndex >= pages.length) {
+        int[][] newPages = new int[Math.max(pageIndex + 1, pages.length * 3 / 2)][];
+        System.arraycopy(pages, 0, newPages, 0, pages.length);
+        myPages = pages = newPages;
+      }
+      int[] page = pages[pageIndex];
+      if (page == null) {
+        pages[pageIndex] = page = new int[(PAGE_MASK + 1) / IDS_PER_INT];
+      }
+      int offset = id & PAGE_MASK;
+      page[offset / IDS_PER_INT] |= bits << (offset % IDS_PER_INT * BITS_PER_ID);
+    }
+  }
+}
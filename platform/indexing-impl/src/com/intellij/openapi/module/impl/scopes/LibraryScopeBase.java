@@ -19,6 +19,7 @@ import com.intellij.openapi.module.Module;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.roots.impl.DirectoryIndex;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -34,6 +35,7 @@ import java.util.LinkedHashSet;
 public abstract class LibraryScopeBase extends GlobalSearchScope {
   private final LinkedHashSet<VirtualFile> myEntries;
   protected final ProjectFileIndex myIndex;
+  private final DirectoryMembershipCache myContainsCache;
 
   public LibraryScopeBase(Project project, VirtualFile[] classes, VirtualFile[] sources) {
     super(project);
@@ -41,10 +43,16 @@ public abstract class LibraryScopeBase extends GlobalSearchScope {
     myEntries = new LinkedHashSet<VirtualFile>(classes.length + sources.length);
     Collections.addAll(myEntries, classes);
     Collections.addAll(myEntries, sources);
+    myContainsCache = new DirectoryMembershipCache(DirectoryIndex.getInstance(project)) {
+      @Override
+      protected boolean computeContains(@NotNull VirtualFile fileOrDir) {
+        return myEntries.contains(getFileRoot(fileOrDir));
+      }
+    };
   }
 
   public boolean contains(VirtualFile file) {
-    return myEntries.contains(getFileRoot(file));
+    return myContainsCache.contains(file);
   }
 
   @Nullable
@@ -17,6 +17,7 @@ package com.intellij.openapi.module.impl.scopes;
 
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.roots.*;
+import com.intellij.openapi.roots.impl.DirectoryIndex;
 import com.intellij.openapi.util.Comparing;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiBundle;
@@ -53,6 +54,7 @@ public class ModuleWithDependenciesScope extends GlobalSearchScope {
 
   private final Set<Module> myModules;
   private final TObjectIntHashMap<VirtualFile> myRoots = new TObjectIntHashMap<VirtualFile>();
+  private final DirectoryMembershipCache myContainsCache;
 
   public ModuleWithDependenciesScope(Module module, @ScopeConstant int options) {
     super(module.getProject());
@@ -60,6 +62,12 @@ public class ModuleWithDependenciesScope extends GlobalSearchScope {
     myOptions = options;
 
     myProjectFileIndex = ProjectRootManager.getInstance(getProject()).getFileIndex();
+    myContainsCache = new DirectoryMembershipCache(DirectoryIndex.getInstance(getProject())) {
+      @Override
+      protected boolean computeContains(@NotNull VirtualFile fileOrDir) {
+        return doContains(fileOrDir);
+      }
+    };
 
     OrderEnumerator en = ModuleRootManager.getInstance(module).orderEntries();
     /*if (myIncludeOtherModules) */en.recursively();
@@ -148,6 +156,10 @@ public class ModuleWithDependenciesScope extends GlobalSearchScope {
 
   @Override
   public boolean contains(VirtualFile file) {
+    return myContainsCache.contains(file);
+  }
+
+  private boolean doContains(@NotNull VirtualFile file) {
     if (hasOption(CONTENT)) {
       return myRoots.contains(myProjectFileIndex.getContentRootForFile(file));
     }
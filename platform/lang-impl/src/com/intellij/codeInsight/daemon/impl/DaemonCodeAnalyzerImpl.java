@@ -24,6 +24,7 @@ import com.intellij.codeInsight.daemon.*;
 import com.intellij.codeInsight.hint.HintManager;
 import com.intellij.codeInsight.intention.impl.IntentionHintComponent;
 import com.intellij.concurrency.Job;
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.ide.PowerSaveMode;
 import com.intellij.lang.annotation.HighlightSeverity;
 import com.intellij.openapi.Disposable;
@@ -47,6 +48,7 @@ import com.intellij.openapi.fileEditor.TextEditor;
 import com.intellij.openapi.fileEditor.impl.text.TextEditorProvider;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.*;
 import com.intellij.openapi.vfs.VirtualFile;
@@ -786,10 +788,18 @@ public class DaemonCodeAnalyzerImpl extends DaemonCodeAnalyzer implements JDOMEx
 
   @NotNull
   private synchronized DaemonProgressIndicator createUpdateProgress() {
+    final ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.HIGHLIGHTING, "Highlighting pass");
     DaemonProgressIndicator progress = new DaemonProgressIndicator() {
       @Override
       public void stopIfRunning() {
         super.stopIfRunning();
+        if (!isCanceled() && ActivityTracer.isTimelineActive()) {
+          activity.end();
+          // the timeline of project opening ends with the first complete highlighting
+          if (!DumbService.isDumb(myProject)) {
+            ActivityTracer.completeTimeline();
+          }
+        }
         myProject.getMessageBus().syncPublisher(DAEMON_EVENT_TOPIC).daemonFinished();
       }
     };
@@ -23,11 +23,14 @@ package com.intellij.ide.todo;
 import com.intellij.ide.todo.nodes.ToDoRootNode;
 import com.intellij.ide.util.treeView.AbstractTreeNode;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vfs.VfsUtil;
 import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 
 public class ChangeListTodosTreeStructure extends TodoTreeStructure {
@@ -37,17 +40,31 @@ public class ChangeListTodosTreeStructure extends TodoTreeStructure {
 
   @Override
   public boolean accept(final PsiFile psiFile) {
+    return accept(psiFile, ChangeListManager.getInstance(myProject).getDefaultChangeList().getChanges());
+  }
+
+  @NotNull
+  @Override
+  Condition<PsiFile> createFileCondition() {
+    final Collection<Change> changes = new ArrayList<Change>(ChangeListManager.getInstance(myProject).getDefaultChangeList().getChanges());
+    return new Condition<PsiFile>() {
+      @Override
+      public boolean value(PsiFile psiFile) {
+        return accept(psiFile, changes);
+      }
+    };
+  }
+
+  private boolean accept(PsiFile psiFile, Collection<Change> changes) {
     if (!psiFile.isValid()) return false;
     boolean isAffected = false;
-    final Collection<Change> changes = ChangeListManager.getInstance(myProject).getDefaultChangeList().getChanges();
     for (Change change : changes) {
       if (change.affectsFile(VfsUtil.virtualToIoFile(psiFile.getVirtualFile()))) {
         isAffected = true;
         break;
       }
     }
-    return isAffected && (myTodoFilter != null && myTodoFilter.accept(mySearchHelper, psiFile) ||
-                          (myTodoFilter == null && mySearchHelper.getTodoItemsCount(psiFile) > 0));
+    return isAffected && getTodoItemCount(psiFile) > 0;
   }
 
   @Override
@@ -44,6 +44,7 @@ public class CurrentFileTodosTreeBuilder extends TodoTreeBuilder{
     myFile2Highlighter.clear();
 
     CurrentFileTodosTreeStructure treeStructure=(CurrentFileTodosTreeStructure)getTreeStructure();
+    treeStructure.clearTodoItemCounts();
     PsiFile psiFile=treeStructure.getFile();
     if(treeStructure.accept(psiFile)){
       myFileTree.add(psiFile.getVirtualFile());
@@ -186,6 +186,7 @@ public class CustomChangelistTodosTreeBuilder extends TodoTreeBuilder {
     myFile2Highlighter.clear();
 
     TodoTreeStructure treeStructure=getTodoTreeStructure();
+    treeStructure.clearTodoItemCounts();
     PsiFile[] psiFiles= myPsiTodoSearchHelper.findFilesWithTodoItems();
     for(int i=0;i<psiFiles.length;i++){
       PsiFile psiFile=psiFiles[i];
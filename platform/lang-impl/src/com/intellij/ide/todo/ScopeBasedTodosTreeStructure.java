@@ -24,6 +24,7 @@ import com.intellij.ide.todo.nodes.ToDoRootNode;
 import com.intellij.ide.util.scopeChooser.ScopeChooserCombo;
 import com.intellij.ide.util.treeView.AbstractTreeNode;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.vcs.changes.Change;
 import com.intellij.openapi.vcs.changes.ChangeListManager;
 import com.intellij.openapi.vfs.VfsUtil;
@@ -32,6 +33,8 @@ import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.scope.packageSet.NamedScope;
 import com.intellij.psi.search.scope.packageSet.NamedScopesHolder;
 import com.intellij.psi.search.scope.packageSet.PackageSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import java.util.Collection;
@@ -46,17 +49,31 @@ public class ScopeBasedTodosTreeStructure extends TodoTreeStructure {
 
   @Override
   public boolean accept(final PsiFile psiFile) {
+    return accept(psiFile, (ScopeBasedTodosPanel.ScopeWrapper)myScopes.getSelectedItem());
+  }
+
+  @NotNull
+  @Override
+  Condition<PsiFile> createFileCondition() {
+    final ScopeBasedTodosPanel.ScopeWrapper scope = (ScopeBasedTodosPanel.ScopeWrapper)myScopes.getSelectedItem();
+    return new Condition<PsiFile>() {
+      @Override
+      public boolean value(PsiFile psiFile) {
+        return accept(psiFile, scope);
+      }
+    };
+  }
+
+  private boolean accept(PsiFile psiFile, @Nullable ScopeBasedTodosPanel.ScopeWrapper scope) {
     if (!psiFile.isValid()) return false;
     boolean isAffected = false;
-    final ScopeBasedTodosPanel.ScopeWrapper scope = (ScopeBasedTodosPanel.ScopeWrapper)myScopes.getSelectedItem();
     if (scope != null) {
       final PackageSet value = scope.getNamedScope().getValue();
       if (value != null) {
         isAffected = value.contains(psiFile, NamedScopesHolder.getHolder(myProject, scope.getName(), DependencyValidationManager.getInstance(myProject)));
       }
     }
-    return isAffected && (myTodoFilter != null && myTodoFilter.accept(mySearchHelper, psiFile) ||
-                          (myTodoFilter == null && mySearchHelper.getTodoItemsCount(psiFile) > 0));
+    return isAffected && getTodoItemCount(psiFile) > 0;
   }
 
   @Override
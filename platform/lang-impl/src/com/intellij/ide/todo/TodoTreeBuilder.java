@@ -23,12 +23,14 @@ import com.intellij.ide.todo.nodes.TodoFileNode;
 import com.intellij.ide.todo.nodes.TodoItemNode;
 import com.intellij.ide.todo.nodes.TodoTreeHelper;
 import com.intellij.ide.util.treeView.*;
+import com.intellij.concurrency.JobLauncher;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.highlighter.EditorHighlighter;
 import com.intellij.openapi.module.Module;
 import com.intellij.openapi.module.ModuleUtilCore;
 import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.util.StatusBarProgress;
 import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.IndexNotReadyException;
@@ -38,13 +40,18 @@ import com.intellij.openapi.roots.ProjectFileIndex;
 import com.intellij.openapi.roots.ProjectRootManager;
 import com.intellij.openapi.util.ActionCallback;
 import com.intellij.openapi.util.AsyncResult;
+import com.intellij.openapi.util.Condition;
 import com.intellij.openapi.vcs.FileStatusListener;
 import com.intellij.openapi.vcs.FileStatusManager;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileAdapter;
+import com.intellij.openapi.vfs.VirtualFileEvent;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.*;
 import com.intellij.psi.search.PsiTodoSearchHelper;
 import com.intellij.psi.util.PsiTreeUtil;
 import com.intellij.usageView.UsageTreeColorsScheme;
+import com.intellij.util.Processor;
 import com.intellij.util.containers.HashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -101,6 +108,7 @@ public abstract class TodoTreeBuilder extends AbstractTreeBuilder {
     PsiManager psiManager = PsiManager.getInstance(myProject);
     mySearchHelper = PsiTodoSearchHelper.SERVICE.getInstance(myProject);
     psiManager.addPsiTreeChangeListener(new MyPsiTreeChangeListener());
+    VirtualFileManager.getInstance().addVirtualFileListener(new MyVirtualFileListener(), this);
 
     myFileStatusListener = new MyFileStatusListener();
 
@@ -352,7 +360,11 @@ public abstract class TodoTreeBuilder extends AbstractTreeBuilder {
   private void markFileAsDirty(@NotNull PsiFile psiFile) {
     VirtualFile vFile = psiFile.getVirtualFile();
     if (vFile != null) { // If PSI file isn't valid then its VirtualFile can be null
-        myDirtyFileSet.add(vFile);
+      myDirtyFileSet.add(vFile);
+      TodoTreeStructure treeStructure = getTodoTreeStructure();
+      if (treeStructure != null) {
+        treeStructure.invalidateTodoItemCount(vFile);
+      }
     }
   }
 
@@ -361,10 +373,24 @@ public abstract class TodoTreeBuilder extends AbstractTreeBuilder {
     myDirtyFileSet.clear();
     myFile2Highlighter.clear();
 
-    TodoTreeStructure treeStructure=getTodoTreeStructure();
+    final TodoTreeStructure treeStructure=getTodoTreeStructure();
+    treeStructure.clearTodoItemCounts();
     PsiFile[] psiFiles= mySearchHelper.findFilesWithTodoItems();
+    // counting is an index query per file and pattern, do it in parallel and add accepted files in the original order
+    final Condition<PsiFile> condition = treeStructure.createFileCondition();
+    final Set<PsiFile> accepted = Collections.synchronizedSet(new HashSet<PsiFile>());
+    JobLauncher.getInstance().invokeConcurrentlyUnderProgress(Arrays.asList(psiFiles), ProgressManager.getInstance().getProgressIndicator(),
+                                                              false, new Processor<PsiFile>() {
+      @Override
+      public boolean process(PsiFile psiFile) {
+        if (condition.value(psiFile)) {
+          accepted.add(psiFile);
+        }
+        return true;
+      }
+    });
     for (PsiFile psiFile : psiFiles) {
-      if (mySearchHelper.getTodoItemsCount(psiFile) > 0 && treeStructure.accept(psiFile)) {
+      if (accepted.contains(psiFile)) {
         myFileTree.add(psiFile.getVirtualFile());
       }
     }
@@ -825,6 +851,17 @@ public abstract class TodoTreeBuilder extends AbstractTreeBuilder {
     }
   }
 
+  private final class MyVirtualFileListener extends VirtualFileAdapter {
+    @Override
+    public void beforeFileDeletion(VirtualFileEvent event) {
+      // deleted files outside the tree, e.g. ones without T.O.D.O items for the current filter, are never marked dirty
+      TodoTreeStructure treeStructure = getTodoTreeStructure();
+      if (treeStructure != null) {
+        treeStructure.invalidateTodoItemCountsUnder(event.getFile());
+      }
+    }
+  }
+
   private final class MyFileStatusListener implements FileStatusListener {
     @Override
     public void fileStatusesChanged() {
@@ -20,17 +20,22 @@ import com.intellij.ide.projectView.TreeStructureProvider;
 import com.intellij.ide.util.treeView.AbstractTreeNode;
 import com.intellij.ide.util.treeView.AbstractTreeStructureBase;
 import com.intellij.ide.util.treeView.NodeDescriptor;
+import com.intellij.openapi.project.DumbService;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.ActionCallback;
+import com.intellij.openapi.util.Computable;
+import com.intellij.openapi.util.Condition;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDocumentManager;
 import com.intellij.psi.PsiFile;
 import com.intellij.psi.search.PsiTodoSearchHelper;
 import com.intellij.psi.search.TodoPattern;
+import gnu.trove.THashMap;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
 
 /**
  * @author Vladimir Kondratyev
@@ -50,6 +55,17 @@ public abstract class TodoTreeStructure extends AbstractTreeStructureBase implem
    * Current <code>TodoFilter</code>. If no filter is set then this field is <code>null</code>.
    */
   protected TodoFilter myTodoFilter;
+  /**
+   * T.O.D.O counts of files for the current filter. Directory, module and summary nodes sum these up on every update,
+   * which otherwise costs an index query per file and pattern.
+   */
+  private final Map<VirtualFile, FileTodoCount> myTodoItemCounts = new THashMap<VirtualFile, FileTodoCount>();
+  /**
+   * Sums of file counts for directory, module and summary nodes, keyed by the directory's file, the module or the summary
+   * element. Dropping the count of a file drops the sums of the directories above it, all module sums and the summary.
+   */
+  private final Map<Object, Integer> myAggregateCounts = new THashMap<Object, Integer>();
+  private long myCountsModificationCount; // guarded by myTodoItemCounts
 
   public TodoTreeStructure(Project project){
     super(project);
@@ -67,6 +83,20 @@ public abstract class TodoTreeStructure extends AbstractTreeStructureBase implem
 
   public abstract boolean accept(PsiFile psiFile);
 
+  /**
+   * @return condition equivalent to {@link #accept(PsiFile)} which can be checked on pooled threads. UI and VCS state the
+   *         structure depends on is read here, on the calling thread.
+   */
+  @NotNull
+  Condition<PsiFile> createFileCondition() {
+    return new Condition<PsiFile>() {
+      @Override
+      public boolean value(PsiFile psiFile) {
+        return accept(psiFile);
+      }
+    };
+  }
+
   /**
    * Validate whole the cache
    */
@@ -95,6 +125,64 @@ public abstract class TodoTreeStructure extends AbstractTreeStructureBase implem
    */
   final void setTodoFilter(TodoFilter todoFilter){
     myTodoFilter=todoFilter;
+    clearTodoItemCounts();
+  }
+
+  final void clearTodoItemCounts() {
+    synchronized (myTodoItemCounts) {
+      myTodoItemCounts.clear();
+      myAggregateCounts.clear();
+      myCountsModificationCount++;
+    }
+  }
+
+  final void invalidateTodoItemCount(@NotNull VirtualFile file) {
+    synchronized (myTodoItemCounts) {
+      FileTodoCount removed = myTodoItemCounts.remove(file);
+      invalidateAggregateCounts(file.getParent());
+      if (removed != null && removed.myParent != file.getParent()) { // moved since it was counted
+        invalidateAggregateCounts(removed.myParent);
+      }
+      myCountsModificationCount++;
+    }
+  }
+
+  /**
+   * Drops the counts of the deleted file or of all files under the deleted directory.
+   */
+  final void invalidateTodoItemCountsUnder(@NotNull VirtualFile fileOrDir) {
+    synchronized (myTodoItemCounts) {
+      if (!fileOrDir.isDirectory()) {
+        invalidateTodoItemCount(fileOrDir);
+        return;
+      }
+      for (Iterator<Map.Entry<VirtualFile, FileTodoCount>> i = myTodoItemCounts.entrySet().iterator(); i.hasNext(); ) {
+        Map.Entry<VirtualFile, FileTodoCount> entry = i.next();
+        if (VfsUtilCore.isAncestor(fileOrDir, entry.getKey(), true)) {
+          i.remove();
+          invalidateAggregateCounts(entry.getValue().myParent);
+        }
+      }
+      for (Iterator<Object> i = myAggregateCounts.keySet().iterator(); i.hasNext(); ) {
+        Object key = i.next();
+        if (key instanceof VirtualFile && VfsUtilCore.isAncestor(fileOrDir, (VirtualFile)key, false)) {
+          i.remove();
+        }
+      }
+      invalidateAggregateCounts(fileOrDir.getParent());
+      myCountsModificationCount++;
+    }
+  }
+
+  private void invalidateAggregateCounts(@Nullable VirtualFile dir) {
+    for (VirtualFile d = dir; d != null; d = d.getParent()) {
+      myAggregateCounts.remove(d);
+    }
+    for (Iterator<Object> i = myAggregateCounts.keySet().iterator(); i.hasNext(); ) {
+      if (!(i.next() instanceof VirtualFile)) { // module and summary sums
+        i.remove();
+      }
+    }
   }
 
   /**
@@ -106,15 +194,63 @@ public abstract class TodoTreeStructure extends AbstractTreeStructureBase implem
    * @return number of <code>TodoItem</code>s located in the file.
    */
   public final int getTodoItemCount(PsiFile psiFile){
+    if (psiFile == null) {
+      return 0;
+    }
+    VirtualFile file = psiFile.getVirtualFile();
+    long stamp = psiFile.getModificationStamp();
+    if (file != null) {
+      synchronized (myTodoItemCounts) {
+        FileTodoCount cached = myTodoItemCounts.get(file);
+        if (cached != null && cached.myStamp == stamp) {
+          return cached.myCount;
+        }
+      }
+    }
+
+    boolean dumb = DumbService.isDumb(myProject);
     int count=0;
-    if(psiFile != null){
-      if(myTodoFilter!=null){
-        for(Iterator i=myTodoFilter.iterator();i.hasNext();){
-          TodoPattern pattern=(TodoPattern)i.next();
-          count+=getSearchHelper().getTodoItemsCount(psiFile,pattern);
+    if(myTodoFilter!=null){
+      for(Iterator i=myTodoFilter.iterator();i.hasNext();){
+        TodoPattern pattern=(TodoPattern)i.next();
+        count+=getSearchHelper().getTodoItemsCount(psiFile,pattern);
+      }
+    }else{
+      count=getSearchHelper().getTodoItemsCount(psiFile);
+    }
+
+    // TodoIndex isn't available in dumb mode, and a count computed without it mustn't outlive the dumb mode
+    if (file != null && !dumb && !DumbService.isDumb(myProject)) {
+      synchronized (myTodoItemCounts) {
+        myTodoItemCounts.put(file, new FileTodoCount(stamp, count, file.getParent()));
+      }
+    }
+    return count;
+  }
+
+  /**
+   * @param key directory file, module or summary element the sum is computed for
+   * @return sum of <code>TodoItem</code>s computed by <code>sum</code> from {@link #getTodoItemCount(PsiFile)}, cached
+   *         until the count of some file it may include is dropped.
+   */
+  public final int getAggregateTodoItemCount(@NotNull Object key, @NotNull Computable<Integer> sum) {
+    long modificationCount;
+    synchronized (myTodoItemCounts) {
+      Integer cached = myAggregateCounts.get(key);
+      if (cached != null) {
+        return cached;
+      }
+      modificationCount = myCountsModificationCount;
+    }
+
+    boolean dumb = DumbService.isDumb(myProject);
+    int count = sum.compute();
+
+    if (!dumb && !DumbService.isDumb(myProject)) {
+      synchronized (myTodoItemCounts) {
+        if (modificationCount == myCountsModificationCount) {
+          myAggregateCounts.put(key, count);
         }
-      }else{
-        count=getSearchHelper().getTodoItemsCount(psiFile);
       }
     }
     return count;
@@ -171,4 +307,16 @@ public abstract class TodoTreeStructure extends AbstractTreeStructureBase implem
   public boolean isModulesShown() {
     return myAreModulesShown;
   }
-}
\ No newline at end of file
+
+  private static class FileTodoCount {
+    private final long myStamp;
+    private final int myCount;
+    private final VirtualFile myParent; // directory the file was counted in
+
+    private FileTodoCount(long stamp, int count, @Nullable VirtualFile parent) {
+      myStamp = stamp;
+      myCount = count;
+      myParent = parent;
+    }
+  }
+}
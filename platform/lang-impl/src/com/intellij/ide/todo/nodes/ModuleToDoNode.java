@@ -128,18 +128,23 @@ public class ModuleToDoNode extends BaseToDoNode<Module> implements HighlightedR
 
   @Override
   public int getTodoItemCount(final Module val) {
-    Iterator<PsiFile> iterator = myBuilder.getFiles(val);
-    int count = 0;
-    while (iterator.hasNext()) {
-      final PsiFile psiFile = iterator.next();
-      count += ApplicationManager.getApplication().runReadAction(new Computable<Integer>() {
-        @Override
-        public Integer compute() {
-          return getTreeStructure().getTodoItemCount(psiFile);
+    return getTreeStructure().getAggregateTodoItemCount(val, new Computable<Integer>() {
+      @Override
+      public Integer compute() {
+        Iterator<PsiFile> iterator = myBuilder.getFiles(val);
+        int count = 0;
+        while (iterator.hasNext()) {
+          final PsiFile psiFile = iterator.next();
+          count += ApplicationManager.getApplication().runReadAction(new Computable<Integer>() {
+            @Override
+            public Integer compute() {
+              return getTreeStructure().getTodoItemCount(psiFile);
+            }
+          });
         }
-      });
-    }
-    return count;
+        return count;
+      }
+    });
   }
 
   @Override
@@ -123,18 +123,23 @@ public class SummaryNode extends BaseToDoNode<ToDoSummary> {
 
   @Override
   public int getTodoItemCount(final ToDoSummary val) {
-    int count = 0;
-    for(final Iterator<PsiFile> i=myBuilder.getAllFiles();i.hasNext();){
-        count+= ApplicationManager.getApplication().runReadAction(
-            new Computable<Integer>() {
-              @Override
-              public Integer compute() {
-                return getTreeStructure().getTodoItemCount(i.next());
+    return getTreeStructure().getAggregateTodoItemCount(val, new Computable<Integer>() {
+      @Override
+      public Integer compute() {
+        int count = 0;
+        for(final Iterator<PsiFile> i=myBuilder.getAllFiles();i.hasNext();){
+          count+= ApplicationManager.getApplication().runReadAction(
+              new Computable<Integer>() {
+                @Override
+                public Integer compute() {
+                  return getTreeStructure().getTodoItemCount(i.next());
+                }
               }
-            }
-        );
+          );
+        }
+        return count;
       }
-    return count;
+    });
   }
 
   @Override
@@ -31,6 +31,7 @@ import com.intellij.openapi.ide.CopyPasteManager;
 import com.intellij.openapi.project.IndexNotReadyException;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.util.Computable;
 import com.intellij.openapi.vcs.FileStatusManager;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.psi.PsiDirectory;
@@ -134,17 +135,22 @@ public final class TodoDirNode extends PsiDirectoryNode implements HighlightedRe
     return count;
   }
 
-  public int getTodoItemCount(PsiDirectory directory) {
+  public int getTodoItemCount(final PsiDirectory directory) {
     if (TodoTreeHelper.getInstance(getProject()).skipDirectory(directory)) {
       return 0;
     }
-    int count = 0;
-    Iterator<PsiFile> iterator = myBuilder.getFiles(directory);
-    while (iterator.hasNext()) {
-      PsiFile psiFile = iterator.next();
-      count += getStructure().getTodoItemCount(psiFile);
-    }
-    return count;
+    return getStructure().getAggregateTodoItemCount(directory.getVirtualFile(), new Computable<Integer>() {
+      @Override
+      public Integer compute() {
+        int count = 0;
+        Iterator<PsiFile> iterator = myBuilder.getFiles(directory);
+        while (iterator.hasNext()) {
+          PsiFile psiFile = iterator.next();
+          count += getStructure().getTodoItemCount(psiFile);
+        }
+        return count;
+      }
+    });
   }
 
   @Override
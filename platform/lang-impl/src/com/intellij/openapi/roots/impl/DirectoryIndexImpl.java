@@ -56,10 +56,12 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DirectoryIndexImpl extends DirectoryIndex {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.roots.impl.DirectoryIndexImpl");
   private static final boolean CHECK = ApplicationManager.getApplication().isUnitTestMode();
+  private static final int MAX_TRACKED_CHANGES = 16;
   private static final TObjectHashingStrategy<int[]> INT_ARRAY_STRATEGY = new TObjectHashingStrategy<int[]>() {
     @Override
     public int computeHashCode(int[] object) {
@@ -78,6 +80,9 @@ public class DirectoryIndexImpl extends DirectoryIndex {
   private final DirectoryIndexExcludePolicy[] myExcludePolicies;
 
   private volatile IndexState myState = new IndexState();
+  private final AtomicLong myModificationCount = new AtomicLong();
+  // ids of directories changed by the latest local updates, the last element for the current modification count
+  private final LinkedList<int[]> myRecentChanges = new LinkedList<int[]>();
   private volatile boolean myInitialized = false;
   private volatile boolean myDisposed = false;
   private final PackageSink mySink = new PackageSink();
@@ -103,6 +108,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
         myState.myExcludeRootsMap.clear();
         myState.myPackageNameToDirsMap.clear();
         myState.myProjectExcludeRoots.clear();
+        myState.myDirsWithFileRoots.clear();
       }
     });
   }
@@ -181,7 +187,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
       DirectoryInfo existing = myState.getInfo(((NewVirtualFile)file).getId());
       assert existing == null : file+" -> "+existing;
       IndexState newState = updateStateWithNewFile((NewVirtualFile)file, (NewVirtualFile)parent);
-      replaceState(newState);
+      replaceState(newState, collectDirectoryIds(file));
     }
 
     @NotNull
@@ -306,7 +312,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
       }
 
       if (copy != null) {
-        replaceState(copy);
+        replaceState(copy, list);
       }
       myState.assertAncestorsConsistent();
     }
@@ -315,7 +321,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
     public void fileMoved(VirtualFileMoveEvent event) {
       VirtualFile file = event.getFile();
       if (file.isDirectory()) {
-        doInitialize();
+        doInitialize(collectDirectoryIds(file));
       }
       myState.assertAncestorsConsistent();
     }
@@ -325,7 +331,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
       if (VirtualFile.PROP_NAME.equals(event.getPropertyName())) {
         VirtualFile file = event.getFile();
         if (file.isDirectory()) {
-          doInitialize();
+          doInitialize(collectDirectoryIds(file));
         }
       }
       myState.assertAncestorsConsistent();
@@ -390,9 +396,74 @@ public class DirectoryIndexImpl extends DirectoryIndex {
     }
   }
 
+  /**
+   * Ids of the directory and all its subdirectories known to VFS: the infos a move or rename of the directory can change,
+   * since all roots outside it resolve to the same files as before.
+   */
+  @NotNull
+  private static int[] collectDirectoryIds(@NotNull VirtualFile dir) {
+    final TIntArrayList ids = new TIntArrayList();
+    VfsUtilCore.visitChildrenRecursively(dir, new VirtualFileVisitor(VirtualFileVisitor.NO_FOLLOW_SYMLINKS) {
+      @Override
+      public boolean visitFile(@NotNull VirtualFile file) {
+        if (!file.isDirectory() || !(file instanceof NewVirtualFile)) return false;
+        ids.add(((NewVirtualFile)file).getId());
+        return true;
+      }
+
+      @Override
+      public Iterable<VirtualFile> getChildrenIterable(@NotNull VirtualFile file) {
+        return ((NewVirtualFile)file).getCachedChildren();
+      }
+    });
+    return ids.toNativeArray();
+  }
+
   private void replaceState(IndexState newState) {
+    replaceState(newState, null);
+  }
+
+  private void replaceState(@NotNull IndexState newState, @Nullable int[] changedDirs) {
     newState.writable = false;
     myState = newState;
+    synchronized (myRecentChanges) {
+      if (changedDirs == null) {
+        myRecentChanges.clear();
+      }
+      else {
+        if (myRecentChanges.size() == MAX_TRACKED_CHANGES) {
+          myRecentChanges.removeFirst();
+        }
+        myRecentChanges.addLast(changedDirs);
+      }
+      myModificationCount.incrementAndGet();
+    }
+  }
+
+  @Override
+  public long getModificationCount() {
+    //the same as getInfoForDirectory does, so that data cached against the count isn't trusted while root events are pending
+    if (myInitialized && !myDisposed) {
+      dispatchPendingEvents();
+    }
+    return myModificationCount.get();
+  }
+
+  @Override
+  @Nullable
+  public int[] getChangedDirectories(long fromModificationCount, long toModificationCount) {
+    synchronized (myRecentChanges) {
+      long current = myModificationCount.get();
+      if (fromModificationCount < current - myRecentChanges.size() || toModificationCount > current) return null;
+
+      TIntArrayList result = new TIntArrayList();
+      int first = (int)(myRecentChanges.size() - (current - fromModificationCount));
+      int last = (int)(myRecentChanges.size() - (current - toModificationCount));
+      for (int i = first; i < last; i++) {
+        result.add(myRecentChanges.get(i));
+      }
+      return result.toNativeArray();
+    }
   }
 
   private class PackageSink extends QueryFactory<VirtualFile, Pair<IndexState, List<VirtualFile>>> {
@@ -505,9 +576,13 @@ public class DirectoryIndexImpl extends DirectoryIndex {
   }
 
   private void doInitialize() {
+    doInitialize(null);
+  }
+
+  private void doInitialize(@Nullable int[] changedDirs) {
     IndexState newState = new IndexState();
     newState.doInitialize(false);
-    replaceState(newState);
+    replaceState(newState, changedDirs);
   }
 
   private boolean isExcludeRootForModule(@NotNull Module module, VirtualFile excludeRoot) {
@@ -540,6 +615,14 @@ public class DirectoryIndexImpl extends DirectoryIndex {
     return myState.getInfo(((NewVirtualFile)dir).getId());
   }
 
+  @Override
+  public boolean hasFileRoots(@NotNull VirtualFile dir) {
+    checkAvailability();
+    dispatchPendingEvents();
+
+    return dir instanceof NewVirtualFile && myState.myDirsWithFileRoots.contains(((NewVirtualFile)dir).getId());
+  }
+
   @Override
   public boolean isProjectExcludeRoot(@NotNull VirtualFile dir) {
     checkAvailability();
@@ -624,6 +707,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
   private class IndexState {
     private final TIntObjectHashMap<Set<String>> myExcludeRootsMap = new TIntObjectHashMap<Set<String>>();
     private final TIntHashSet myProjectExcludeRoots = new TIntHashSet();
+    private final TIntHashSet myDirsWithFileRoots = new TIntHashSet(); // parents of non-directory roots which have infos
     private final TIntObjectHashMap<DirectoryInfo> myDirToInfoMap = new TIntObjectHashMap<DirectoryInfo>();
     private final TObjectIntHashMap<int[]> myPackageNameToDirsMap = new TObjectIntHashMap<int[]>(INT_ARRAY_STRATEGY);
     private final List<int[]> multiDirPackages = new ArrayList<int[]>(Arrays.asList(new int[]{-1}));
@@ -970,6 +1054,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
           if (progress != null) progress.checkCanceled();
           int dirId = ((NewVirtualFile)file).getId();
           if (!file.isDirectory() && dirId != dir.getId() || isIgnored(file)) return false;
+          if (!file.isDirectory()) markFileRoot(file);
           DirectoryInfo info = getOrCreateDirInfo(dirId);
 
           if (info.isInLibrarySource()) { // library sources overlap
@@ -1024,6 +1109,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
           if (!file.isDirectory() && !Comparing.equal(file, dir) || isIgnored(file)) return false;
 
           int dirId = ((NewVirtualFile)file).getId();
+          if (!file.isDirectory()) markFileRoot(file);
           DirectoryInfo info = getOrCreateDirInfo(dirId);
 
           if (info.hasLibraryClassRoot()) { // library classes overlap
@@ -1120,6 +1206,13 @@ public class DirectoryIndexImpl extends DirectoryIndex {
       }
     }
 
+    private void markFileRoot(@NotNull VirtualFile file) {
+      VirtualFile parent = file.getParent();
+      if (parent instanceof NewVirtualFile) {
+        myDirsWithFileRoots.add(((NewVirtualFile)parent).getId());
+      }
+    }
+
     private void setPackageName(int dirId, @Nullable int[] newPackageName) {
       assertWritable();
       int[] oldPackageName = myDirToPackageName.get(dirId);
@@ -1356,6 +1449,7 @@ public class DirectoryIndexImpl extends DirectoryIndex {
       });
 
       copy.myProjectExcludeRoots.addAll(myProjectExcludeRoots.toArray());
+      copy.myDirsWithFileRoots.addAll(myDirsWithFileRoots.toArray());
       myDirToInfoMap.forEachEntry(new TIntObjectProcedure<DirectoryInfo>() {
         @Override
         public boolean execute(int id, DirectoryInfo info) {
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.diagnostic;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import gnu.trove.TObjectIntHashMap;
+import gnu.trove.TObjectIntProcedure;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Measures how long the event dispatch thread doesn't start or finish dispatching of an event and keeps a histogram of these times.
+ * If the EDT is busy for longer than the threshold, its stack is sampled periodically and the folded stacks of the freeze
+ * (one line per distinct stack in the form of 'frame1;frame2;...;frameN count', which flame graph tools understand) are saved
+ * to {@link #getFreezesDirectory()} with a summary.
+ * <p/>
+ * The EDT only takes two timestamps per event, sampling is done by a separate thread which wakes up every sampling interval.
+ * Pass -Didea.freeze.threshold.ms=0 to disable sampling; -Didea.freeze.sampling.interval.ms changes the sampling interval.
+ */
+public class EdtResponsivenessMonitor {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.diagnostic.EdtResponsivenessMonitor");
+  private static final long THRESHOLD_MS = Long.getLong("idea.freeze.threshold.ms", 1000);
+  private static final long SAMPLING_INTERVAL_MS = Math.max(10, Long.getLong("idea.freeze.sampling.interval.ms", 100));
+  /**
+   * A long freeze is saved periodically, so the profile isn't lost if the IDE is killed because of it
+   */
+  private static final long SAVE_INTERVAL_MS = 10 * 1000;
+  private static final int FREEZES_TO_KEEP = 20;
+  private static final long IDLE = Long.MIN_VALUE;
+  @NonNls private static final String FREEZE_FILE_PREFIX = "freeze-";
+  /**
+   * Bucket i counts times less than 2^i ms, the last bucket counts longer times
+   */
+  private static final int BUCKETS = 17;
+
+  private final long[] myHistogram = new long[BUCKETS];
+  private int myDepth;
+  private boolean mySamplerStarted;
+
+  private volatile long mySegmentStart = IDLE;
+  private volatile Thread myEdt;
+  private volatile AWTEvent myEvent;
+  private volatile long myLastFreezeStart = IDLE;
+  private volatile long myLastFreezeDuration;
+
+  /**
+   * Is called by the EDT before an event (possibly a nested one) is dispatched
+   */
+  public void eventStarted(@NotNull AWTEvent event) {
+    long now = System.nanoTime();
+    if (myDepth > 0) {
+      finishSegment(now);
+    }
+    else {
+      if (!mySamplerStarted) {
+        startSampler();
+      }
+      Thread thread = Thread.currentThread();
+      if (myEdt != thread) {
+        myEdt = thread;
+      }
+    }
+    myDepth++;
+    myEvent = event;
+    mySegmentStart = now;
+  }
+
+  /**
+   * Is called by the EDT after an event is dispatched
+   * @param outerEvent event which dispatching is continued if the finished one was dispatched in a nested loop
+   */
+  public void eventFinished(@Nullable AWTEvent outerEvent) {
+    long now = System.nanoTime();
+    finishSegment(now);
+    myDepth--;
+    myEvent = outerEvent;
+    mySegmentStart = myDepth > 0 ? now : IDLE;
+  }
+
+  private void finishSegment(long now) {
+    long start = mySegmentStart;
+    if (start == IDLE) return;
+    long millis = (now - start) / 1000000;
+    myHistogram[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis))]++;
+    if (THRESHOLD_MS > 0 && millis >= THRESHOLD_MS) {
+      myLastFreezeDuration = millis;
+      myLastFreezeStart = start;
+    }
+  }
+
+  /**
+   * @return copy of the histogram, element i is the number of times the EDT was busy for less than 2^i ms
+   * (the last element counts longer times)
+   */
+  @NotNull
+  public long[] getLatencyHistogram() {
+    return myHistogram.clone();
+  }
+
+  @NotNull
+  public String getLatencyReport() {
+    long[] histogram = getLatencyHistogram();
+    StringBuilder report = new StringBuilder();
+    for (int i = 0; i < histogram.length; i++) {
+      if (histogram[i] == 0) continue;
+      report.append(i == histogram.length - 1 ? ">= " + (1L << (i - 1)) : "< " + (1L << i));
+      report.append(" ms: ").append(histogram[i]).append('\n');
+    }
+    return report.toString();
+  }
+
+  @NotNull
+  public static File getFreezesDirectory() {
+    return new File(PathManager.getLogPath(), "freezes");
+  }
+
+  private void startSampler() {
+    Application application = ApplicationManager.getApplication();
+    //the application isn't created yet, the sampler will be started by one of the next events
+    if (application == null) return;
+
+    mySamplerStarted = true;
+    if (THRESHOLD_MS <= 0 || application.isUnitTestMode() || application.isHeadlessEnvironment()) return;
+
+    Thread sampler = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        sample();
+      }
+    }, "EDT responsiveness monitor");
+    sampler.setDaemon(true);
+    sampler.setPriority(Thread.MAX_PRIORITY);
+    sampler.start();
+  }
+
+  private void sample() {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    Freeze freeze = null;
+    while (true) {
+      try {
+        Thread.sleep(SAMPLING_INTERVAL_MS);
+      }
+      catch (InterruptedException e) {
+        return;
+      }
+
+      long start = mySegmentStart;
+      long now = System.nanoTime();
+      if (freeze != null && freeze.myStart != start) {
+        finishFreeze(freeze, now);
+        freeze = null;
+      }
+      Thread edt = myEdt;
+      if (start == IDLE || edt == null || (now - start) / 1000000 < THRESHOLD_MS) continue;
+
+      if (freeze == null) {
+        AWTEvent event = myEvent;
+        freeze = new Freeze(start, event != null ? event.getClass().getName() : "unknown event");
+      }
+      ThreadInfo info = threadMXBean.getThreadInfo(edt.getId(), Integer.MAX_VALUE);
+      //the sample is taken after the EDT finished the event
+      if (info == null || mySegmentStart != start) continue;
+
+      freeze.addSample(info);
+      if (System.currentTimeMillis() - freeze.mySaved > SAVE_INTERVAL_MS) {
+        save(freeze, (now - start) / 1000000, false);
+      }
+    }
+  }
+
+  private void finishFreeze(Freeze freeze, long now) {
+    long duration = myLastFreezeStart == freeze.myStart ? myLastFreezeDuration : (now - freeze.myStart) / 1000000;
+    if (freeze.mySamples > 0) {
+      save(freeze, duration, true);
+    }
+  }
+
+  private void save(Freeze freeze, long duration, boolean finished) {
+    File directory = getFreezesDirectory();
+    if (freeze.myName == null) {
+      freeze.myName = getUniqueName(directory, freeze.myTimestamp);
+    }
+    String name = freeze.myName;
+    File summaryFile = new File(directory, name + ".txt");
+    File stacksFile = new File(directory, name + ".folded");
+    try {
+      FileUtil.createDirectory(directory);
+      writeSummary(freeze, duration, finished, summaryFile);
+      writeStacks(freeze, stacksFile);
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save " + summaryFile + ": " + e.getMessage());
+      return;
+    }
+    if (freeze.mySaved == 0) {
+      deleteOldFreezes(directory);
+    }
+    freeze.mySaved = System.currentTimeMillis();
+    if (finished) {
+      LOG.info("EDT was unresponsive for " + duration + " ms, see " + summaryFile);
+    }
+  }
+
+  private static String getUniqueName(File directory, long timestamp) {
+    String name = FREEZE_FILE_PREFIX + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(timestamp));
+    String unique = name;
+    for (int i = 1; new File(directory, unique + ".txt").exists(); i++) {
+      unique = name + "-" + i;
+    }
+    return unique;
+  }
+
+  private void writeSummary(Freeze freeze, long duration, boolean finished, File file) throws IOException {
+    PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+    try {
+      writer.println((finished ? "EDT was unresponsive for " : "EDT is unresponsive for at least ") + duration + " ms");
+      writer.println("Event: " + freeze.myEvent);
+      writer.println("Samples: " + freeze.mySamples + ", taken every " + SAMPLING_INTERVAL_MS + " ms");
+      writer.println("Samples in write action or waiting to start it: " + freeze.myWriteActionSamples);
+      writer.println("Samples waiting for read/write lock: " + freeze.myLockWaitSamples);
+      writer.println("Samples waiting for another lock: " + freeze.myOtherWaitSamples);
+      writer.println();
+      writer.println("EDT busy time histogram:");
+      writer.print(getLatencyReport());
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  private static void writeStacks(Freeze freeze, File file) throws IOException {
+    final PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+    try {
+      freeze.myStacks.forEachEntry(new TObjectIntProcedure<String>() {
+        @Override
+        public boolean execute(String stack, int count) {
+          writer.println(stack + ' ' + count);
+          return true;
+        }
+      });
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  private static void deleteOldFreezes(File directory) {
+    File[] files = directory.listFiles();
+    if (files == null) return;
+
+    List<String> names = new ArrayList<String>();
+    for (File file : files) {
+      String name = file.getName();
+      if (name.startsWith(FREEZE_FILE_PREFIX) && name.endsWith(".txt")) {
+        names.add(FileUtil.getNameWithoutExtension(name));
+      }
+    }
+    //names contain the time of a freeze
+    Collections.sort(names, Collections.reverseOrder());
+    for (String name : names.subList(Math.min(names.size(), FREEZES_TO_KEEP), names.size())) {
+      FileUtil.delete(new File(directory, name + ".txt"));
+      FileUtil.delete(new File(directory, name + ".folded"));
+    }
+  }
+
+  private static class Freeze {
+    private final long myStart;
+    private final long myTimestamp = System.currentTimeMillis();
+    private final String myEvent;
+    private final TObjectIntHashMap<String> myStacks = new TObjectIntHashMap<String>();
+    private int mySamples;
+    private int myWriteActionSamples;
+    private int myLockWaitSamples;
+    private int myOtherWaitSamples;
+    private long mySaved;
+    private String myName;
+
+    private Freeze(long start, String event) {
+      myStart = start;
+      myEvent = event;
+    }
+
+    private void addSample(ThreadInfo info) {
+      StackTraceElement[] stack = info.getStackTrace();
+      StringBuilder folded = new StringBuilder();
+      boolean writeAction = false;
+      for (int i = stack.length - 1; i >= 0; i--) {
+        StackTraceElement element = stack[i];
+        if (folded.length() > 0) {
+          folded.append(';');
+        }
+        folded.append(element.getClassName()).append('.').append(element.getMethodName());
+        writeAction |= element.getClassName().endsWith("ApplicationImpl$WriteAccessToken") ||
+                       element.getClassName().endsWith("ApplicationImpl") && element.getMethodName().equals("runWriteAction");
+      }
+      String stackKey = folded.toString();
+      if (!myStacks.adjustValue(stackKey, 1)) {
+        myStacks.put(stackKey, 1);
+      }
+
+      mySamples++;
+      String lockName = info.getLockName();
+      if (lockName != null && lockName.contains("ReentrantReadWriteLock")) {
+        myLockWaitSamples++;
+      }
+      else if (info.getThreadState() == Thread.State.BLOCKED || lockName != null) {
+        myOtherWaitSamples++;
+      }
+      if (writeAction) {
+        myWriteActionSamples++;
+      }
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.diagnostic;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.PlatformDataKeys;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.ListCellRendererWrapper;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.List;
+
+/**
+ * Shows what the recorded startup and project opening timelines consist of and exports them as trace files.
+ *
+ * @see ActivityTracer
+ */
+public class ShowActivityTimelineAction extends AnAction implements DumbAware {
+  private static final String TITLE = "Activity Timeline";
+  private static final int SLOWEST_ACTIVITIES_TO_SHOW = 30;
+
+  @Override
+  public void actionPerformed(AnActionEvent e) {
+    Project project = e.getData(PlatformDataKeys.PROJECT);
+    List<ActivityTimeline> timelines = new ArrayList<ActivityTimeline>();
+    ActivityTimeline active = ActivityTracer.getActiveTimeline();
+    if (active != null) {
+      timelines.add(active);
+    }
+    timelines.addAll(ActivityTracer.loadTimelines());
+    if (timelines.isEmpty()) {
+      Messages.showInfoMessage(project, "No timelines were recorded", TITLE);
+      return;
+    }
+    new TimelineDialog(project, timelines, active).show();
+  }
+
+  @NotNull
+  static String renderBreakdown(@NotNull ActivityTimeline timeline) {
+    List<ActivityTimeline.Record> records = timeline.getRecords();
+    StringBuilder result = new StringBuilder();
+    result.append(timeline.getDescription()).append(", started ").append(DateFormat.getDateTimeInstance().format(new Date(timeline.getTimestamp())));
+    if (records.isEmpty()) {
+      return result.append("\nNo activities were recorded").toString();
+    }
+
+    long start = records.get(0).start;
+    long end = start;
+    Map<String, List<ActivityTimeline.Record>> phases = new LinkedHashMap<String, List<ActivityTimeline.Record>>();
+    for (ActivityTimeline.Record record : records) {
+      end = Math.max(end, record.end);
+      List<ActivityTimeline.Record> phaseRecords = phases.get(record.phase);
+      if (phaseRecords == null) {
+        phases.put(record.phase, phaseRecords = new ArrayList<ActivityTimeline.Record>());
+      }
+      phaseRecords.add(record);
+    }
+    result.append(", ").append(toMillis(end - start)).append(" ms total\n\n");
+
+    result.append(String.format("%-24s %10s %10s %10s %10s\n", "Phase", "Start, ms", "End, ms", "Busy, ms", "Activities"));
+    for (Map.Entry<String, List<ActivityTimeline.Record>> entry : phases.entrySet()) {
+      List<ActivityTimeline.Record> phaseRecords = entry.getValue();
+      long phaseEnd = 0;
+      for (ActivityTimeline.Record record : phaseRecords) {
+        phaseEnd = Math.max(phaseEnd, record.end);
+      }
+      result.append(String.format("%-24s %10d %10d %10d %10d\n", entry.getKey(), toMillis(phaseRecords.get(0).start - start),
+                                  toMillis(phaseEnd - start), toMillis(getBusyTime(phaseRecords)), phaseRecords.size()));
+    }
+
+    List<ActivityTimeline.Record> slowest = new ArrayList<ActivityTimeline.Record>(records);
+    Collections.sort(slowest, new Comparator<ActivityTimeline.Record>() {
+      @Override
+      public int compare(ActivityTimeline.Record o1, ActivityTimeline.Record o2) {
+        long d1 = o1.getDuration();
+        long d2 = o2.getDuration();
+        return d1 > d2 ? -1 : d1 == d2 ? 0 : 1;
+      }
+    });
+    result.append("\nSlowest activities:\n");
+    result.append(String.format("%10s %10s  %-20s %s\n", "Start, ms", "Time, ms", "Phase", "Activity [thread]"));
+    for (ActivityTimeline.Record record : slowest.subList(0, Math.min(slowest.size(), SLOWEST_ACTIVITIES_TO_SHOW))) {
+      result.append(String.format("%10d %10d  %-20s %s [%s]\n", toMillis(record.start - start), toMillis(record.getDuration()),
+                                  record.phase, record.name, record.thread));
+    }
+    return result.toString();
+  }
+
+  /**
+   * @return time covered by at least one of the records sorted by their start time
+   */
+  private static long getBusyTime(List<ActivityTimeline.Record> records) {
+    long busy = 0;
+    long intervalStart = -1;
+    long intervalEnd = -1;
+    for (ActivityTimeline.Record record : records) {
+      if (record.start > intervalEnd) {
+        busy += intervalEnd - intervalStart;
+        intervalStart = record.start;
+        intervalEnd = record.end;
+      }
+      else {
+        intervalEnd = Math.max(intervalEnd, record.end);
+      }
+    }
+    return busy + intervalEnd - intervalStart;
+  }
+
+  private static long toMillis(long micros) {
+    return micros / 1000;
+  }
+
+  private static class TimelineDialog extends DialogWrapper {
+    private final Project myProject;
+    private final ComboBox myTimelines;
+    private final JTextArea myBreakdown = new JTextArea(30, 120);
+
+    private TimelineDialog(@Nullable Project project, List<ActivityTimeline> timelines, @Nullable final ActivityTimeline active) {
+      super(project, false);
+      myProject = project;
+      myTimelines = new ComboBox(new DefaultComboBoxModel(timelines.toArray()));
+      final DateFormat dateFormat = DateFormat.getDateTimeInstance();
+      myTimelines.setRenderer(new ListCellRendererWrapper<ActivityTimeline>() {
+        @Override
+        public void customize(JList list, ActivityTimeline value, int index, boolean selected, boolean hasFocus) {
+          if (value != null) {
+            String date = dateFormat.format(new Date(value.getTimestamp()));
+            setText(date + ": " + value.getDescription() + (value == active ? " (in progress)" : ""));
+          }
+        }
+      });
+      myTimelines.addActionListener(new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+          updateBreakdown();
+        }
+      });
+      myBreakdown.setEditable(false);
+      myBreakdown.setFont(new Font(Font.MONOSPACED, Font.PLAIN, UIUtil.getLabelFont().getSize()));
+      updateBreakdown();
+      setTitle(TITLE);
+      init();
+    }
+
+    private void updateBreakdown() {
+      ActivityTimeline timeline = getSelectedTimeline();
+      myBreakdown.setText(timeline != null ? renderBreakdown(timeline) : "");
+      myBreakdown.setCaretPosition(0);
+    }
+
+    @Nullable
+    private ActivityTimeline getSelectedTimeline() {
+      return (ActivityTimeline)myTimelines.getSelectedItem();
+    }
+
+    @Override
+    protected JComponent createNorthPanel() {
+      return myTimelines;
+    }
+
+    @Override
+    protected JComponent createCenterPanel() {
+      return new JBScrollPane(myBreakdown);
+    }
+
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+      return myTimelines;
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createActions() {
+      return new Action[]{getOKAction()};
+    }
+
+    @NotNull
+    @Override
+    protected Action[] createLeftSideActions() {
+      return new Action[]{new DialogWrapperAction("Export Trace...") {
+        @Override
+        protected void doAction(ActionEvent e) {
+          exportTrace();
+        }
+      }};
+    }
+
+    private void exportTrace() {
+      ActivityTimeline timeline = getSelectedTimeline();
+      if (timeline == null) return;
+
+      FileSaverDescriptor descriptor =
+        new FileSaverDescriptor("Export Trace", "The trace can be opened by chrome://tracing or another Trace Event Format viewer", "json");
+      @NonNls String name = "timeline-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(timeline.getTimestamp())) + ".json";
+      VirtualFileWrapper wrapper = FileChooserFactory.getInstance().createSaveFileDialog(descriptor, getContentPane()).save(null, name);
+      if (wrapper == null) return;
+
+      try {
+        timeline.writeTrace(wrapper.getFile());
+      }
+      catch (IOException e) {
+        Messages.showErrorDialog(myProject, "Cannot save " + wrapper.getFile() + ": " + e.getMessage(), TITLE);
+      }
+    }
+  }
+}
@@ -16,6 +16,7 @@
 package com.intellij.ide;
 
 import com.intellij.Patches;
+import com.intellij.diagnostic.EdtResponsivenessMonitor;
 import com.intellij.ide.dnd.DnDManager;
 import com.intellij.ide.dnd.DnDManagerImpl;
 import com.intellij.ide.plugins.PluginManager;
@@ -136,6 +137,8 @@ public class IdeEventQueue extends EventQueue {
 
   private int myInputMethodLock;
 
+  private final EdtResponsivenessMonitor myResponsivenessMonitor = new EdtResponsivenessMonitor();
+
   private static class IdeEventQueueHolder {
     private static final IdeEventQueue INSTANCE = new IdeEventQueue();
   }
@@ -315,6 +318,11 @@ public class IdeEventQueue extends EventQueue {
     myEventCount = evCount;
   }
 
+  @NotNull
+  public EdtResponsivenessMonitor getResponsivenessMonitor() {
+    return myResponsivenessMonitor;
+  }
+
   public AWTEvent getTrueCurrentEvent() {
     return myCurrentEvent;
   }
@@ -327,6 +335,7 @@ public class IdeEventQueue extends EventQueue {
     myIsInInputEvent = e instanceof InputEvent || e instanceof InputMethodEvent || e instanceof WindowEvent || e instanceof ActionEvent;
     AWTEvent oldEvent = myCurrentEvent;
     myCurrentEvent = e;
+    myResponsivenessMonitor.eventStarted(e);
 
     try {
       _dispatchEvent(e, false);
@@ -339,6 +348,7 @@ public class IdeEventQueue extends EventQueue {
     finally {
       myIsInInputEvent = wasInputEvent;
       myCurrentEvent = oldEvent;
+      myResponsivenessMonitor.eventFinished(oldEvent);
 
       for (EventDispatcher each : myPostprocessors) {
         each.dispatch(e);
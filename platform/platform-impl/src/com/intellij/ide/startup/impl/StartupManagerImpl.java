@@ -15,6 +15,7 @@
  */
 package com.intellij.ide.startup.impl;
 
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.ide.caches.CacheUpdater;
 import com.intellij.ide.startup.StartupManagerEx;
 import com.intellij.openapi.application.Application;
@@ -113,6 +114,7 @@ public class StartupManagerImpl extends StartupManagerEx {
     ApplicationManager.getApplication().runReadAction(new Runnable() {
       public void run() {
         HeavyProcessLatch.INSTANCE.processStarted();
+        ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.STARTUP_ACTIVITIES, "Startup activities");
         try {
           runActivities(myPreStartupActivities);
           myPreStartupActivitiesPassed = true;
@@ -125,6 +127,7 @@ public class StartupManagerImpl extends StartupManagerEx {
           myStartupActivitiesPassed = true;
         }
         finally {
+          activity.end();
           HeavyProcessLatch.INSTANCE.processFinished();
         }
       }
@@ -155,13 +158,19 @@ public class StartupManagerImpl extends StartupManagerEx {
       }
     }
 
+    ActivityTracer.Activity activity =
+      ActivityTracer.start(ActivityTracer.STARTUP_ACTIVITIES, "Dumb-aware post-startup activities from extensions");
     runActivities(dumbAwareActivities);
+    activity.end();
 
     if (!normalActivities.isEmpty()) {
       DumbService.getInstance(myProject).runWhenSmart(new Runnable() {
         public void run() {
           if (!myProject.isDisposed()) {
+            ActivityTracer.Activity activity =
+              ActivityTracer.start(ActivityTracer.STARTUP_ACTIVITIES, "Post-startup activities from extensions");
             runActivities(normalActivities);
+            activity.end();
           }
         }
       });
@@ -173,14 +182,18 @@ public class StartupManagerImpl extends StartupManagerEx {
 
     if (myPostStartupActivitiesPassed) return;
 
+    ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.STARTUP_ACTIVITIES, "Dumb-aware post-startup activities");
     runActivities(myDumbAwarePostStartupActivities);
+    activity.end();
     DumbService.getInstance(myProject).runWhenSmart(new Runnable() {
       public void run() {
         synchronized (StartupManagerImpl.this) {
           app.assertIsDispatchThread();
           if (myProject.isDisposed()) return;
+          ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.STARTUP_ACTIVITIES, "Post-startup activities");
           runActivities(myDumbAwarePostStartupActivities); // they can register activities while in the dumb mode
           runActivities(myNotDumbAwarePostStartupActivities);
+          activity.end();
 
           myPostStartupActivitiesPassed = true;
         }
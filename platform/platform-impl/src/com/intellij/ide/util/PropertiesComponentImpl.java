@@ -22,9 +22,13 @@ import org.jdom.Element;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.atomic.AtomicLong;
 
-public class PropertiesComponentImpl extends PropertiesComponent implements PersistentStateComponent<Element> {
+
+public class PropertiesComponentImpl extends PropertiesComponent implements PersistentStateComponentWithModificationTracker<Element> {
   private final HashMap<String, String> myMap = new HashMap<String, String>();
+  // incremented after the map is changed, so a save which reads the count before serializing can't miss the change
+  private final AtomicLong myModificationCount = new AtomicLong();
   @NonNls private static final String ELEMENT_PROPERTY = "property";
   @NonNls private static final String ATTRIBUTE_NAME = "name";
   @NonNls private static final String ATTRIBUTE_VALUE = "value";
@@ -54,6 +58,11 @@ public class PropertiesComponentImpl extends PropertiesComponent implements Pers
     return parentNode;
   }
 
+  @Override
+  public long getStateModificationCount() {
+    return myModificationCount.get();
+  }
+
   public void loadState(final Element parentNode) {
     myMap.clear();
     for (final Object o : parentNode.getChildren(ELEMENT_PROPERTY)) {
@@ -66,6 +75,7 @@ public class PropertiesComponentImpl extends PropertiesComponent implements Pers
         myMap.put(name, value);
       }
     }
+    myModificationCount.incrementAndGet();
   }
 
   public String getValue(String name) {
@@ -74,11 +84,13 @@ public class PropertiesComponentImpl extends PropertiesComponent implements Pers
 
   public void setValue(String name, String value) {
     myMap.put(name, value);
+    myModificationCount.incrementAndGet();
   }
 
   @Override
   public void unsetValue(String name) {
     myMap.remove(name);
+    myModificationCount.incrementAndGet();
   }
 
   public boolean isValueSet(String name) {
@@ -15,6 +15,7 @@
  */
 package com.intellij.idea;
 
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.openapi.application.ApplicationInfo;
 import com.intellij.openapi.application.ApplicationNamesInfo;
 import com.intellij.openapi.application.ConfigImportHelper;
@@ -77,6 +78,7 @@ public class StartupUtil {
   }
 
   static void prepareAndStart(String[] args, AppStarter appStarter) {
+    ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.STARTUP, "Preparing startup");
     boolean newConfigFolder = false;
 
     if (!Main.isHeadless()) {
@@ -103,6 +105,7 @@ public class StartupUtil {
       AppUIUtil.updateWindowIcon(JOptionPane.getRootFrame());
       AppUIUtil.registerBundledFonts();
     }
+    activity.end();
 
     appStarter.start(newConfigFolder);
   }
@@ -17,6 +17,7 @@ package com.intellij.openapi.application.impl;
 
 import com.intellij.BundleBase;
 import com.intellij.CommonBundle;
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.diagnostic.PerformanceWatcher;
 import com.intellij.diagnostic.PluginException;
 import com.intellij.ide.*;
@@ -43,6 +44,7 @@ import com.intellij.openapi.progress.EmptyProgressIndicator;
 import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
 import com.intellij.openapi.progress.util.ProgressWindow;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.project.ProjectManager;
@@ -60,6 +62,7 @@ import com.intellij.openapi.wm.WindowManager;
 import com.intellij.psi.PsiLock;
 import com.intellij.ui.Splash;
 import com.intellij.util.*;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.Stack;
 import com.intellij.util.io.storage.HeavyProcessLatch;
 import com.intellij.util.ui.UIUtil;
@@ -107,6 +110,10 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   private volatile Runnable myExceptionalThreadWithReadAccessRunnable;
 
+  private final List<WritePriorityIndicator> myWritePriorityIndicators = ContainerUtil.createLockFreeCopyOnWriteList();
+  private volatile boolean myWriteActionPending;
+  private final ReadWriteStatistics myReadWriteStatistics = new ReadWriteStatistics();
+
   private int myInEditorPaintCounter = 0;
   private long myStartTime = 0;
   @Nullable
@@ -236,6 +243,9 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
     myCommandLineMode = isCommandLine;
 
     myDoNotSave = myTestModeFlag || myHeadlessMode;
+    if (myTestModeFlag) {
+      ActivityTracer.discardTimeline();
+    }
 
     loadApplicationComponents();
 
@@ -507,6 +517,16 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
 
   @Override
   public void load(String path) throws IOException, InvalidDataException {
+    ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.STARTUP, "Loading application");
+    try {
+      doLoad(path);
+    }
+    finally {
+      activity.end();
+    }
+  }
+
+  private void doLoad(String path) throws IOException, InvalidDataException {
     getStateStore().setOptionsPath(path);
     getStateStore().setConfigPath(PathManager.getConfigPath());
 
@@ -597,6 +617,9 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
     disposeComponents();
 
     ourThreadExecutorsService.shutdownNow();
+    if (myReadWriteStatistics.getCanceledReadActionCount() > 0) {
+      LOG.info(myReadWriteStatistics.toString());
+    }
     myComponentStore = null;
     super.dispose();
     Disposer.dispose(myLastDisposable); // dispose it last
@@ -1196,6 +1219,91 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
     return true;
   }
 
+  /**
+   * Runs the action in a read action which is canceled as soon as a write action is about to start, so long background read actions
+   * don't delay write actions. The action should call {@link ProgressManager#checkCanceled()} often enough. The action isn't started
+   * if a write action is pending or running.
+   * <p/>
+   * Work of a canceled action is thrown away, so usually it's restarted later, see
+   * {@link com.intellij.openapi.progress.util.ProgressIndicatorUtils#scheduleWithWriteActionPriority}.
+   *
+   * @return {@code false} if the action wasn't started or was canceled because of a write action
+   * @throws ProcessCanceledException if the progress indicator of the current thread was canceled
+   */
+  public boolean runReadActionWithWritePriority(@NotNull Runnable action) {
+    if (myWriteActionPending || myLock.isWriteLocked() && !isWriteAccessAllowed()) return false;
+
+    final WritePriorityIndicator indicator = new WritePriorityIndicator(ProgressManager.getInstance().getProgressIndicator());
+    myWritePriorityIndicators.add(indicator);
+    long start = System.nanoTime();
+    try {
+      //a write action may become pending before the indicator was registered
+      if (myWriteActionPending || !tryRunReadAction(new ProcessRunnable(action, indicator))) return false;
+      myReadWriteStatistics.readActionCompleted();
+      return true;
+    }
+    catch (ProcessCanceledException e) {
+      if (!indicator.isCanceledByWriteAction()) throw e;
+      myReadWriteStatistics.readActionCanceled(System.nanoTime() - start);
+      return false;
+    }
+    finally {
+      myWritePriorityIndicators.remove(indicator);
+    }
+  }
+
+  private void cancelWritePriorityReadActions() {
+    for (WritePriorityIndicator indicator : myWritePriorityIndicators) {
+      indicator.cancelByWriteAction();
+    }
+  }
+
+  @NotNull
+  public ReadWriteStatistics getReadWriteStatistics() {
+    return myReadWriteStatistics;
+  }
+
+  private static class ProcessRunnable implements Runnable {
+    private final Runnable myAction;
+    private final ProgressIndicator myIndicator;
+
+    private ProcessRunnable(Runnable action, ProgressIndicator indicator) {
+      myAction = action;
+      myIndicator = indicator;
+    }
+
+    @Override
+    public void run() {
+      ProgressManager.getInstance().runProcess(myAction, myIndicator);
+    }
+  }
+
+  /**
+   * Is canceled by a write action or together with the indicator of the thread which started the read action
+   */
+  private static class WritePriorityIndicator extends ProgressIndicatorBase {
+    @Nullable private final ProgressIndicator myParent;
+    private volatile boolean myCanceledByWriteAction;
+
+    private WritePriorityIndicator(@Nullable ProgressIndicator parent) {
+      myParent = parent;
+    }
+
+    private void cancelByWriteAction() {
+      myCanceledByWriteAction = true;
+      cancel();
+    }
+
+    private boolean isCanceledByWriteAction() {
+      return myCanceledByWriteAction && (myParent == null || !myParent.isCanceled());
+    }
+
+    @Override
+    public boolean isCanceled() {
+      return super.isCanceled() || myParent != null && myParent.isCanceled();
+    }
+  }
+
   public boolean tryToApplyActivationState(boolean active, Window window) {
     final Component frame = UIUtil.findUltimateParent(window);
 
@@ -1253,33 +1361,50 @@ public class ApplicationImpl extends ComponentManagerImpl implements Application
       assertCanRunWriteAction();
 
       ActivityTracker.getInstance().inc();
-      fireBeforeWriteActionStart(_clazz);
+      final boolean nested = isWriteAccessAllowed();
+      if (!nested) {
+        //read actions with write priority aren't started until the write lock is acquired
+        myWriteActionPending = true;
+        cancelWritePriorityReadActions();
+      }
       final AtomicBoolean stopped = new AtomicBoolean(false);
-
-      LOG.assertTrue(isWriteAccessAllowed() || !Thread.holdsLock(PsiLock.LOCK), "Thread must not hold PsiLock while performing writeAction");
       try {
-        if (!myLock.writeLock().tryLock()) {
-          if (ourDumpThreadsOnLongWriteActionWaiting > 0) {
-            executeOnPooledThread(new Runnable() {
-              @Override
-              public void run() {
-                while (!stopped.get()) {
-                  TimeoutUtil.sleep(ourDumpThreadsOnLongWriteActionWaiting);
-                  if (!stopped.get()) {
-                    PerformanceWatcher.getInstance().dumpThreads(true);
+        fireBeforeWriteActionStart(_clazz);
+
+        LOG.assertTrue(nested || !Thread.holdsLock(PsiLock.LOCK), "Thread must not hold PsiLock while performing writeAction");
+        long waitStart = System.nanoTime();
+        try {
+          if (!myLock.writeLock().tryLock()) {
+            if (ourDumpThreadsOnLongWriteActionWaiting > 0) {
+              executeOnPooledThread(new Runnable() {
+                @Override
+                public void run() {
+                  while (!stopped.get()) {
+                    TimeoutUtil.sleep(ourDumpThreadsOnLongWriteActionWaiting);
+                    if (!stopped.get()) {
+                      PerformanceWatcher.getInstance().dumpThreads(true);
+                    }
                   }
                 }
-              }
-            });
+              });
+            }
+            myLock.writeLock().lockInterruptibly();
           }
-          myLock.writeLock().lockInterruptibly();
+          acquired();
+        }
+        catch (InterruptedException e) {
+          throw new RuntimeInterruptedException(e);
+        }
+        if (!nested) {
+          myReadWriteStatistics.writeActionStarted(System.nanoTime() - waitStart);
         }
-        acquired();
       }
-      catch (InterruptedException e) {
-        throw new RuntimeInterruptedException(e);
+      finally {
+        stopped.set(true);
+        if (!nested) {
+          myWriteActionPending = false;
+        }
       }
-      stopped.set(true);
 
       myWriteActionsStack.push(_clazz);
 
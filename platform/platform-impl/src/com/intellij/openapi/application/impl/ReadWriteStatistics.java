@@ -0,0 +1,85 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.application.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How long write actions waited for the lock and how much work of
+ * {@link ApplicationImpl#runReadActionWithWritePriority(Runnable) read actions with write priority} was thrown away
+ * because of write actions.
+ */
+public class ReadWriteStatistics {
+  private final AtomicLong myWriteActions = new AtomicLong();
+  private final AtomicLong myWriteWaitNanos = new AtomicLong();
+  private volatile long myMaxWriteWaitNanos;
+  private final AtomicLong myCompletedReadActions = new AtomicLong();
+  private final AtomicLong myCanceledReadActions = new AtomicLong();
+  private final AtomicLong myCanceledReadNanos = new AtomicLong();
+
+  void writeActionStarted(long waitNanos) {
+    myWriteActions.incrementAndGet();
+    myWriteWaitNanos.addAndGet(waitNanos);
+    //write actions are started in EDT only
+    if (waitNanos > myMaxWriteWaitNanos) {
+      myMaxWriteWaitNanos = waitNanos;
+    }
+  }
+
+  void readActionCompleted() {
+    myCompletedReadActions.incrementAndGet();
+  }
+
+  void readActionCanceled(long nanos) {
+    myCanceledReadActions.incrementAndGet();
+    myCanceledReadNanos.addAndGet(nanos);
+  }
+
+  public long getWriteActionCount() {
+    return myWriteActions.get();
+  }
+
+  public long getWriteActionWaitNanos() {
+    return myWriteWaitNanos.get();
+  }
+
+  public long getMaxWriteActionWaitNanos() {
+    return myMaxWriteWaitNanos;
+  }
+
+  public long getCompletedReadActionCount() {
+    return myCompletedReadActions.get();
+  }
+
+  public long getCanceledReadActionCount() {
+    return myCanceledReadActions.get();
+  }
+
+  /**
+   * @return time spent in read actions with write priority which were canceled by write actions
+   */
+  public long getCanceledReadActionNanos() {
+    return myCanceledReadNanos.get();
+  }
+
+  @Override
+  public String toString() {
+    return getWriteActionCount() + " write actions waited " + getWriteActionWaitNanos() / 1000000 + " ms for the lock (max " +
+           getMaxWriteActionWaitNanos() / 1000000 + " ms); read actions with write priority: " + getCompletedReadActionCount() +
+           " completed, " + getCanceledReadActionCount() + " canceled, " + getCanceledReadActionNanos() / 1000000 +
+           " ms of work thrown away";
+  }
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2012 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -46,6 +46,10 @@ public abstract class ComponentStoreImpl implements IComponentStore {
   private static final Logger LOG = Logger.getInstance("#com.intellij.components.ComponentStoreImpl");
   private final Map<String, Object> myComponents = Collections.synchronizedMap(new THashMap<String, Object>());
   private final List<SettingsSavingComponent> mySettingsSavingComponents = Collections.synchronizedList(new ArrayList<SettingsSavingComponent>());
+  /**
+   * Modification counts and states of {@link PersistentStateComponentWithModificationTracker} components at the previous save
+   */
+  private final Map<String, Pair<Long, Object>> myTrackedStates = Collections.synchronizedMap(new THashMap<String, Pair<Long, Object>>());
   @Nullable private SaveSessionImpl mySession;
 
   @Deprecated
@@ -152,14 +156,38 @@ public abstract class ComponentStoreImpl implements IComponentStore {
   private <T> void commitPersistentComponent(@NotNull final PersistentStateComponent<T> persistentStateComponent,
                                              @NotNull StateStorageManager.ExternalizationSession session) {
     Storage[] storageSpecs = getComponentStorageSpecs(persistentStateComponent, StateStorageOperation.WRITE);
+    String name = getComponentName(persistentStateComponent);
 
-    T state = persistentStateComponent.getState();
+    Object state = persistentStateComponent instanceof PersistentStateComponentWithModificationTracker
+                   ? getTrackedState((PersistentStateComponentWithModificationTracker<T>)persistentStateComponent, name)
+                   : persistentStateComponent.getState();
     if (state != null) {
-      session
-        .setState(storageSpecs, persistentStateComponent, getComponentName(persistentStateComponent), state);
+      session.setState(storageSpecs, persistentStateComponent, name, state);
     }
   }
 
+  /**
+   * @return the state returned at the previous save if the component wasn't modified since then, storages recognize such a state
+   * and don't serialize it again
+   */
+  @Nullable
+  private <T> Object getTrackedState(@NotNull PersistentStateComponentWithModificationTracker<T> component, @NotNull String name) {
+    long modificationCount = component.getStateModificationCount();
+    Pair<Long, Object> tracked = myTrackedStates.get(name);
+    if (tracked != null && tracked.first.longValue() == modificationCount) {
+      return tracked.second;
+    }
+
+    T state = component.getState();
+    if (state != null) {
+      myTrackedStates.put(name, Pair.<Long, Object>create(modificationCount, state));
+    }
+    else {
+      myTrackedStates.remove(name);
+    }
+    return state;
+  }
+
   private static void commitJdomExternalizable(@NotNull final JDOMExternalizable component,
                                                @NotNull StateStorageManager.ExternalizationSession session) {
     final String componentName = ComponentManagerImpl.getComponentName(component);
@@ -324,7 +352,8 @@ public abstract class ComponentStoreImpl implements IComponentStore {
       final Class[] interfaces = ReflectionCache.getInterfaces(componentClass);
 
       for (Class anInterface : interfaces) {
-        if (anInterface.equals(persistentStateComponentClass)) {
+        //the component may implement a subinterface, e.g. PersistentStateComponentWithModificationTracker
+        if (persistentStateComponentClass.isAssignableFrom(anInterface)) {
           break nextSuperClass;
         }
       }
@@ -534,6 +563,7 @@ public abstract class ComponentStoreImpl implements IComponentStore {
     for (String componentName : componentNames) {
       final PersistentStateComponent component = (PersistentStateComponent)myComponents.get(componentName);
       if (component != null) {
+        myTrackedStates.remove(componentName);
         initPersistentComponent(component, reloadData);
       }
     }
@@ -296,7 +296,7 @@ public class FileBasedStorage extends XmlElementStorage {
   private static Document loadDocumentImpl(final VirtualFile file) throws IOException, JDOMException {
     InputStream stream = file.getInputStream();
     try {
-      return JDOMUtil.loadDocument(stream);
+      return JDOMUtil.loadInternedDocument(stream);
     }
     finally {
       stream.close();
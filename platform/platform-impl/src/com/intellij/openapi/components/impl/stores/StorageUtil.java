@@ -223,7 +223,7 @@ public class StorageUtil {
   @Nullable
   public static Document loadDocument(final byte[] bytes) {
     try {
-      return bytes == null || bytes.length == 0 ? null : JDOMUtil.loadDocument(new ByteArrayInputStream(bytes));
+      return bytes == null || bytes.length == 0 ? null : JDOMUtil.loadInternedDocument(new ByteArrayInputStream(bytes));
     }
     catch (JDOMException e) {
       return null;
@@ -241,7 +241,7 @@ public class StorageUtil {
 
     try {
       try {
-        return JDOMUtil.loadDocument(stream);
+        return JDOMUtil.loadInternedDocument(stream);
       }
       finally {
         stream.close();
@@ -15,7 +15,6 @@
  */
 package com.intellij.openapi.components.impl.stores;
 
-import com.intellij.ide.plugins.IdeaPluginDescriptorImpl;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.*;
 import com.intellij.openapi.diagnostic.Logger;
@@ -57,6 +56,11 @@ public abstract class XmlElementStorage implements StateStorage, Disposable {
 
   private final Map<String, Object> myStorageComponentStates = new THashMap<String, Object>(); // at loading we store Element, on setState Integer of hash// at loading we store Element, on setState Integer of hash
 
+  /**
+   * States of {@link PersistentStateComponentWithModificationTracker} components serialized at the previous save
+   */
+  private final Map<String, SerializedState> mySerializedStates = new THashMap<String, SerializedState>();
+
   private final ComponentVersionProvider myLocalVersionProvider;
   private final ComponentVersionProvider myRemoteVersionProvider;
 
@@ -194,7 +198,7 @@ public abstract class XmlElementStorage implements StateStorage, Disposable {
       myPathMacroSubstitutor.expandPaths(element);
     }
 
-    IdeaPluginDescriptorImpl.internJDOMElement(element);
+    JDOMUtil.internElement(element);
 
     try {
       result.load(element);
@@ -300,19 +304,42 @@ public abstract class XmlElementStorage implements StateStorage, Disposable {
     public void setState(@NotNull final Object component, final String componentName, @NotNull final Object state, final Storage storageSpec) throws StateStorageException {
       assert mySession == this;
 
+      Long modificationCount = null;
+      if (component instanceof PersistentStateComponentWithModificationTracker) {
+        //the count is taken before the state is serialized, so the serialized state can't be older than the count
+        modificationCount = ((PersistentStateComponentWithModificationTracker)component).getStateModificationCount();
+        SerializedState serialized = mySerializedStates.get(componentName);
+        if (serialized != null && serialized.myModificationCount == modificationCount.longValue() && serialized.myState == state) {
+          //the storage data is mutable, so it can't share elements with the cache
+          myStorageData.setState(componentName, (Element)serialized.myElement.clone(), serialized.myHash);
+          return;
+        }
+      }
+
+      Element element;
       try {
-        setState(componentName, DefaultStateSerializer.serializeState(state, storageSpec));
+        element = DefaultStateSerializer.serializeState(state, storageSpec);
       }
       catch (WriteExternalException e) {
         LOG.debug(e);
+        return;
       }
-    }
-
-    private synchronized void setState(final String componentName, final Element element)  {
       if (element.getAttributes().isEmpty() && element.getChildren().isEmpty()) return;
 
-      myStorageData.setState(componentName, element);
+      //an Element state is the component's own object, which may be returned again if the component isn't modified
+      if (modificationCount != null && state instanceof Element) {
+        element = (Element)element.clone();
+      }
+      int hash = setState(componentName, element);
+      if (modificationCount != null) {
+        mySerializedStates.put(componentName, new SerializedState(modificationCount, state, (Element)element.clone(), hash));
+      }
+    }
+
+    private synchronized int setState(final String componentName, final Element element)  {
+      StorageData.prepareState(componentName, element);
       int hash = JDOMUtil.getTreeHash(element);
+      myStorageData.setState(componentName, element, hash);
 
       try {
         Object oldElementState = myStorageComponentStates.get(componentName);
@@ -326,6 +353,21 @@ public abstract class XmlElementStorage implements StateStorage, Disposable {
       finally {
         myStorageComponentStates.put(componentName, hash);
       }
+      return hash;
+    }
+  }
+
+  private static class SerializedState {
+    private final long myModificationCount;
+    private final Object myState;
+    private final Element myElement;
+    private final int myHash;
+
+    private SerializedState(long modificationCount, Object state, Element element, int hash) {
+      myModificationCount = modificationCount;
+      myState = state;
+      myElement = element;
+      myHash = hash;
     }
   }
 
@@ -540,11 +582,13 @@ public abstract class XmlElementStorage implements StateStorage, Disposable {
 
   public void resetData(){
     myLoadedData = null;
+    mySerializedStates.clear();
   }
 
   @Override
   public void reload(@NotNull final Set<String> changedComponents) throws StateStorageException {
     final StorageData storageData = loadData(false, myListener);
+    mySerializedStates.clear();
 
     final StorageData oldLoadedData = myLoadedData;
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2011 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,18 +15,28 @@
  */
 package com.intellij.openapi.progress.util;
 
+import com.intellij.concurrency.JobScheduler;
 import com.intellij.openapi.Disposable;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationAdapter;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.impl.ApplicationImpl;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * @author gregsh
  */
 public class ProgressIndicatorUtils {
+  private static final int MIN_RESTART_DELAY_MS = 10;
+  private static final int MAX_RESTART_DELAY_MS = 1000;
+
   private ProgressIndicatorUtils() {
   }
 
@@ -67,4 +77,108 @@ public class ProgressIndicatorUtils {
       application.removeApplicationListener(listener);
     }
   }
+
+  public static void scheduleWithWriteActionPriority(@NotNull ReadTask task) {
+    scheduleWithWriteActionPriority(new ProgressIndicatorBase(), task);
+  }
+
+  /**
+   * Runs the task in a {@link ApplicationImpl#runReadActionWithWritePriority read action with write priority} on a pooled thread.
+   * If the read action is canceled because of a write action, the task is restarted when the write action is finished. If the task is
+   * canceled again, the restart is delayed, the delay grows with each consecutive cancellation. Restarts stop when the task is completed
+   * or the progress indicator is canceled.
+   */
+  public static void scheduleWithWriteActionPriority(@NotNull ProgressIndicator progressIndicator, @NotNull ReadTask task) {
+    scheduleAttempt(progressIndicator, task, 0);
+  }
+
+  private static void scheduleAttempt(@NotNull final ProgressIndicator progressIndicator,
+                                      @NotNull final ReadTask task,
+                                      final int restarts) {
+    final Application application = ApplicationManager.getApplication();
+    final Runnable attempt = new Runnable() {
+      @Override
+      public void run() {
+        if (progressIndicator.isCanceled() || application.isDisposed()) return;
+        try {
+          final boolean[] completed = {false};
+          ProgressManager.getInstance().executeProcessUnderProgress(new Runnable() {
+            @Override
+            public void run() {
+              completed[0] = runReadActionWithWritePriority(application, task);
+            }
+          }, progressIndicator);
+          if (!completed[0]) {
+            new RestartAfterWriteAction(application, progressIndicator, task, restarts + 1).start();
+          }
+        }
+        catch (ProcessCanceledException ignored) {
+        }
+      }
+    };
+    if (restarts <= 1) {
+      application.executeOnPooledThread(attempt);
+    }
+    else {
+      int delay = MIN_RESTART_DELAY_MS << Math.min(restarts - 2, 10);
+      JobScheduler.getScheduler().schedule(new Runnable() {
+        @Override
+        public void run() {
+          application.executeOnPooledThread(attempt);
+        }
+      }, Math.min(delay, MAX_RESTART_DELAY_MS), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Restarts a canceled task when no write action is running. Write actions run on the EDT, so it's checked there: once right away, in
+   * case the write action was finished before the listener was added, and after each finished write action.
+   */
+  private static class RestartAfterWriteAction extends ApplicationAdapter implements Runnable {
+    private final Application myApplication;
+    private final ProgressIndicator myProgressIndicator;
+    private final ReadTask myTask;
+    private final int myRestarts;
+    private final AtomicBoolean myDone = new AtomicBoolean();
+
+    private RestartAfterWriteAction(Application application, ProgressIndicator progressIndicator, ReadTask task, int restarts) {
+      myApplication = application;
+      myProgressIndicator = progressIndicator;
+      myTask = task;
+      myRestarts = restarts;
+    }
+
+    private void start() {
+      myApplication.addApplicationListener(this);
+      myApplication.invokeLater(this, ModalityState.any());
+    }
+
+    @Override
+    public void writeActionFinished(Object action) {
+      //the write lock is still held here
+      myApplication.invokeLater(this, ModalityState.any());
+    }
+
+    @Override
+    public void run() {
+      if (myApplication.isWriteAccessAllowed() && !myProgressIndicator.isCanceled() && !myApplication.isDisposed()) return;
+      if (!myDone.compareAndSet(false, true)) return;
+      myApplication.removeApplicationListener(this);
+      scheduleAttempt(myProgressIndicator, myTask, myRestarts);
+    }
+  }
+
+  private static boolean runReadActionWithWritePriority(@NotNull Application application, @NotNull final ReadTask task) {
+    Runnable action = new Runnable() {
+      @Override
+      public void run() {
+        task.computeInReadAction(ProgressManager.getInstance().getProgressIndicator());
+      }
+    };
+    if (application instanceof ApplicationImpl) {
+      return ((ApplicationImpl)application).runReadActionWithWritePriority(action);
+    }
+    application.runReadAction(action);
+    return true;
+  }
 }
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.progress.util;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A background computation which gives way to write actions, see {@link ProgressIndicatorUtils#scheduleWithWriteActionPriority}
+ */
+public interface ReadTask {
+  /**
+   * Is called in a read action on a pooled thread. If a write action is about to start, the indicator is canceled and the computation
+   * is restarted from the beginning after the write action, so the task shouldn't publish its results until it's completed.
+   */
+  void computeInReadAction(@NotNull ProgressIndicator indicator) throws ProcessCanceledException;
+}
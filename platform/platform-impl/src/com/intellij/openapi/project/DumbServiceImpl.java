@@ -15,6 +15,7 @@
  */
 package com.intellij.openapi.project;
 
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.ide.IdeBundle;
 import com.intellij.ide.caches.CacheUpdater;
 import com.intellij.ide.util.DelegatingProgressIndicator;
@@ -57,6 +58,7 @@ public class DumbServiceImpl extends DumbService {
   private final Queue<IndexUpdateRunnable> myUpdatesQueue = new Queue<IndexUpdateRunnable>(5);
   private final Queue<Runnable> myRunWhenSmartQueue = new Queue<Runnable>(5);
   private final Project myProject;
+  private ActivityTracer.Activity myDumbModeActivity; // accessed in EDT only
 
   @SuppressWarnings({"MethodOverridesStaticMethodOfSuperclass"})
   public static DumbServiceImpl getInstance(@NotNull Project project) {
@@ -184,6 +186,7 @@ public class DumbServiceImpl extends DumbService {
           application.runWriteAction(new Runnable() {
             public void run() {
               myDumb = true;
+              myDumbModeActivity = ActivityTracer.start(ActivityTracer.INDEXING, "Dumb mode");
               try {
                 myPublisher.enteredDumbMode();
               }
@@ -214,6 +217,10 @@ public class DumbServiceImpl extends DumbService {
 
   private void updateFinished() {
     myDumb = false;
+    if (myDumbModeActivity != null) {
+      myDumbModeActivity.end();
+      myDumbModeActivity = null;
+    }
     try {
       if (!myProject.isDisposed()) {
         myPublisher.exitDumbMode();
@@ -367,7 +374,9 @@ public class DumbServiceImpl extends DumbService {
               indicator.checkCanceled();
               indicator.setIndeterminate(true);
               indicator.setText(IdeBundle.message("progress.indexing.scanning"));
+              ActivityTracer.Activity scanning = ActivityTracer.start(ActivityTracer.INDEXING, "Scanning files to index");
               int count = updateRunner.queryNeededFiles(indicator);
+              scanning.end();
 
               myCurrentBaseTotal = count;
               myTotalItems += count;
@@ -375,7 +384,9 @@ public class DumbServiceImpl extends DumbService {
               indicator.setIndeterminate(false);
               indicator.setText(IdeBundle.message("progress.indexing.updating"));
               if (count > 0) {
+                ActivityTracer.Activity indexing = ActivityTracer.start(ActivityTracer.INDEXING, "Indexing " + count + " files");
                 updateRunner.processFiles(indicator, true);
+                indexing.end();
               }
               updateRunner.updatingDone();
               myProcessedItems += count;
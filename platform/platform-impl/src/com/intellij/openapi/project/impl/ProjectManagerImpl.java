@@ -18,6 +18,7 @@ package com.intellij.openapi.project.impl;
 import com.intellij.CommonBundle;
 import com.intellij.conversion.ConversionResult;
 import com.intellij.conversion.ConversionService;
+import com.intellij.diagnostic.ActivityTracer;
 import com.intellij.ide.AppLifecycleListener;
 import com.intellij.ide.impl.ProjectUtil;
 import com.intellij.ide.startup.impl.StartupManagerImpl;
@@ -258,6 +259,10 @@ public class ProjectManagerImpl extends ProjectManagerEx implements NamedJDOMExt
   }
 
   private void initProject(@NotNull ProjectImpl project, @Nullable ProjectImpl template) throws IOException {
+    if (!project.isDefault() && !ApplicationManager.getApplication().isUnitTestMode()) {
+      ActivityTracer.startTimeline("Opening project " + project.getName());
+    }
+    ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.PROJECT_LOADING, "Loading " + project);
 
     final ProgressIndicator indicator = myProgressManager.getProgressIndicator();
     if (indicator != null) {
@@ -285,6 +290,9 @@ public class ProjectManagerImpl extends ProjectManagerEx implements NamedJDOMExt
       scheduleDispose(project);
       throw e;
     }
+    finally {
+      activity.end();
+    }
   }
 
   private ProjectImpl createProject(@Nullable String projectName,
@@ -140,6 +140,13 @@ public class JarFileSystemImpl extends JarFileSystem implements ApplicationCompo
     if (isRunningFromDist) {
       myNoCopyJarDir = new File(new File(PathManager.getLibPath()).getParent());
     }
+
+    ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        JarHandler.cleanupEntriesTables();
+      }
+    });
   }
 
   @Override
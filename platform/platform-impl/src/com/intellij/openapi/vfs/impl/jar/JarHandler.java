@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2012 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -52,6 +52,7 @@ public class JarHandler extends JarHandlerBase {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.impl.jar.JarHandler");
 
   @NonNls private static final String JARS_FOLDER = "jars";
+  @NonNls private static final String ENTRIES_FOLDER = "entries";
   private static final int FS_TIME_RESOLUTION = 2000;
 
   private final JarFileSystemImpl myFileSystem;
@@ -79,6 +80,26 @@ public class JarHandler extends JarHandlerBase {
     return root;
   }
 
+  @Override
+  protected File getEntriesTableFile() {
+    final File originalFile = getOriginalFile();
+    return new File(getJarsDir() + File.separatorChar + ENTRIES_FOLDER, originalFile.getName() + "." + Integer.toHexString(originalFile.getPath().hashCode()));
+  }
+
+  /**
+   * Deletes entry tables which will never be loaded again. Tables of changed jars which are still used would be rewritten
+   * on the next access, but tables of deleted jars and of jars nobody opens anymore would stay forever.
+   */
+  static void cleanupEntriesTables() {
+    final File[] tables = new File(getJarsDir(), ENTRIES_FOLDER).listFiles();
+    if (tables == null) return;
+    for (File table : tables) {
+      if (isEntriesTableStale(table)) {
+        FileUtil.delete(table);
+      }
+    }
+  }
+
   @Override
   public File getMirrorFile(@NotNull File originalFile) {
     if (!myFileSystem.isMakeCopyOfJar(originalFile)) return originalFile;
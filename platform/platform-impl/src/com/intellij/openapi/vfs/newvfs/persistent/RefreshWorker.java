@@ -29,14 +29,18 @@ import com.intellij.openapi.vfs.newvfs.NewVirtualFileSystem;
 import com.intellij.openapi.vfs.newvfs.events.*;
 import com.intellij.openapi.vfs.newvfs.impl.FakeVirtualFile;
 import com.intellij.openapi.vfs.newvfs.impl.VirtualDirectoryImpl;
+import com.intellij.util.concurrency.BoundedTaskExecutor;
+import com.intellij.util.containers.ContainerUtil;
 import com.intellij.util.containers.Queue;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.ide.PooledThreadExecutor;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import static com.intellij.openapi.diagnostic.LogUtil.debug;
 import static com.intellij.util.containers.ContainerUtil.newHashSet;
@@ -47,13 +51,32 @@ import static com.intellij.util.containers.ContainerUtil.newHashSet;
 public class RefreshWorker {
   private static final Logger LOG = Logger.getInstance("#com.intellij.openapi.vfs.newvfs.persistent.RefreshWorker");
 
+  /**
+   * If set, children of directories waiting in the refresh queue are listed and their attributes are read in advance on pooled threads;
+   * VFS is still accessed and events are still produced by the refreshing thread only.
+   */
+  public static final String PARALLEL_REFRESH_PROPERTY = "idea.vfs.parallel.refresh";
+  private static final boolean ourParallelRefresh = Boolean.parseBoolean(System.getProperty(PARALLEL_REFRESH_PROPERTY));
+  private static final int ourScanThreads = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+  private static final int MAX_PREFETCHED_DIRECTORIES = 64;
+  private static final BoundedTaskExecutor ourScanExecutor = new BoundedTaskExecutor(new PooledThreadExecutor(), ourScanThreads);
+
   private final boolean myIsRecursive;
+  private final boolean myParallel;
   private final Queue<Pair<NewVirtualFile, FileAttributes>> myRefreshQueue = new Queue<Pair<NewVirtualFile, FileAttributes>>(100);
+  private final Deque<NewVirtualFile> myPrefetchQueue = new ArrayDeque<NewVirtualFile>();
+  private final Map<NewVirtualFile, Future<DirectoryScan>> myPrefetchedDirectories = new HashMap<NewVirtualFile, Future<DirectoryScan>>();
   private final List<VFileEvent> myEvents = new ArrayList<VFileEvent>();
   private volatile boolean myCancelled = false;
 
   public RefreshWorker(@NotNull NewVirtualFile refreshRoot, boolean isRecursive) {
+    this(refreshRoot, isRecursive, ourParallelRefresh);
+  }
+
+  @TestOnly
+  RefreshWorker(@NotNull NewVirtualFile refreshRoot, boolean isRecursive, boolean parallel) {
     myIsRecursive = isRecursive;
+    myParallel = parallel;
     myRefreshQueue.addLast(Pair.create(refreshRoot, (FileAttributes)null));
   }
 
@@ -84,11 +107,34 @@ public class RefreshWorker {
     }
     myRefreshQueue.addLast(Pair.create(root, rootAttributes));
     PersistentFS persistence = PersistentFS.getInstance();
+    long start = System.currentTimeMillis();
+    int directories;
+    try {
+      directories = processQueue(fs, persistence);
+    }
+    finally {
+      for (Future<DirectoryScan> future : myPrefetchedDirectories.values()) {
+        future.cancel(false);
+      }
+      myPrefetchedDirectories.clear();
+      myPrefetchQueue.clear();
+    }
+
+    long time = System.currentTimeMillis() - start;
+    if (directories > 0 && (LOG.isDebugEnabled() || myParallel && time >= 1000)) {
+      LOG.info("refreshed " + directories + " directories under " + root + " in " + time + " ms (" + directories * 1000L / Math.max(time, 1) +
+               " directories/s" + (myParallel ? ", " + ourScanThreads + " threads)" : ")"));
+    }
+  }
+
+  private int processQueue(NewVirtualFileSystem fs, PersistentFS persistence) {
+    int directories = 0;
 
     main:
     while (!myRefreshQueue.isEmpty() && !myCancelled) {
       Pair<NewVirtualFile, FileAttributes> pair = myRefreshQueue.pullFirst();
       NewVirtualFile file = pair.first;
+      DirectoryScan scan = takeDirectoryScan(file, fs, persistence);
       boolean fileDirty = file.isDirty();
       debug(LOG, "file=%s dirty=%b", file, fileDirty);
       if (!fileDirty) continue;
@@ -109,10 +155,11 @@ public class RefreshWorker {
       }
       else if (file.isDirectory()) {
         VirtualDirectoryImpl dir = (VirtualDirectoryImpl)file;
+        directories++;
         boolean fullSync = dir.allChildrenLoaded();
         if (fullSync) {
           Set<String> currentNames = newHashSet(persistence.list(file));
-          Set<String> upToDateNames = newHashSet(VfsUtil.filterNames(fs.list(file)));
+          Set<String> upToDateNames = newHashSet(scan != null && scan.myNames != null ? scan.myNames : VfsUtil.filterNames(fs.list(file)));
           Set<String> newNames = newHashSet(upToDateNames);
           newNames.removeAll(currentNames);
           Set<String> deletedNames = newHashSet(currentNames);
@@ -125,7 +172,7 @@ public class RefreshWorker {
 
           for (String name : newNames) {
             if (myCancelled) break main;
-            FileAttributes childAttributes = fs.getAttributes(new FakeVirtualFile(file, name));
+            FileAttributes childAttributes = getAttributes(fs, scan, new FakeVirtualFile(file, name));
             if (childAttributes != null) {
               scheduleCreation(file, name, childAttributes.isDirectory());
             }
@@ -137,7 +184,7 @@ public class RefreshWorker {
           for (VirtualFile child : file.getChildren()) {
             if (myCancelled) break main;
             if (!deletedNames.contains(child.getName())) {
-              FileAttributes childAttributes = fs.getAttributes(child);
+              FileAttributes childAttributes = getAttributes(fs, scan, child);
               if (childAttributes != null) {
                 checkAndScheduleChildRefresh(file, child, childAttributes);
               }
@@ -153,7 +200,7 @@ public class RefreshWorker {
           debug(LOG, "cached=%s", cachedChildren);
           for (VirtualFile child : cachedChildren) {
             if (myCancelled) break main;
-            FileAttributes childAttributes = fs.getAttributes(child);
+            FileAttributes childAttributes = getAttributes(fs, scan, child);
             if (childAttributes != null) {
               checkAndScheduleChildRefresh(file, child, childAttributes);
             }
@@ -169,7 +216,7 @@ public class RefreshWorker {
             if (name.isEmpty()) continue;
 
             VirtualFile fake = new FakeVirtualFile(file, name);
-            FileAttributes childAttributes = fs.getAttributes(fake);
+            FileAttributes childAttributes = getAttributes(fs, scan, fake);
             if (childAttributes != null) {
               scheduleCreation(file, name, childAttributes.isDirectory());
             }
@@ -205,6 +252,86 @@ public class RefreshWorker {
 
       file.markClean();
     }
+    return directories;
+  }
+
+  @Nullable
+  private static FileAttributes getAttributes(@NotNull NewVirtualFileSystem fs, @Nullable DirectoryScan scan, @NotNull VirtualFile child) {
+    if (scan != null && scan.myAttributes.containsKey(child.getName())) {
+      return scan.myAttributes.get(child.getName());
+    }
+    return fs.getAttributes(child);
+  }
+
+  /**
+   * Returns the result of the scan of {@code file} if it was performed in advance, and starts scans of the directories which follow it
+   * in the queue.
+   */
+  @Nullable
+  private DirectoryScan takeDirectoryScan(@NotNull NewVirtualFile file, @NotNull NewVirtualFileSystem fs, @NotNull PersistentFS persistence) {
+    if (!myParallel) return null;
+
+    Future<DirectoryScan> future = myPrefetchedDirectories.remove(file);
+    if (future == null && myPrefetchQueue.peekFirst() == file) {
+      // directories are prefetched in the queue order, so a directory which wasn't prefetched yet is always the first one
+      myPrefetchQueue.pollFirst();
+    }
+    while (myPrefetchedDirectories.size() < MAX_PREFETCHED_DIRECTORIES && !myPrefetchQueue.isEmpty()) {
+      NewVirtualFile dir = myPrefetchQueue.pollFirst();
+      if (dir.isDirty() && dir instanceof VirtualDirectoryImpl) {
+        myPrefetchedDirectories.put(dir, startDirectoryScan((VirtualDirectoryImpl)dir, fs, persistence));
+      }
+    }
+    if (future == null) return null;
+
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    catch (ExecutionException e) {
+      LOG.info("cannot scan " + file + ": " + e.getCause());
+      return null;
+    }
+  }
+
+  @NotNull
+  private static Future<DirectoryScan> startDirectoryScan(@NotNull final VirtualDirectoryImpl dir,
+                                                          @NotNull final NewVirtualFileSystem fs,
+                                                          @NotNull PersistentFS persistence) {
+    final boolean listNames = dir.allChildrenLoaded();
+    final Set<String> knownNames = newHashSet();
+    if (listNames) {
+      ContainerUtil.addAll(knownNames, persistence.list(dir));
+    }
+    else {
+      for (VirtualFile child : dir.getCachedChildren()) {
+        knownNames.add(child.getName());
+      }
+      knownNames.addAll(dir.getSuspiciousNames());
+      knownNames.remove("");
+    }
+
+    return ourScanExecutor.submit(new Callable<DirectoryScan>() {
+      @Override
+      public DirectoryScan call() {
+        String[] names = listNames ? VfsUtil.filterNames(fs.list(dir)) : null;
+        Map<String, FileAttributes> attributes = new HashMap<String, FileAttributes>();
+        for (String name : knownNames) {
+          attributes.put(name, fs.getAttributes(new FakeVirtualFile(dir, name)));
+        }
+        if (names != null) {
+          for (String name : names) {
+            if (!attributes.containsKey(name)) {
+              attributes.put(name, fs.getAttributes(new FakeVirtualFile(dir, name)));
+            }
+          }
+        }
+        return new DirectoryScan(names, attributes);
+      }
+    });
   }
 
   private void checkAndScheduleChildRefresh(@NotNull VirtualFile parent,
@@ -214,6 +341,9 @@ public class RefreshWorker {
       boolean upToDateIsDirectory = childAttributes.isDirectory();
       if (myIsRecursive || !upToDateIsDirectory) {
         myRefreshQueue.addLast(Pair.create((NewVirtualFile)child, childAttributes));
+        if (myParallel && upToDateIsDirectory) {
+          myPrefetchQueue.addLast((NewVirtualFile)child);
+        }
       }
     }
   }
@@ -281,4 +411,14 @@ public class RefreshWorker {
     debug(LOG, "delete file=%s", file);
     myEvents.add(new VFileDeleteEvent(null, file, true));
   }
+
+  private static class DirectoryScan {
+    @Nullable private final String[] myNames;
+    @NotNull private final Map<String, FileAttributes> myAttributes;
+
+    private DirectoryScan(@Nullable String[] names, @NotNull Map<String, FileAttributes> attributes) {
+      myNames = names;
+      myAttributes = attributes;
+    }
+  }
 }
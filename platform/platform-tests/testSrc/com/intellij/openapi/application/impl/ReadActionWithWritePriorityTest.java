@@ -0,0 +1,207 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.application.impl;
+
+import com.intellij.openapi.application.ApplicationAdapter;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.progress.util.ReadTask;
+import com.intellij.testFramework.LightPlatformTestCase;
+import com.intellij.util.ui.UIUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReadActionWithWritePriorityTest extends LightPlatformTestCase {
+  private static final long TIMEOUT_MS = 10000;
+
+  public void testReadActionIsCanceledByWriteAction() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final AtomicBoolean canceled = new AtomicBoolean();
+    Future<Boolean> future = ApplicationManager.getApplication().executeOnPooledThread(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return getApplicationImpl().runReadActionWithWritePriority(new Runnable() {
+          @Override
+          public void run() {
+            started.countDown();
+            try {
+              waitForCancellation();
+            }
+            catch (ProcessCanceledException e) {
+              canceled.set(true);
+              throw e;
+            }
+          }
+        });
+      }
+    });
+    assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    runEmptyWriteAction();
+
+    assertFalse(future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertTrue(canceled.get());
+  }
+
+  public void testReadActionIsNotStartedWhileWriteActionIsPending() throws Exception {
+    final CountDownLatch readLockTaken = new CountDownLatch(1);
+    final CountDownLatch pending = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final AtomicBoolean ran = new AtomicBoolean();
+    ApplicationAdapter listener = new ApplicationAdapter() {
+      @Override
+      public void beforeWriteActionStart(Object action) {
+        pending.countDown();
+      }
+    };
+    ApplicationManager.getApplication().addApplicationListener(listener, getTestRootDisposable());
+
+    Future<?> reader = ApplicationManager.getApplication().executeOnPooledThread(new Runnable() {
+      @Override
+      public void run() {
+        ApplicationManager.getApplication().runReadAction(new Runnable() {
+          @Override
+          public void run() {
+            readLockTaken.countDown();
+            await(release);
+          }
+        });
+      }
+    });
+    Future<Boolean> future = ApplicationManager.getApplication().executeOnPooledThread(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        try {
+          await(pending);
+          return getApplicationImpl().runReadActionWithWritePriority(new Runnable() {
+            @Override
+            public void run() {
+              ran.set(true);
+            }
+          });
+        }
+        finally {
+          release.countDown();
+        }
+      }
+    });
+    assertTrue(readLockTaken.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    runEmptyWriteAction();
+    reader.get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+    assertFalse(future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertFalse(ran.get());
+  }
+
+  public void testCancellationOfParentIndicatorIsRethrown() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final ProgressIndicator parent = new ProgressIndicatorBase();
+    long canceledByWriteActions = getApplicationImpl().getReadWriteStatistics().getCanceledReadActionCount();
+    Future<Boolean> future = ApplicationManager.getApplication().executeOnPooledThread(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        final boolean[] result = {false};
+        try {
+          ProgressManager.getInstance().runProcess(new Runnable() {
+            @Override
+            public void run() {
+              getApplicationImpl().runReadActionWithWritePriority(new Runnable() {
+                @Override
+                public void run() {
+                  started.countDown();
+                  waitForCancellation();
+                }
+              });
+            }
+          }, parent);
+        }
+        catch (ProcessCanceledException e) {
+          result[0] = true;
+        }
+        return result[0];
+      }
+    });
+    assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    parent.cancel();
+
+    assertTrue("ProcessCanceledException expected", future.get(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    assertEquals(canceledByWriteActions, getApplicationImpl().getReadWriteStatistics().getCanceledReadActionCount());
+  }
+
+  public void testScheduledTaskIsRestartedAfterWriteAction() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch completed = new CountDownLatch(1);
+    final AtomicInteger attempts = new AtomicInteger();
+    ProgressIndicatorUtils.scheduleWithWriteActionPriority(new ReadTask() {
+      @Override
+      public void computeInReadAction(@NotNull ProgressIndicator indicator) {
+        if (attempts.incrementAndGet() == 1) {
+          started.countDown();
+          waitForCancellation();
+        }
+        completed.countDown();
+      }
+    });
+    assertTrue(started.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    runEmptyWriteAction();
+
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (!completed.await(10, TimeUnit.MILLISECONDS) && System.currentTimeMillis() < deadline) {
+      //the restart is triggered on the EDT after the write action
+      UIUtil.dispatchAllInvocationEvents();
+    }
+    assertEquals(0, completed.getCount());
+    assertEquals(2, attempts.get());
+  }
+
+  private static ApplicationImpl getApplicationImpl() {
+    return (ApplicationImpl)ApplicationManager.getApplication();
+  }
+
+  private static void runEmptyWriteAction() {
+    ApplicationManager.getApplication().runWriteAction(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+  }
+
+  private static void waitForCancellation() {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+    while (System.currentTimeMillis() < deadline) {
+      ProgressManager.checkCanceled();
+      Thread.yield();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+    }
+    catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
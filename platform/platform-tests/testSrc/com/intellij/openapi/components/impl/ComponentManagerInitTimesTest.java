@@ -0,0 +1,113 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.components.impl;
+
+import com.intellij.openapi.components.BaseComponent;
+import com.intellij.openapi.components.ComponentConfig;
+import com.intellij.openapi.extensions.ExtensionPointName;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.testFramework.PlatformLiteFixture;
+import com.intellij.util.TimeoutUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ComponentManagerInitTimesTest extends PlatformLiteFixture {
+  private static final int SLOW_CREATION_TIME = 300;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    initApplication();
+  }
+
+  public void testOwnTimeExcludesDependencies() {
+    TestComponentManager manager = new TestComponentManager();
+    Disposer.register(getTestRootDisposable(), manager);
+    register(manager, DependsOnSlow.class);
+    register(manager, Slow.class);
+    manager.init();
+
+    assertNotNull(manager.myReport);
+    assertTrue(manager.myReport, getReportedTime(manager.myReport, Slow.class) >= SLOW_CREATION_TIME);
+    assertTrue(manager.myReport, getReportedTime(manager.myReport, DependsOnSlow.class) < SLOW_CREATION_TIME / 2);
+    manager.disposeComponents();
+  }
+
+  private static long getReportedTime(String report, Class<?> componentClass) {
+    Matcher matcher = Pattern.compile(Pattern.quote(componentClass.getName()) + ": (\\d+) ms").matcher(report);
+    assertTrue(report, matcher.find());
+    return Long.parseLong(matcher.group(1));
+  }
+
+  private static void register(ComponentManagerImpl manager, Class<?> componentClass) {
+    ComponentConfig config = new ComponentConfig();
+    config.setImplementationClass(componentClass.getName());
+    manager.registerComponent(config);
+  }
+
+  private static class TestComponentManager extends ComponentManagerImpl {
+    private String myReport;
+
+    private TestComponentManager() {
+      super(null);
+    }
+
+    @Override
+    protected boolean logSlowComponents() {
+      return true;
+    }
+
+    @Override
+    protected void logInitTimes(@NotNull String report) {
+      myReport = report;
+    }
+
+    @NotNull
+    @Override
+    public <T> T[] getExtensions(@NotNull ExtensionPointName<T> extensionPointName) {
+      throw new UnsupportedOperationException("getExtensions()");
+    }
+  }
+
+  public abstract static class TestComponent implements BaseComponent {
+    @Override
+    public void initComponent() {
+    }
+
+    @Override
+    public void disposeComponent() {
+    }
+
+    @NotNull
+    @Override
+    public String getComponentName() {
+      return getClass().getSimpleName();
+    }
+  }
+
+  public static class Slow extends TestComponent {
+    public Slow() {
+      TimeoutUtil.sleep(SLOW_CREATION_TIME);
+    }
+  }
+
+  public static class DependsOnSlow extends TestComponent {
+    public DependsOnSlow(Slow slow) {
+    }
+  }
+}
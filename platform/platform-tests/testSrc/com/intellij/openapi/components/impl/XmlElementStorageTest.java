@@ -16,6 +16,7 @@
 package com.intellij.openapi.components.impl;
 
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.PersistentStateComponentWithModificationTracker;
 import com.intellij.openapi.components.StateStorage;
 import com.intellij.openapi.components.StateStorageException;
 import com.intellij.openapi.components.TrackingPathMacroSubstitutor;
@@ -24,12 +25,16 @@ import com.intellij.openapi.components.impl.stores.ComponentVersionProvider;
 import com.intellij.openapi.components.impl.stores.XmlElementStorage;
 import com.intellij.openapi.options.StreamProvider;
 import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.InvalidDataException;
+import com.intellij.openapi.util.JDOMExternalizable;
+import com.intellij.openapi.util.WriteExternalException;
 import com.intellij.testFramework.LightPlatformLangTestCase;
 import com.intellij.util.io.fs.IFile;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -80,6 +85,98 @@ public class XmlElementStorageTest extends LightPlatformLangTestCase {
     assertNull(storage.mySavedDocument.getRootElement().getChild("component").getChild("foo"));
   }
 
+  public void testUnmodifiedTrackedStateIsNotSerializedAgain() throws Exception {
+    MyXmlElementStorage storage = new MyXmlElementStorage(document(tag("root")), myParentDisposable);
+    MyTrackedComponent component = new MyTrackedComponent();
+
+    saveState(storage, component, "unrelated", tag("component", tag("foo")));
+    assertEquals(1, component.myState.mySerializationCount);
+
+    saveState(storage, component, "unrelated", tag("component", tag("bar")));
+    assertEquals(1, component.myState.mySerializationCount);
+    assertNotNull(storage.mySavedDocument.getRootElement().getChild("component").getChild("tracked"));
+
+    component.myModificationCount++;
+    saveState(storage, component, "unrelated", tag("component", tag("baz")));
+    assertEquals(2, component.myState.mySerializationCount);
+  }
+
+  public void testBeanStatesAreSerializedInCallingThread() throws Exception {
+    MyXmlElementStorage storage = new MyXmlElementStorage(document(tag("root")), myParentDisposable);
+    List<MyBean> beans = new ArrayList<MyBean>();
+    StateStorage.ExternalizationSession externalizationSession = storage.startExternalization();
+    for (int i = 0; i < 10; i++) {
+      MyBean bean = new MyBean();
+      bean.myValue = String.valueOf(i);
+      beans.add(bean);
+      externalizationSession.setState(this, "bean" + i, bean, null);
+    }
+    StateStorage.SaveSession saveSession = storage.startSave(externalizationSession);
+    saveSession.save();
+    storage.finishSave(saveSession);
+
+    for (MyBean bean : beans) {
+      assertSame(Thread.currentThread(), bean.mySerializationThread);
+    }
+    assertEquals(10, storage.mySavedDocument.getRootElement().getChildren("component").size());
+  }
+
+  private void saveState(MyXmlElementStorage storage, MyTrackedComponent component, String otherName, Element otherState)
+    throws StateStorageException {
+    StateStorage.ExternalizationSession externalizationSession = storage.startExternalization();
+    externalizationSession.setState(component, "tracked", component.myState, null);
+    externalizationSession.setState(this, otherName, otherState, null);
+    StateStorage.SaveSession saveSession = storage.startSave(externalizationSession);
+    saveSession.save();
+    storage.finishSave(saveSession);
+  }
+
+  private static class MyTrackedComponent implements PersistentStateComponentWithModificationTracker<MyTrackedState> {
+    private final MyTrackedState myState = new MyTrackedState();
+    private long myModificationCount;
+
+    @Override
+    public long getStateModificationCount() {
+      return myModificationCount;
+    }
+
+    @Override
+    public MyTrackedState getState() {
+      return myState;
+    }
+
+    @Override
+    public void loadState(MyTrackedState state) {
+    }
+  }
+
+  private static class MyTrackedState implements JDOMExternalizable {
+    private int mySerializationCount;
+
+    @Override
+    public void readExternal(Element element) throws InvalidDataException {
+    }
+
+    @Override
+    public void writeExternal(Element element) throws WriteExternalException {
+      mySerializationCount++;
+      element.addContent(new Element("tracked"));
+    }
+  }
+
+  public static class MyBean {
+    private String myValue;
+    private Thread mySerializationThread;
+
+    public String getValue() {
+      mySerializationThread = Thread.currentThread();
+      return myValue;
+    }
+
+    public void setValue(String value) {
+      myValue = value;
+    }
+  }
 
   private class MyXmlElementStorage extends XmlElementStorage {
     private final Document myDocument;
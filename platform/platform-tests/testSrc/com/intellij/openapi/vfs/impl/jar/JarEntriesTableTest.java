@@ -0,0 +1,83 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.impl.jar;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.IoTestUtil;
+import com.intellij.openapi.vfs.JarFileSystem;
+import com.intellij.testFramework.LightPlatformTestCase;
+
+import java.io.File;
+
+public class JarEntriesTableTest extends LightPlatformTestCase {
+  private File myJarsDir;
+  private String myOldJarsDir;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myJarsDir = FileUtil.createTempDirectory("jars", null);
+    myOldJarsDir = System.setProperty("jars_dir", myJarsDir.getPath());
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    if (myOldJarsDir != null) {
+      System.setProperty("jars_dir", myOldJarsDir);
+    }
+    else {
+      System.clearProperty("jars_dir");
+    }
+    FileUtil.delete(myJarsDir);
+    super.tearDown();
+  }
+
+  public void testStaleTablesAreDeleted() throws Exception {
+    File jar = IoTestUtil.createTestJar();
+    File deletedJar = IoTestUtil.createTestJar();
+    File table = createEntriesTable(jar);
+    File deletedJarTable = createEntriesTable(deletedJar);
+    File corruptedTable = new File(table.getParentFile(), "corrupted.jar.0");
+    FileUtil.writeToFile(corruptedTable, "corrupted");
+    assertTrue(FileUtil.delete(deletedJar));
+
+    JarHandler.cleanupEntriesTables();
+
+    assertTrue(table.exists());
+    assertFalse(deletedJarTable.exists());
+    assertFalse(corruptedTable.exists());
+    FileUtil.delete(jar);
+  }
+
+  public void testTableOfChangedJarIsDeleted() throws Exception {
+    File jar = IoTestUtil.createTestJar();
+    File table = createEntriesTable(jar);
+    assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+
+    JarHandler.cleanupEntriesTables();
+
+    assertFalse(table.exists());
+    FileUtil.delete(jar);
+  }
+
+  private static File createEntriesTable(File jar) {
+    JarHandler handler = new JarHandler((JarFileSystemImpl)JarFileSystem.getInstance(), jar.getPath());
+    assertTrue(handler.initEntries().containsKey("entry.txt"));
+    File table = handler.getEntriesTableFile();
+    assertTrue(table.exists());
+    return table;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.vfs.newvfs.persistent;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.NewVirtualFile;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.testFramework.PlatformLangTestCase;
+import com.intellij.util.CommonProcessors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+public class RefreshWorkerTest extends PlatformLangTestCase {
+  public void testParallelRefreshProducesSameEvents() throws Exception {
+    File testDir = FileUtil.createTempDirectory("RefreshWorkerTest." + getName(), null);
+    for (int i = 0; i < 5; i++) {
+      for (int j = 0; j < 5; j++) {
+        FileUtil.writeToFile(new File(testDir, "dir" + i + "/sub" + j + "/File.java"), "class File {}");
+      }
+      FileUtil.writeToFile(new File(testDir, "dir" + i + "/File.txt"), "text");
+    }
+
+    NewVirtualFile root = (NewVirtualFile)LocalFileSystem.getInstance().refreshAndFindFileByIoFile(testDir);
+    assertNotNull(root);
+    VfsUtilCore.processFilesRecursively(root, CommonProcessors.<VirtualFile>alwaysTrue());
+
+    FileUtil.writeToFile(new File(testDir, "dir0/sub0/Added.java"), "class Added {}");
+    FileUtil.writeToFile(new File(testDir, "dir1/New/File.java"), "class File {}");
+    FileUtil.delete(new File(testDir, "dir2/sub3"));
+    FileUtil.delete(new File(testDir, "dir3/File.txt"));
+    File changed = new File(testDir, "dir4/sub4/File.java");
+    FileUtil.writeToFile(changed, "class File { int i; }");
+    assertTrue(changed.setLastModified(changed.lastModified() - 10000));
+
+    List<VFileEvent> sequentialEvents = refresh(root, false);
+    List<VFileEvent> parallelEvents = refresh(root, true);
+    assertFalse(sequentialEvents.isEmpty());
+    assertEquals(sequentialEvents, parallelEvents);
+
+    root.refresh(false, true);
+  }
+
+  private static List<VFileEvent> refresh(NewVirtualFile root, boolean parallel) {
+    root.markDirtyRecursively();
+    RefreshWorker worker = new RefreshWorker(root, true, parallel);
+    worker.scan();
+    return new ArrayList<VFileEvent>(worker.getEvents());
+  }
+}
@@ -27,6 +27,8 @@ import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author max
@@ -76,6 +78,30 @@ public class UsageNodeTreeBuilderTest extends LightPlatformTestCase {
     assertEquals("[Even[1[0, 2], 2[12, 14], 3[102]], Odd[1[1, 3], 2[13, 15], 3[101, 103, 105]], 5[10003, 10001, 10002]]", groupNode.toString());
   }
 
+  public void testRemoveUsageBeforeInsertion() throws Exception {
+    UsageViewTreeModelBuilder model = new UsageViewTreeModelBuilder(new UsageViewPresentation(), new UsageTarget[0]);
+    GroupNode rootNode = new GroupNode(null, 0, model);
+    model.setRoot(rootNode);
+    UsageNodeTreeBuilder usageNodeTreeBuilder = new UsageNodeTreeBuilder(UsageTarget.EMPTY_ARRAY, new UsageGroupingRule[]{new OddEvenGroupingRule()},
+                                                                         UsageFilteringRule.EMPTY_ARRAY, rootNode);
+    final List<Runnable> queue = new ArrayList<Runnable>();
+    Consumer<Runnable> edtQueue = new Consumer<Runnable>() {
+      @Override
+      public void consume(Runnable runnable) {
+        queue.add(runnable);
+      }
+    };
+    usageNodeTreeBuilder.appendUsage(createUsage(0), edtQueue);
+    UsageNode odd = usageNodeTreeBuilder.appendUsage(createUsage(1), edtQueue);
+    assertTrue(rootNode.removeUsage(odd));
+    for (Runnable runnable : queue) {
+      runnable.run();
+    }
+
+    assertEquals("[Even[0]]", rootNode.toString());
+    assertEquals(1, rootNode.getRecursiveUsageCount());
+  }
+
   private static Usage createUsage(int index) {
     return new MockUsage(index);
   }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2012 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -28,11 +28,14 @@ import com.intellij.openapi.roots.impl.libraries.LibraryTableBase;
 import com.intellij.openapi.roots.impl.libraries.ProjectLibraryTable;
 import com.intellij.openapi.util.InvalidDataException;
 import com.intellij.openapi.util.JDOMUtil;
+import com.intellij.openapi.util.Ref;
+import com.intellij.openapi.util.StaxJDOMBuilder;
 import com.intellij.openapi.vfs.VirtualFile;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -57,8 +60,7 @@ public class CoreProjectLoader {
                                                                                            InvalidDataException {
     VirtualFile dotIdea = projectDir.findChild(Project.DIRECTORY_STORE_FOLDER);
     VirtualFile modulesXml = dotIdea.findChild("modules.xml");
-    StorageData storageData = loadStorageFile(project, modulesXml);
-    final Element moduleManagerState = storageData.getState("ProjectModuleManager");
+    final Element moduleManagerState = loadComponentState(project, modulesXml, "ProjectModuleManager");
     if (moduleManagerState == null) {
       throw new JDOMException("cannot find ProjectModuleManager state in modules.xml");
     }
@@ -66,8 +68,7 @@ public class CoreProjectLoader {
     moduleManager.loadState(moduleManagerState);
 
     VirtualFile miscXml = dotIdea.findChild("misc.xml");
-    storageData = loadStorageFile(project, miscXml);
-    final Element projectRootManagerState = storageData.getState("ProjectRootManager");
+    final Element projectRootManagerState = loadComponentState(project, miscXml, "ProjectRootManager");
     if (projectRootManagerState == null) {
       throw new JDOMException("cannot find ProjectRootManager state in misc.xml");
     }
@@ -85,8 +86,35 @@ public class CoreProjectLoader {
     project.projectOpened();
   }
 
+  /**
+   * Reads the state of a single component, other components of the file aren't built
+   */
+  @Nullable
+  private static Element loadComponentState(ComponentManager componentManager, VirtualFile file, final String componentName)
+    throws JDOMException, IOException {
+    final Ref<Element> state = Ref.create();
+    JDOMUtil.visitRootChildren(new ByteArrayInputStream(file.contentsToByteArray()), new StaxJDOMBuilder.RootChildrenVisitor() {
+      @Override
+      public boolean acceptChild(@NotNull Element child) {
+        return child.getName().equals(StorageData.COMPONENT) && componentName.equals(child.getAttributeValue(StorageData.NAME));
+      }
+
+      @Override
+      public boolean visitChild(@NotNull Element child) {
+        state.set(child);
+        return false;
+      }
+    });
+    Element element = state.get();
+    if (element != null) {
+      PathMacroManager.getInstance(componentManager).expandPaths(element);
+      element.removeAttribute(StorageData.NAME);
+    }
+    return element;
+  }
+
   public static StorageData loadStorageFile(ComponentManager componentManager, VirtualFile modulesXml) throws JDOMException, IOException {
-    final Document document = JDOMUtil.loadDocument(new ByteArrayInputStream(modulesXml.contentsToByteArray()));
+    final Document document = JDOMUtil.loadInternedDocument(new ByteArrayInputStream(modulesXml.contentsToByteArray()));
     StorageData storageData = new StorageData("project");
     final Element element = document.getRootElement();
     PathMacroManager.getInstance(componentManager).expandPaths(element);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2012 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,7 @@ import org.jdom.JDOMException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
@@ -59,7 +60,7 @@ public class DirectoryStorageData {
       }
 
       try {
-        final Document document = JDOMUtil.loadDocument(file.contentsToByteArray());
+        final Document document = JDOMUtil.loadInternedDocument(new ByteArrayInputStream(file.contentsToByteArray()));
         final Element element = document.getRootElement();
         if (!element.getName().equals(StorageData.COMPONENT)) {
           LOG.error("Incorrect root tag name (" + element.getName() + ") in " + file.getPresentableUrl());
@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2012 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -25,6 +25,7 @@ import com.intellij.openapi.extensions.Extensions;
 import com.intellij.openapi.util.JDOMUtil;
 import com.intellij.util.ArrayUtil;
 import gnu.trove.THashMap;
+import gnu.trove.TObjectIntHashMap;
 import org.jdom.Attribute;
 import org.jdom.Element;
 import org.jetbrains.annotations.NonNls;
@@ -40,17 +41,23 @@ public class StorageData {
   @NonNls public static final String NAME = "name";
 
   final Map<String, Element> myComponentStates;
+  /**
+   * Tree hashes of the states which were computed when the states were set
+   */
+  private final TObjectIntHashMap<String> myComponentHashes;
   protected final String myRootElementName;
   private Integer myHash;
 
   public StorageData(final String rootElementName) {
     myComponentStates = new THashMap<String, Element>();
+    myComponentHashes = new TObjectIntHashMap<String>();
     myRootElementName = rootElementName;
   }
 
   StorageData(StorageData storageData) {
     myRootElementName = storageData.myRootElementName;
     myComponentStates = new THashMap<String, Element>(storageData.myComponentStates);
+    myComponentHashes = (TObjectIntHashMap<String>)storageData.myComponentHashes.clone();
   }
 
 
@@ -117,6 +124,7 @@ public class StorageData {
     if (e != null) {
       assert e.getAttributeValue(NAME) != null : "No name attribute for component: " + name + " in " + this;
       e.removeAttribute(NAME);
+      myComponentHashes.remove(name);
     }
 
     return e;
@@ -124,10 +132,31 @@ public class StorageData {
 
   void removeState(final String componentName) {
     myComponentStates.remove(componentName);
+    myComponentHashes.remove(componentName);
     clearHash();
   }
 
   void setState(@NotNull final String componentName, final Element element) {
+    prepareState(componentName, element);
+    myComponentStates.put(componentName, element);
+    myComponentHashes.remove(componentName);
+    clearHash();
+  }
+
+  /**
+   * Sets a state which was already {@link #prepareState prepared}
+   * @param hash tree hash of the prepared state
+   */
+  void setState(@NotNull final String componentName, final Element element, final int hash) {
+    myComponentStates.put(componentName, element);
+    myComponentHashes.put(componentName, hash);
+    clearHash();
+  }
+
+  /**
+   * Turns the serialized state into a component element
+   */
+  static void prepareState(@NotNull final String componentName, final Element element) {
     element.setName(COMPONENT);
 
     //componentName should be first!
@@ -143,9 +172,6 @@ public class StorageData {
       Attribute attr = (Attribute)attribute;
       element.setAttribute(attr.getName(), attr.getValue());
     }
-
-    myComponentStates.put(componentName, element);
-    clearHash();
   }
 
   @Override
@@ -165,7 +191,8 @@ public class StorageData {
 
     for (String name : myComponentStates.keySet()) {
       result = 31*result + name.hashCode();
-      result = 31*result + JDOMUtil.getTreeHash(myComponentStates.get(name));
+      result = 31*result + (myComponentHashes.containsKey(name) ? myComponentHashes.get(name)
+                                                                 : JDOMUtil.getTreeHash(myComponentStates.get(name)));
     }
 
     return result;
@@ -191,6 +218,8 @@ public class StorageData {
       // some configurations want to collapse path elements in writeExternal so make sure paths are expanded
       if (substitutor != null) {
         substitutor.expandPaths(e2);
+        storageData.myComponentHashes.remove(componentName);
+        storageData.clearHash();
       }
 
       if (!JDOMUtil.areElementsEqual(e1, e2)) {
@@ -18,13 +18,14 @@ package com.intellij.openapi.roots.impl;
 
 import com.intellij.openapi.components.ServiceManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.ModificationTracker;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.util.Query;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.TestOnly;
 
-public abstract class DirectoryIndex {
+public abstract class DirectoryIndex implements ModificationTracker {
   public static DirectoryIndex getInstance(Project project) {
     assert !project.isDefault() : "Must not call DirectoryIndex for default project";
     return ServiceManager.getService(project, DirectoryIndex.class);
@@ -45,4 +46,25 @@ public abstract class DirectoryIndex {
   public abstract String getPackageName(@NotNull VirtualFile dir);
 
   public abstract boolean isInitialized();
+
+  /**
+   * @return true if some files directly under {@code dir} are roots themselves (e.g. single-file library roots) and so have
+   * infos of their own, which may differ from the one of {@code dir}
+   */
+  public abstract boolean hasFileRoots(@NotNull VirtualFile dir);
+
+  /**
+   * @return ids of the directories whose infos may have changed between the two {@link #getModificationCount() modification counts},
+   * or null if the changes weren't local to some directories (e.g. a root change) or are too old to be tracked
+   */
+  @Nullable
+  public abstract int[] getChangedDirectories(long fromModificationCount, long toModificationCount);
+
+  /**
+   * @return a counter incremented every time directory infos may have changed (roots, exclusions, directory structure),
+   * so that data derived from {@link #getInfoForDirectory(VirtualFile)} can be cached against it. Like
+   * {@link #getInfoForDirectory(VirtualFile)}, it processes pending root and file system events first
+   */
+  @Override
+  public abstract long getModificationCount();
 }
@@ -43,6 +43,8 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
   private final int myRuleIndex;
   private final Map<UsageGroup, GroupNode> mySubgroupNodes = new THashMap<UsageGroup, GroupNode>();
   private final List<UsageNode> myUsageNodes = new SmartList<UsageNode>();
+  // usage nodes created in background but not yet inserted into the Swing tree; guarded by lock
+  private final List<UsageNode> myPendingUsageNodes = new ArrayList<UsageNode>();
   @NotNull private final UsageViewTreeModelBuilder myUsageTreeModel;
   private volatile int myRecursiveUsageCount = 0;
 
@@ -70,14 +72,25 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
     return result + children.subList(0, Math.min(10, children.size())).toString();
   }
 
-  public GroupNode addGroup(@NotNull UsageGroup group, int ruleIndex, @NotNull Consumer<Runnable> edtQueue) {
+  public GroupNode addGroup(@NotNull final UsageGroup group, int ruleIndex, @NotNull Consumer<Runnable> edtQueue) {
     synchronized (lock) {
       GroupNode node = mySubgroupNodes.get(group);
       if (node == null) {
         final GroupNode node1 = node = new GroupNode(group, ruleIndex, getBuilder());
         mySubgroupNodes.put(group, node);
 
-        addNode(node1, edtQueue);
+        if (!getBuilder().isDetachedMode()) {
+          edtQueue.consume(new Runnable() {
+            @Override
+            public void run() {
+              synchronized (lock) {
+                // removed as empty before it got inserted
+                if (mySubgroupNodes.get(group) != node1) return;
+              }
+              myTreeModel.insertNodeInto(node1, GroupNode.this, getNodeInsertionIndex(node1));
+            }
+          });
+        }
       }
       return node;
     }
@@ -106,6 +119,7 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
       mySubgroupNodes.clear();
       myRecursiveUsageCount = 0;
       myUsageNodes.clear();
+      myPendingUsageNodes.clear();
     }
     myTreeModel.reload(this);
   }
@@ -133,11 +147,16 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
     for(Iterator<GroupNode> iterator = groupNodes.iterator();iterator.hasNext();) {
       final GroupNode groupNode = iterator.next();
 
+      int countBefore = groupNode.getRecursiveUsageCount();
       if(groupNode.removeUsage(usage)) {
-        doUpdate();
+        if (groupNode.getRecursiveUsageCount() != countBefore) {
+          doUpdate();
+        }
 
-        if (groupNode.getRecursiveUsageCount() == 0) {
-          myTreeModel.removeNodeFromParent(groupNode);
+        if (groupNode.isEmpty()) {
+          if (groupNode.getParent() != null) {
+            myTreeModel.removeNodeFromParent(groupNode);
+          }
           iterator.remove();
         }
         return true;
@@ -145,11 +164,16 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
     }
 
     boolean removed;
+    boolean inserted;
     synchronized (lock) {
       removed = myUsageNodes.remove(usage);
+      // a pending node isn't counted yet
+      inserted = !myPendingUsageNodes.remove(usage);
     }
     if (removed) {
-      doUpdate();
+      if (inserted) {
+        doUpdate();
+      }
       return true;
     }
 
@@ -158,8 +182,14 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
 
   public boolean removeUsagesBulk(@NotNull Set<UsageNode> usages) {
     boolean removed;
+    int removedCount;
     synchronized (lock) {
+      int pendingCount = myPendingUsageNodes.size();
+      myPendingUsageNodes.removeAll(usages);
+      int usageCount = myUsageNodes.size();
       removed = myUsageNodes.removeAll(usages);
+      // pending nodes aren't counted yet
+      removedCount = usageCount - myUsageNodes.size() - (pendingCount - myPendingUsageNodes.size());
     }
 
     Collection<GroupNode> groupNodes = mySubgroupNodes.values();
@@ -167,10 +197,12 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
     for (Iterator<GroupNode> iterator = groupNodes.iterator(); iterator.hasNext(); ) {
       GroupNode groupNode = iterator.next();
 
+      int countBefore = groupNode.getRecursiveUsageCount();
       if (groupNode.removeUsagesBulk(usages)) {
-        if (groupNode.getRecursiveUsageCount() == 0) {
+        removedCount += countBefore - groupNode.getRecursiveUsageCount();
+        if (groupNode.isEmpty()) {
           MutableTreeNode parent = (MutableTreeNode)groupNode.getParent();
-          int childIndex = parent.getIndex(groupNode);
+          int childIndex = parent == null ? -1 : parent.getIndex(groupNode);
           if (childIndex != -1) {
             parent.remove(childIndex);
           }
@@ -179,12 +211,25 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
         removed = true;
       }
     }
-    if (removed) {
-      --myRecursiveUsageCount;
-    }
+    myRecursiveUsageCount -= removedCount;
     return removed;
   }
 
+  /**
+   * @return true if there are no usages in this group and its subgroups, including the ones not inserted into the tree yet
+   */
+  private boolean isEmpty() {
+    List<GroupNode> subgroups;
+    synchronized (lock) {
+      if (!myUsageNodes.isEmpty()) return false;
+      subgroups = new ArrayList<GroupNode>(mySubgroupNodes.values());
+    }
+    for (GroupNode groupNode : subgroups) {
+      if (!groupNode.isEmpty()) return false;
+    }
+    return true;
+  }
+
   private void doUpdate() {
     ApplicationManager.getApplication().assertIsDispatchThread();
     --myRecursiveUsageCount;
@@ -193,6 +238,7 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
 
   public UsageNode addUsage(@NotNull Usage usage, @NotNull Consumer<Runnable> edtQueue) {
     final UsageNode node;
+    final boolean flushScheduled;
     synchronized (lock) {
       if (myUsageTreeModel.isFilterDuplicatedLine()) {
         UsageNode mergedWith = tryMerge(usage);
@@ -202,58 +248,63 @@ public class GroupNode extends Node implements Navigatable, Comparable<GroupNode
       }
       node = new UsageNode(usage, getBuilder());
       myUsageNodes.add(node);
+      if (getBuilder().isDetachedMode()) return node;
+      flushScheduled = !myPendingUsageNodes.isEmpty();
+      myPendingUsageNodes.add(node);
     }
 
-    if (!getBuilder().isDetachedMode()) {
+    if (!flushScheduled) {
+      // one runnable per batch: all usages accumulated until it runs get inserted with a single tree event
       edtQueue.consume(new Runnable() {
         @Override
         public void run() {
-          myTreeModel.insertNodeInto(node, GroupNode.this, getNodeIndex(node));
-          incrementUsageCount();
+          insertPendingUsageNodes();
         }
       });
     }
     return node;
   }
 
-  private int getNodeIndex(@NotNull UsageNode node) {
-    int index = indexedBinarySearch(node);
-    return index >= 0 ? index : -index-1;
-  }
-
-  private int indexedBinarySearch(@NotNull UsageNode key) {
-    int low = 0;
-    int high = getChildCount() - 1;
-
-    while (low <= high) {
-      int mid = (low + high) / 2;
-      TreeNode treeNode = getChildAt(mid);
-      int cmp;
-      if (treeNode instanceof UsageNode) {
-        UsageNode midVal = (UsageNode)treeNode;
-        cmp = midVal.compareTo(key);
-      }
-      else {
-        cmp = -1;
-      }
-      if (cmp < 0) {
-        low = mid + 1;
-      }
-      else if (cmp > 0) {
-        high = mid - 1;
+  private void insertPendingUsageNodes() {
+    final UsageNode[] pending;
+    synchronized (lock) {
+      if (myPendingUsageNodes.isEmpty()) return;
+      pending = myPendingUsageNodes.toArray(new UsageNode[myPendingUsageNodes.size()]);
+      myPendingUsageNodes.clear();
+    }
+    Arrays.sort(pending);
+
+    int oldCount = getChildCount();
+    List<TreeNode> merged = new ArrayList<TreeNode>(oldCount + pending.length);
+    int[] indices = new int[pending.length];
+    int i = 0;
+    int j = 0;
+    while (i < oldCount || j < pending.length) {
+      TreeNode child = i < oldCount ? getChildAt(i) : null;
+      if (j < pending.length && (child == null || child instanceof UsageNode && ((UsageNode)child).compareTo(pending[j]) > 0)) {
+        indices[j] = merged.size();
+        pending[j].setParent(this);
+        merged.add(pending[j++]);
       }
       else {
-        return mid; // key found
+        merged.add(child);
+        i++;
       }
     }
-    return -(low + 1);  // key not found
-  }
+    if (children == null) {
+      children = new Vector();
+    }
+    children.clear();
+    children.addAll(merged);
 
+    myTreeModel.nodesWereInserted(this, indices);
+    incrementUsageCount(pending.length);
+  }
 
-  private void incrementUsageCount() {
+  private void incrementUsageCount(int delta) {
     GroupNode groupNode = this;
     while (true) {
-      groupNode.myRecursiveUsageCount++;
+      groupNode.myRecursiveUsageCount += delta;
       final GroupNode node = groupNode;
       myTreeModel.nodeChanged(node);
       TreeNode parent = groupNode.getParent();
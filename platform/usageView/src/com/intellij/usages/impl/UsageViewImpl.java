@@ -852,7 +852,9 @@ public class UsageViewImpl implements UsageView, UsageModelTracker.UsageModelTra
         public void run() {
           if (isDisposed) return;
           TreeModel treeModel = myTree.getModel();
-          ((DefaultTreeModel)treeModel).removeNodeFromParent(node);
+          if (node.getParent() != null) { // not inserted yet otherwise
+            ((DefaultTreeModel)treeModel).removeNodeFromParent(node);
+          }
           ((GroupNode)myTree.getModel().getRoot()).removeUsage(node);
         }
       });
@@ -876,7 +878,7 @@ public class UsageViewImpl implements UsageView, UsageModelTracker.UsageModelTra
           DefaultTreeModel treeModel = (DefaultTreeModel)myTree.getModel();
           for (UsageNode node : nodes) {
             MutableTreeNode parent = (MutableTreeNode)node.getParent();
-            int childIndex = parent.getIndex(node);
+            int childIndex = parent == null ? -1 : parent.getIndex(node);
             if (childIndex != -1) {
               parent.remove(childIndex);
             }
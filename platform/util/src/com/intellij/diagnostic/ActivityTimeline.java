@@ -0,0 +1,172 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.diagnostic;
+
+import com.intellij.openapi.util.text.StringUtil;
+import gnu.trove.TObjectIntHashMap;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Activities recorded by {@link ActivityTracer} during startup or opening of a project. Times are in microseconds since the epoch.
+ */
+public class ActivityTimeline {
+  @NonNls private static final String HEADER = "activity timeline v1";
+
+  private final String myDescription;
+  private final long myTimestamp;
+  private final List<Record> myRecords;
+
+  public ActivityTimeline(@NotNull String description, long timestamp, @NotNull List<Record> records) {
+    myDescription = description;
+    myTimestamp = timestamp;
+    myRecords = records;
+  }
+
+  @NotNull
+  public String getDescription() {
+    return myDescription;
+  }
+
+  /**
+   * @return time when the timeline was started, in milliseconds
+   */
+  public long getTimestamp() {
+    return myTimestamp;
+  }
+
+  /**
+   * @return activities sorted by their start time
+   */
+  @NotNull
+  public List<Record> getRecords() {
+    List<Record> records = new ArrayList<Record>(myRecords);
+    Collections.sort(records, new Comparator<Record>() {
+      @Override
+      public int compare(Record o1, Record o2) {
+        return o1.start < o2.start ? -1 : o1.start == o2.start ? 0 : 1;
+      }
+    });
+    return records;
+  }
+
+  public void write(@NotNull File file) throws IOException {
+    PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+    try {
+      writer.println(HEADER);
+      writer.println(escape(myDescription));
+      writer.println(myTimestamp);
+      for (Record record : myRecords) {
+        writer.println(escape(record.phase) + '\t' + escape(record.name) + '\t' + escape(record.thread) + '\t' + record.start + '\t' + record.end);
+      }
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  @Nullable
+  public static ActivityTimeline read(@NotNull File file) throws IOException {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      if (!HEADER.equals(reader.readLine())) return null;
+      String description = reader.readLine();
+      String timestamp = reader.readLine();
+      if (description == null || timestamp == null) return null;
+
+      List<Record> records = new ArrayList<Record>();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split("\t");
+        if (parts.length == 5) {
+          records.add(new Record(parts[0], parts[1], parts[2], Long.parseLong(parts[3]), Long.parseLong(parts[4])));
+        }
+      }
+      return new ActivityTimeline(description, Long.parseLong(timestamp), records);
+    }
+    catch (NumberFormatException e) {
+      return null;
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Writes the timeline in the Trace Event Format, which can be opened by chrome://tracing
+   */
+  public void writeTrace(@NotNull File file) throws IOException {
+    PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8")));
+    try {
+      TObjectIntHashMap<String> threadIds = new TObjectIntHashMap<String>();
+      writer.println("{\"traceEvents\": [");
+      boolean first = true;
+      for (Record record : getRecords()) {
+        int threadId = threadIds.get(record.thread);
+        if (threadId == 0) {
+          threadId = threadIds.size() + 1;
+          threadIds.put(record.thread, threadId);
+          writer.print((first ? "" : ",\n") + "{\"name\": \"thread_name\", \"ph\": \"M\", \"pid\": 1, \"tid\": " + threadId +
+                       ", \"args\": {\"name\": \"" + jsonString(record.thread) + "\"}}");
+          first = false;
+        }
+        writer.print((first ? "" : ",\n") + "{\"name\": \"" + jsonString(record.name) + "\", \"cat\": \"" + jsonString(record.phase) +
+                     "\", \"ph\": \"X\", \"pid\": 1, \"tid\": " + threadId + ", \"ts\": " + record.start + ", \"dur\": " + record.getDuration() + "}");
+        first = false;
+      }
+      writer.println("\n],");
+      writer.println("\"otherData\": {\"description\": \"" + jsonString(myDescription) + "\"}}");
+    }
+    finally {
+      writer.close();
+    }
+  }
+
+  private static String escape(String s) {
+    return s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+  }
+
+  private static String jsonString(String s) {
+    return StringUtil.escapeStringCharacters(s);
+  }
+
+  public static class Record {
+    public final String phase;
+    public final String name;
+    public final String thread;
+    public final long start;
+    public final long end;
+
+    public Record(@NotNull String phase, @NotNull String name, @NotNull String thread, long start, long end) {
+      this.phase = phase;
+      this.name = name;
+      this.thread = thread;
+      this.start = start;
+      this.end = end;
+    }
+
+    public long getDuration() {
+      return end - start;
+    }
+  }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.diagnostic;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Records activities performed during startup and opening of a project, so it's possible to see what they consist of.
+ * A timeline is started when the application starts and by {@link #startTimeline(String)} when a project is being opened; it's completed
+ * and saved to {@link #getTimelinesDirectory()} by {@link #completeTimeline()} after the first highlighting pass in an opened project.
+ * Activities aren't recorded while there is no active timeline.
+ * <p/>
+ * Usage:
+ * <pre>
+ * ActivityTracer.Activity activity = ActivityTracer.start(ActivityTracer.PLUGINS, "Loading plugins");
+ * try {
+ *   ...
+ * }
+ * finally {
+ *   activity.end();
+ * }
+ * </pre>
+ */
+public class ActivityTracer {
+  private static final Logger LOG = Logger.getInstance("#com.intellij.diagnostic.ActivityTracer");
+  @NonNls public static final String BOOTSTRAP = "Bootstrap";
+  @NonNls public static final String STARTUP = "Startup";
+  @NonNls public static final String PLUGINS = "Plugins";
+  @NonNls public static final String COMPONENTS = "Components";
+  @NonNls public static final String PROJECT_LOADING = "Project loading";
+  @NonNls public static final String STARTUP_ACTIVITIES = "Startup activities";
+  @NonNls public static final String INDEXING = "Indexing";
+  @NonNls public static final String HIGHLIGHTING = "Highlighting";
+
+  @NonNls private static final String BOOTSTRAP_ACTIVITIES_PROPERTY = "idea.activity.tracer.bootstrap";
+  @NonNls private static final String TIMELINE_FILE_PREFIX = "timeline-";
+  private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("idea.activity.tracer", "true"));
+  private static final int MAX_RECORDS = 20000;
+  private static final int TIMELINES_TO_KEEP = 10;
+  /**
+   * A timeline is completed when a project is opened after a pause, e.g. the welcome screen was shown for a while
+   */
+  private static final long IDLE_MICROS = 10 * 1000 * 1000;
+
+  private static final long ourBaseMicros = System.currentTimeMillis() * 1000;
+  private static final long ourBaseNanos = System.nanoTime();
+  private static final Object ourLock = new Object();
+  private static Timeline ourTimeline;
+
+  static {
+    if (ENABLED) {
+      ourTimeline = new Timeline("Startup", ourBaseMicros);
+      importBootstrapActivities();
+    }
+  }
+
+  private ActivityTracer() {
+  }
+
+  /**
+   * Starts an activity which is recorded when it {@link Activity#end() ends}. Activities which don't end aren't recorded.
+   */
+  @NotNull
+  public static Activity start(@NotNull String phase, @NotNull String name) {
+    Timeline timeline;
+    synchronized (ourLock) {
+      timeline = ourTimeline;
+    }
+    return timeline == null ? Activity.NULL : new Activity(timeline, phase, name, now());
+  }
+
+  /**
+   * Records an activity which was measured by the caller
+   * @param startNanos start of the activity as returned by {@link System#nanoTime()}
+   */
+  public static void add(@NotNull String phase, @NotNull String name, long startNanos) {
+    synchronized (ourLock) {
+      if (ourTimeline != null) {
+        ourTimeline.add(phase, name, Thread.currentThread().getName(), toMicros(startNanos), now());
+      }
+    }
+  }
+
+  /**
+   * Records an activity which happened before IDE classes were loaded. The activity is passed via a system property because
+   * bootstrap classes and the IDE use different instances of this class.
+   * @param start start of the activity in milliseconds
+   */
+  public static void addBootstrapActivity(@NotNull String name, long start) {
+    if (!ENABLED) return;
+    String activities = System.getProperty(BOOTSTRAP_ACTIVITIES_PROPERTY, "");
+    String activity = name.replace('\t', ' ').replace('\n', ' ') + '\t' + start + '\t' + System.currentTimeMillis();
+    System.setProperty(BOOTSTRAP_ACTIVITIES_PROPERTY, activities.isEmpty() ? activity : activities + '\n' + activity);
+  }
+
+  private static void importBootstrapActivities() {
+    String activities = System.getProperty(BOOTSTRAP_ACTIVITIES_PROPERTY);
+    if (activities == null) return;
+    System.clearProperty(BOOTSTRAP_ACTIVITIES_PROPERTY);
+    String thread = Thread.currentThread().getName();
+    for (String activity : activities.split("\n")) {
+      String[] parts = activity.split("\t");
+      if (parts.length == 3) {
+        try {
+          long start = Long.parseLong(parts[1]) * 1000;
+          ourTimeline.add(BOOTSTRAP, parts[0], thread, start, Long.parseLong(parts[2]) * 1000);
+          ourTimeline.myStart = Math.min(ourTimeline.myStart, start);
+        }
+        catch (NumberFormatException ignored) {
+        }
+      }
+    }
+  }
+
+  /**
+   * Starts recording a new timeline unless there is an active one which was used recently
+   */
+  public static void startTimeline(@NotNull String description) {
+    if (!ENABLED) return;
+    Timeline completed = null;
+    synchronized (ourLock) {
+      if (ourTimeline != null && now() - ourTimeline.myLastRecordEnd < IDLE_MICROS) {
+        ourTimeline.myDescription += ", " + description;
+        return;
+      }
+      if (ourTimeline != null) {
+        completed = ourTimeline;
+      }
+      ourTimeline = new Timeline(description, now());
+    }
+    if (completed != null) {
+      save(completed);
+    }
+  }
+
+  /**
+   * Saves the active timeline, activities which end after this call aren't recorded
+   */
+  public static void completeTimeline() {
+    Timeline timeline;
+    synchronized (ourLock) {
+      timeline = ourTimeline;
+      ourTimeline = null;
+    }
+    if (timeline != null) {
+      save(timeline);
+    }
+  }
+
+  /**
+   * Stops recording of the active timeline without saving it
+   */
+  public static void discardTimeline() {
+    synchronized (ourLock) {
+      ourTimeline = null;
+    }
+  }
+
+  public static boolean isTimelineActive() {
+    synchronized (ourLock) {
+      return ourTimeline != null;
+    }
+  }
+
+  @Nullable
+  public static ActivityTimeline getActiveTimeline() {
+    synchronized (ourLock) {
+      return ourTimeline != null ? ourTimeline.toActivityTimeline() : null;
+    }
+  }
+
+  /**
+   * @return saved timelines, the most recent first
+   */
+  @NotNull
+  public static List<ActivityTimeline> loadTimelines() {
+    List<ActivityTimeline> result = new ArrayList<ActivityTimeline>();
+    for (File file : getTimelineFiles()) {
+      try {
+        ActivityTimeline timeline = ActivityTimeline.read(file);
+        if (timeline != null) {
+          result.add(timeline);
+        }
+      }
+      catch (IOException e) {
+        LOG.info("Cannot read " + file + ": " + e.getMessage());
+      }
+    }
+    return result;
+  }
+
+  @NotNull
+  public static File getTimelinesDirectory() {
+    return new File(PathManager.getLogPath(), "timelines");
+  }
+
+  private static List<File> getTimelineFiles() {
+    File[] files = getTimelinesDirectory().listFiles();
+    if (files == null) return Collections.emptyList();
+
+    List<File> result = new ArrayList<File>();
+    for (File file : files) {
+      if (file.getName().startsWith(TIMELINE_FILE_PREFIX)) {
+        result.add(file);
+      }
+    }
+    //names contain the time when a timeline was started
+    Collections.sort(result, Collections.reverseOrder());
+    return result;
+  }
+
+  private static void save(Timeline timeline) {
+    if (timeline.myRecords.isEmpty()) return;
+
+    ActivityTimeline activityTimeline;
+    synchronized (ourLock) {
+      activityTimeline = timeline.toActivityTimeline();
+    }
+    String name = TIMELINE_FILE_PREFIX + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(activityTimeline.getTimestamp())) + ".txt";
+    File file = new File(getTimelinesDirectory(), name);
+    try {
+      FileUtil.createParentDirs(file);
+      activityTimeline.write(file);
+    }
+    catch (IOException e) {
+      LOG.info("Cannot save " + file + ": " + e.getMessage());
+      return;
+    }
+
+    List<File> files = getTimelineFiles();
+    for (File old : files.subList(Math.min(files.size(), TIMELINES_TO_KEEP), files.size())) {
+      FileUtil.delete(old);
+    }
+  }
+
+  private static long now() {
+    return toMicros(System.nanoTime());
+  }
+
+  private static long toMicros(long nanos) {
+    return ourBaseMicros + (nanos - ourBaseNanos) / 1000;
+  }
+
+  public static class Activity {
+    private static final Activity NULL = new Activity(null, "", "", 0);
+
+    private final Timeline myTimeline;
+    private final String myPhase;
+    private final String myName;
+    private final String myThread;
+    private final long myStart;
+
+    private Activity(@Nullable Timeline timeline, String phase, String name, long start) {
+      myTimeline = timeline;
+      myPhase = phase;
+      myName = name;
+      myThread = timeline != null ? Thread.currentThread().getName() : "";
+      myStart = start;
+    }
+
+    public void end() {
+      if (myTimeline == null) return;
+      synchronized (ourLock) {
+        //activities of completed timelines are dropped
+        if (myTimeline == ourTimeline) {
+          myTimeline.add(myPhase, myName, myThread, myStart, now());
+        }
+      }
+    }
+  }
+
+  private static class Timeline {
+    private final List<ActivityTimeline.Record> myRecords = new ArrayList<ActivityTimeline.Record>();
+    private String myDescription;
+    private long myStart;
+    private long myLastRecordEnd;
+
+    private Timeline(String description, long start) {
+      myDescription = description;
+      myStart = start;
+      myLastRecordEnd = start;
+    }
+
+    private void add(String phase, String name, String thread, long start, long end) {
+      if (myRecords.size() < MAX_RECORDS) {
+        myRecords.add(new ActivityTimeline.Record(phase, name, thread, start, end));
+      }
+      myLastRecordEnd = Math.max(myLastRecordEnd, end);
+    }
+
+    private ActivityTimeline toActivityTimeline() {
+      return new ActivityTimeline(myDescription, myStart / 1000, new ArrayList<ActivityTimeline.Record>(myRecords));
+    }
+  }
+}
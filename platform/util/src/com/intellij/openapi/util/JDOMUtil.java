@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2011 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package com.intellij.openapi.util;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.util.text.StringUtil;
 import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.BoundedStringInterner;
 import com.intellij.util.containers.StringInterner;
 import com.intellij.util.io.URLUtil;
 import com.intellij.util.io.fs.IFile;
@@ -51,6 +52,11 @@ import java.util.List;
 @SuppressWarnings({"HardCodedStringLiteral"})
 public class JDOMUtil {
   private static final ThreadLocal<SoftReference<SAXBuilder>> ourSaxBuilder = new ThreadLocal<SoftReference<SAXBuilder>>();
+  /**
+   * Interns names, short attribute values and texts (mostly indents) of loaded configuration files. Longer values are
+   * usually unique paths and texts.
+   */
+  private static final BoundedStringInterner ourInterner = new BoundedStringInterner(1 << 14, 64);
 
   private JDOMUtil() { }
 
@@ -212,6 +218,30 @@ public class JDOMUtil {
     }
   }
 
+  /**
+   * Interns strings of the element through the interner used by {@link #loadInternedDocument}, unlike
+   * {@link #internElement(Element, StringInterner)} it doesn't retain strings which aren't used anymore
+   */
+  public static void internElement(@NotNull Element element) {
+    element.setName(ourInterner.intern(element.getName()));
+
+    for (Object o : element.getAttributes()) {
+      Attribute attr = (Attribute)o;
+      attr.setName(ourInterner.intern(attr.getName()));
+      attr.setValue(ourInterner.intern(attr.getValue()));
+    }
+
+    for (Object o : element.getContent()) {
+      if (o instanceof Element) {
+        internElement((Element)o);
+      }
+      else if (o instanceof Text) {
+        Text text = (Text)o;
+        text.setText(ourInterner.intern(text.getText()));
+      }
+    }
+  }
+
   @NotNull
   private static String intern(@NotNull final StringInterner interner, @NotNull final String s) {
     synchronized (interner) {
@@ -381,6 +411,37 @@ public class JDOMUtil {
     }
   }
 
+  /**
+   * Loads the document with {@link StaxJDOMBuilder}, which is faster than SAXBuilder, and interns names, short attribute values
+   * and texts, so documents which share much of their content (modules, workspace, inspection profiles) don't keep copies of the
+   * same strings. A document type declaration isn't loaded.
+   */
+  @NotNull
+  public static Document loadInternedDocument(@NotNull InputStream stream) throws JDOMException, IOException {
+    InputStreamReader reader = new InputStreamReader(stream, ENCODING);
+    try {
+      return new StaxJDOMBuilder(ourInterner).build(reader);
+    }
+    finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads the document building only the children of the root which are accepted by the visitor, see
+   * {@link StaxJDOMBuilder.RootChildrenVisitor}
+   */
+  public static void visitRootChildren(@NotNull InputStream stream, @NotNull StaxJDOMBuilder.RootChildrenVisitor visitor)
+    throws JDOMException, IOException {
+    InputStreamReader reader = new InputStreamReader(stream, ENCODING);
+    try {
+      new StaxJDOMBuilder(ourInterner).visitRootChildren(reader, visitor);
+    }
+    finally {
+      reader.close();
+    }
+  }
+
   @NotNull
   public static Document loadDocument(@NotNull Class clazz, String reaource) throws JDOMException, IOException {
     InputStream stream = clazz.getResourceAsStream(reaource);
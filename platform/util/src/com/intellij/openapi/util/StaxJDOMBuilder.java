@@ -0,0 +1,299 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.util;
+
+import com.intellij.util.ArrayUtil;
+import com.intellij.util.containers.BoundedStringInterner;
+import org.jdom.*;
+import org.jetbrains.annotations.NonNls;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds JDOM trees from a StAX parser. Unlike {@link org.jdom.input.SAXBuilder} it doesn't check names of elements and attributes
+ * and takes texts from the parser's buffer without copying them to intermediate strings. If an interner is specified, names, texts
+ * and attribute values are interned through it, so equal strings of the loaded documents share a single instance.
+ * <p/>
+ * The resulting tree is the same as SAXBuilder produces, except that a document type declaration isn't kept (external entities
+ * aren't loaded by either builder). {@link #visitRootChildren} reads a document without building elements which aren't needed.
+ *
+ * @see JDOMUtil#loadInternedDocument
+ */
+public class StaxJDOMBuilder {
+  @NonNls private static final String REPORT_CDATA_PROPERTY = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+  private static final XMLInputFactory ourFactory = createFactory();
+  private static final JDOMFactory ourJDOMFactory = new UncheckedJDOMFactory();
+
+  @Nullable private final BoundedStringInterner myInterner;
+  private char[] myText = ArrayUtil.EMPTY_CHAR_ARRAY;
+  private int myTextLength;
+
+  public StaxJDOMBuilder(@Nullable BoundedStringInterner interner) {
+    myInterner = interner;
+  }
+
+  private static XMLInputFactory createFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setXMLResolver(new XMLResolver() {
+      @Override
+      public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+        return new ByteArrayInputStream(ArrayUtil.EMPTY_BYTE_ARRAY);
+      }
+    });
+    if (factory.isPropertySupported(REPORT_CDATA_PROPERTY)) {
+      factory.setProperty(REPORT_CDATA_PROPERTY, true);
+    }
+    return factory;
+  }
+
+  /**
+   * Reads children of the root element one by one, so a consumer which needs a part of a document doesn't build the whole tree
+   */
+  public abstract static class RootChildrenVisitor {
+    /**
+     * @param root the root element with attributes but without content
+     * @return false to stop reading
+     */
+    public boolean visitRoot(@NotNull Element root) {
+      return true;
+    }
+
+    /**
+     * @param child a child element of the root with attributes but without content
+     * @return true to read the content of the child and pass it to {@link #visitChild}, false to skip it
+     */
+    public abstract boolean acceptChild(@NotNull Element child);
+
+    /**
+     * @param child an accepted child element with its content, it isn't attached to the root
+     * @return false to stop reading
+     */
+    public abstract boolean visitChild(@NotNull Element child);
+  }
+
+  @NotNull
+  public Document build(@NotNull Reader reader) throws JDOMException {
+    XMLStreamReader xmlReader = createReader(reader);
+    try {
+      Document document = new Document();
+      while (xmlReader.hasNext()) {
+        int event = xmlReader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          Element root = createElement(xmlReader);
+          document.setRootElement(root);
+          readContent(xmlReader, root);
+        }
+        else if (event == XMLStreamConstants.COMMENT) {
+          ourJDOMFactory.addContent(document, ourJDOMFactory.comment(xmlReader.getText()));
+        }
+        else if (event == XMLStreamConstants.PROCESSING_INSTRUCTION) {
+          ourJDOMFactory.addContent(document, ourJDOMFactory.processingInstruction(xmlReader.getPITarget(), getPIData(xmlReader)));
+        }
+      }
+      if (!document.hasRootElement()) {
+        throw new JDOMException("No root element");
+      }
+      return document;
+    }
+    catch (XMLStreamException e) {
+      throw new JDOMException(e.getMessage(), e);
+    }
+    finally {
+      close(xmlReader);
+    }
+  }
+
+  public void visitRootChildren(@NotNull Reader reader, @NotNull RootChildrenVisitor visitor) throws JDOMException {
+    XMLStreamReader xmlReader = createReader(reader);
+    try {
+      int depth = 0;
+      while (xmlReader.hasNext()) {
+        int event = xmlReader.next();
+        if (event == XMLStreamConstants.START_ELEMENT) {
+          if (depth == 0) {
+            if (!visitor.visitRoot(createElement(xmlReader))) return;
+            depth++;
+          }
+          else {
+            Element child = createElement(xmlReader);
+            if (visitor.acceptChild(child)) {
+              readContent(xmlReader, child);
+              if (!visitor.visitChild(child)) return;
+            }
+            else {
+              skipContent(xmlReader);
+            }
+          }
+        }
+        else if (event == XMLStreamConstants.END_ELEMENT) {
+          return;
+        }
+      }
+    }
+    catch (XMLStreamException e) {
+      throw new JDOMException(e.getMessage(), e);
+    }
+    finally {
+      close(xmlReader);
+    }
+  }
+
+  private static XMLStreamReader createReader(Reader reader) throws JDOMException {
+    try {
+      //the factory is configured once, but its implementation isn't guaranteed to be thread-safe
+      synchronized (ourFactory) {
+        return ourFactory.createXMLStreamReader(reader);
+      }
+    }
+    catch (XMLStreamException e) {
+      throw new JDOMException(e.getMessage(), e);
+    }
+  }
+
+  private static void close(XMLStreamReader xmlReader) {
+    try {
+      xmlReader.close();
+    }
+    catch (XMLStreamException ignored) {
+    }
+  }
+
+  /**
+   * Reads the content of the element which start tag was just read, up to its end tag
+   */
+  private void readContent(XMLStreamReader xmlReader, Element element) throws XMLStreamException {
+    List<Element> parents = new ArrayList<Element>();
+    Element current = element;
+    myTextLength = 0;
+    while (true) {
+      int event = xmlReader.next();
+      switch (event) {
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.SPACE:
+          appendText(xmlReader.getTextCharacters(), xmlReader.getTextStart(), xmlReader.getTextLength());
+          break;
+        case XMLStreamConstants.ENTITY_REFERENCE:
+          String replacement = xmlReader.getText();
+          if (replacement != null) {
+            appendText(replacement.toCharArray(), 0, replacement.length());
+          }
+          break;
+        case XMLStreamConstants.START_ELEMENT:
+          flushText(current);
+          Element child = createElement(xmlReader);
+          ourJDOMFactory.addContent(current, child);
+          parents.add(current);
+          current = child;
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          flushText(current);
+          if (parents.isEmpty()) return;
+          current = parents.remove(parents.size() - 1);
+          break;
+        case XMLStreamConstants.CDATA:
+          flushText(current);
+          ourJDOMFactory.addContent(current, ourJDOMFactory.cdata(xmlReader.getText()));
+          break;
+        case XMLStreamConstants.COMMENT:
+          flushText(current);
+          ourJDOMFactory.addContent(current, ourJDOMFactory.comment(xmlReader.getText()));
+          break;
+        case XMLStreamConstants.PROCESSING_INSTRUCTION:
+          flushText(current);
+          ourJDOMFactory.addContent(current, ourJDOMFactory.processingInstruction(xmlReader.getPITarget(), getPIData(xmlReader)));
+          break;
+        case XMLStreamConstants.END_DOCUMENT:
+          throw new XMLStreamException("Unexpected end of document in " + current.getName());
+      }
+    }
+  }
+
+  private static void skipContent(XMLStreamReader xmlReader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      int event = xmlReader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      }
+      else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+      else if (event == XMLStreamConstants.END_DOCUMENT) {
+        throw new XMLStreamException("Unexpected end of document");
+      }
+    }
+  }
+
+  private Element createElement(XMLStreamReader xmlReader) {
+    Namespace elementNamespace = getNamespace(xmlReader.getPrefix(), xmlReader.getNamespaceURI());
+    Element element = ourJDOMFactory.element(intern(xmlReader.getLocalName()), elementNamespace);
+    for (int i = 0; i < xmlReader.getNamespaceCount(); i++) {
+      Namespace declared = getNamespace(xmlReader.getNamespacePrefix(i), xmlReader.getNamespaceURI(i));
+      if (!declared.equals(elementNamespace)) {
+        ourJDOMFactory.addNamespaceDeclaration(element, declared);
+      }
+    }
+    for (int i = 0; i < xmlReader.getAttributeCount(); i++) {
+      Namespace namespace = getNamespace(xmlReader.getAttributePrefix(i), xmlReader.getAttributeNamespace(i));
+      String name = intern(xmlReader.getAttributeLocalName(i));
+      ourJDOMFactory.setAttribute(element, ourJDOMFactory.attribute(name, intern(xmlReader.getAttributeValue(i)), namespace));
+    }
+    return element;
+  }
+
+  private static Namespace getNamespace(@Nullable String prefix, @Nullable String uri) {
+    if (uri == null || uri.length() == 0) return Namespace.NO_NAMESPACE;
+    return Namespace.getNamespace(prefix == null ? "" : prefix, uri);
+  }
+
+  private static String getPIData(XMLStreamReader xmlReader) {
+    String data = xmlReader.getPIData();
+    return data != null ? data : "";
+  }
+
+  private void appendText(char[] chars, int start, int length) {
+    if (myTextLength + length > myText.length) {
+      myText = ArrayUtil.realloc(myText, Math.max(myText.length * 2, myTextLength + length));
+    }
+    System.arraycopy(chars, start, myText, myTextLength, length);
+    myTextLength += length;
+  }
+
+  private void flushText(Element element) {
+    if (myTextLength == 0) return;
+
+    String text = myInterner != null ? myInterner.intern(myText, 0, myTextLength) : new String(myText, 0, myTextLength);
+    ourJDOMFactory.addContent(element, ourJDOMFactory.text(text));
+    myTextLength = 0;
+  }
+
+  private String intern(String s) {
+    return myInterner != null ? myInterner.intern(s) : s;
+  }
+}
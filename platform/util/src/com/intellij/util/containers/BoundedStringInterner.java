@@ -0,0 +1,77 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.containers;
+
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Returns the same instance for equal strings, like {@link StringInterner}, but never grows: every string has a single slot
+ * chosen by its hash code, and a string replaces a different one in its slot. So frequent strings are deduplicated while rare ones
+ * don't occupy memory forever, and characters can be interned without creating a String if an equal one is cached.
+ * <p/>
+ * Strings longer than the maximum length are returned as is. The interner doesn't need locking: strings are immutable, so
+ * a lost concurrent update only means that a string isn't deduplicated.
+ */
+public class BoundedStringInterner {
+  private final String[] myStrings;
+  private final int myMaxLength;
+
+  /**
+   * @param capacity number of slots, is rounded up to a power of 2
+   */
+  public BoundedStringInterner(int capacity, int maxLength) {
+    myStrings = new String[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+    myMaxLength = maxLength;
+  }
+
+  @NotNull
+  public String intern(@NotNull String s) {
+    if (s.length() > myMaxLength) return s;
+
+    int index = getIndex(s.hashCode());
+    String cached = myStrings[index];
+    if (s.equals(cached)) return cached;
+
+    myStrings[index] = s;
+    return s;
+  }
+
+  @NotNull
+  public String intern(@NotNull char[] chars, int start, int length) {
+    if (length > myMaxLength) return new String(chars, start, length);
+
+    int index = getIndex(StringUtil.stringHashCode(chars, start, start + length));
+    String cached = myStrings[index];
+    if (cached != null && equals(cached, chars, start, length)) return cached;
+
+    String s = new String(chars, start, length);
+    myStrings[index] = s;
+    return s;
+  }
+
+  private int getIndex(int hash) {
+    return (hash ^ (hash >>> 16)) & (myStrings.length - 1);
+  }
+
+  private static boolean equals(String s, char[] chars, int start, int length) {
+    if (s.length() != length) return false;
+    for (int i = 0; i < length; i++) {
+      if (s.charAt(i) != chars[start + i]) return false;
+    }
+    return true;
+  }
+}
@@ -449,6 +449,25 @@ public class JBZipEntry implements Cloneable {
     setData(bytes, time);
   }
 
+  /**
+   * Sets the entry data which is already compressed according to {@link #getMethod()}.
+   *
+   * @param size uncompressed size of the data
+   * @param crc  CRC-32 of the uncompressed data
+   */
+  public void setCompressedData(byte[] data, int length, long size, long crc) throws IOException {
+    JBZipOutputStream stream = myFile.getOutputStream();
+    stream.putNextEntryContent(this, size, crc, data, length);
+  }
+
+  /**
+   * Sets the entry data reading it from the stream, the stream isn't closed
+   */
+  public void setData(InputStream content) throws IOException {
+    JBZipOutputStream stream = myFile.getOutputStream();
+    stream.putNextEntryContent(this, content);
+  }
+
   public byte[] getData() throws IOException {
     if (size == -1) throw new IOException("no data");
 
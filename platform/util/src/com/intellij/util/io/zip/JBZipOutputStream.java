@@ -23,6 +23,8 @@ package com.intellij.util.io.zip;
 import com.intellij.openapi.util.io.BufferExposingByteArrayOutputStream;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.util.List;
@@ -187,6 +189,11 @@ class JBZipOutputStream {
    */
   protected static final byte[] LFH_SIG = ZipLong.getBytes(0X04034B50L);
 
+  /**
+   * offset of the CRC field in the local file header, it's followed by compressed and uncompressed sizes
+   */
+  private static final int LFH_CRC_OFFSET = 14;
+
   /**
    * central file header signature
    *
@@ -384,23 +391,17 @@ class JBZipOutputStream {
   }
 
   public void putNextEntryBytes(JBZipEntry entry, byte[] bytes) throws IOException {
-    entry.setSize(bytes.length);
-
     crc.reset();
     crc.update(bytes);
-    entry.setCrc(crc.getValue());
 
     if (entry.getMethod() == -1) {
       entry.setMethod(method);
     }
 
-    if (entry.getTime() == -1) {
-      entry.setTime(System.currentTimeMillis());
-    }
-
     final byte[] outputBytes;
     final int outputBytesLength;
     if (entry.getMethod() == ZipEntry.DEFLATED) {
+      def.reset();
       def.setLevel(level);
       final BufferExposingByteArrayOutputStream compressedBytesStream = new BufferExposingByteArrayOutputStream();
       final DeflaterOutputStream stream = new DeflaterOutputStream(compressedBytesStream, def);
@@ -418,8 +419,90 @@ class JBZipOutputStream {
       outputBytes = bytes;
     }
 
-    entry.setCompressedSize(outputBytesLength);
+    putNextEntryContent(entry, bytes.length, crc.getValue(), outputBytes, outputBytesLength);
+  }
+
+  /**
+   * Writes an entry whose data is already encoded according to the entry's compression method, e.g. deflated in another thread.
+   *
+   * @param size uncompressed size of the data
+   * @param crc  CRC-32 of the uncompressed data
+   */
+  public void putNextEntryContent(JBZipEntry entry, long size, long crc, byte[] content, int length) throws IOException {
+    entry.setSize(size);
+    entry.setCrc(crc);
+
+    if (entry.getMethod() == -1) {
+      entry.setMethod(method);
+    }
+
+    if (entry.getTime() == -1) {
+      entry.setTime(System.currentTimeMillis());
+    }
+
+    entry.setCompressedSize(length);
+    writeLocalFileHeader(entry);
+    writeOut(content, 0, length);
+  }
+
+  /**
+   * Writes an entry reading its data from the stream, so the data isn't kept in memory. CRC and sizes of the entry are
+   * written to its local file header after the data.
+   */
+  public void putNextEntryContent(JBZipEntry entry, InputStream content) throws IOException {
+    if (entry.getMethod() == -1) {
+      entry.setMethod(method);
+    }
+
+    if (entry.getTime() == -1) {
+      entry.setTime(System.currentTimeMillis());
+    }
+
     writeLocalFileHeader(entry);
-    writeOut(outputBytes, 0, outputBytesLength);
+    final long dataOffset = written;
+    crc.reset();
+    long size = 0;
+    final byte[] buffer = new byte[8192];
+    if (entry.getMethod() == ZipEntry.DEFLATED) {
+      def.reset();
+      def.setLevel(level);
+      final DeflaterOutputStream stream = new DeflaterOutputStream(new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          writeOut(new byte[]{(byte)b});
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+          writeOut(b, off, len);
+        }
+      }, def, buffer.length);
+      int read;
+      while ((read = content.read(buffer)) > 0) {
+        crc.update(buffer, 0, read);
+        stream.write(buffer, 0, read);
+        size += read;
+      }
+      stream.finish();
+    }
+    else {
+      int read;
+      while ((read = content.read(buffer)) > 0) {
+        crc.update(buffer, 0, read);
+        writeOut(buffer, 0, read);
+        size += read;
+      }
+    }
+
+    entry.setSize(size);
+    entry.setCrc(crc.getValue());
+    entry.setCompressedSize(written - dataOffset);
+
+    flushBuffer();
+    raf.seek(entry.getHeaderOffset() + LFH_CRC_OFFSET);
+    raf.write(ZipLong.getBytes(entry.getCrc()));
+    raf.write(ZipLong.getBytes(entry.getCompressedSize()));
+    raf.write(ZipLong.getBytes(entry.getSize()));
+    raf.seek(written);
   }
 }
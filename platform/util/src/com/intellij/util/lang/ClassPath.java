@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2009 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -48,6 +48,7 @@ public class ClassPath {
 
   private final boolean myCanLockJars;
   private final boolean myCanUseCache;
+  @Nullable private final ClasspathIndex myIndex;
   private static final long NS_THRESHOLD = 10000000L;
   private static long total;
   private static int requests;
@@ -101,8 +102,14 @@ public class ClassPath {
   }
 
   public ClassPath(URL[] urls, boolean canLockJars, boolean canUseCache, boolean acceptUnescapedUrls, boolean preloadJarContents) {
+    this(urls, canLockJars, canUseCache, acceptUnescapedUrls, preloadJarContents, null);
+  }
+
+  public ClassPath(URL[] urls, boolean canLockJars, boolean canUseCache, boolean acceptUnescapedUrls, boolean preloadJarContents,
+                   @Nullable File indexFile) {
     myCanLockJars = canLockJars;
     myCanUseCache = canUseCache;
+    myIndex = canUseCache && indexFile != null ? new ClasspathIndex(indexFile) : null;
     myAcceptUnescapedUrls = acceptUnescapedUrls;
     myPreloadJarContents = preloadJarContents;
     push(urls);
@@ -183,6 +190,10 @@ public class ClassPath {
       myLoadersMap.put(url, loader);
       if (lastOne && myCanUseCache) {
         myCache.nameSymbolsLoaded();
+        if (myIndex != null) {
+          //all jars of the classpath are registered, so data of the re-read ones isn't needed anymore
+          myIndex.saveInBackground();
+        }
       }
     }
 
@@ -210,7 +221,7 @@ public class ClassPath {
       }
     }
     else {
-      JarLoader jarLoader = new JarLoader(url, myCanLockJars, index);
+      JarLoader jarLoader = new JarLoader(url, myCanLockJars, index, myIndex);
       if (myPreloadJarContents) {
         jarLoader.preLoadClasses();
       }
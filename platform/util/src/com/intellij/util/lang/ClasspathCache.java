@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2009 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -57,6 +57,27 @@ public class ClasspathCache {
     String packageName = getPackageName(resourcePath);
     TIntObjectHashMap<Object> map = resourcePath.endsWith(UrlClassLoader.CLASS_EXTENSION) ?
                                     myClassPackagesCache : myResourcePackagesCache;
+    addPackage(map, packageName, loader);
+  }
+
+  /**
+   * Registers names collected by {@link LoaderData} as if they were added by {@link #addResourceEntry} and {@link #addNameEntry}
+   */
+  void addLoaderData(LoaderData data, Loader loader) {
+    for (String packageName : data.myClassPackages) {
+      myDebugInfo.addPackage(packageName, true, loader);
+      addPackage(myClassPackagesCache, packageName, loader);
+    }
+    for (String packageName : data.myResourcePackages) {
+      myDebugInfo.addPackage(packageName, false, loader);
+      addPackage(myResourcePackagesCache, packageName, loader);
+    }
+    for (String name : data.myNames) {
+      addTransformedName(name, loader);
+    }
+  }
+
+  private static void addPackage(TIntObjectHashMap<Object> map, String packageName, Loader loader) {
     int hash = packageName.hashCode();
     Object o = map.get(hash);
     if (o == null) map.put(hash, loader);
@@ -108,7 +129,10 @@ public class ClasspathCache {
   private int registeredAfterClose;
 
   public void addNameEntry(String name, Loader loader) {
-    name = transformName(name);
+    addTransformedName(transformName(name), loader);
+  }
+
+  private void addTransformedName(String name, Loader loader) {
     myDebugInfo.addNameEntry(name, loader);
     if (myTempMapMode) {
       Set<Loader> loaders = myResources2LoadersTempMap.get(name);
@@ -254,6 +278,36 @@ public class ClasspathCache {
     }
   }
 
+  /**
+   * Names of a loader's entries in the form used by the cache, so they can be stored in {@link ClasspathIndex}
+   */
+  static class LoaderData {
+    final Set<String> myClassPackages;
+    final Set<String> myResourcePackages;
+    final Set<String> myNames;
+
+    LoaderData() {
+      this(new THashSet<String>(), new THashSet<String>(), new THashSet<String>());
+    }
+
+    LoaderData(Set<String> classPackages, Set<String> resourcePackages, Set<String> names) {
+      myClassPackages = classPackages;
+      myResourcePackages = resourcePackages;
+      myNames = names;
+    }
+
+    void addEntry(String resourcePath) {
+      String packageName = getPackageName(resourcePath);
+      if (resourcePath.endsWith(UrlClassLoader.CLASS_EXTENSION)) {
+        myClassPackages.add(packageName);
+      }
+      else {
+        myResourcePackages.add(packageName);
+      }
+      myNames.add(transformName(resourcePath));
+    }
+  }
+
   private static class Name2LoaderFilter extends BloomFilterBase {
     private static final int SEED = 31;
 
@@ -295,7 +349,10 @@ public class ClasspathCache {
       boolean isClassFile = resourcePath.endsWith(UrlClassLoader.CLASS_EXTENSION);
       final int idx = resourcePath.lastIndexOf('/');
       String packageName = idx > 0 ? resourcePath.substring(0, idx) : "";
+      return getPackageLoaders(packageName, isClassFile);
+    }
 
+    private List<Loader> getPackageLoaders(String packageName, boolean isClassFile) {
       Map<String, List<Loader>> map = isClassFile ? myClassPackagesCache : myResourcePackagesCache;
       List<Loader> list = map.get(packageName);
       if (list == null) {
@@ -307,7 +364,14 @@ public class ClasspathCache {
     }
 
     protected void addResourceEntry(String resourcePath, Loader loader) {
-      final List<Loader> loaders = getLoaders(resourcePath);
+      addLoader(getLoaders(resourcePath), loader);
+    }
+
+    protected void addPackage(String packageName, boolean isClassFile, Loader loader) {
+      addLoader(getPackageLoaders(packageName, isClassFile), loader);
+    }
+
+    private static void addLoader(List<Loader> loaders, Loader loader) {
       if (!loaders.contains(loader)) { // TODO Make linked hash set instead?
         loaders.add(loader);
       }
@@ -352,6 +416,10 @@ public class ClasspathCache {
     protected void addResourceEntry(String resourcePath, Loader loader) {
     }
 
+    @Override
+    protected void addPackage(String packageName, boolean isClassFile, Loader loader) {
+    }
+
     @Override
     protected void addNameEntry(String name, Loader loader) {
     }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.lang;
+
+import com.intellij.openapi.util.ShutDownTracker;
+import com.intellij.openapi.util.io.FileUtil;
+import gnu.trove.THashMap;
+import gnu.trove.THashSet;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Stores names of the entries of jars on the classpath in the form used by {@link ClasspathCache}, so {@link JarLoader} doesn't need
+ * to open a jar and read its central directory to fill the cache on every start. Data of a jar is used only if its length and timestamp
+ * weren't changed. The index is used only by class loaders it's explicitly passed to, see {@link UrlClassLoader}.
+ * <p/>
+ * Data of a jar is kept in memory only until it's passed to the cache. Data of re-read jars is saved on a separate thread when all jars
+ * of the classpath are registered in its cache (or on shutdown, if that doesn't happen) and is released after that.
+ */
+class ClasspathIndex {
+  private static final int VERSION = 1;
+
+  private final Object myLock = new Object();
+  private final File myFile;
+  private final Map<String, JarData> myIndexedJars = new THashMap<String, JarData>();
+  private final Map<String, JarData> myReadJars = new THashMap<String, JarData>();
+  private boolean mySaveScheduled;
+  private int myJarsFromIndex;
+  private int myJarsRead;
+  private long myReadNanos;
+
+  ClasspathIndex(File file) {
+    myFile = file;
+    load(myIndexedJars);
+    ShutDownTracker.getInstance().registerShutdownTask(new Runnable() {
+      public void run() {
+        save();
+      }
+    });
+  }
+
+  /**
+   * @return the stored data of the jar if it's up to date; the data is removed from the index, so the next call for the same jar returns
+   * {@code null}
+   */
+  @Nullable
+  ClasspathCache.LoaderData getLoaderData(File jar) {
+    String path = jar.getPath();
+    long length = jar.length();
+    long timestamp = jar.lastModified();
+    synchronized (myLock) {
+      JarData data = myIndexedJars.remove(path);
+      if (data != null && data.myLength == length && data.myTimestamp == timestamp) {
+        myJarsFromIndex++;
+        return data.myLoaderData;
+      }
+      return null;
+    }
+  }
+
+  void putLoaderData(File jar, ClasspathCache.LoaderData loaderData, long readNanos) {
+    String path = jar.getPath();
+    long length = jar.length();
+    long timestamp = jar.lastModified();
+    synchronized (myLock) {
+      myReadJars.put(path, new JarData(length, timestamp, loaderData));
+      myJarsRead++;
+      myReadNanos += readNanos;
+    }
+  }
+
+  /**
+   * Schedules {@link #save()} on a separate thread, so class loading doesn't wait for the index file to be written
+   */
+  void saveInBackground() {
+    synchronized (myLock) {
+      if (myReadJars.isEmpty() || mySaveScheduled) return;
+      mySaveScheduled = true;
+    }
+    Thread thread = new Thread("Classpath index saving") {
+      @Override
+      public void run() {
+        save();
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Writes data of the jars read since the last call to the index file and releases it
+   */
+  void save() {
+    synchronized (myLock) {
+      mySaveScheduled = false;
+      if (UrlClassLoader.doDebug) {
+        UrlClassLoader.debug("Classpath index: " + myJarsFromIndex + " jars taken from index, " + myJarsRead + " jars read in " +
+                             myReadNanos / 1000000 + " ms");
+      }
+      if (myReadJars.isEmpty()) return;
+
+      //the index may be shared by several processes or class loaders, so keep data of jars which weren't read by this one
+      Map<String, JarData> jars = new THashMap<String, JarData>();
+      load(jars);
+      jars.putAll(myReadJars);
+      myReadJars.clear();
+
+      File tempFile = null;
+      try {
+        FileUtil.createParentDirs(myFile);
+        tempFile = FileUtil.createTempFile(myFile.getParentFile(), myFile.getName(), ".tmp", true, false);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try {
+          output.writeInt(VERSION);
+          int count = 0;
+          for (String path : jars.keySet()) {
+            if (new File(path).exists()) count++;
+          }
+          output.writeInt(count);
+          for (Map.Entry<String, JarData> entry : jars.entrySet()) {
+            if (!new File(entry.getKey()).exists()) continue;
+            JarData data = entry.getValue();
+            output.writeUTF(entry.getKey());
+            output.writeLong(data.myLength);
+            output.writeLong(data.myTimestamp);
+            writeStrings(output, data.myLoaderData.myClassPackages);
+            writeStrings(output, data.myLoaderData.myResourcePackages);
+            writeStrings(output, data.myLoaderData.myNames);
+          }
+        }
+        finally {
+          output.close();
+        }
+        FileUtil.rename(tempFile, myFile);
+      }
+      catch (IOException e) {
+        if (tempFile != null) {
+          FileUtil.delete(tempFile);
+        }
+        FileUtil.delete(myFile);
+      }
+    }
+  }
+
+  private void load(Map<String, JarData> jars) {
+    if (!myFile.exists()) return;
+    try {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(myFile)));
+      try {
+        if (input.readInt() != VERSION) return;
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+          String path = input.readUTF();
+          long length = input.readLong();
+          long timestamp = input.readLong();
+          Set<String> classPackages = readStrings(input);
+          Set<String> resourcePackages = readStrings(input);
+          Set<String> names = readStrings(input);
+          jars.put(path, new JarData(length, timestamp, new ClasspathCache.LoaderData(classPackages, resourcePackages, names)));
+        }
+      }
+      finally {
+        input.close();
+      }
+    }
+    catch (IOException e) {
+      jars.clear();
+    }
+  }
+
+  private static void writeStrings(DataOutput output, Set<String> strings) throws IOException {
+    output.writeInt(strings.size());
+    for (String s : strings) {
+      output.writeUTF(s);
+    }
+  }
+
+  private static Set<String> readStrings(DataInput input) throws IOException {
+    int size = input.readInt();
+    Set<String> result = new THashSet<String>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(input.readUTF());
+    }
+    return result;
+  }
+
+  private static class JarData {
+    private final long myLength;
+    private final long myTimestamp;
+    private final ClasspathCache.LoaderData myLoaderData;
+
+    private JarData(long length, long timestamp, ClasspathCache.LoaderData loaderData) {
+      myLength = length;
+      myTimestamp = timestamp;
+      myLoaderData = loaderData;
+    }
+  }
+}
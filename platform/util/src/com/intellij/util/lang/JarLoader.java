@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2009 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,6 +35,7 @@ class JarLoader extends Loader {
   private final URL myURL;
   private SoftReference<JarMemoryLoader> myMemoryLoader;
   private final boolean myCanLockJar;
+  @Nullable private final ClasspathIndex myClasspathIndex;
   private static final boolean myDebugTime = false;
   private static int misses;
   private static int hits;
@@ -60,10 +61,11 @@ class JarLoader extends Loader {
   @NonNls private static final String FILE_PROTOCOL = "file";
   private static final long NS_THRESHOLD = 10000000;
 
-  JarLoader(URL url, boolean canLockJar, int index) throws IOException {
+  JarLoader(URL url, boolean canLockJar, int index, @Nullable ClasspathIndex classpathIndex) throws IOException {
     super(new URL(JAR_PROTOCOL, "", -1, url + "!/"), index);
     myURL = url;
     myCanLockJar = canLockJar;
+    myClasspathIndex = classpathIndex;
   }
 
   void preLoadClasses() {
@@ -126,6 +128,31 @@ class JarLoader extends Loader {
 
   @Override
   void buildCache(final ClasspathCache cache) throws IOException {
+    ClasspathIndex index = FILE_PROTOCOL.equals(myURL.getProtocol()) ? myClasspathIndex : null;
+    if (index != null) {
+      File file = new File(FileUtil.unquote(myURL.getFile()));
+      ClasspathCache.LoaderData data = index.getLoaderData(file);
+      if (data == null) {
+        long started = System.nanoTime();
+        data = new ClasspathCache.LoaderData();
+        ZipFile zipFile = null;
+        try {
+          zipFile = acquireZipFile();
+          if (zipFile == null) return;
+          final Enumeration<? extends ZipEntry> entries = zipFile.entries();
+          while (entries.hasMoreElements()) {
+            data.addEntry(entries.nextElement().getName());
+          }
+        }
+        finally {
+          releaseZipFile(zipFile);
+        }
+        index.putLoaderData(file, data, System.nanoTime() - started);
+      }
+      cache.addLoaderData(data, this);
+      return;
+    }
+
     ZipFile zipFile = null;
     try {
       zipFile = acquireZipFile();
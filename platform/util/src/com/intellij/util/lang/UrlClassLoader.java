@@ -24,6 +24,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sun.misc.Resource;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
@@ -58,6 +59,20 @@ public class UrlClassLoader extends ClassLoader {
   }
 
   public UrlClassLoader(List<URL> urls, @Nullable ClassLoader parent, boolean canLockJars, boolean canUseCache, boolean acceptUnescapedUrls, final boolean preloadJarContents) {
+    this(urls, parent, canLockJars, canUseCache, acceptUnescapedUrls, preloadJarContents, null);
+  }
+
+  /**
+   * @param classpathIndexFile file where names of classes and resources of the classpath jars are stored between runs, see
+   *                           {@link ClasspathIndex}; intended for the main application loader only, is ignored if the cache isn't used
+   */
+  public UrlClassLoader(List<URL> urls, @Nullable ClassLoader parent, boolean canLockJars, boolean canUseCache,
+                        @Nullable File classpathIndexFile) {
+    this(urls, parent, canLockJars, canUseCache, false, true, classpathIndexFile);
+  }
+
+  private UrlClassLoader(List<URL> urls, @Nullable ClassLoader parent, boolean canLockJars, boolean canUseCache, boolean acceptUnescapedUrls,
+                         boolean preloadJarContents, @Nullable File classpathIndexFile) {
     super(parent);
 
     List<URL> list = ContainerUtil.map(urls, new Function<URL, URL>() {
@@ -66,7 +81,8 @@ public class UrlClassLoader extends ClassLoader {
         return internProtocol(url);
       }
     });
-    myClassPath = new ClassPath(list.toArray(new URL[list.size()]), canLockJars, canUseCache, acceptUnescapedUrls, preloadJarContents);
+    myClassPath = new ClassPath(list.toArray(new URL[list.size()]), canLockJars, canUseCache, acceptUnescapedUrls, preloadJarContents,
+                                 classpathIndexFile);
     myURLs = list;
   }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2009 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -38,6 +38,7 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
 
   private MessageHandler myDefaultHandler;
   private volatile SmartFMap<Topic, Object> mySubscriptions = SmartFMap.emptyMap();
+  private volatile boolean myDisconnected;
 
   public MessageBusConnectionImpl(@NotNull MessageBusImpl bus) {
     myBus = bus;
@@ -50,6 +51,7 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
         throw new IllegalStateException("Subscription to " + topic + " already exists");
       }
       mySubscriptions = mySubscriptions.plus(topic, handler);
+      myDisconnected = false;
     }
     myBus.notifyOnSubscription(this, topic);
   }
@@ -76,6 +78,7 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
 
   @Override
   public void disconnect() {
+    myDisconnected = true;
     Queue<Message> jobs = myPendingMessages.get();
     myPendingMessages.remove();
     myBus.notifyConnectionTerminated(this);
@@ -101,17 +104,26 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
     final Message messageOnLocalQueue = myPendingMessages.get().poll();
     assert messageOnLocalQueue == message;
 
-    final Topic topic = message.getTopic();
+    invokeHandler(message.getTopic(), message.getListenerMethod(), message.getArgs());
+  }
+
+  /**
+   * Delivers a message which wasn't queued, see {@link MessageBusImpl}
+   */
+  void deliverDirectly(@NotNull Topic topic, @NotNull Method listenerMethod, Object[] args) {
+    invokeHandler(topic, listenerMethod, args);
+  }
+
+  private void invokeHandler(Topic topic, Method listenerMethod, Object[] args) {
     final Object handler = mySubscriptions.get(topic);
+    final long start = MessageBusImpl.COLLECT_STATISTICS ? System.nanoTime() : 0;
 
     try {
-      Method listenerMethod = message.getListenerMethod();
-
       if (handler == myDefaultHandler) {
-        myDefaultHandler.handle(listenerMethod, message.getArgs());
+        myDefaultHandler.handle(listenerMethod, args);
       }
       else {
-        listenerMethod.invoke(handler, message.getArgs());
+        listenerMethod.invoke(handler, args);
       }
     }
     catch (AbstractMethodError e) {
@@ -120,6 +132,20 @@ public class MessageBusConnectionImpl implements MessageBusConnection {
     catch(Throwable e) {
       LOG.error(e.getCause() == null ? e : e.getCause());
     }
+    finally {
+      if (MessageBusImpl.COLLECT_STATISTICS) {
+        myBus.addHandlerTime(topic, System.nanoTime() - start);
+      }
+    }
+  }
+
+  boolean canDeliver() {
+    return !myDisconnected && !myBus.isDisposed();
+  }
+
+  @NotNull
+  MessageBusImpl getBus() {
+    return myBus;
   }
 
   void scheduleMessageDelivery(Message message) {
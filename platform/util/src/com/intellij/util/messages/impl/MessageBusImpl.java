@@ -1,5 +1,5 @@
 /*
- * Copyright 2000-2012 JetBrains s.r.o.
+ * Copyright 2000-2013 JetBrains s.r.o.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -33,27 +33,47 @@ import org.jetbrains.annotations.NotNull;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Queue;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Messages published by a sync publisher are delivered directly to a cached snapshot of the topic subscribers if there are no queued
+ * messages in the current thread, otherwise (or when a listener publishes another message) delivery jobs are queued and pumped
+ * in the same order as the direct delivery would use.
+ * <p/>
+ * Pass -Didea.message.bus.statistics=true to collect the number of published messages and the time spent in listeners per topic.
+ */
 public class MessageBusImpl implements MessageBus {
   private static final Logger LOG = Logger.getInstance("#com.intellij.util.messages.impl.MessageBusImpl");
+  static final boolean COLLECT_STATISTICS = Boolean.getBoolean("idea.message.bus.statistics");
+  private static final MessageBusConnectionImpl[] NO_SUBSCRIBERS = new MessageBusConnectionImpl[0];
   private final ThreadLocal<Queue<DeliveryJob>> myMessageQueue = createThreadLocalQueue();
   private final ConcurrentMap<Topic, Object> mySyncPublishers = new ConcurrentHashMap<Topic, Object>();
   private final ConcurrentMap<Topic, Object> myAsyncPublishers = new ConcurrentHashMap<Topic, Object>();
   private final ConcurrentMap<Topic, List<MessageBusConnectionImpl>> mySubscribers =
     new ConcurrentHashMap<Topic, List<MessageBusConnectionImpl>>();
   private final List<MessageBusImpl> myChildBuses = ContainerUtil.createLockFreeCopyOnWriteList();
+  /**
+   * Subscribers which receive messages published to this bus, in the order of delivery. A snapshot is valid while
+   * {@link #mySubscribersVersion} of the root bus isn't changed.
+   */
+  private final ConcurrentMap<Topic, Subscribers> mySubscribersCache = new ConcurrentHashMap<Topic, Subscribers>();
 
   private static final Object NA = new Object();
   private MessageBusImpl myParentBus;
+  private final MessageBusImpl myRootBus;
+
+  //the fields below are used in the root bus only
+  private final AtomicInteger mySubscribersVersion;
+  private final ThreadLocal<DispatchState> myDispatchState;
+  private final ConcurrentMap<Topic, TopicStatistics> myStatistics;
+  private final long myCreated;
 
   //is used for debugging purposes
-  @SuppressWarnings({"UnusedDeclaration", "FieldCanBeLocal"})
   private final Object myOwner;
   private boolean myDisposed;
 
@@ -65,7 +85,23 @@ public class MessageBusImpl implements MessageBus {
   public MessageBusImpl(@NotNull Object owner, MessageBus parentBus) {
     myOwner = owner.toString();
     myParentBus = (MessageBusImpl)parentBus;
-    if (myParentBus != null) {
+    myRootBus = myParentBus != null ? myParentBus.myRootBus : this;
+    if (myParentBus == null) {
+      mySubscribersVersion = new AtomicInteger();
+      myDispatchState = new ThreadLocal<DispatchState>() {
+        @Override
+        protected DispatchState initialValue() {
+          return new DispatchState();
+        }
+      };
+      myStatistics = COLLECT_STATISTICS ? new ConcurrentHashMap<Topic, TopicStatistics>() : null;
+      myCreated = System.currentTimeMillis();
+    }
+    else {
+      mySubscribersVersion = null;
+      myDispatchState = null;
+      myStatistics = null;
+      myCreated = 0;
       myParentBus.notifyChildBusCreated(this);
       LOG.assertTrue(myParentBus.myChildBuses.contains(this));
     }
@@ -79,11 +115,13 @@ public class MessageBusImpl implements MessageBus {
   private void notifyChildBusCreated(final MessageBusImpl childBus) {
     myChildBuses.add(childBus);
     LOG.assertTrue(childBus.myParentBus == this);
+    myRootBus.mySubscribersVersion.incrementAndGet();
   }
 
   private void notifyChildBusDisposed(final MessageBusImpl childBus) {
     boolean removed = myChildBuses.remove(childBus);
     LOG.assertTrue(removed);
+    invalidateSubscribers();
   }
 
   private static class DeliveryJob {
@@ -128,7 +166,10 @@ public class MessageBusImpl implements MessageBus {
       InvocationHandler handler = new InvocationHandler() {
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-          sendMessage(new Message(topic, method, args));
+          if (COLLECT_STATISTICS) {
+            myRootBus.getStatistics(topic).myPublished.incrementAndGet();
+          }
+          sendMessage(topic, method, args);
           return NA;
         }
       };
@@ -149,6 +190,9 @@ public class MessageBusImpl implements MessageBus {
       InvocationHandler handler = new InvocationHandler() {
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+          if (COLLECT_STATISTICS) {
+            myRootBus.getStatistics(topic).myPublished.incrementAndGet();
+          }
           postMessage(new Message(topic, method, args));
           return NA;
         }
@@ -165,48 +209,177 @@ public class MessageBusImpl implements MessageBus {
     Queue<DeliveryJob> jobs = myMessageQueue.get();
     if (!jobs.isEmpty()) {
       LOG.error("Not delivered events in the queue: " + jobs);
+      myRootBus.myDispatchState.get().myPendingJobs -= jobs.size();
     }
     myMessageQueue.remove();
     if (myParentBus != null) {
       myParentBus.notifyChildBusDisposed(this);
       myParentBus = null;
     }
+    else {
+      myDispatchState.remove();
+      if (COLLECT_STATISTICS) {
+        LOG.info("Message bus statistics for " + myOwner + ":\n" + getStatisticsReport());
+      }
+    }
+    mySubscribersCache.clear();
     myDisposed = true;
   }
 
+  boolean isDisposed() {
+    return myDisposed;
+  }
+
   private void checkNotDisposed() {
     LOG.assertTrue(!myDisposed, "Already disposed");
   }
 
   private void postMessage(Message message) {
     checkNotDisposed();
-    final Topic topic = message.getTopic();
-    final List<MessageBusConnectionImpl> topicSubscribers = mySubscribers.get(topic);
-    if (topicSubscribers != null) {
-      Queue<DeliveryJob> queue = myMessageQueue.get();
-      for (MessageBusConnectionImpl subscriber : topicSubscribers) {
-        queue.offer(new DeliveryJob(subscriber, message));
-        subscriber.scheduleMessageDelivery(message);
+    DispatchState state = myRootBus.myDispatchState.get();
+    //messages of an interrupted direct delivery were published earlier, so they must be queued first
+    interruptDirectDelivery(state);
+    for (MessageBusConnectionImpl subscriber : getSubscribers(message.getTopic())) {
+      if (subscriber.canDeliver()) {
+        subscriber.getBus().enqueue(state, subscriber, message);
       }
     }
+  }
 
+  private void enqueue(DispatchState state, MessageBusConnectionImpl subscriber, Message message) {
+    myMessageQueue.get().offer(new DeliveryJob(subscriber, message));
+    subscriber.scheduleMessageDelivery(message);
+    state.myPendingJobs++;
+  }
+
+  private void sendMessage(Topic topic, Method method, Object[] args) {
+    checkNotDisposed();
+    DispatchState state = myRootBus.myDispatchState.get();
+    //a listener publishes a message while another one is being delivered directly, the rest of that delivery is queued
+    interruptDirectDelivery(state);
+    if (state.myPendingJobs == 0) {
+      deliverDirectly(state, topic, method, args);
+      if (state.myPendingJobs > 0) {
+        pumpMessages();
+      }
+    }
+    else {
+      Message message = new Message(topic, method, args);
+      pumpMessages();
+      postMessage(message);
+      pumpMessages();
+    }
+  }
+
+  /**
+   * Delivers the message to subscribers without allocating delivery jobs. The same subscribers in the same order would receive
+   * the message when queued jobs are pumped, and the delivery is continued via the queue if it's interrupted by another message.
+   */
+  private void deliverDirectly(DispatchState state, Topic topic, Method method, Object[] args) {
+    MessageBusConnectionImpl[] subscribers = getSubscribers(topic);
+    if (subscribers.length == 0) return;
+
+    if (!method.isAccessible()) {
+      method.setAccessible(true);
+    }
+    int delivery = ++state.myDirectDeliveryCount;
+    state.myDirectDelivery = true;
+    state.mySubscribers = subscribers;
+    state.myNextSubscriber = 0;
+    state.myTopic = topic;
+    state.myMethod = method;
+    state.myArgs = args;
+    try {
+      while (state.myDirectDelivery && state.myDirectDeliveryCount == delivery && state.myNextSubscriber < subscribers.length) {
+        MessageBusConnectionImpl subscriber = subscribers[state.myNextSubscriber++];
+        if (subscriber.canDeliver()) {
+          subscriber.deliverDirectly(topic, method, args);
+        }
+      }
+    }
+    finally {
+      if (state.myDirectDeliveryCount == delivery) {
+        //queues the rest of subscribers if a listener has thrown an exception
+        interruptDirectDelivery(state);
+      }
+    }
+  }
+
+  private static void interruptDirectDelivery(DispatchState state) {
+    if (!state.myDirectDelivery) return;
+
+    state.myDirectDelivery = false;
+    MessageBusConnectionImpl[] subscribers = state.mySubscribers;
+    Message message = null;
+    for (int i = state.myNextSubscriber; i < subscribers.length; i++) {
+      MessageBusConnectionImpl subscriber = subscribers[i];
+      if (subscriber.canDeliver()) {
+        if (message == null) {
+          message = new Message(state.myTopic, state.myMethod, state.myArgs);
+        }
+        subscriber.getBus().enqueue(state, subscriber, message);
+      }
+    }
+    state.mySubscribers = null;
+    state.myTopic = null;
+    state.myMethod = null;
+    state.myArgs = null;
+  }
+
+  @NotNull
+  private MessageBusConnectionImpl[] getSubscribers(@NotNull Topic topic) {
+    int version = myRootBus.mySubscribersVersion.get();
+    Subscribers cached = mySubscribersCache.get(topic);
+    if (cached != null && cached.myVersion == version) {
+      return cached.myConnections;
+    }
+
+    List<MessageBusConnectionImpl> result = new ArrayList<MessageBusConnectionImpl>();
     Topic.BroadcastDirection direction = topic.getBroadcastDirection();
+    if (direction == Topic.BroadcastDirection.TO_PARENT) {
+      //messages are pumped starting from the root bus, so subscribers of parent buses receive them first
+      List<MessageBusImpl> buses = new ArrayList<MessageBusImpl>();
+      for (MessageBusImpl bus = this; bus != null; bus = bus.myParentBus) {
+        buses.add(bus);
+      }
+      for (int i = buses.size() - 1; i >= 0; i--) {
+        buses.get(i).collectSubscribers(topic, false, result);
+      }
+    }
+    else {
+      collectSubscribers(topic, direction == Topic.BroadcastDirection.TO_CHILDREN, result);
+    }
+    MessageBusConnectionImpl[] connections =
+      result.isEmpty() ? NO_SUBSCRIBERS : result.toArray(new MessageBusConnectionImpl[result.size()]);
+    mySubscribersCache.put(topic, new Subscribers(version, connections));
+    return connections;
+  }
 
-    if (direction == Topic.BroadcastDirection.TO_CHILDREN) {
+  private void collectSubscribers(Topic topic, boolean withChildren, List<MessageBusConnectionImpl> result) {
+    List<MessageBusConnectionImpl> topicSubscribers = mySubscribers.get(topic);
+    if (topicSubscribers != null) {
+      result.addAll(topicSubscribers);
+    }
+    if (withChildren) {
       for (MessageBusImpl childBus : myChildBuses) {
-        childBus.postMessage(message);
+        childBus.collectSubscribers(topic, true, result);
       }
     }
+  }
 
-    if (direction == Topic.BroadcastDirection.TO_PARENT && myParentBus != null) {
-      myParentBus.postMessage(message);
-    }
+  private void invalidateSubscribers() {
+    myRootBus.mySubscribersVersion.incrementAndGet();
+    //outdated snapshots shouldn't keep disconnected listeners
+    myRootBus.clearSubscribersCache();
   }
 
-  private void sendMessage(Message message) {
-    pumpMessages();
-    postMessage(message);
-    pumpMessages();
+  private void clearSubscribersCache() {
+    if (!mySubscribersCache.isEmpty()) {
+      mySubscribersCache.clear();
+    }
+    for (MessageBusImpl childBus : myChildBuses) {
+      childBus.clearSubscribersCache();
+    }
   }
 
   private void pumpMessages() {
@@ -216,22 +389,26 @@ public class MessageBusImpl implements MessageBus {
       myParentBus.pumpMessages();
     }
     else {
-      doPumpMessages();
+      DispatchState state = myDispatchState.get();
+      if (state.myPendingJobs > 0) {
+        doPumpMessages(state);
+      }
     }
   }
 
-  private void doPumpMessages() {
+  private void doPumpMessages(DispatchState state) {
     Queue<DeliveryJob> queue = myMessageQueue.get();
     do {
       DeliveryJob job = queue.poll();
       if (job == null) break;
+      state.myPendingJobs--;
       job.connection.deliverMessage(job.message);
     }
     while (true);
 
     for (MessageBusImpl childBus : myChildBuses) {
       LOG.assertTrue(childBus.myParentBus == this);
-      childBus.doPumpMessages();
+      childBus.doPumpMessages(state);
     }
   }
 
@@ -244,6 +421,7 @@ public class MessageBusImpl implements MessageBus {
     }
 
     topicSubscribers.add(connection);
+    myRootBus.mySubscribersVersion.incrementAndGet();
   }
 
   void notifyConnectionTerminated(final MessageBusConnectionImpl connection) {
@@ -252,11 +430,14 @@ public class MessageBusImpl implements MessageBus {
     }
     if (myDisposed) return;
 
+    invalidateSubscribers();
+    DispatchState state = myRootBus.myDispatchState.get();
     final Iterator<DeliveryJob> i = myMessageQueue.get().iterator();
     while (i.hasNext()) {
       final DeliveryJob job = i.next();
       if (job.connection == connection) {
         i.remove();
+        state.myPendingJobs--;
       }
     }
   }
@@ -265,9 +446,104 @@ public class MessageBusImpl implements MessageBus {
     checkNotDisposed();
     final DeliveryJob job = myMessageQueue.get().poll();
     if (job == null) return;
+    myRootBus.myDispatchState.get().myPendingJobs--;
     job.connection.deliverMessage(job.message);
   }
 
+  void addHandlerTime(@NotNull Topic topic, long nanos) {
+    TopicStatistics statistics = myRootBus.getStatistics(topic);
+    statistics.myDelivered.incrementAndGet();
+    statistics.myHandlerNanos.addAndGet(nanos);
+  }
+
+  @NotNull
+  private TopicStatistics getStatistics(@NotNull Topic topic) {
+    TopicStatistics statistics = myStatistics.get(topic);
+    if (statistics == null) {
+      statistics = ConcurrencyUtil.cacheOrGet(myStatistics, topic, new TopicStatistics());
+    }
+    return statistics;
+  }
+
+  /**
+   * @return statistics of topics published to this bus hierarchy, empty unless -Didea.message.bus.statistics=true is specified
+   */
+  @NotNull
+  public Map<Topic, TopicStatistics> getTopicStatistics() {
+    Map<Topic, TopicStatistics> statistics = myRootBus.myStatistics;
+    return statistics == null ? Collections.<Topic, TopicStatistics>emptyMap() : new HashMap<Topic, TopicStatistics>(statistics);
+  }
+
+  @NotNull
+  public String getStatisticsReport() {
+    List<Map.Entry<Topic, TopicStatistics>> entries = new ArrayList<Map.Entry<Topic, TopicStatistics>>(getTopicStatistics().entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<Topic, TopicStatistics>>() {
+      @Override
+      public int compare(Map.Entry<Topic, TopicStatistics> o1, Map.Entry<Topic, TopicStatistics> o2) {
+        long t1 = o1.getValue().getHandlerTimeNanos();
+        long t2 = o2.getValue().getHandlerTimeNanos();
+        return t1 > t2 ? -1 : t1 == t2 ? 0 : 1;
+      }
+    });
+    long seconds = Math.max(1, (System.currentTimeMillis() - myRootBus.myCreated) / 1000);
+    StringBuilder report = new StringBuilder();
+    for (Map.Entry<Topic, TopicStatistics> entry : entries) {
+      TopicStatistics statistics = entry.getValue();
+      report.append(entry.getKey()).append(": ").append(statistics.getPublishedCount()).append(" published (")
+        .append(statistics.getPublishedCount() / seconds).append("/s), ").append(statistics.getDeliveredCount()).append(" delivered in ")
+        .append(statistics.getHandlerTimeNanos() / 1000000).append(" ms\n");
+    }
+    return report.toString();
+  }
+
+  public static class TopicStatistics {
+    private final AtomicLong myPublished = new AtomicLong();
+    private final AtomicLong myDelivered = new AtomicLong();
+    private final AtomicLong myHandlerNanos = new AtomicLong();
+
+    public long getPublishedCount() {
+      return myPublished.get();
+    }
+
+    /**
+     * @return number of listener invocations
+     */
+    public long getDeliveredCount() {
+      return myDelivered.get();
+    }
+
+    public long getHandlerTimeNanos() {
+      return myHandlerNanos.get();
+    }
+  }
+
+  private static class Subscribers {
+    private final int myVersion;
+    private final MessageBusConnectionImpl[] myConnections;
+
+    private Subscribers(int version, MessageBusConnectionImpl[] connections) {
+      myVersion = version;
+      myConnections = connections;
+    }
+  }
+
+  /**
+   * State of message delivery in a thread, shared by all buses of a hierarchy
+   */
+  private static class DispatchState {
+    /**
+     * Number of delivery jobs in the queues of this thread
+     */
+    private int myPendingJobs;
+    private boolean myDirectDelivery;
+    private int myDirectDeliveryCount;
+    private MessageBusConnectionImpl[] mySubscribers;
+    private int myNextSubscriber;
+    private Topic myTopic;
+    private Method myMethod;
+    private Object[] myArgs;
+  }
+
   @NotNull
   static <T> ThreadLocal<Queue<T>> createThreadLocalQueue() {
     return new ThreadLocal<Queue<T>>() {
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.openapi.util;
+
+import com.intellij.util.containers.BoundedStringInterner;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class StaxJDOMBuilderTest {
+  private static final String XML = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                                    "<!-- header -->\n" +
+                                    "<project version=\"4\" xmlns:x=\"http://example.com/x\">\n" +
+                                    "  <component name=\"First\">\n" +
+                                    "    <option name=\"a\" value=\"true\" />\n" +
+                                    "    <x:item x:kind=\"k\">text &amp; &lt;more&gt;<![CDATA[<raw>]]></x:item>\n" +
+                                    "    <?target data?>\n" +
+                                    "  </component>\n" +
+                                    "  <component name=\"Second\">\n" +
+                                    "    <option name=\"a\" value=\"true\" />\n" +
+                                    "  </component>\n" +
+                                    "</project>";
+
+  @Test
+  public void sameTreeAsSAXBuilder() throws Exception {
+    Document expected = JDOMUtil.loadDocument(XML);
+    Document actual = new StaxJDOMBuilder(null).build(new StringReader(XML));
+    assertEquals(JDOMUtil.writeDocument(expected, "\n"), JDOMUtil.writeDocument(actual, "\n"));
+  }
+
+  @Test
+  public void equalStringsAreShared() throws Exception {
+    Element root = new StaxJDOMBuilder(new BoundedStringInterner(1024, 16)).build(new StringReader(XML)).getRootElement();
+    List children = root.getChildren("component");
+    Element first = ((Element)children.get(0)).getChild("option");
+    Element second = ((Element)children.get(1)).getChild("option");
+    assertSame(first.getName(), second.getName());
+    assertSame(first.getAttributeValue("value"), second.getAttributeValue("value"));
+  }
+
+  @Test
+  public void visitAcceptedChildrenOnly() throws Exception {
+    final List<Element> visited = new ArrayList<Element>();
+    new StaxJDOMBuilder(null).visitRootChildren(new StringReader(XML), new StaxJDOMBuilder.RootChildrenVisitor() {
+      @Override
+      public boolean acceptChild(@NotNull Element child) {
+        return "Second".equals(child.getAttributeValue("name"));
+      }
+
+      @Override
+      public boolean visitChild(@NotNull Element child) {
+        visited.add(child);
+        return true;
+      }
+    });
+    assertEquals(1, visited.size());
+    assertEquals("option", ((Element)visited.get(0).getChildren().get(0)).getName());
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2000-2013 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.intellij.util.lang;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.io.IoTestUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class ClasspathIndexTest {
+  private File myDir;
+  private File myIndexFile;
+
+  @Before
+  public void setUp() throws IOException {
+    myDir = FileUtil.createTempDirectory("classpath.index.", null);
+    myIndexFile = new File(myDir, "classpath.index");
+  }
+
+  @After
+  public void tearDown() {
+    FileUtil.delete(myDir);
+  }
+
+  @Test
+  public void testSaveAndLoad() throws IOException {
+    File jar = createJar("a.jar");
+    ClasspathIndex index = new ClasspathIndex(myIndexFile);
+    assertNull(index.getLoaderData(jar));
+    index.putLoaderData(jar, createData("p/A.class", "res/a.txt"), 0);
+    index.save();
+
+    ClasspathCache.LoaderData data = new ClasspathIndex(myIndexFile).getLoaderData(jar);
+    assertNotNull(data);
+    assertEquals(createData("p/A.class", "res/a.txt").myNames, data.myNames);
+    assertEquals(new HashSet<String>(Arrays.asList("p")), data.myClassPackages);
+    assertEquals(new HashSet<String>(Arrays.asList("res")), data.myResourcePackages);
+  }
+
+  @Test
+  public void testDataIsReturnedOnce() throws IOException {
+    File jar = createJar("a.jar");
+    ClasspathIndex index = new ClasspathIndex(myIndexFile);
+    index.putLoaderData(jar, createData("p/A.class"), 0);
+    index.save();
+
+    index = new ClasspathIndex(myIndexFile);
+    assertNotNull(index.getLoaderData(jar));
+    assertNull(index.getLoaderData(jar));
+  }
+
+  @Test
+  public void testChangedJarIsNotTakenFromIndex() throws IOException {
+    File jar = createJar("a.jar");
+    ClasspathIndex index = new ClasspathIndex(myIndexFile);
+    index.putLoaderData(jar, createData("p/A.class"), 0);
+    index.save();
+
+    assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+    assertNull(new ClasspathIndex(myIndexFile).getLoaderData(jar));
+  }
+
+  @Test
+  public void testDataOfOtherJarsIsKeptOnSave() throws IOException {
+    File a = createJar("a.jar");
+    File b = createJar("b.jar");
+    File c = createJar("c.jar");
+    ClasspathIndex first = new ClasspathIndex(myIndexFile);
+    first.putLoaderData(a, createData("p/A.class"), 0);
+    first.putLoaderData(b, createData("p/B.class"), 0);
+    first.save();
+
+    long bTimestamp = b.lastModified();
+    FileUtil.delete(b);
+    ClasspathIndex second = new ClasspathIndex(myIndexFile);
+    second.putLoaderData(c, createData("p/C.class"), 0);
+    second.save();
+
+    ClasspathIndex third = new ClasspathIndex(myIndexFile);
+    assertNotNull(third.getLoaderData(a));
+    assertNotNull(third.getLoaderData(c));
+    FileUtil.rename(c, b);
+    assertTrue(b.setLastModified(bTimestamp));
+    assertNull("data of deleted jars must not be saved", third.getLoaderData(b));
+  }
+
+  @Test
+  public void testCorruptedIndexIsIgnored() throws IOException {
+    File jar = createJar("a.jar");
+    FileUtil.writeToFile(myIndexFile, "corrupted");
+    ClasspathIndex index = new ClasspathIndex(myIndexFile);
+    assertNull(index.getLoaderData(jar));
+    index.putLoaderData(jar, createData("p/A.class"), 0);
+    index.save();
+
+    assertNotNull(new ClasspathIndex(myIndexFile).getLoaderData(jar));
+  }
+
+  private File createJar(String name) throws IOException {
+    File jar = new File(myDir, name);
+    FileUtil.copy(IoTestUtil.createTestJar(), jar);
+    return jar;
+  }
+
+  private static ClasspathCache.LoaderData createData(String... entries) {
+    ClasspathCache.LoaderData data = new ClasspathCache.LoaderData();
+    for (String entry : entries) {
+      data.addEntry(entry);
+    }
+    return data;
+  }
+}
@@ -41,6 +41,8 @@ public class MessageBusTest extends TestCase {
 
   private static final Topic<T1Listener> TOPIC1 = new Topic<T1Listener>("T1", T1Listener.class);
   private static final Topic<T2Listener> TOPIC2 = new Topic<T2Listener>("T2", T2Listener.class);
+  private static final Topic<T1Listener> TO_PARENT_TOPIC =
+    new Topic<T1Listener>("T1 to parent", T1Listener.class, Topic.BroadcastDirection.TO_PARENT);
 
   private class T1Handler implements T1Listener {
     private final String id;
@@ -196,7 +198,59 @@ public class MessageBusTest extends TestCase {
                  "inside:t11:done",
                  "C2T1Handler:t12");
   }
-  
+
+  public void testSubscribersChangedAfterPublishing() {
+    final MessageBusConnection c1 = myBus.connect();
+    c1.subscribe(TOPIC1, new T1Handler("c1"));
+    myBus.syncPublisher(TOPIC1).t11();
+
+    final MessageBusConnection c2 = myBus.connect();
+    c2.subscribe(TOPIC1, new T1Handler("c2"));
+    myBus.syncPublisher(TOPIC1).t12();
+
+    c1.disconnect();
+    myBus.syncPublisher(TOPIC1).t11();
+
+    assertEvents("c1:t11", "c1:t12", "c2:t12", "c2:t11");
+  }
+
+  public void testAsyncMessagePostedInDispatch() {
+    myBus.connect().subscribe(TOPIC1, new T1Listener() {
+      @Override
+      public void t11() {
+        myLog.add("inside:t11");
+        myBus.asyncPublisher(TOPIC2).t21();
+        myLog.add("inside:t11:done");
+      }
+
+      @Override
+      public void t12() {
+      }
+    });
+    myBus.connect().subscribe(TOPIC1, new T1Handler("c1"));
+    myBus.connect().subscribe(TOPIC2, new T2Handler("c2"));
+
+    myBus.syncPublisher(TOPIC1).t11();
+    assertEvents("inside:t11", "inside:t11:done", "c1:t11", "c2:t21");
+  }
+
+  public void testChildBuses() {
+    MessageBus child = MessageBusFactory.newMessageBus("child", myBus);
+    child.connect().subscribe(TOPIC1, new T1Handler("child"));
+    child.connect().subscribe(TO_PARENT_TOPIC, new T1Handler("child"));
+    myBus.connect().subscribe(TOPIC1, new T1Handler("parent"));
+    myBus.connect().subscribe(TO_PARENT_TOPIC, new T1Handler("parent"));
+
+    myBus.syncPublisher(TOPIC1).t11();
+    child.syncPublisher(TO_PARENT_TOPIC).t12();
+    assertEvents("parent:t11", "child:t11", "parent:t12", "child:t12");
+
+    myLog.clear();
+    child.dispose();
+    myBus.syncPublisher(TOPIC1).t11();
+    assertEvents("parent:t11");
+  }
+
   private void assertEvents(String... expected) {
     String joinExpected = StringUtil.join(expected, "\n");
     String joinActual = StringUtil.join(myLog, "\n");